@@ -0,0 +1,94 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.hk2.api;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Describes the changes made to the set of descriptors of a
+ * {@link ServiceLocator} by a single successful
+ * {@link DynamicConfiguration#commit()}.  The collections returned
+ * from this object may not be modified
+ * 
+ * @author jwells
+ *
+ */
+public interface DynamicConfigurationChange {
+    /**
+     * Gets the descriptors that were added to the service locator
+     * by the commit
+     * 
+     * @return The descriptors added, in the order they were added.  Will
+     * not return null but may return an empty list
+     */
+    public List<ActiveDescriptor<?>> getAddedDescriptors();
+    
+    /**
+     * Gets the descriptors that were removed from the service locator
+     * by the commit
+     * 
+     * @return The descriptors removed.  Will not return null but may
+     * return an empty list
+     */
+    public List<ActiveDescriptor<?>> getRemovedDescriptors();
+    
+    /**
+     * Gets the names of the contracts, qualifiers and scopes of
+     * all of the descriptors added or removed by the commit.  A
+     * listener interested only in certain contracts can use this
+     * to quickly skip changes that do not concern it
+     * 
+     * @return The names of the affected contracts, qualifiers and
+     * scopes.  Will not return null but may return an empty set
+     */
+    public Set<String> getAffectedContracts();
+    
+    /**
+     * Gets the generation of the service locator produced by this
+     * change.  Every successful commit increases the generation of
+     * the service locator, so a listener can use this to tell which
+     * of two changes reported on different threads came last
+     * 
+     * @return The generation of the service locator after the commit
+     */
+    public long getGeneration();
+
+}
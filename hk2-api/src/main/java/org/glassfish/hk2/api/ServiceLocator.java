@@ -39,6 +39,7 @@
  */
 package org.glassfish.hk2.api;
 
+import org.glassfish.hk2.utilities.cache.GenerationSource;
 import org.jvnet.hk2.annotations.Contract;
 
 import java.lang.annotation.Annotation;
@@ -64,7 +65,7 @@ import java.util.List;
  *
  */
 @Contract
-public interface ServiceLocator {
+public interface ServiceLocator extends GenerationSource {
     /**
      * Gets the best service from this locator that implements
      * this contract or has this implementation
@@ -525,6 +526,32 @@ public interface ServiceLocator {
      */
     public long getLocatorId();
     
+    /**
+     * Gets the current generation of this service locator.  The generation
+     * increases every time descriptors are added to or removed from this
+     * service locator or any of its parents, and so can be used to tell
+     * cheaply whether the results of lookups done earlier may have changed.
+     * This method will work in all service locator states
+     * 
+     * @return The current generation of this service locator
+     */
+    public long getGeneration();
+    
+    /**
+     * Gets the current generation of the given contract in this service
+     * locator.  The generation of a contract increases every time a
+     * descriptor advertising that contract is added to or removed from this
+     * service locator or any of its parents.  Qualifiers and scopes are
+     * tracked in the same way as contracts.  This method will work in all
+     * service locator states
+     * 
+     * @param contractOrQualifierOrScope The non-null fully qualified class
+     * name of the contract, qualifier or scope
+     * @return The current generation of the contract, which is zero if no
+     * descriptor advertising the contract was ever added or removed
+     */
+    public long getGeneration(String contractOrQualifierOrScope);
+    
     /**
      * Gets the parent service locator for this locator
      * 
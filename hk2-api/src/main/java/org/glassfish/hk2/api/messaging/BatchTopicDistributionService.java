@@ -0,0 +1,69 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.hk2.api.messaging;
+
+import java.util.List;
+
+import org.jvnet.hk2.annotations.Contract;
+
+/**
+ * A {@link TopicDistributionService} that can distribute several
+ * messages at once.  {@link Topic#publishAll(java.util.Collection)}
+ * uses this method when the current TopicDistributionService
+ * implements this interface
+ * 
+ * @author jwells
+ *
+ */
+@Contract
+public interface BatchTopicDistributionService extends TopicDistributionService {
+    /**
+     * Must distribute all of the messages, in order, to all of the matching
+     * topic subscribers.  Any exception thrown from this method will be ignored.
+     * Instead error handling should be performed by the implementation of
+     * this message
+     * 
+     * @param topic The topic to which to distribute the messages.  Must not be null
+     * @param messages The messages to send to the topic.  Must not be null and
+     * must not contain null
+     */
+    public void distributeMessages(Topic<?> topic, List<?> messages);
+
+}
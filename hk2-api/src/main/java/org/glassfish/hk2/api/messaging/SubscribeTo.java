@@ -57,6 +57,12 @@ import java.lang.annotation.Target;
  * annotation.  All of the other parameters of the method are normal
  * injection points
  * <p>
+ * If {@link #batch()} is true the annotated parameter must be a
+ * {@link java.util.List} (or one of its super-interfaces) and the method
+ * subscribes to messages of the type of the elements of the list.  The method
+ * is then called once with all of the messages given to
+ * {@link Topic#publishAll(java.util.Collection)}, and with a list of one
+ * message for every call to {@link Topic#publish(Object)}
  * 
  * @author jwells
  */
@@ -64,5 +70,11 @@ import java.lang.annotation.Target;
 @Retention(RUNTIME)
 @Target({PARAMETER})
 public @interface SubscribeTo {
+    /**
+     * True if this subscriber receives messages as a list
+     * 
+     * @return true if the annotated parameter is a list of messages
+     */
+    public boolean batch() default false;
 
 }
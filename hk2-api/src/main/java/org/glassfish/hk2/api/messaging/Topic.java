@@ -41,6 +41,7 @@ package org.glassfish.hk2.api.messaging;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.util.Collection;
 import java.util.Set;
 
 /**
@@ -61,6 +62,21 @@ public interface Topic<T> {
      */
     public void publish(T message);
     
+    /**
+     * Publishes all of the messages, in iteration order, to all subscribers.
+     * This behaves as if {@link #publish(Object)} had been called for each
+     * message, except that if the {@link TopicDistributionService} is a
+     * {@link BatchTopicDistributionService} it is given all of the messages
+     * at once, allowing it to do the work that does not depend on the
+     * message only once for the whole collection
+     * 
+     * @param messages The non-null collection of non-null messages to
+     * send to all current subscribers
+     * @throws IllegalStateException If there is no implementation of
+     * {@link TopicDistributionService} to do the distribution of the messages
+     */
+    public void publishAll(Collection<? extends T> messages);
+    
     /**
      * Returns an Topic that is further qualified
      * with the given name
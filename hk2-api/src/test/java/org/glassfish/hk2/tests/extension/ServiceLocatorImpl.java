@@ -273,6 +273,24 @@ public class ServiceLocatorImpl implements ServiceLocator {
         return 0;
     }
 
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.api.ServiceLocator#getGeneration()
+     */
+    @Override
+    public long getGeneration() {
+        // TODO Auto-generated method stub
+        return 0;
+    }
+
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.api.ServiceLocator#getGeneration(java.lang.String)
+     */
+    @Override
+    public long getGeneration(String contractOrQualifierOrScope) {
+        // TODO Auto-generated method stub
+        return 0;
+    }
+
     /* (non-Javadoc)
      * @see org.glassfish.hk2.api.ServiceLocator#reifyDescriptor(org.glassfish.hk2.api.Descriptor, org.glassfish.hk2.api.Injectee)
      */
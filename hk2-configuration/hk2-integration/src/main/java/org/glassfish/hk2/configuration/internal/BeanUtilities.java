@@ -39,6 +39,7 @@
  */
 package org.glassfish.hk2.configuration.internal;
 
+import java.beans.Introspector;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -47,6 +48,7 @@ import java.util.Map;
 
 import org.glassfish.hk2.configuration.api.Configured;
 import org.glassfish.hk2.configuration.api.Dynamicity;
+import org.glassfish.hk2.utilities.reflection.ClassReflectionHelper;
 
 /**
  * For JavaBean or Bean-Like-Map utilities
@@ -55,9 +57,6 @@ import org.glassfish.hk2.configuration.api.Dynamicity;
  *
  */
 public class BeanUtilities {
-    private final static String GET = "get";
-    private final static String IS = "is";
-    
     private static String firstUpper(String s) {
         if (s == null || s.length() <= 0) {
             return s;
@@ -74,10 +73,11 @@ public class BeanUtilities {
      * 
      * @param attribute
      * @param bean
+     * @param helper The helper in which the getters of the bean class are cached
      * @return
      */
     @SuppressWarnings("unchecked")
-    public static Object getBeanPropertyValue(String attribute, BeanInfo beanInfo) {
+    public static Object getBeanPropertyValue(String attribute, BeanInfo beanInfo, ClassReflectionHelper helper) {
         if (Configured.BEAN_KEY.equals(attribute)) return beanInfo.getBean();
         if (Configured.TYPE.equals(attribute)) return beanInfo.getTypeName();
         if (Configured.INSTANCE.equals(attribute)) return beanInfo.getInstanceName();
@@ -89,28 +89,13 @@ public class BeanUtilities {
             return beanLikeMap.get(attribute);
         }
         
-        attribute = firstUpper(attribute);
-        
-        String methodName = GET + attribute;
-        
-        Class<?> beanClass = bean.getClass();
+        // Same normalization as java-bean property names derived from getters
+        String propName = Introspector.decapitalize(firstUpper(attribute));
         
-        Method m = null;
-        try {
-            m = beanClass.getMethod(methodName, new Class[0]);
+        Method m = helper.getBeanGetters(bean.getClass()).get(propName);
+        if (m == null) {
+            throw new IllegalArgumentException("The bean " + bean + " has no getter for attribute " + firstUpper(attribute));
         }
-        catch (NoSuchMethodException me) {
-            methodName = IS + attribute;
-            
-            try {
-                m = beanClass.getMethod(methodName, new Class[0]);
-            }
-            catch (NoSuchMethodException me2) {
-                throw new IllegalArgumentException("The bean " + bean + " has no getter for attribute " + attribute);
-            }
-        }
-        
-        m.setAccessible(true);
         
         try {
             return m.invoke(bean, new Object[0]);
@@ -48,6 +48,7 @@ import java.lang.reflect.Method;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -60,11 +61,14 @@ import javax.inject.Singleton;
 
 import org.glassfish.hk2.api.ActiveDescriptor;
 import org.glassfish.hk2.api.DynamicConfiguration;
+import org.glassfish.hk2.api.DynamicConfigurationChange;
+import org.glassfish.hk2.api.DynamicConfigurationChangeListener;
 import org.glassfish.hk2.api.DynamicConfigurationListener;
 import org.glassfish.hk2.api.DynamicConfigurationService;
 import org.glassfish.hk2.api.Injectee;
 import org.glassfish.hk2.api.ServiceHandle;
 import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.configuration.api.Configured;
 import org.glassfish.hk2.configuration.api.ConfiguredBy;
 import org.glassfish.hk2.configuration.api.PostDynamicChange;
 import org.glassfish.hk2.configuration.api.PreDynamicChange;
@@ -86,6 +90,8 @@ import org.glassfish.hk2.utilities.reflection.internal.ClassReflectionHelperImpl
  */
 @Singleton
 public class ConfigurationListener implements BeanDatabaseUpdateListener {
+    private final static String BEAN_KEYS[] = { Configured.BEAN_KEY, Configured.TYPE, Configured.INSTANCE };
+    
     @Inject
     private Hub hub;
     
@@ -227,7 +233,11 @@ public class ConfigurationListener implements BeanDatabaseUpdateListener {
             return;
         }
         
+        DynamicInjectionPoints injectionPoints = getDynamicInjectionPoints(parent, typeName);
+        
+        // Only the fields and methods that depend on a changed property are touched
         HashMap<String, PropertyChangeEvent> changedProperties = new HashMap<String, PropertyChangeEvent>();
+        LinkedHashSet<Method> affectedMethods = new LinkedHashSet<Method>();
         for (PropertyChangeEvent pce : changes) {
             changedProperties.put(pce.getPropertyName(), pce);
             
@@ -241,48 +251,43 @@ public class ConfigurationListener implements BeanDatabaseUpdateListener {
                     // TODO:  What to do about errors?
                 }
             }
+            
+            for (Field field : injectionPoints.getFields(pce.getPropertyName())) {
+                try {
+                    ReflectionHelper.setField(field, target, pce.getNewValue());
+                }
+                catch (Throwable th) {
+                    // TODO:  How to handle exceptions
+                }
+            }
+            
+            affectedMethods.addAll(injectionPoints.getMethods(pce.getPropertyName()));
         }
         
-        HashMap<Method, Object[]> dynamicMethods = new HashMap<Method, Object[]>();
-        HashSet<Method> notDynamicMethods = new HashSet<Method>();
-        
-        for (Injectee injectee : parent.getInjectees()) {
-            AnnotatedElement ae = injectee.getParent();
-            if (ae == null) continue;
-            
-            if (ae instanceof Field) {
-                String propName = BeanUtilities.getParameterNameFromField((Field) ae, true);
-                if (propName == null) continue;
+        // The whole bean, its type and its instance name are not properties
+        // of their own, so anything depending on them is always touched
+        for (String beanKey : BEAN_KEYS) {
+            List<Field> beanFields = injectionPoints.getFields(beanKey);
+            if (!beanFields.isEmpty()) {
+                Object beanValue = BeanUtilities.getBeanPropertyValue(beanKey, modifiedInfo, injectionResolver.getBeanHelper());
                 
-                PropertyChangeEvent pce = changedProperties.get(propName);
-                if (pce != null) {
+                for (Field field : beanFields) {
                     try {
-                        ReflectionHelper.setField((Field) ae, target, pce.getNewValue());
+                        ReflectionHelper.setField(field, target, beanValue);
                     }
                     catch (Throwable th) {
                         // TODO:  How to handle exceptions
                     }
                 }
-                
-                continue;
             }
             
-            if (ae instanceof Method) {
-                Method method = (Method) ae;
-                
-                if (notDynamicMethods.contains(method)) continue;
-                
-                if (!BeanUtilities.hasDynamicParameter(method)) {
-                    notDynamicMethods.add(method);
-                    continue;
-                }
-                
-                Object params[] = dynamicMethods.get(method);
-                if (params == null) {
-                    params = new Object[method.getParameterTypes().length];
-                    dynamicMethods.put(method, params);
-                }
-                
+            affectedMethods.addAll(injectionPoints.getMethods(beanKey));
+        }
+        
+        for (Method method : affectedMethods) {
+            Object params[] = new Object[method.getParameterTypes().length];
+            
+            for (Injectee injectee : injectionPoints.getInjectees(method)) {
                 String propName = BeanUtilities.getParameterNameFromMethod(method, injectee.getPosition());
                 if (propName == null) {
                     ActiveDescriptor<?> paramDescriptor = locator.getInjecteeDescriptor(injectee);
@@ -299,22 +304,17 @@ public class ConfigurationListener implements BeanDatabaseUpdateListener {
                         params[injectee.getPosition()] = pce.getNewValue();
                     }
                     else {
-                        params[injectee.getPosition()] = BeanUtilities.getBeanPropertyValue(propName, modifiedInfo);
+                        params[injectee.getPosition()] = BeanUtilities.getBeanPropertyValue(propName, modifiedInfo, injectionResolver.getBeanHelper());
                     }
                 }
-                
             }
             
-        }
-        
-        for(Map.Entry<Method, Object[]> entries : dynamicMethods.entrySet()) {
             try {
-                ReflectionHelper.invoke(target, entries.getKey(), entries.getValue(), true);
+                ReflectionHelper.invoke(target, method, params, true);
             }
             catch (Throwable e) {
                 // How to handle errors?
             }
-            
         }
         
         invokePostMethod(target, changes, typeName);
@@ -322,38 +322,61 @@ public class ConfigurationListener implements BeanDatabaseUpdateListener {
         return;
     }
 
+    private DynamicInjectionPoints getDynamicInjectionPoints(ActiveDescriptor<?> parent, String typeName) {
+        ModificationInformation modInfo = typeInformation.get(typeName);
+        if (modInfo == null) {
+            return new DynamicInjectionPoints(parent);
+        }
+        
+        return modInfo.getDynamicInjectionPoints(parent);
+    }
+
     private void initialize(BeanDatabase database) {
+        // The listener goes in first, so that no progenitor committed while
+        // the current ones are gathered can fall between the two.  It is a
+        // constant since this service is still being created
+        DynamicConfiguration listenerConfig = configurationService.createDynamicConfiguration();
+        listenerConfig.addActiveDescriptor(BuilderHelper.createConstantDescriptor(new DescriptorListener(this)));
+        listenerConfig.commit();
+        
         Set<Type> allTypes = database.getAllTypes();
         
         LinkedList<ActiveDescriptor<?>> added = new LinkedList<ActiveDescriptor<?>>();
         DynamicConfiguration config = configurationService.createDynamicConfiguration();
         
-        for (Type type : allTypes) {
-            String typeName = type.getName();
-            
-            typeInformation.put(typeName, new ModificationInformation());
-            
-            List<ActiveDescriptor<?>> typeDescriptors = locator.getDescriptors(new NoNameTypeFilter(locator, typeName, null));
+        synchronized (progenitorLock) {
+            // The listener may already have handled some of these
+            LinkedList<ActiveDescriptor<?>> progenitors = new LinkedList<ActiveDescriptor<?>>();
+            for (ActiveDescriptor<?> progenitor : locator.getDescriptors(new NoNameTypeFilter(locator, null, null))) {
+                if (allProgenitors.add(progenitor)) {
+                    progenitors.add(progenitor);
+                }
+            }
             
-            for (ActiveDescriptor<?> typeDescriptor : typeDescriptors) {
-                // These match the type, so now we have to add one per instance
+            for (Type type : allTypes) {
+                String typeName = type.getName();
+                
+                typeInformation.putIfAbsent(typeName, new ModificationInformation());
                 
-                Map<String, Instance> typeInstances = type.getInstances();
-                for (Map.Entry<String, Instance> entry : typeInstances.entrySet()) {
-                    added.add(addInstanceDescriptor(config, typeDescriptor, entry.getKey(), typeName, entry.getValue().getBean()));
+                NoNameTypeFilter typeFilter = new NoNameTypeFilter(locator, typeName, null);
+                
+                for (ActiveDescriptor<?> typeDescriptor : progenitors) {
+                    if (!typeFilter.matches(typeDescriptor)) continue;
+                    
+                    // These match the type, so now we have to add one per instance
+                    
+                    Map<String, Instance> typeInstances = type.getInstances();
+                    for (Map.Entry<String, Instance> entry : typeInstances.entrySet()) {
+                        added.add(addInstanceDescriptor(config, typeDescriptor, entry.getKey(), typeName, entry.getValue().getBean()));
+                    }
                 }
             }
         }
         
-        List<ActiveDescriptor<?>> progenitors = locator.getDescriptors(new NoNameTypeFilter(locator, null, null));
-        
-        synchronized (progenitorLock) {
-            allProgenitors.addAll(progenitors);
-        }
-        config.addActiveDescriptor(DescriptorListener.class);
-        
         // Add all instances
-        config.commit();
+        if (!added.isEmpty()) {
+            config.commit();
+        }
         
         // Create demand for all the ones we just added
         for (ActiveDescriptor<?> descriptor : added) {
@@ -422,7 +445,7 @@ public class ConfigurationListener implements BeanDatabaseUpdateListener {
             }
             else if (Change.ChangeCategory.MODIFY_INSTANCE.equals(change.getChangeCategory())) {
                 String modifiedInstanceKey = change.getInstanceKey();
-                Object modifiedInstanceBean = change.getInstanceValue();
+                Object modifiedInstanceBean = change.getInstanceValue().getBean();
                 
                 List<ActiveDescriptor<?>> typeDescriptors = locator.getDescriptors(
                         new NoNameTypeFilter(locator, change.getChangeType().getName(), modifiedInstanceKey));
@@ -486,6 +509,20 @@ public class ConfigurationListener implements BeanDatabaseUpdateListener {
                 new HashMap<Class<?>, Method>();
         private final HashMap<Class<?>, Method> postMethods =
                 new HashMap<Class<?>, Method>();
+        private final HashMap<Class<?>, DynamicInjectionPoints> injectionPoints =
+                new HashMap<Class<?>, DynamicInjectionPoints>();
+        
+        private synchronized DynamicInjectionPoints getDynamicInjectionPoints(ActiveDescriptor<?> descriptor) {
+            Class<?> implClass = descriptor.getImplementationClass();
+            
+            DynamicInjectionPoints retVal = injectionPoints.get(implClass);
+            if (retVal != null) return retVal;
+            
+            retVal = new DynamicInjectionPoints(descriptor);
+            injectionPoints.put(implClass, retVal);
+            
+            return retVal;
+        }
         
         private Method getPreDynamicChangeMethod(Class<?> rawClass) {
             if (preMethods.containsKey(rawClass)) {
@@ -527,45 +564,164 @@ public class ConfigurationListener implements BeanDatabaseUpdateListener {
             
             preMethods.clear();
             postMethods.clear();
+            injectionPoints.clear();
         }
         
     }
     
+    /**
+     * The fully dynamic injection points of a configured service, indexed
+     * by the name of the property they depend upon.  This is computed once
+     * per implementation class so that a change to a property only needs
+     * to look at the fields and methods that use that property
+     * 
+     * @author jwells
+     *
+     */
+    private static class DynamicInjectionPoints {
+        private final HashMap<String, List<Field>> fields = new HashMap<String, List<Field>>();
+        private final HashMap<String, List<Method>> methods = new HashMap<String, List<Method>>();
+        private final HashMap<Method, List<Injectee>> methodInjectees = new HashMap<Method, List<Injectee>>();
+        
+        private DynamicInjectionPoints(ActiveDescriptor<?> descriptor) {
+            HashSet<Method> notDynamicMethods = new HashSet<Method>();
+            
+            for (Injectee injectee : descriptor.getInjectees()) {
+                AnnotatedElement ae = injectee.getParent();
+                if (ae == null) continue;
+                
+                if (ae instanceof Field) {
+                    Field field = (Field) ae;
+                    
+                    String propName = BeanUtilities.getParameterNameFromField(field, true);
+                    if (propName == null) continue;
+                    
+                    add(fields, propName, field);
+                    
+                    continue;
+                }
+                
+                if (ae instanceof Method) {
+                    Method method = (Method) ae;
+                    
+                    if (notDynamicMethods.contains(method)) continue;
+                    
+                    if (!BeanUtilities.hasDynamicParameter(method)) {
+                        notDynamicMethods.add(method);
+                        continue;
+                    }
+                    
+                    add(methodInjectees, method, injectee);
+                    
+                    String propName = BeanUtilities.getParameterNameFromMethod(method, injectee.getPosition());
+                    if (propName == null) continue;
+                    
+                    add(methods, propName, method);
+                }
+            }
+        }
+        
+        private static <K, V> void add(HashMap<K, List<V>> map, K key, V value) {
+            List<V> values = map.get(key);
+            if (values == null) {
+                values = new LinkedList<V>();
+                map.put(key, values);
+            }
+            
+            values.add(value);
+        }
+        
+        private List<Field> getFields(String propName) {
+            List<Field> retVal = fields.get(propName);
+            if (retVal == null) return Collections.emptyList();
+            return retVal;
+        }
+        
+        private List<Method> getMethods(String propName) {
+            List<Method> retVal = methods.get(propName);
+            if (retVal == null) return Collections.emptyList();
+            return retVal;
+        }
+        
+        private List<Injectee> getInjectees(Method method) {
+            List<Injectee> retVal = methodInjectees.get(method);
+            if (retVal == null) return Collections.emptyList();
+            return retVal;
+        }
+    }
+    
     private void calculateProgenitorAddsAndRemoves() {
         List<ActiveDescriptor<?>> progenitors;
-        BeanDatabase database = hub.getCurrentDatabase();
-        final DynamicConfiguration config = configurationService.createDynamicConfiguration();
-        final LinkedList<ActiveDescriptor<?>> addedList = new LinkedList<ActiveDescriptor<?>>();
-        final LinkedList<ActiveDescriptor<?>> removedList = new LinkedList<ActiveDescriptor<?>>();
+        HashSet<ActiveDescriptor<?>> added;
         
         synchronized (progenitorLock) {
             HashSet<ActiveDescriptor<?>> removed = new HashSet<ActiveDescriptor<?>>(allProgenitors);
             
             progenitors = locator.getDescriptors(new NoNameTypeFilter(locator, null, null));
             allProgenitors = new HashSet<ActiveDescriptor<?>>(progenitors);
-            HashSet<ActiveDescriptor<?>> added = new HashSet<ActiveDescriptor<?>>(allProgenitors);
+            added = new HashSet<ActiveDescriptor<?>>(allProgenitors);
             
             added.removeAll(removed);
             removed.removeAll(progenitors);
             
             // Now added contains all of the added progenitors,
             // and removed contains all of the removed progenitors
-            for (ActiveDescriptor<?> addMe : added) {
-                String typeName = getTypeFromConfiguredBy(addMe);
-                
-                typeInformation.putIfAbsent(typeName, new ModificationInformation());
+        }
+        
+        addProgenitors(added);
+    }
+    
+    private void calculateProgenitorAddsAndRemoves(DynamicConfigurationChange change) {
+        // Progenitors are indexed by their ConfiguredBy scope
+        if (!change.getAffectedContracts().contains(ConfiguredBy.class.getName())) return;
+        
+        NoNameTypeFilter progenitorFilter = new NoNameTypeFilter(locator, null, null);
+        HashSet<ActiveDescriptor<?>> added = new HashSet<ActiveDescriptor<?>>();
+        
+        synchronized (progenitorLock) {
+            allProgenitors.removeAll(change.getRemovedDescriptors());
+            
+            for (ActiveDescriptor<?> candidate : change.getAddedDescriptors()) {
+                if (!ConfiguredBy.class.getName().equals(candidate.getScope())) continue;
+                if (!progenitorFilter.matches(candidate)) continue;
                 
-                Type type = database.getType(typeName);
-                if (type != null) {
-                    for (Map.Entry<String, Instance> instance : type.getInstances().entrySet()) {
-                        String addedInstanceKey = instance.getKey();
-                        Object addedInstanceBean = instance.getValue().getBean();
-                        
-                        addedList.add(addInstanceDescriptor(config, addMe, addedInstanceKey, typeName, addedInstanceBean));
-                    }
+                if (allProgenitors.add(candidate)) {
+                    added.add(candidate);
                 }
             }
+        }
+        
+        addProgenitors(added);
+    }
+    
+    /**
+     * Adds the instances of the configured types of newly found
+     * progenitors
+     * 
+     * @param added The progenitors that have been added
+     */
+    private void addProgenitors(Set<ActiveDescriptor<?>> added) {
+        if (added.isEmpty()) return;
+        
+        BeanDatabase database = hub.getCurrentDatabase();
+        final DynamicConfiguration config = configurationService.createDynamicConfiguration();
+        final LinkedList<ActiveDescriptor<?>> addedList = new LinkedList<ActiveDescriptor<?>>();
+        final LinkedList<ActiveDescriptor<?>> removedList = new LinkedList<ActiveDescriptor<?>>();
+        
+        for (ActiveDescriptor<?> addMe : added) {
+            String typeName = getTypeFromConfiguredBy(addMe);
             
+            typeInformation.putIfAbsent(typeName, new ModificationInformation());
+            
+            Type type = database.getType(typeName);
+            if (type != null) {
+                for (Map.Entry<String, Instance> instance : type.getInstances().entrySet()) {
+                    String addedInstanceKey = instance.getKey();
+                    Object addedInstanceBean = instance.getValue().getBean();
+                    
+                    addedList.add(addInstanceDescriptor(config, addMe, addedInstanceKey, typeName, addedInstanceBean));
+                }
+            }
         }
         
         if (!addedList.isEmpty() || !removedList.isEmpty()) {
@@ -599,9 +755,13 @@ public class ConfigurationListener implements BeanDatabaseUpdateListener {
       
     
     @Singleton
-    private static class DescriptorListener implements DynamicConfigurationListener {
-        @Inject
-        private ConfigurationListener parent;
+    private static class DescriptorListener implements DynamicConfigurationListener,
+            DynamicConfigurationChangeListener {
+        private final ConfigurationListener parent;
+        
+        private DescriptorListener(ConfigurationListener parent) {
+            this.parent = parent;
+        }
 
         /* (non-Javadoc)
          * @see org.glassfish.hk2.api.DynamicConfigurationListener#configurationChanged()
@@ -611,6 +771,14 @@ public class ConfigurationListener implements BeanDatabaseUpdateListener {
             parent.calculateProgenitorAddsAndRemoves();
         }
         
+        /* (non-Javadoc)
+         * @see org.glassfish.hk2.api.DynamicConfigurationChangeListener#configurationChanged(org.glassfish.hk2.api.DynamicConfigurationChange)
+         */
+        @Override
+        public void configurationChanged(DynamicConfigurationChange change) {
+            parent.calculateProgenitorAddsAndRemoves(change);
+        }
+        
     }
 
     /* (non-Javadoc)
@@ -55,6 +55,8 @@ import org.glassfish.hk2.api.Injectee;
 import org.glassfish.hk2.api.InjectionResolver;
 import org.glassfish.hk2.api.ServiceHandle;
 import org.glassfish.hk2.configuration.api.Configured;
+import org.glassfish.hk2.utilities.reflection.ClassReflectionHelper;
+import org.glassfish.hk2.utilities.reflection.internal.ClassReflectionHelperImpl;
 
 /**
  * @author jwells
@@ -71,6 +73,8 @@ public class ConfiguredByInjectionResolver implements
     
     private final ConcurrentHashMap<ActiveDescriptor<?>, BeanInfo> beanMap = new ConcurrentHashMap<ActiveDescriptor<?>, BeanInfo>(); 
     
+    private final ClassReflectionHelper beanHelper = new ClassReflectionHelperImpl();
+    
     private static String getParameterNameFromConstructor(Constructor<?> cnst, int position) {
         Annotation paramAnnotations[] = cnst.getParameterAnnotations()[position];
         
@@ -146,7 +150,7 @@ public class ConfiguredByInjectionResolver implements
             throw new IllegalStateException("Could not find a configuration bean for " + injectee + " with descriptor " + workingOn);
         }
         
-        return BeanUtilities.getBeanPropertyValue(parameterName, beanInfo);
+        return BeanUtilities.getBeanPropertyValue(parameterName, beanInfo, beanHelper);
     }
 
     /* (non-Javadoc)
@@ -171,6 +175,10 @@ public class ConfiguredByInjectionResolver implements
         return retVal;
     }
     
+    /* package */ ClassReflectionHelper getBeanHelper() {
+        return beanHelper;
+    }
+    
     /* package */ synchronized void removeBean(ActiveDescriptor<?> descriptor) {
         beanMap.remove(descriptor);
     }
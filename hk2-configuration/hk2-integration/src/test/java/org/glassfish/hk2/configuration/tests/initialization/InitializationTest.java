@@ -0,0 +1,143 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.hk2.configuration.tests.initialization;
+
+import java.util.HashMap;
+
+import org.glassfish.hk2.api.Descriptor;
+import org.glassfish.hk2.api.HK2Loader;
+import org.glassfish.hk2.api.MultiException;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.ServiceLocatorFactory;
+import org.glassfish.hk2.configuration.api.ConfigurationUtilities;
+import org.glassfish.hk2.configuration.api.ConfiguredBy;
+import org.glassfish.hk2.configuration.hub.api.Hub;
+import org.glassfish.hk2.configuration.hub.api.ManagerUtilities;
+import org.glassfish.hk2.configuration.hub.api.WriteableBeanDatabase;
+import org.glassfish.hk2.utilities.BuilderHelper;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author jwells
+ *
+ */
+public class InitializationTest {
+    /* package */ static final String FIRST_TYPE = "FirstType";
+    /* package */ static final String SECOND_TYPE = "SecondType";
+    
+    private static final String INSTANCE_NAME = "one";
+    
+    /**
+     * Tests that a configured service added while the configuration
+     * system is gathering the existing ones still gets its instances
+     */
+    @Test
+    public void testServiceAddedDuringInitializationIsConfigured() throws InterruptedException {
+        final ServiceLocator locator = ServiceLocatorFactory.getInstance().create(null);
+        
+        ManagerUtilities.enableConfigurationHub(locator);
+        
+        Hub hub = locator.getService(Hub.class);
+        
+        WriteableBeanDatabase database = hub.getWriteableDatabaseCopy();
+        database.findOrAddWriteableType(SECOND_TYPE).addInstance(INSTANCE_NAME, new HashMap<String, Object>());
+        database.commit();
+        
+        // Adds the second service while the first one is being looked at, which
+        // only happens once the configuration system is looking for the services
+        // of the second type
+        AddingLoader loader = new AddingLoader(locator);
+        
+        Descriptor first = BuilderHelper.link(FirstConfiguredService.class.getName()).
+                in(ConfiguredBy.class.getName()).
+                andLoadWith(loader).
+                build();
+        ServiceLocatorUtilities.addOneDescriptor(locator, first);
+        
+        ConfigurationUtilities.enableConfigurationSystem(locator);
+        
+        loader.adder.join();
+        
+        Assert.assertNotNull(locator.getService(SecondConfiguredService.class, INSTANCE_NAME));
+    }
+    
+    private static class AddingLoader implements HK2Loader {
+        private final ServiceLocator locator;
+        private Thread adder;
+        
+        private AddingLoader(ServiceLocator locator) {
+            this.locator = locator;
+        }
+
+        /* (non-Javadoc)
+         * @see org.glassfish.hk2.api.HK2Loader#loadClass(java.lang.String)
+         */
+        @Override
+        public synchronized Class<?> loadClass(String className) throws MultiException {
+            if (adder == null) {
+                adder = new Thread() {
+                    @Override
+                    public void run() {
+                        ServiceLocatorUtilities.addClasses(locator, SecondConfiguredService.class);
+                    }
+                };
+                adder.start();
+                
+                try {
+                    // Gives the other thread the time to start its commit
+                    Thread.sleep(200);
+                }
+                catch (InterruptedException e) {
+                    throw new MultiException(e);
+                }
+            }
+            
+            try {
+                return getClass().getClassLoader().loadClass(className);
+            }
+            catch (ClassNotFoundException e) {
+                throw new MultiException(e);
+            }
+        }
+    }
+
+}
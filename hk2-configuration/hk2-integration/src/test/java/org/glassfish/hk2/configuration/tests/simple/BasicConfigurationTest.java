@@ -234,6 +234,95 @@ public class BasicConfigurationTest extends HK2Runner {
         }
     }
     
+    /**
+     * Tests that only the dynamic methods whose properties changed
+     * are invoked again
+     */
+    @Test
+    public void testOnlyDependentMethodsAreReinvoked() {
+        addBean(TEST_TYPE_TWO);
+        
+        try {
+            DynamicConfiguredService cs = testLocator.getService(DynamicConfiguredService.class);
+            Assert.assertNotNull(cs);
+            
+            Assert.assertEquals(METHOD2, cs.getMethodOutput2());
+            Assert.assertEquals(1, cs.getMethodOutput2Calls());
+            
+            ConfiguredServiceBean newBean = createBean(CONSTRUCTOR,
+                FIELD1,
+                FIELD2,
+                METHOD1_1,
+                METHOD2);
+            
+            updateBean(TEST_TYPE_TWO, newBean);
+            
+            Assert.assertEquals(METHOD1_1, cs.getMethodOutput1());
+            Assert.assertEquals(1, cs.getMethodOutput2Calls());
+            
+            newBean = createBean(CONSTRUCTOR,
+                FIELD1,
+                FIELD2,
+                METHOD1_1,
+                METHOD1);
+            
+            updateBean(TEST_TYPE_TWO, newBean);
+            
+            Assert.assertEquals(METHOD1, cs.getMethodOutput2());
+            Assert.assertEquals(2, cs.getMethodOutput2Calls());
+        }
+        finally {
+            removeBean(TEST_TYPE_TWO);
+        }
+    }
+    
+    /**
+     * Tests that dynamic fields and methods that take the whole
+     * bean are updated on every change to the bean
+     */
+    @Test
+    public void testBeanKeyedInjectionPointsAreAlwaysUpdated() {
+        addBean(TEST_TYPE_TWO);
+        
+        try {
+            DynamicConfiguredService cs = testLocator.getService(DynamicConfiguredService.class);
+            Assert.assertNotNull(cs);
+            
+            Assert.assertEquals(METHOD1, cs.getMethodBean().getMethodOutput1());
+            Assert.assertEquals(METHOD1, cs.getFieldBean().getMethodOutput1());
+            Assert.assertEquals(1, cs.getMethodBeanCalls());
+            
+            ConfiguredServiceBean newBean = createBean(CONSTRUCTOR,
+                FIELD1,
+                FIELD2,
+                METHOD1_1,
+                METHOD2);
+            
+            updateBean(TEST_TYPE_TWO, newBean);
+            
+            Assert.assertSame(newBean, cs.getMethodBean());
+            Assert.assertSame(newBean, cs.getFieldBean());
+            Assert.assertEquals(2, cs.getMethodBeanCalls());
+            
+            // Only the constructor output changes, which nothing else depends upon
+            newBean = createBean(CONSTRUCTOR + CONSTRUCTOR,
+                FIELD1,
+                FIELD2,
+                METHOD1_1,
+                METHOD2);
+            
+            updateBean(TEST_TYPE_TWO, newBean);
+            
+            Assert.assertSame(newBean, cs.getMethodBean());
+            Assert.assertSame(newBean, cs.getFieldBean());
+            Assert.assertEquals(3, cs.getMethodBeanCalls());
+            Assert.assertEquals(1, cs.getMethodOutput2Calls());
+        }
+        finally {
+            removeBean(TEST_TYPE_TWO);
+        }
+    }
+    
     /**
      * Tests a service that dynamically updates with a method
      * marked with {@link PreDynamicChange}
@@ -57,12 +57,32 @@ public class DynamicConfiguredService {
     private String fieldOutput1;
     
     private String methodOutput1;
+    private String methodOutput2;
+    private int methodOutput2Calls;
+    
+    @Configured(value=Configured.BEAN_KEY, dynamicity=Dynamicity.FULLY_DYNAMIC)
+    private ConfiguredServiceBean fieldBean;
+    
+    private ConfiguredServiceBean methodBean;
+    private int methodBeanCalls;
     
     @SuppressWarnings("unused")
     private void setMethodOutput1(@Configured(value="methodOutput1", dynamicity=Dynamicity.FULLY_DYNAMIC) String methodOutput1) {
         this.methodOutput1 = methodOutput1;
     }
     
+    @SuppressWarnings("unused")
+    private void setMethodOutput2(@Configured(value="methodOutput2", dynamicity=Dynamicity.FULLY_DYNAMIC) String methodOutput2) {
+        this.methodOutput2 = methodOutput2;
+        methodOutput2Calls++;
+    }
+    
+    @SuppressWarnings("unused")
+    private void setMethodBean(@Configured(value=Configured.BEAN_KEY, dynamicity=Dynamicity.FULLY_DYNAMIC) ConfiguredServiceBean methodBean) {
+        this.methodBean = methodBean;
+        methodBeanCalls++;
+    }
+    
     public String getFieldOutput1() {
         return fieldOutput1;
     }
@@ -70,5 +90,25 @@ public class DynamicConfiguredService {
     public String getMethodOutput1() {
         return methodOutput1;
     }
+    
+    public String getMethodOutput2() {
+        return methodOutput2;
+    }
+    
+    public int getMethodOutput2Calls() {
+        return methodOutput2Calls;
+    }
+    
+    public ConfiguredServiceBean getFieldBean() {
+        return fieldBean;
+    }
+    
+    public ConfiguredServiceBean getMethodBean() {
+        return methodBean;
+    }
+    
+    public int getMethodBeanCalls() {
+        return methodBeanCalls;
+    }
 
 }
@@ -39,6 +39,7 @@
  */
 package org.glassfish.hk2.configuration.hub.api;
 
+import org.glassfish.hk2.api.MultiException;
 import org.jvnet.hk2.annotations.Contract;
 
 /**
@@ -76,4 +77,45 @@ public interface Hub {
      * @return A writeable copy of the current database
      */
     public WriteableBeanDatabase getWriteableDatabaseCopy();
+
+    /**
+     * Starts a batch of commits.  While a batch is open calls to
+     * {@link WriteableBeanDatabase#commit()} do not notify any
+     * {@link BeanDatabaseUpdateListener}, and the result of those commits
+     * is not visible from {@link #getCurrentDatabase()}.  Instead writeable
+     * copies obtained with {@link #getWriteableDatabaseCopy()} are based
+     * on the pending state of the batch, and each commit adds its changes
+     * to the batch.  When the outermost batch is ended with {@link #endBatch()}
+     * the changes of all commits in the batch are merged and the listeners
+     * go through a single prepare and commit cycle
+     * <p>
+     * Batches may be nested, in which case only the outermost
+     * {@link #endBatch()} publishes the changes.  A batch is global
+     * to this Hub, so commits made by other threads while a batch is
+     * open also become part of the batch
+     */
+    public void beginBatch();
+
+    /**
+     * Ends a batch started with {@link #beginBatch()}.  If this ends the
+     * outermost batch and at least one commit was done during the batch
+     * then the merged set of changes is given to all registered
+     * {@link BeanDatabaseUpdateListener}s and the pending database becomes
+     * the current database.  When merging changes an instance that was
+     * added and then removed within the batch is not reported at all, an
+     * instance that was added and then modified is reported as a single
+     * add, and an instance modified several times is reported as a
+     * single modification with one {@link java.beans.PropertyChangeEvent}
+     * per changed property.  The commit message given to the listeners
+     * is the commit message of the last commit done in the batch
+     * <p>
+     * If a listener fails in prepare then all commits done during the batch
+     * are discarded and writeable copies made during the batch can no
+     * longer be committed
+     *
+     * @throws IllegalStateException if there is no open batch
+     * @throws MultiException if there were user implementations of {@link BeanDatabaseUpdateListener}
+     * that failed by throwing exceptions this exception will be thrown wrapping those exceptions
+     */
+    public void endBatch() throws IllegalStateException, MultiException;
 }
@@ -40,6 +40,7 @@
 package org.glassfish.hk2.configuration.hub.api;
 
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A type contains (possibly) multiple instances of
@@ -72,6 +73,41 @@ public interface Type {
      */
     public Instance getInstance(String key);
     
+    /**
+     * Gets the instances whose bean has the given value for the given
+     * property.  Values are compared with equals.  If an index has been
+     * declared on the property with {@link WriteableType#addIndex(String, boolean)}
+     * the index is used, otherwise all instances of this type are scanned
+     * 
+     * @param propertyName The non-null name of the bean property
+     * @param value The possibly null value the property must have
+     * @return A read-only and possibly empty map of the matching instances
+     */
+    public Map<String, Instance> getInstancesByProperty(String propertyName, Object value);
+    
+    /**
+     * Gets the instances whose bean has a value for the given property
+     * that lies between lowest and highest, inclusive.  Property values
+     * must be {@link Comparable} with the bounds, instances whose value is
+     * null or not comparable are never returned.  If a sorted index has been
+     * declared on the property with {@link WriteableType#addIndex(String, boolean)}
+     * the index is used and the instances are returned in the order of their
+     * property values, otherwise all instances of this type are scanned
+     * 
+     * @param propertyName The non-null name of the bean property
+     * @param lowest The lowest value, or null if there is no lower bound
+     * @param highest The highest value, or null if there is no upper bound
+     * @return A read-only and possibly empty map of the matching instances
+     */
+    public Map<String, Instance> getInstancesByPropertyRange(String propertyName, Object lowest, Object highest);
+    
+    /**
+     * Gets the names of the properties of this type that are indexed
+     * 
+     * @return A read-only and possibly empty set of the indexed property names
+     */
+    public Set<String> getIndexedProperties();
+    
     /**
      * Gets information about this type.  Can be
      * used to describe the type in some useful way
@@ -85,5 +85,31 @@ public interface WriteableType extends Type {
      * determined by the system
      */
     public PropertyChangeEvent[] modifyInstance(String key, Object newBean, PropertyChangeEvent... changes);
+    
+    /**
+     * Declares an index on the given bean property of the instances of this
+     * type.  The index is kept up to date as instances are added, removed and
+     * modified, and once the writeable database is committed it is carried over
+     * into all later versions of this type.  Adding an index that already
+     * exists replaces it.  Indexes are not reported as changes to
+     * {@link BeanDatabaseUpdateListener}s
+     * 
+     * @param propertyName The non-null name of the bean property to index
+     * @param sorted If true the index is sorted and can be used by
+     * {@link Type#getInstancesByPropertyRange(String, Object, Object)}.  The
+     * non-null values of a property with a sorted index must all be
+     * mutually {@link Comparable}
+     * @throws IllegalArgumentException if sorted is true and an existing instance
+     * has a value for the property that is not Comparable
+     */
+    public void addIndex(String propertyName, boolean sorted) throws IllegalArgumentException;
+    
+    /**
+     * Removes the index on the given bean property
+     * 
+     * @param propertyName The non-null name of the indexed bean property
+     * @return true if there was an index on the property
+     */
+    public boolean removeIndex(String propertyName);
 
 }
@@ -82,49 +82,62 @@ import java.io.PrintStream;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.glassfish.hk2.configuration.hub.api.BeanDatabase;
 import org.glassfish.hk2.configuration.hub.api.Instance;
 import org.glassfish.hk2.configuration.hub.api.Type;
-import org.glassfish.hk2.utilities.reflection.BeanReflectionHelper;
 
 /**
+ * A committed revision of the database.  Once constructed a
+ * BeanDatabaseImpl is never modified, so all reads are done
+ * without locking
+ * 
  * @author jwells
  *
  */
 public class BeanDatabaseImpl implements BeanDatabase {
     private final long revision;
-    private final HashMap<String, TypeImpl> types = new HashMap<String, TypeImpl>();
+    private final Map<String, TypeImpl> types;
+    private final Set<Type> allTypes;
     
     /**
      * Creates a new, fresh database
      */
     /* package */ BeanDatabaseImpl(long revision) {
         this.revision = revision;
+        types = Collections.emptyMap();
+        allTypes = Collections.emptySet();
     }
     
-    /* package */ BeanDatabaseImpl(long revision, BeanDatabase beanDatabase) {
-        this(revision);
+    /* package */ BeanDatabaseImpl(long revision, WriteableBeanDatabaseImpl beanDatabase) {
+        this.revision = revision;
         
+        HashMap<String, TypeImpl> newTypes = new HashMap<String, TypeImpl>();
         for (Type type : beanDatabase.getAllTypes()) {
-            types.put(type.getName(), new TypeImpl(type, ((WriteableTypeImpl) type).getHelper()));
+            WriteableTypeImpl writeableType = (WriteableTypeImpl) type;
+            
+            newTypes.put(type.getName(), new TypeImpl(writeableType, writeableType.getHelper()));
         }
+        
+        types = newTypes;
+        allTypes = Collections.unmodifiableSet(new HashSet<Type>(newTypes.values()));
     }
 
     /* (non-Javadoc)
      * @see org.glassfish.hk2.configuration.hub.api.BeanDatabase#getAllTypes()
      */
     @Override
-    public synchronized Set<Type> getAllTypes() {
-        return Collections.unmodifiableSet(new HashSet<Type>(types.values()));
+    public Set<Type> getAllTypes() {
+        return allTypes;
     }
     
     /* (non-Javadoc)
      * @see org.glassfish.hk2.configuration.hub.api.BeanDatabase#getInstance(java.lang.String, java.lang.Object)
      */
     @Override
-    public synchronized Instance getInstance(String type, String instanceKey) {
+    public Instance getInstance(String type, String instanceKey) {
         Type t = getType(type);
         if (t == null) return null;
         
@@ -135,7 +148,7 @@ public class BeanDatabaseImpl implements BeanDatabase {
      * @see org.glassfish.hk2.configuration.hub.api.BeanDatabase#getType(java.lang.String)
      */
     @Override
-    public synchronized Type getType(String type) {
+    public Type getType(String type) {
         return types.get(type);
     }
     
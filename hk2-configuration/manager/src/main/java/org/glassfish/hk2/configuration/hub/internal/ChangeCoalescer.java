@@ -0,0 +1,244 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.hk2.configuration.hub.internal;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.glassfish.hk2.configuration.hub.api.Change;
+import org.glassfish.hk2.utilities.general.GeneralUtilities;
+
+/**
+ * Merges the changes of several commits into one list of
+ * changes, as if all the commits had been done in one
+ * writeable database.  Type changes are kept in order, while
+ * consecutive changes to the same instance are folded into
+ * a single change.  This class is not thread safe
+ * 
+ * @author jwells
+ *
+ */
+public class ChangeCoalescer {
+    private final LinkedList<Slot> slots = new LinkedList<Slot>();
+    
+    /** The slot of the last add or modify of an instance, keyed by type name and instance key */
+    private final HashMap<InstanceKey, Slot> openSlots = new HashMap<InstanceKey, Slot>();
+    
+    /**
+     * Adds the given changes, in order, to the set of merged changes
+     * 
+     * @param changes The non-null list of changes to add
+     */
+    public void addAll(List<Change> changes) {
+        for (Change change : changes) {
+            add(change);
+        }
+    }
+    
+    /**
+     * Adds one change to the set of merged changes
+     * 
+     * @param change The non-null change to add
+     */
+    public void add(Change change) {
+        Change.ChangeCategory category = change.getChangeCategory();
+        
+        if (Change.ChangeCategory.ADD_TYPE.equals(category) ||
+                Change.ChangeCategory.REMOVE_TYPE.equals(category)) {
+            slots.add(new Slot(change));
+            return;
+        }
+        
+        InstanceKey key = new InstanceKey(change.getChangeType().getName(), change.getInstanceKey());
+        Slot open = openSlots.get(key);
+        
+        if (open == null) {
+            Slot slot = new Slot(change);
+            slots.add(slot);
+            
+            if (!Change.ChangeCategory.REMOVE_INSTANCE.equals(category)) {
+                openSlots.put(key, slot);
+            }
+            
+            return;
+        }
+        
+        Change previous = open.change;
+        boolean previousIsAdd = Change.ChangeCategory.ADD_INSTANCE.equals(previous.getChangeCategory());
+        
+        if (Change.ChangeCategory.REMOVE_INSTANCE.equals(category)) {
+            openSlots.remove(key);
+            
+            if (previousIsAdd) {
+                // Added and removed in the same batch, nobody needs to know
+                open.change = null;
+            }
+            else {
+                // The listeners only ever saw the original value
+                open.change = new ChangeImpl(Change.ChangeCategory.REMOVE_INSTANCE,
+                        change.getChangeType(),
+                        change.getInstanceKey(),
+                        previous.getOriginalInstanceValue(),
+                        null,
+                        null);
+            }
+            
+            return;
+        }
+        
+        if (Change.ChangeCategory.MODIFY_INSTANCE.equals(category)) {
+            if (previousIsAdd) {
+                open.change = new ChangeImpl(Change.ChangeCategory.ADD_INSTANCE,
+                        change.getChangeType(),
+                        change.getInstanceKey(),
+                        change.getInstanceValue(),
+                        null,
+                        null);
+            }
+            else {
+                open.change = new ChangeImpl(Change.ChangeCategory.MODIFY_INSTANCE,
+                        change.getChangeType(),
+                        change.getInstanceKey(),
+                        change.getInstanceValue(),
+                        previous.getOriginalInstanceValue(),
+                        mergeProperties(previous.getModifiedProperties(), change.getModifiedProperties()));
+            }
+            
+            return;
+        }
+        
+        // An instance added on top of an existing one, keep both changes
+        Slot slot = new Slot(change);
+        slots.add(slot);
+        openSlots.put(key, slot);
+    }
+    
+    /**
+     * Returns the merged list of changes
+     * 
+     * @return A non-null, possibly empty list of the merged changes
+     */
+    public List<Change> getChanges() {
+        ArrayList<Change> retVal = new ArrayList<Change>(slots.size());
+        
+        for (Slot slot : slots) {
+            Change change = slot.change;
+            if (change == null) continue;
+            
+            if (Change.ChangeCategory.MODIFY_INSTANCE.equals(change.getChangeCategory()) &&
+                    change.getModifiedProperties().isEmpty()) {
+                // Every property went back to its original value
+                continue;
+            }
+            
+            retVal.add(change);
+        }
+        
+        return retVal;
+    }
+    
+    private static List<PropertyChangeEvent> mergeProperties(List<PropertyChangeEvent> first, List<PropertyChangeEvent> second) {
+        LinkedHashMap<String, PropertyChangeEvent> merged = new LinkedHashMap<String, PropertyChangeEvent>();
+        for (PropertyChangeEvent pce : first) {
+            merged.put(pce.getPropertyName(), pce);
+        }
+        
+        for (PropertyChangeEvent pce : second) {
+            PropertyChangeEvent original = merged.get(pce.getPropertyName());
+            if (original == null) {
+                merged.put(pce.getPropertyName(), pce);
+                continue;
+            }
+            
+            merged.put(pce.getPropertyName(), new PropertyChangeEvent(pce.getSource(),
+                    pce.getPropertyName(),
+                    original.getOldValue(),
+                    pce.getNewValue()));
+        }
+        
+        ArrayList<PropertyChangeEvent> retVal = new ArrayList<PropertyChangeEvent>(merged.size());
+        for (PropertyChangeEvent pce : merged.values()) {
+            if (GeneralUtilities.safeEquals(pce.getOldValue(), pce.getNewValue())) continue;
+            
+            retVal.add(pce);
+        }
+        
+        return retVal;
+    }
+    
+    private static class Slot {
+        private Change change;
+        
+        private Slot(Change change) {
+            this.change = change;
+        }
+    }
+    
+    private static class InstanceKey {
+        private final String typeName;
+        private final String instanceKey;
+        private final int hash;
+        
+        private InstanceKey(String typeName, String instanceKey) {
+            this.typeName = typeName;
+            this.instanceKey = instanceKey;
+            hash = typeName.hashCode() ^ instanceKey.hashCode();
+        }
+        
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (o == null) return false;
+            if (!(o instanceof InstanceKey)) return false;
+            
+            InstanceKey other = (InstanceKey) o;
+            
+            return typeName.equals(other.typeName) && instanceKey.equals(other.instanceKey);
+        }
+    }
+}
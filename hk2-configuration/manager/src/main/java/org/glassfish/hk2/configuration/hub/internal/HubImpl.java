@@ -67,7 +67,16 @@ public class HubImpl implements Hub {
     private static final AtomicLong revisionCounter = new AtomicLong(1);
     
     private final Object lock = new Object();
-    private BeanDatabaseImpl currentDatabase = new BeanDatabaseImpl(revisionCounter.getAndIncrement());
+    
+    /** Only written with lock held, but read without it */
+    private volatile BeanDatabaseImpl currentDatabase = new BeanDatabaseImpl(revisionCounter.getAndIncrement());
+    
+    /** The pending database and changes of the currently open batch, all guarded by lock */
+    private int batchDepth = 0;
+    private BeanDatabaseImpl batchDatabase;
+    private ChangeCoalescer batchChanges;
+    private Object batchCommitMessage;
+    private boolean batchCommitted;
     
     @Inject
     private IterableProvider<BeanDatabaseUpdateListener> listeners;
@@ -77,9 +86,7 @@ public class HubImpl implements Hub {
      */
     @Override
     public BeanDatabase getCurrentDatabase() {
-        synchronized (lock) {
-            return currentDatabase;
-        }
+        return currentDatabase;
     }
 
     /* (non-Javadoc)
@@ -88,64 +95,140 @@ public class HubImpl implements Hub {
     @Override
     public WriteableBeanDatabase getWriteableDatabaseCopy() {
         synchronized (lock) {
+            if (batchDepth > 0) {
+                return new WriteableBeanDatabaseImpl(this, batchDatabase);
+            }
+            
             return new WriteableBeanDatabaseImpl(this, currentDatabase);
         }
     }
     
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.configuration.hub.api.Hub#beginBatch()
+     */
+    @Override
+    public void beginBatch() {
+        synchronized (lock) {
+            if (batchDepth == 0) {
+                batchDatabase = currentDatabase;
+                batchChanges = new ChangeCoalescer();
+                batchCommitMessage = null;
+                batchCommitted = false;
+            }
+            
+            batchDepth++;
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.configuration.hub.api.Hub#endBatch()
+     */
+    @Override
+    public void endBatch() {
+        synchronized (lock) {
+            if (batchDepth <= 0) {
+                throw new IllegalStateException("endBatch was called on the Hub but there is no open batch");
+            }
+            
+            batchDepth--;
+            if (batchDepth > 0) return;
+            
+            BeanDatabaseImpl proposedDatabase = batchDatabase;
+            List<Change> changes = batchChanges.getChanges();
+            Object commitMessage = batchCommitMessage;
+            boolean committed = batchCommitted;
+            
+            batchDatabase = null;
+            batchChanges = null;
+            batchCommitMessage = null;
+            batchCommitted = false;
+            
+            if (!committed) return;
+            
+            switchDatabase(proposedDatabase, proposedDatabase, commitMessage, changes);
+        }
+    }
+    
     /* package */ void setCurrentDatabase(WriteableBeanDatabaseImpl writeableDatabase, Object commitMessage, List<Change> changes) {
         synchronized (lock) {
-            long currentRevision = currentDatabase.getRevision();
+            BeanDatabaseImpl headDatabase = (batchDepth > 0) ? batchDatabase : currentDatabase;
+            long currentRevision = headDatabase.getRevision();
             long writeRevision = writeableDatabase.getBaseRevision();
             
             if (currentRevision != writeRevision) {
                 throw new IllegalStateException("commit was called on a WriteableDatabase but the current database has changed after that copy was made");
             }
             
-            LinkedList<BeanDatabaseUpdateListener> completedListeners = new LinkedList<BeanDatabaseUpdateListener>();
-            for (BeanDatabaseUpdateListener listener : listeners) {
-                try {
-                    listener.prepareDatabaseChange(currentDatabase, writeableDatabase, commitMessage, changes);
-                    completedListeners.add(listener);
-                }
-                catch (Throwable th) {
-                    // Rollback time
-                    MultiException throwMe = new MultiException(new PrepareFailedException(th));
-                    
-                    for (BeanDatabaseUpdateListener completedListener : completedListeners) {
-                        try {
-                            completedListener.rollbackDatabaseChange(currentDatabase, writeableDatabase, commitMessage, changes);
-                        }
-                        catch (Throwable rollTh) {
-                            throwMe.addError(new RollbackFailedException(rollTh));
-                        }
-                    }
-                    
-                    throw throwMe;
-                }
+            if (batchDepth > 0) {
+                // Listeners are told when the batch ends
+                batchDatabase = new BeanDatabaseImpl(revisionCounter.getAndIncrement(), writeableDatabase);
+                batchChanges.addAll(changes);
+                batchCommitMessage = commitMessage;
+                batchCommitted = true;
+                
+                return;
             }
             
-            // success!
-            BeanDatabaseImpl oldDatabase = currentDatabase;
-            currentDatabase = new BeanDatabaseImpl(revisionCounter.getAndIncrement(), writeableDatabase);
-            
-            MultiException commitError = null;
-            for (BeanDatabaseUpdateListener completedListener : completedListeners) {
-                try {
-                    completedListener.commitDatabaseChange(oldDatabase, currentDatabase, commitMessage, changes);
-                }
-                catch (Throwable th) {
-                    if (commitError == null) {
-                        commitError = new MultiException(new CommitFailedException(th));
+            switchDatabase(writeableDatabase,
+                    new BeanDatabaseImpl(revisionCounter.getAndIncrement(), writeableDatabase),
+                    commitMessage,
+                    changes);
+        }
+    }
+    
+    /**
+     * Runs the prepare and commit phases of all listeners and makes
+     * the new database the current database if all listeners
+     * prepared successfully.  Must be called with the lock held
+     * 
+     * @param proposedDatabase The database given to the listeners as the proposed database
+     * @param newDatabase The database that will become the current database
+     * @param commitMessage The commit message given to the listeners
+     * @param changes The changes given to the listeners
+     */
+    private void switchDatabase(BeanDatabase proposedDatabase, BeanDatabaseImpl newDatabase, Object commitMessage, List<Change> changes) {
+        LinkedList<BeanDatabaseUpdateListener> completedListeners = new LinkedList<BeanDatabaseUpdateListener>();
+        for (BeanDatabaseUpdateListener listener : listeners) {
+            try {
+                listener.prepareDatabaseChange(currentDatabase, proposedDatabase, commitMessage, changes);
+                completedListeners.add(listener);
+            }
+            catch (Throwable th) {
+                // Rollback time
+                MultiException throwMe = new MultiException(new PrepareFailedException(th));
+                
+                for (BeanDatabaseUpdateListener completedListener : completedListeners) {
+                    try {
+                        completedListener.rollbackDatabaseChange(currentDatabase, proposedDatabase, commitMessage, changes);
                     }
-                    else {
-                        commitError.addError(new CommitFailedException(th));
+                    catch (Throwable rollTh) {
+                        throwMe.addError(new RollbackFailedException(rollTh));
                     }
                 }
+                
+                throw throwMe;
             }
-            
-            if (commitError != null) throw commitError;
         }
         
+        // success!
+        BeanDatabaseImpl oldDatabase = currentDatabase;
+        currentDatabase = newDatabase;
+        
+        MultiException commitError = null;
+        for (BeanDatabaseUpdateListener completedListener : completedListeners) {
+            try {
+                completedListener.commitDatabaseChange(oldDatabase, currentDatabase, commitMessage, changes);
+            }
+            catch (Throwable th) {
+                if (commitError == null) {
+                    commitError = new MultiException(new CommitFailedException(th));
+                }
+                else {
+                    commitError.addError(new CommitFailedException(th));
+                }
+            }
+        }
         
+        if (commitError != null) throw commitError;
     }
 }
@@ -47,7 +47,7 @@ import org.glassfish.hk2.configuration.hub.api.Instance;
  */
 public class InstanceImpl implements Instance {
     private final Object bean;
-    private Object metadata;
+    private volatile Object metadata;
     
     /* package */ InstanceImpl(Object bean, Object metadata) {
         this.bean = bean;
@@ -66,7 +66,7 @@ public class InstanceImpl implements Instance {
      * @see org.glassfish.hk2.configuration.hub.api.Instance#getMetadata()
      */
     @Override
-    public synchronized Object getMetadata() {
+    public Object getMetadata() {
         return metadata;
     }
 
@@ -0,0 +1,383 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.hk2.configuration.hub.internal;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.glassfish.hk2.configuration.hub.api.Instance;
+import org.glassfish.hk2.utilities.reflection.ClassReflectionHelper;
+
+/**
+ * A secondary index from the value of one bean property
+ * to the keys of the instances having that value.  A
+ * sorted index can also answer range queries
+ * 
+ * @author jwells
+ *
+ */
+public class PropertyIndex {
+    private final static Comparator<Object> NULLS_FIRST = new Comparator<Object>() {
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        @Override
+        public int compare(Object o1, Object o2) {
+            if (o1 == null) return (o2 == null) ? 0 : -1;
+            if (o2 == null) return 1;
+            
+            return ((Comparable) o1).compareTo(o2);
+        }
+        
+    };
+    
+    private final String propertyName;
+    private final boolean sorted;
+    private final Map<Object, Set<String>> index;
+    
+    /** The value each instance was indexed with, as beans may be modified in place */
+    private final HashMap<String, Object> indexedValues = new HashMap<String, Object>();
+    
+    /* package */ PropertyIndex(String propertyName, boolean sorted) {
+        this.propertyName = propertyName;
+        this.sorted = sorted;
+        
+        if (sorted) {
+            index = new TreeMap<Object, Set<String>>(NULLS_FIRST);
+        }
+        else {
+            index = new HashMap<Object, Set<String>>();
+        }
+    }
+    
+    /**
+     * Creates a deep copy of the given index
+     * 
+     * @param copyMe The index to copy
+     */
+    /* package */ PropertyIndex(PropertyIndex copyMe) {
+        this(copyMe.propertyName, copyMe.sorted);
+        
+        for (Map.Entry<Object, Set<String>> entry : copyMe.index.entrySet()) {
+            index.put(entry.getKey(), new LinkedHashSet<String>(entry.getValue()));
+        }
+        
+        indexedValues.putAll(copyMe.indexedValues);
+    }
+    
+    /* package */ String getPropertyName() {
+        return propertyName;
+    }
+    
+    /* package */ boolean isSorted() {
+        return sorted;
+    }
+    
+    /**
+     * Gets the value of the indexed property of the given bean
+     * 
+     * @param helper The helper used to find java bean getters
+     * @param bean The bean-like map or java bean
+     * @return The possibly null value of the property
+     */
+    /* package */ Object getValue(ClassReflectionHelper helper, Object bean) {
+        return getPropertyValue(helper, bean, propertyName);
+    }
+    
+    /**
+     * Ensures that the given value can be placed in this index
+     * 
+     * @param value The value that is about to be indexed
+     * @throws IllegalArgumentException if this is a sorted index
+     * and the value is not Comparable, or cannot be compared with
+     * the values already in the index
+     */
+    /* package */ void checkValue(Object value) throws IllegalArgumentException {
+        if (!sorted || value == null) return;
+        
+        if (!(value instanceof Comparable)) {
+            throw new IllegalArgumentException("The property " + propertyName + " has a sorted index but the value " +
+                value + " of type " + value.getClass().getName() + " is not Comparable");
+        }
+        
+        NavigableMap<Object, Set<String>> navigable = (NavigableMap<Object, Set<String>>) index;
+        
+        try {
+            // The same comparisons an insertion would make, plus the two ends
+            // of the index, none of which modify the index
+            navigable.get(value);
+            
+            Object lowest = navigable.higherKey(null);
+            if (lowest != null) {
+                NULLS_FIRST.compare(value, lowest);
+                NULLS_FIRST.compare(value, navigable.lastKey());
+            }
+        }
+        catch (ClassCastException cce) {
+            throw new IllegalArgumentException("The property " + propertyName + " has a sorted index but the value " +
+                value + " of type " + value.getClass().getName() + " cannot be compared with the values already indexed", cce);
+        }
+    }
+    
+    /**
+     * Places the key in the index under the given value.  The value must
+     * have been accepted by {@link #checkValue(Object)}
+     * 
+     * @param key The key of the instance
+     * @param value The value of the indexed property of the instance
+     */
+    /* package */ void add(String key, Object value) {
+        // Looked up before anything is modified
+        Set<String> keys = index.get(value);
+        
+        remove(key);
+        
+        indexedValues.put(key, value);
+        
+        if (keys == null || keys.isEmpty()) {
+            keys = new LinkedHashSet<String>();
+            index.put(value, keys);
+        }
+        
+        keys.add(key);
+    }
+    
+    /* package */ void remove(String key) {
+        if (!indexedValues.containsKey(key)) return;
+        
+        Object value = indexedValues.remove(key);
+        
+        Set<String> keys = index.get(value);
+        if (keys == null) return;
+        
+        keys.remove(key);
+        if (keys.isEmpty()) {
+            index.remove(value);
+        }
+    }
+    
+    /**
+     * Gets the keys of the instances whose property has the given value
+     * 
+     * @param value The possibly null value to look up
+     * @return The keys having this value (may be empty, never null)
+     */
+    /* package */ Set<String> getKeys(Object value) {
+        Set<String> retVal;
+        try {
+            retVal = index.get(value);
+        }
+        catch (ClassCastException cce) {
+            // Not comparable to the values in this sorted index
+            return Collections.emptySet();
+        }
+        
+        if (retVal == null) return Collections.emptySet();
+        
+        return retVal;
+    }
+    
+    /**
+     * Gets the keys of the instances whose property lies in the given
+     * range, in the order of the property values.  Only valid on a sorted index
+     * 
+     * @param lowest The lowest value (inclusive) or null if there is no lower bound
+     * @param highest The highest value (inclusive) or null if there is no upper bound
+     * @return The keys within the range, ordered by property value
+     */
+    /* package */ Set<String> getKeys(Object lowest, Object highest) {
+        NavigableMap<Object, Set<String>> navigable = (NavigableMap<Object, Set<String>>) index;
+        
+        try {
+            if (lowest != null && highest != null && NULLS_FIRST.compare(lowest, highest) > 0) {
+                // Same as a scan, where nothing can be in an empty range
+                return Collections.emptySet();
+            }
+            
+            // Instances with a null value are never in a range
+            navigable = navigable.tailMap(lowest, (lowest != null));
+            
+            if (highest != null) {
+                navigable = navigable.headMap(highest, true);
+            }
+        }
+        catch (ClassCastException cce) {
+            return Collections.emptySet();
+        }
+        
+        LinkedHashSet<String> retVal = new LinkedHashSet<String>();
+        for (Set<String> keys : navigable.values()) {
+            retVal.addAll(keys);
+        }
+        
+        return retVal;
+    }
+    
+    /**
+     * Finds the instances whose property has the given value, using
+     * an index on the property if there is one
+     * 
+     * @param helper The helper used to find java bean getters
+     * @param instances All instances of the type
+     * @param indexes The indexes of the type, keyed by property name
+     * @param propertyName The name of the property
+     * @param value The possibly null value to find
+     * @return A read-only and possibly empty map of the matching instances
+     */
+    /* package */ static Map<String, Instance> getInstancesByProperty(ClassReflectionHelper helper,
+            Map<String, Instance> instances,
+            Map<String, PropertyIndex> indexes,
+            String propertyName,
+            Object value) {
+        if (propertyName == null) throw new IllegalArgumentException();
+        
+        PropertyIndex index = indexes.get(propertyName);
+        if (index != null) {
+            return getInstances(index.getKeys(value), instances);
+        }
+        
+        LinkedHashSet<String> keys = new LinkedHashSet<String>();
+        for (Map.Entry<String, Instance> entry : instances.entrySet()) {
+            Object beanValue = getPropertyValue(helper, entry.getValue().getBean(), propertyName);
+            
+            if (value == null) {
+                if (beanValue == null) keys.add(entry.getKey());
+            }
+            else if (value.equals(beanValue)) {
+                keys.add(entry.getKey());
+            }
+        }
+        
+        return getInstances(keys, instances);
+    }
+    
+    /**
+     * Finds the instances whose property lies within the given range, using
+     * a sorted index on the property if there is one
+     * 
+     * @param helper The helper used to find java bean getters
+     * @param instances All instances of the type
+     * @param indexes The indexes of the type, keyed by property name
+     * @param propertyName The name of the property
+     * @param lowest The lowest value (inclusive) or null for no lower bound
+     * @param highest The highest value (inclusive) or null for no upper bound
+     * @return A read-only and possibly empty map of the matching instances
+     */
+    /* package */ static Map<String, Instance> getInstancesByPropertyRange(ClassReflectionHelper helper,
+            Map<String, Instance> instances,
+            Map<String, PropertyIndex> indexes,
+            String propertyName,
+            Object lowest,
+            Object highest) {
+        if (propertyName == null) throw new IllegalArgumentException();
+        
+        PropertyIndex index = indexes.get(propertyName);
+        if (index != null && index.isSorted()) {
+            return getInstances(index.getKeys(lowest, highest), instances);
+        }
+        
+        LinkedHashSet<String> keys = new LinkedHashSet<String>();
+        for (Map.Entry<String, Instance> entry : instances.entrySet()) {
+            Object value = getPropertyValue(helper, entry.getValue().getBean(), propertyName);
+            if (!(value instanceof Comparable)) continue;
+            
+            try {
+                if (lowest != null && NULLS_FIRST.compare(value, lowest) < 0) continue;
+                if (highest != null && NULLS_FIRST.compare(value, highest) > 0) continue;
+            }
+            catch (ClassCastException cce) {
+                continue;
+            }
+            
+            keys.add(entry.getKey());
+        }
+        
+        return getInstances(keys, instances);
+    }
+    
+    private static Map<String, Instance> getInstances(Set<String> keys, Map<String, Instance> instances) {
+        if (keys.isEmpty()) return Collections.emptyMap();
+        
+        LinkedHashMap<String, Instance> retVal = new LinkedHashMap<String, Instance>();
+        for (String key : keys) {
+            retVal.put(key, instances.get(key));
+        }
+        
+        return Collections.unmodifiableMap(retVal);
+    }
+    
+    /**
+     * Gets the value of a property of a bean-like map or java bean
+     * 
+     * @param helper The helper used to find java bean getters
+     * @param bean The bean-like map or java bean
+     * @param propertyName The name of the property
+     * @return The value of the property, or null if the property does not
+     * exist or its getter failed
+     */
+    @SuppressWarnings("unchecked")
+    private static Object getPropertyValue(ClassReflectionHelper helper, Object bean, String propertyName) {
+        if (bean instanceof Map) {
+            return ((Map<String, Object>) bean).get(propertyName);
+        }
+        
+        Method getter = helper.getBeanGetters(bean.getClass()).get(propertyName);
+        if (getter == null) return null;
+        
+        try {
+            return getter.invoke(bean, new Object[0]);
+        }
+        catch (Throwable th) {
+            return null;
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "PropertyIndex(" + propertyName + "," + sorted + "," + System.identityHashCode(this) + ")";
+    }
+}
@@ -40,7 +40,9 @@
 package org.glassfish.hk2.configuration.hub.internal;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.glassfish.hk2.configuration.hub.api.Instance;
 import org.glassfish.hk2.configuration.hub.api.Type;
@@ -52,13 +54,23 @@ import org.glassfish.hk2.utilities.reflection.ClassReflectionHelper;
  */
 public class TypeImpl implements Type {
     private final String name;
+    
+    /** Never modified once this type has been constructed */
+    private final HashMap<String, Instance> rawInstances;
     private final Map<String, Instance> instances;
+    
+    /** Neither the map nor the indexes are modified once this type has been constructed */
+    private final HashMap<String, PropertyIndex> indexes;
     private final ClassReflectionHelper helper;
-    private Object metadata;
+    private volatile Object metadata;
     
-    /* package */ TypeImpl(Type baseType, ClassReflectionHelper helper) {
+    /* package */ TypeImpl(WriteableTypeImpl baseType, ClassReflectionHelper helper) {
         name = baseType.getName();
-        instances = Collections.unmodifiableMap(baseType.getInstances());
+        synchronized (baseType) {
+            rawInstances = baseType.freezeInstances();
+            indexes = baseType.getRawIndexes();
+        }
+        instances = Collections.unmodifiableMap(rawInstances);
         this.helper = helper;
         this.metadata = baseType.getMetadata();
     }
@@ -87,17 +99,59 @@ public class TypeImpl implements Type {
         return instances.get(key);
     }
     
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.configuration.hub.api.Type#getInstancesByProperty(java.lang.String, java.lang.Object)
+     */
+    @Override
+    public Map<String, Instance> getInstancesByProperty(String propertyName, Object value) {
+        return PropertyIndex.getInstancesByProperty(helper, rawInstances, indexes, propertyName, value);
+    }
+
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.configuration.hub.api.Type#getInstancesByPropertyRange(java.lang.String, java.lang.Object, java.lang.Object)
+     */
+    @Override
+    public Map<String, Instance> getInstancesByPropertyRange(String propertyName, Object lowest, Object highest) {
+        return PropertyIndex.getInstancesByPropertyRange(helper, rawInstances, indexes, propertyName, lowest, highest);
+    }
+
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.configuration.hub.api.Type#getIndexedProperties()
+     */
+    @Override
+    public Set<String> getIndexedProperties() {
+        return Collections.unmodifiableSet(indexes.keySet());
+    }
+    
     /* package */ ClassReflectionHelper getHelper() {
         return helper;
     }
     
+    /**
+     * Returns the map backing this type, which may be shared
+     * but must never be modified
+     * 
+     * @return The map of instances backing this type
+     */
+    /* package */ HashMap<String, Instance> getRawInstances() {
+        return rawInstances;
+    }
     
+    /**
+     * Returns the indexes of this type, which may be shared
+     * but must never be modified
+     * 
+     * @return The indexes of this type keyed by property name
+     */
+    /* package */ HashMap<String, PropertyIndex> getRawIndexes() {
+        return indexes;
+    }
 
     /* (non-Javadoc)
      * @see org.glassfish.hk2.configuration.hub.api.Type#getMetadata()
      */
     @Override
-    public synchronized Object getMetadata() {
+    public Object getMetadata() {
         return metadata;
     }
 
@@ -105,7 +159,7 @@ public class TypeImpl implements Type {
      * @see org.glassfish.hk2.configuration.hub.api.Type#setMetadata(java.lang.Object)
      */
     @Override
-    public synchronized void setMetadata(Object metadata) {
+    public void setMetadata(Object metadata) {
         this.metadata = metadata;
         
     }
@@ -41,9 +41,12 @@ package org.glassfish.hk2.configuration.hub.internal;
 
 import java.beans.PropertyChangeEvent;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 import org.glassfish.hk2.configuration.hub.api.Change;
 import org.glassfish.hk2.configuration.hub.api.Instance;
@@ -59,23 +62,95 @@ import org.glassfish.hk2.utilities.reflection.internal.ClassReflectionHelperImpl
 public class WriteableTypeImpl implements WriteableType {
     private final WriteableBeanDatabaseImpl parent;
     private final String name;
-    private final HashMap<String, Instance> beanMap = new HashMap<String, Instance>();
     private final ClassReflectionHelper helper;
     private Object metadata;
     
+    /**
+     * The instances and indexes of this type.  While shared is true they
+     * also back a committed {@link TypeImpl} and are copied before the
+     * first modification
+     */
+    private HashMap<String, Instance> beanMap;
+    private HashMap<String, PropertyIndex> indexes;
+    private boolean shared;
+    
     /* package */ WriteableTypeImpl(WriteableBeanDatabaseImpl parent, TypeImpl mother) {
         this.parent = parent;
         this.name = mother.getName();
         this.metadata = mother.getMetadata();
-        beanMap.putAll(mother.getInstances());
+        beanMap = mother.getRawInstances();
+        indexes = mother.getRawIndexes();
+        shared = true;
         helper = mother.getHelper();
     }
     
     /* package */ WriteableTypeImpl(WriteableBeanDatabaseImpl parent, String name) {
         this.parent = parent;
         this.name = name;
+        beanMap = new HashMap<String, Instance>();
+        indexes = new HashMap<String, PropertyIndex>();
+        shared = false;
         helper = new ClassReflectionHelperImpl();
     }
+    
+    private void copyOnWrite() {
+        if (!shared) return;
+        
+        beanMap = new HashMap<String, Instance>(beanMap);
+        
+        HashMap<String, PropertyIndex> indexesCopy = new HashMap<String, PropertyIndex>();
+        for (PropertyIndex index : indexes.values()) {
+            indexesCopy.put(index.getPropertyName(), new PropertyIndex(index));
+        }
+        indexes = indexesCopy;
+        
+        shared = false;
+    }
+    
+    /**
+     * Places the bean in all indexes of this type under the given key.  All
+     * values are checked before any index is modified
+     */
+    private void addToIndexes(String key, Object bean) {
+        if (indexes.isEmpty()) return;
+        
+        Collection<PropertyIndex> indexList = indexes.values();
+        Object[] values = new Object[indexList.size()];
+        
+        int lcv = 0;
+        for (PropertyIndex index : indexList) {
+            Object value = index.getValue(helper, bean);
+            index.checkValue(value);
+            
+            values[lcv++] = value;
+        }
+        
+        lcv = 0;
+        for (PropertyIndex index : indexList) {
+            index.add(key, values[lcv++]);
+        }
+    }
+    
+    /**
+     * Hands the current set of instances to a committed type.  Any
+     * further modification of this writeable type will work on a copy
+     * 
+     * @return The map of instances, which must no longer be modified
+     */
+    /* package */ synchronized HashMap<String, Instance> freezeInstances() {
+        shared = true;
+        return beanMap;
+    }
+    
+    /**
+     * Gets the indexes of this type.  Should only be called
+     * after {@link #freezeInstances()}
+     * 
+     * @return The indexes, which must no longer be modified
+     */
+    /* package */ synchronized HashMap<String, PropertyIndex> getRawIndexes() {
+        return indexes;
+    }
 
     /* (non-Javadoc)
      * @see org.glassfish.hk2.configuration.hub.api.Type#getName()
@@ -118,6 +193,10 @@ public class WriteableTypeImpl implements WriteableType {
         
         InstanceImpl ii = new InstanceImpl(bean, metadata);
         
+        copyOnWrite();
+        
+        addToIndexes(key, bean);
+        
         parent.addChange(new ChangeImpl(Change.ChangeCategory.ADD_INSTANCE,
                                    this,
                                    key,
@@ -135,9 +214,17 @@ public class WriteableTypeImpl implements WriteableType {
     public synchronized Instance removeInstance(String key) {
         if (key == null) throw new IllegalArgumentException();
         
+        if (!beanMap.containsKey(key)) return null;
+        
+        copyOnWrite();
+        
         Instance removedValue = beanMap.remove(key);
         if (removedValue == null) return null;
         
+        for (PropertyIndex index : indexes.values()) {
+            index.remove(key);
+        }
+        
         parent.addChange(new ChangeImpl(Change.ChangeCategory.REMOVE_INSTANCE,
                 this,
                 key,
@@ -167,6 +254,10 @@ public class WriteableTypeImpl implements WriteableType {
             propChanges = BeanReflectionHelper.getChangeEvents(helper, oldInstance.getBean(), newInstance.getBean());
         }
         
+        copyOnWrite();
+        
+        addToIndexes(key, newBean);
+        
         beanMap.put(key, newInstance);
 
         ArrayList<PropertyChangeEvent> propChangesList = new ArrayList<PropertyChangeEvent>(propChanges.length);
@@ -184,6 +275,64 @@ public class WriteableTypeImpl implements WriteableType {
         return propChanges;
     }
 
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.configuration.hub.api.WriteableType#addIndex(java.lang.String, boolean)
+     */
+    @Override
+    public synchronized void addIndex(String propertyName, boolean sorted) throws IllegalArgumentException {
+        if (propertyName == null) throw new IllegalArgumentException();
+        
+        PropertyIndex index = new PropertyIndex(propertyName, sorted);
+        for (Map.Entry<String, Instance> entry : beanMap.entrySet()) {
+            Object value = index.getValue(helper, entry.getValue().getBean());
+            index.checkValue(value);
+            
+            index.add(entry.getKey(), value);
+        }
+        
+        copyOnWrite();
+        
+        indexes.put(propertyName, index);
+    }
+
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.configuration.hub.api.WriteableType#removeIndex(java.lang.String)
+     */
+    @Override
+    public synchronized boolean removeIndex(String propertyName) {
+        if (propertyName == null) throw new IllegalArgumentException();
+        if (!indexes.containsKey(propertyName)) return false;
+        
+        copyOnWrite();
+        
+        indexes.remove(propertyName);
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.configuration.hub.api.Type#getInstancesByProperty(java.lang.String, java.lang.Object)
+     */
+    @Override
+    public synchronized Map<String, Instance> getInstancesByProperty(String propertyName, Object value) {
+        return PropertyIndex.getInstancesByProperty(helper, beanMap, indexes, propertyName, value);
+    }
+
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.configuration.hub.api.Type#getInstancesByPropertyRange(java.lang.String, java.lang.Object, java.lang.Object)
+     */
+    @Override
+    public synchronized Map<String, Instance> getInstancesByPropertyRange(String propertyName, Object lowest, Object highest) {
+        return PropertyIndex.getInstancesByPropertyRange(helper, beanMap, indexes, propertyName, lowest, highest);
+    }
+
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.configuration.hub.api.Type#getIndexedProperties()
+     */
+    @Override
+    public synchronized Set<String> getIndexedProperties() {
+        return Collections.unmodifiableSet(new HashSet<String>(indexes.keySet()));
+    }
+
     ClassReflectionHelper getHelper() {
         return helper;
     }
@@ -40,6 +40,7 @@
 package org.glassfish.hk2.configuration.hub.test;
 
 import java.beans.PropertyChangeEvent;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -48,6 +49,7 @@ import java.util.Map;
 
 import org.glassfish.hk2.api.ActiveDescriptor;
 import org.glassfish.hk2.api.MultiException;
+import org.glassfish.hk2.configuration.hub.api.BeanDatabase;
 import org.glassfish.hk2.configuration.hub.api.Change;
 import org.glassfish.hk2.configuration.hub.api.CommitFailedException;
 import org.glassfish.hk2.configuration.hub.api.Hub;
@@ -82,14 +84,23 @@ public class HubTest extends HK2Runner {
     private final static String TYPE_TEN = "TypeTen";
     private final static String TYPE_ELEVEN = "TypeEleven";
     private final static String TYPE_TWELVE = "TypeTwelve";
+    private final static String TYPE_THIRTEEN = "TypeThirteen";
+    private final static String TYPE_FOURTEEN = "TypeFourteen";
+    private final static String TYPE_FIFTEEN = "TypeFifteen";
+    private final static String TYPE_SIXTEEN = "TypeSixteen";
+    private final static String TYPE_SEVENTEEN = "TypeSeventeen";
+    private final static String TYPE_EIGHTEEN = "TypeEighteen";
+    private final static String TYPE_NINETEEN = "TypeNineteen";
     
     private final static String NAME_PROPERTY = "name";
     private final static String OTHER_PROPERTY = "other";
+    private final static String AGE_PROPERTY = "age";
     
     private final static String ALICE = "Alice";
     private final static String BOB = "Bob";
     private final static String CAROL = "Carol";
     private final static String DAVE = "Dave";
+    private final static String ERIN = "Erin";
     
     private final static String OTHER_PROPERTY_VALUE1 = "value1";
     private final static String OTHER_PROPERTY_VALUE2 = "value2";
@@ -1329,4 +1340,366 @@ public class HubTest extends HK2Runner {
         }
     }
 
+    /**
+     * Tests that several commits in a batch are given to
+     * the listeners as a single merged set of changes
+     */
+    @Test
+    public void testBatchedCommitsAreCoalesced() {
+        addTypeAndInstance(TYPE_THIRTEEN, ALICE, new GenericJavaBean(ALICE, OTHER_PROPERTY_VALUE1));
+        
+        AbstractCountingListener counter = new AbstractCountingListener();
+        GenericBeanDatabaseUpdateListener listener = new GenericBeanDatabaseUpdateListener();
+        
+        LinkedList<ActiveDescriptor<?>> added = new LinkedList<ActiveDescriptor<?>>();
+        added.add(ServiceLocatorUtilities.addOneConstant(testLocator, counter));
+        added.add(ServiceLocatorUtilities.addOneConstant(testLocator, listener));
+        
+        try {
+            hub.beginBatch();
+            try {
+                modifyInstance(TYPE_THIRTEEN, ALICE, new GenericJavaBean(ALICE, OTHER_PROPERTY_VALUE2));
+                modifyInstance(TYPE_THIRTEEN, ALICE, new GenericJavaBean(ALICE, OTHER_PROPERTY_VALUE1));
+                modifyInstance(TYPE_THIRTEEN, ALICE, new GenericJavaBean(ALICE, OTHER_PROPERTY_VALUE2));
+                
+                addTypeAndInstance(TYPE_THIRTEEN, BOB, new GenericJavaBean(BOB, OTHER_PROPERTY_VALUE1));
+                modifyInstance(TYPE_THIRTEEN, BOB, new GenericJavaBean(BOB, OTHER_PROPERTY_VALUE2));
+                
+                addTypeAndInstance(TYPE_THIRTEEN, CAROL, new GenericJavaBean(CAROL, OTHER_PROPERTY_VALUE1));
+                
+                WriteableBeanDatabase wbd = hub.getWriteableDatabaseCopy();
+                wbd.getWriteableType(TYPE_THIRTEEN).removeInstance(CAROL);
+                wbd.commit();
+                
+                // Nothing has been published yet
+                Assert.assertEquals(0, counter.getNumPreparesCalled());
+                Assert.assertNull(hub.getCurrentDatabase().getInstance(TYPE_THIRTEEN, BOB));
+                Assert.assertEquals(OTHER_PROPERTY_VALUE1, ((GenericJavaBean)
+                        hub.getCurrentDatabase().getInstance(TYPE_THIRTEEN, ALICE).getBean()).getOther());
+            }
+            finally {
+                hub.endBatch();
+            }
+            
+            Assert.assertEquals(1, counter.getNumPreparesCalled());
+            Assert.assertEquals(1, counter.getNumCommitsCalled());
+            
+            List<Change> changes = listener.getLastSetOfChanges();
+            Assert.assertEquals(2, changes.size());
+            
+            Change aliceChange = changes.get(0);
+            Assert.assertEquals(Change.ChangeCategory.MODIFY_INSTANCE, aliceChange.getChangeCategory());
+            Assert.assertEquals(ALICE, aliceChange.getInstanceKey());
+            
+            List<PropertyChangeEvent> modified = aliceChange.getModifiedProperties();
+            Assert.assertEquals(1, modified.size());
+            Assert.assertEquals(OTHER_PROPERTY, modified.get(0).getPropertyName());
+            Assert.assertEquals(OTHER_PROPERTY_VALUE1, modified.get(0).getOldValue());
+            Assert.assertEquals(OTHER_PROPERTY_VALUE2, modified.get(0).getNewValue());
+            
+            Change bobChange = changes.get(1);
+            Assert.assertEquals(Change.ChangeCategory.ADD_INSTANCE, bobChange.getChangeCategory());
+            Assert.assertEquals(BOB, bobChange.getInstanceKey());
+            Assert.assertEquals(OTHER_PROPERTY_VALUE2, ((GenericJavaBean) bobChange.getInstanceValue().getBean()).getOther());
+            
+            Assert.assertNotNull(hub.getCurrentDatabase().getInstance(TYPE_THIRTEEN, BOB));
+            Assert.assertNull(hub.getCurrentDatabase().getInstance(TYPE_THIRTEEN, CAROL));
+        }
+        finally {
+            for (ActiveDescriptor<?> removeMe : added) {
+                ServiceLocatorUtilities.removeOneDescriptor(testLocator, removeMe);
+            }
+            
+            removeType(TYPE_THIRTEEN);
+        }
+    }
+    
+    /**
+     * Tests that nested batches are only published by the outermost endBatch
+     * and that a batch with no commits does not notify the listeners
+     */
+    @Test
+    public void testNestedBatches() {
+        AbstractCountingListener counter = new AbstractCountingListener();
+        ActiveDescriptor<?> counterDescriptor = ServiceLocatorUtilities.addOneConstant(testLocator, counter);
+        
+        try {
+            hub.beginBatch();
+            hub.endBatch();
+            
+            Assert.assertEquals(0, counter.getNumPreparesCalled());
+            
+            hub.beginBatch();
+            try {
+                hub.beginBatch();
+                try {
+                    addTypeAndInstance(TYPE_FOURTEEN, ALICE, new GenericJavaBean(ALICE, OTHER_PROPERTY_VALUE1));
+                }
+                finally {
+                    hub.endBatch();
+                }
+                
+                Assert.assertEquals(0, counter.getNumPreparesCalled());
+                Assert.assertNull(hub.getCurrentDatabase().getType(TYPE_FOURTEEN));
+                
+                addTypeAndInstance(TYPE_FOURTEEN, BOB, new GenericJavaBean(BOB, OTHER_PROPERTY_VALUE1));
+            }
+            finally {
+                hub.endBatch();
+            }
+            
+            Assert.assertEquals(1, counter.getNumPreparesCalled());
+            Assert.assertEquals(2, hub.getCurrentDatabase().getType(TYPE_FOURTEEN).getInstances().size());
+            
+            try {
+                hub.endBatch();
+                Assert.fail("endBatch with no open batch should fail");
+            }
+            catch (IllegalStateException ise) {
+                // expected
+            }
+        }
+        finally {
+            ServiceLocatorUtilities.removeOneDescriptor(testLocator, counterDescriptor);
+            
+            removeType(TYPE_FOURTEEN);
+        }
+    }
+    
+    /**
+     * Tests that a failure in prepare when ending a batch discards
+     * all of the commits done in the batch
+     */
+    @Test
+    public void testPrepareFailureDiscardsBatch() {
+        PrepareFailListener listener = new PrepareFailListener();
+        ActiveDescriptor<?> listenerDescriptor = ServiceLocatorUtilities.addOneConstant(testLocator, listener);
+        
+        WriteableBeanDatabase staleCopy;
+        
+        try {
+            hub.beginBatch();
+            try {
+                addTypeAndInstance(TYPE_FIFTEEN, ALICE, new GenericJavaBean(ALICE, OTHER_PROPERTY_VALUE1));
+                
+                staleCopy = hub.getWriteableDatabaseCopy();
+            }
+            finally {
+                try {
+                    hub.endBatch();
+                    Assert.fail("Prepare threw exception, but endBatch succeeded");
+                }
+                catch (MultiException me) {
+                    Assert.assertTrue(me.toString().contains(PREPARE_FAIL_MESSAGE));
+                }
+            }
+        }
+        finally {
+            ServiceLocatorUtilities.removeOneDescriptor(testLocator, listenerDescriptor);
+        }
+        
+        Assert.assertNull(hub.getCurrentDatabase().getType(TYPE_FIFTEEN));
+        
+        try {
+            staleCopy.commit();
+            Assert.fail("A copy made during a discarded batch should not be committable");
+        }
+        catch (IllegalStateException ise) {
+            // expected
+        }
+    }
+    
+    /**
+     * Tests that a database obtained from getCurrentDatabase is a
+     * snapshot that does not change when later commits are made,
+     * nor when a writeable copy based on it is modified
+     */
+    @Test
+    public void testCommittedDatabaseIsSnapshot() {
+        addTypeAndInstance(TYPE_SIXTEEN, ALICE, new GenericJavaBean(ALICE, OTHER_PROPERTY_VALUE1));
+        
+        BeanDatabase snapshot = hub.getCurrentDatabase();
+        Type snapshotType = snapshot.getType(TYPE_SIXTEEN);
+        
+        WriteableBeanDatabase wbd = hub.getWriteableDatabaseCopy();
+        WriteableType wt = wbd.getWriteableType(TYPE_SIXTEEN);
+        wt.addInstance(BOB, new GenericJavaBean(BOB, OTHER_PROPERTY_VALUE1));
+        wt.removeInstance(ALICE);
+        
+        Assert.assertEquals(1, snapshotType.getInstances().size());
+        Assert.assertNotNull(snapshotType.getInstance(ALICE));
+        
+        wbd.commit();
+        
+        // And modifications after the commit must not leak into the new revision
+        wt.addInstance(CAROL, new GenericJavaBean(CAROL, OTHER_PROPERTY_VALUE1));
+        
+        Assert.assertEquals(1, snapshotType.getInstances().size());
+        Assert.assertNotNull(snapshotType.getInstance(ALICE));
+        Assert.assertNull(snapshotType.getInstance(BOB));
+        
+        Type currentType = hub.getCurrentDatabase().getType(TYPE_SIXTEEN);
+        Assert.assertEquals(1, currentType.getInstances().size());
+        Assert.assertNotNull(currentType.getInstance(BOB));
+        Assert.assertNull(currentType.getInstance(CAROL));
+    }
+    
+    /**
+     * Tests that a hash index is maintained across adds, modifies,
+     * removes and commits
+     */
+    @Test
+    public void testIndexedPropertyQuery() {
+        WriteableBeanDatabase wbd = hub.getWriteableDatabaseCopy();
+        WriteableType wt = wbd.addType(TYPE_SEVENTEEN);
+        wt.addInstance(ALICE, new GenericJavaBean(ALICE, OTHER_PROPERTY_VALUE1));
+        wt.addIndex(OTHER_PROPERTY, false);
+        wt.addInstance(BOB, new GenericJavaBean(BOB, OTHER_PROPERTY_VALUE1));
+        wt.addInstance(CAROL, new GenericJavaBean(CAROL, OTHER_PROPERTY_VALUE2));
+        wbd.commit();
+        
+        Type type = hub.getCurrentDatabase().getType(TYPE_SEVENTEEN);
+        Assert.assertTrue(type.getIndexedProperties().contains(OTHER_PROPERTY));
+        
+        Map<String, Instance> found = type.getInstancesByProperty(OTHER_PROPERTY, OTHER_PROPERTY_VALUE1);
+        Assert.assertEquals(2, found.size());
+        Assert.assertTrue(found.containsKey(ALICE));
+        Assert.assertTrue(found.containsKey(BOB));
+        
+        modifyInstance(TYPE_SEVENTEEN, ALICE, new GenericJavaBean(ALICE, OTHER_PROPERTY_VALUE2));
+        
+        wbd = hub.getWriteableDatabaseCopy();
+        wbd.getWriteableType(TYPE_SEVENTEEN).removeInstance(CAROL);
+        wbd.commit();
+        
+        Type newType = hub.getCurrentDatabase().getType(TYPE_SEVENTEEN);
+        
+        found = newType.getInstancesByProperty(OTHER_PROPERTY, OTHER_PROPERTY_VALUE2);
+        Assert.assertEquals(1, found.size());
+        Assert.assertTrue(found.containsKey(ALICE));
+        
+        found = newType.getInstancesByProperty(OTHER_PROPERTY, OTHER_PROPERTY_VALUE1);
+        Assert.assertEquals(1, found.size());
+        Assert.assertTrue(found.containsKey(BOB));
+        
+        // The older revision is unchanged
+        Assert.assertEquals(2, type.getInstancesByProperty(OTHER_PROPERTY, OTHER_PROPERTY_VALUE1).size());
+        
+        // An unindexed property gives the same answer by scanning
+        found = newType.getInstancesByProperty(NAME_PROPERTY, BOB);
+        Assert.assertEquals(1, found.size());
+        Assert.assertTrue(found.containsKey(BOB));
+        
+        wbd = hub.getWriteableDatabaseCopy();
+        Assert.assertTrue(wbd.getWriteableType(TYPE_SEVENTEEN).removeIndex(OTHER_PROPERTY));
+        wbd.commit();
+        
+        Assert.assertTrue(hub.getCurrentDatabase().getType(TYPE_SEVENTEEN).getIndexedProperties().isEmpty());
+        Assert.assertFalse(newType.getIndexedProperties().isEmpty());
+    }
+    
+    /**
+     * Tests range queries over a sorted index of bean-like maps
+     */
+    @Test
+    public void testSortedIndexRangeQuery() {
+        WriteableBeanDatabase wbd = hub.getWriteableDatabaseCopy();
+        WriteableType wt = wbd.addType(TYPE_EIGHTEEN);
+        wt.addIndex(AGE_PROPERTY, true);
+        wt.addInstance(ALICE, ageMap(40));
+        wt.addInstance(BOB, ageMap(20));
+        wt.addInstance(CAROL, ageMap(30));
+        wt.addInstance(DAVE, new HashMap<String, Object>());
+        wbd.commit();
+        
+        Type type = hub.getCurrentDatabase().getType(TYPE_EIGHTEEN);
+        
+        Map<String, Instance> found = type.getInstancesByPropertyRange(AGE_PROPERTY, 20, 30);
+        Assert.assertEquals(new LinkedList<String>(found.keySet()), Arrays.asList(BOB, CAROL));
+        
+        found = type.getInstancesByPropertyRange(AGE_PROPERTY, 25, null);
+        Assert.assertEquals(new LinkedList<String>(found.keySet()), Arrays.asList(CAROL, ALICE));
+        
+        found = type.getInstancesByPropertyRange(AGE_PROPERTY, null, null);
+        Assert.assertEquals(new LinkedList<String>(found.keySet()), Arrays.asList(BOB, CAROL, ALICE));
+        
+        Assert.assertTrue(type.getInstancesByProperty(AGE_PROPERTY, null).containsKey(DAVE));
+        Assert.assertTrue(type.getInstancesByProperty(AGE_PROPERTY, 30).containsKey(CAROL));
+        
+        // Values that cannot be placed in a sorted index are refused
+        wbd = hub.getWriteableDatabaseCopy();
+        wt = wbd.getWriteableType(TYPE_EIGHTEEN);
+        
+        HashMap<String, Object> badAge = new HashMap<String, Object>();
+        badAge.put(AGE_PROPERTY, new Object());
+        
+        try {
+            wt.addInstance(ERIN, badAge);
+            Assert.fail("Should not be able to add a non-comparable value to a sorted index");
+        }
+        catch (IllegalArgumentException iae) {
+            // expected
+        }
+        
+        Assert.assertNull(wt.getInstance(ERIN));
+        
+        // Comparable values that cannot be compared with the indexed values are refused
+        badAge.put(AGE_PROPERTY, "forty");
+        
+        try {
+            wt.modifyInstance(ALICE, badAge);
+            Assert.fail("Should not be able to add an incomparable value to a sorted index");
+        }
+        catch (IllegalArgumentException iae) {
+            // expected
+        }
+        
+        found = wt.getInstancesByPropertyRange(AGE_PROPERTY, null, null);
+        Assert.assertEquals(new LinkedList<String>(found.keySet()), Arrays.asList(BOB, CAROL, ALICE));
+        Assert.assertTrue(wt.getInstancesByProperty(AGE_PROPERTY, 40).containsKey(ALICE));
+    }
+    
+    /**
+     * Tests that a range whose lowest value is above its highest value
+     * is empty, both with a sorted index and when scanning
+     */
+    @Test
+    public void testReversedRangeQueryIsEmpty() {
+        WriteableBeanDatabase wbd = hub.getWriteableDatabaseCopy();
+        WriteableType wt = wbd.addType(TYPE_NINETEEN);
+        wt.addInstance(ALICE, ageMap(40));
+        wt.addInstance(BOB, ageMap(20));
+        wt.addInstance(CAROL, ageMap(30));
+        wbd.commit();
+        
+        Type scanned = hub.getCurrentDatabase().getType(TYPE_NINETEEN);
+        Assert.assertTrue(scanned.getInstancesByPropertyRange(AGE_PROPERTY, 30, 20).isEmpty());
+        
+        wbd = hub.getWriteableDatabaseCopy();
+        wbd.getWriteableType(TYPE_NINETEEN).addIndex(AGE_PROPERTY, true);
+        wbd.commit();
+        
+        Type indexed = hub.getCurrentDatabase().getType(TYPE_NINETEEN);
+        Assert.assertTrue(indexed.getInstancesByPropertyRange(AGE_PROPERTY, 30, 20).isEmpty());
+        
+        Map<String, Instance> found = indexed.getInstancesByPropertyRange(AGE_PROPERTY, 30, 30);
+        Assert.assertEquals(new LinkedList<String>(found.keySet()), Arrays.asList(CAROL));
+    }
+    
+    private static Map<String, Object> ageMap(int age) {
+        HashMap<String, Object> retVal = new HashMap<String, Object>();
+        retVal.put(AGE_PROPERTY, age);
+        return retVal;
+    }
+    
+    private void modifyInstance(String typeName, String instanceKey, Object newValue) {
+        WriteableBeanDatabase wbd = hub.getWriteableDatabaseCopy();
+        
+        WriteableType wt = wbd.getWriteableType(typeName);
+        
+        wt.modifyInstance(instanceKey, newValue);
+        
+        wbd.commit();
+    }
+
 }
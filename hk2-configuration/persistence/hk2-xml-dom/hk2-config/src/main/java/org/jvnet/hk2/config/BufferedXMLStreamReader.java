@@ -0,0 +1,743 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.jvnet.hk2.config;
+
+import static javax.xml.stream.XMLStreamConstants.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * An {@link XMLStreamReader} that replays one element, and everything in it,
+ * from an in-memory buffer.  Only elements, attributes, namespace bindings and
+ * text are kept, which is all the {@link ConfigParser} looks at.  This allows the
+ * reading of the XML and the building of {@link Dom} trees to happen on different
+ * threads
+ *
+ * @author jwells
+ */
+/* package */ final class BufferedXMLStreamReader implements XMLStreamReader {
+    private static final String[] NO_STRINGS = new String[0];
+
+    private final List<Event> events;
+    private int current = 0;
+
+    private BufferedXMLStreamReader(List<Event> events) {
+        this.events = events;
+    }
+
+    /**
+     * Returns the namespace bindings declared on the element the given
+     * reader is positioned at, keyed by prefix
+     *
+     * @param in a reader positioned at a start element
+     * @return the prefixes declared on the element, the default namespace
+     * being keyed by the empty prefix
+     */
+    /* package */ static Map<String, String> getNamespaceDeclarations(XMLStreamReader in) {
+        return declare(in, Collections.<String, String>emptyMap());
+    }
+
+    private static Map<String, String> declare(XMLStreamReader in, Map<String, String> scope) {
+        int count = in.getNamespaceCount();
+        if (count == 0) return scope;
+
+        Map<String, String> retVal = new HashMap<String, String>(scope);
+        for (int lcv = 0; lcv < count; lcv++) {
+            String prefix = in.getNamespacePrefix(lcv);
+            String uri = in.getNamespaceURI(lcv);
+
+            retVal.put(prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : prefix,
+                    uri == null ? XMLConstants.NULL_NS_URI : uri);
+        }
+        return Collections.unmodifiableMap(retVal);
+    }
+
+    /**
+     * Records the element the given reader is positioned at
+     *
+     * @param in
+     *      pre-condition:  'in' is at the start element.
+     *      post-condition: 'in' is at the matching end element.
+     * @param inherited the namespace bindings in scope at the parent of the
+     *      recorded element, keyed by prefix
+     * @return a reader positioned at the start element of the recorded copy
+     */
+    /* package */ static BufferedXMLStreamReader record(XMLStreamReader in, Map<String, String> inherited) throws XMLStreamException {
+        List<Event> events = new ArrayList<Event>();
+        LinkedList<Event> open = new LinkedList<Event>();
+
+        int tag = in.getEventType();
+        while (true) {
+            switch (tag) {
+            case START_ELEMENT:
+                Event start = Event.startElement(in, open.isEmpty() ? inherited : open.getFirst().scope);
+                open.addFirst(start);
+                events.add(start);
+                break;
+            case END_ELEMENT:
+                events.add(Event.endElement(in, open.removeFirst()));
+                break;
+            case CHARACTERS:
+            case CDATA:
+            case SPACE:
+                Event last = events.get(events.size() - 1);
+                String text = in.getText();
+                if (last.type == CHARACTERS) {
+                    // keep adjacent text as a single event
+                    events.set(events.size() - 1, Event.characters(last.text + text, last.scope));
+                }
+                else {
+                    events.add(Event.characters(text, open.getFirst().scope));
+                }
+                break;
+            default:
+                // comments and processing instructions are not kept
+                break;
+            }
+
+            if (open.isEmpty()) break;
+            tag = in.next();
+        }
+
+        return new BufferedXMLStreamReader(events);
+    }
+
+    private Event event() {
+        if (current >= events.size()) {
+            throw new IllegalStateException("The end of the buffered element has been reached");
+        }
+        return events.get(current);
+    }
+
+    private Event startElement() {
+        Event retVal = event();
+        if (retVal.type != START_ELEMENT) {
+            throw new IllegalStateException("Not at a start element");
+        }
+        return retVal;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getProperty(java.lang.String)
+     */
+    @Override
+    public Object getProperty(String name) throws IllegalArgumentException {
+        if (name == null) throw new IllegalArgumentException();
+        return null;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#next()
+     */
+    @Override
+    public int next() throws XMLStreamException {
+        if (current >= events.size()) {
+            throw new XMLStreamException("The end of the buffered element has been reached");
+        }
+        current++;
+        return getEventType();
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#require(int, java.lang.String, java.lang.String)
+     */
+    @Override
+    public void require(int type, String namespaceURI, String localName)
+            throws XMLStreamException {
+        if (type != getEventType()) {
+            throw new XMLStreamException("Expected event " + type + " but was " + getEventType(), getLocation());
+        }
+        if (namespaceURI != null && !namespaceURI.equals(getNamespaceURI())) {
+            throw new XMLStreamException("Expected namespace " + namespaceURI, getLocation());
+        }
+        if (localName != null && !localName.equals(getLocalName())) {
+            throw new XMLStreamException("Expected element " + localName, getLocation());
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getElementText()
+     */
+    @Override
+    public String getElementText() throws XMLStreamException {
+        if (getEventType() != START_ELEMENT) {
+            throw new XMLStreamException("Not at a start element", getLocation());
+        }
+
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            int tag = next();
+            if (tag == END_ELEMENT) return sb.toString();
+            if (tag != CHARACTERS) {
+                throw new XMLStreamException("Element text may not contain elements", getLocation());
+            }
+            sb.append(getText());
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#nextTag()
+     */
+    @Override
+    public int nextTag() throws XMLStreamException {
+        while (true) {
+            int tag = next();
+            if (tag == START_ELEMENT || tag == END_ELEMENT) return tag;
+            if (tag == CHARACTERS && isWhiteSpace()) continue;
+
+            throw new XMLStreamException("Expected a start or end element", getLocation());
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#hasNext()
+     */
+    @Override
+    public boolean hasNext() throws XMLStreamException {
+        return current < events.size();
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#close()
+     */
+    @Override
+    public void close() throws XMLStreamException {
+        // nothing to release
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getNamespaceURI(java.lang.String)
+     */
+    @Override
+    public String getNamespaceURI(String prefix) {
+        if (prefix == null) throw new IllegalArgumentException();
+        return resolve(event().scope, prefix);
+    }
+
+    private static String resolve(Map<String, String> scope, String prefix) {
+        if (XMLConstants.XML_NS_PREFIX.equals(prefix)) return XMLConstants.XML_NS_URI;
+        if (XMLConstants.XMLNS_ATTRIBUTE.equals(prefix)) return XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+
+        return scope.get(prefix);
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#isStartElement()
+     */
+    @Override
+    public boolean isStartElement() {
+        return getEventType() == START_ELEMENT;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#isEndElement()
+     */
+    @Override
+    public boolean isEndElement() {
+        return getEventType() == END_ELEMENT;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#isCharacters()
+     */
+    @Override
+    public boolean isCharacters() {
+        return getEventType() == CHARACTERS;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#isWhiteSpace()
+     */
+    @Override
+    public boolean isWhiteSpace() {
+        if (!isCharacters()) return false;
+        return event().text.trim().length() == 0;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getAttributeValue(java.lang.String, java.lang.String)
+     */
+    @Override
+    public String getAttributeValue(String namespaceURI, String localName) {
+        Event event = startElement();
+        for (int lcv = 0; lcv < event.attributeNames.length; lcv++) {
+            if (!event.attributeNames[lcv].equals(localName)) continue;
+            if (namespaceURI != null && !namespaceURI.equals(event.attributeNamespaces[lcv])) continue;
+
+            return event.attributeValues[lcv];
+        }
+        return null;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getAttributeCount()
+     */
+    @Override
+    public int getAttributeCount() {
+        return startElement().attributeNames.length;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getAttributeName(int)
+     */
+    @Override
+    public QName getAttributeName(int index) {
+        Event event = startElement();
+        return new QName(event.attributeNamespaces[index], event.attributeNames[index],
+                event.attributePrefixes[index]);
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getAttributeNamespace(int)
+     */
+    @Override
+    public String getAttributeNamespace(int index) {
+        String retVal = startElement().attributeNamespaces[index];
+        return XMLConstants.NULL_NS_URI.equals(retVal) ? null : retVal;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getAttributeLocalName(int)
+     */
+    @Override
+    public String getAttributeLocalName(int index) {
+        return startElement().attributeNames[index];
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getAttributePrefix(int)
+     */
+    @Override
+    public String getAttributePrefix(int index) {
+        return startElement().attributePrefixes[index];
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getAttributeType(int)
+     */
+    @Override
+    public String getAttributeType(int index) {
+        return "CDATA";
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getAttributeValue(int)
+     */
+    @Override
+    public String getAttributeValue(int index) {
+        return startElement().attributeValues[index];
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#isAttributeSpecified(int)
+     */
+    @Override
+    public boolean isAttributeSpecified(int index) {
+        return true;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getNamespaceCount()
+     */
+    @Override
+    public int getNamespaceCount() {
+        if (!hasName()) throw new IllegalStateException("Not at an element");
+        return event().declaredPrefixes.length;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getNamespacePrefix(int)
+     */
+    @Override
+    public String getNamespacePrefix(int index) {
+        if (!hasName()) throw new IllegalStateException("Not at an element");
+        String retVal = event().declaredPrefixes[index];
+        return XMLConstants.DEFAULT_NS_PREFIX.equals(retVal) ? null : retVal;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getNamespaceURI(int)
+     */
+    @Override
+    public String getNamespaceURI(int index) {
+        if (!hasName()) throw new IllegalStateException("Not at an element");
+        return event().declaredURIs[index];
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getNamespaceContext()
+     */
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return new ScopeNamespaceContext(event().scope);
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getEventType()
+     */
+    @Override
+    public int getEventType() {
+        if (current >= events.size()) return END_DOCUMENT;
+        return events.get(current).type;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getText()
+     */
+    @Override
+    public String getText() {
+        if (!isCharacters()) throw new IllegalStateException("Not at text");
+        return event().text;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getTextCharacters()
+     */
+    @Override
+    public char[] getTextCharacters() {
+        return getText().toCharArray();
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getTextCharacters(int, char[], int, int)
+     */
+    @Override
+    public int getTextCharacters(int sourceStart, char[] target,
+            int targetStart, int length) throws XMLStreamException {
+        String text = getText();
+        int copy = Math.min(length, text.length() - sourceStart);
+        if (copy <= 0) return 0;
+
+        text.getChars(sourceStart, sourceStart + copy, target, targetStart);
+        return copy;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getTextStart()
+     */
+    @Override
+    public int getTextStart() {
+        return 0;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getTextLength()
+     */
+    @Override
+    public int getTextLength() {
+        return getText().length();
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getEncoding()
+     */
+    @Override
+    public String getEncoding() {
+        return null;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#hasText()
+     */
+    @Override
+    public boolean hasText() {
+        return isCharacters();
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getLocation()
+     */
+    @Override
+    public Location getLocation() {
+        for (int lcv = Math.min(current, events.size() - 1); lcv >= 0; lcv--) {
+            Location location = events.get(lcv).location;
+            if (location != null) return location;
+        }
+        return events.get(0).location;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getName()
+     */
+    @Override
+    public QName getName() {
+        Event event = event();
+        if (event.localName == null) throw new IllegalStateException("Not at an element");
+
+        return new QName(event.namespaceURI == null ? XMLConstants.NULL_NS_URI : event.namespaceURI,
+                event.localName,
+                event.prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : event.prefix);
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getLocalName()
+     */
+    @Override
+    public String getLocalName() {
+        Event event = event();
+        if (event.localName == null) throw new IllegalStateException("Not at an element");
+        return event.localName;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#hasName()
+     */
+    @Override
+    public boolean hasName() {
+        return isStartElement() || isEndElement();
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getNamespaceURI()
+     */
+    @Override
+    public String getNamespaceURI() {
+        if (!hasName()) return null;
+        return event().namespaceURI;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getPrefix()
+     */
+    @Override
+    public String getPrefix() {
+        if (!hasName()) return null;
+        return event().prefix;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getVersion()
+     */
+    @Override
+    public String getVersion() {
+        return null;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#isStandalone()
+     */
+    @Override
+    public boolean isStandalone() {
+        return false;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#standaloneSet()
+     */
+    @Override
+    public boolean standaloneSet() {
+        return false;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getCharacterEncodingScheme()
+     */
+    @Override
+    public String getCharacterEncodingScheme() {
+        return null;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getPITarget()
+     */
+    @Override
+    public String getPITarget() {
+        return null;
+    }
+
+    /* (non-Javadoc)
+     * @see javax.xml.stream.XMLStreamReader#getPIData()
+     */
+    @Override
+    public String getPIData() {
+        return null;
+    }
+
+    /**
+     * One recorded event
+     */
+    private static final class Event {
+        private final int type;
+        private final String localName;
+        private final String namespaceURI;
+        private final String prefix;
+        private final String[] attributeNames;
+        private final String[] attributeNamespaces;
+        private final String[] attributePrefixes;
+        private final String[] attributeValues;
+        private final String[] declaredPrefixes;
+        private final String[] declaredURIs;
+        private final Map<String, String> scope;
+        private final String text;
+        private final Location location;
+
+        private Event(int type, String localName, String namespaceURI, String prefix,
+                String[] attributeNames, String[] attributeNamespaces, String[] attributePrefixes,
+                String[] attributeValues, String[] declaredPrefixes, String[] declaredURIs,
+                Map<String, String> scope, String text, Location location) {
+            this.type = type;
+            this.localName = localName;
+            this.namespaceURI = namespaceURI;
+            this.prefix = prefix;
+            this.attributeNames = attributeNames;
+            this.attributeNamespaces = attributeNamespaces;
+            this.attributePrefixes = attributePrefixes;
+            this.attributeValues = attributeValues;
+            this.declaredPrefixes = declaredPrefixes;
+            this.declaredURIs = declaredURIs;
+            this.scope = scope;
+            this.text = text;
+            this.location = location;
+        }
+
+        private static Event startElement(XMLStreamReader in, Map<String, String> parentScope) {
+            int count = in.getAttributeCount();
+            String[] names = (count == 0) ? NO_STRINGS : new String[count];
+            String[] namespaces = (count == 0) ? NO_STRINGS : new String[count];
+            String[] prefixes = (count == 0) ? NO_STRINGS : new String[count];
+            String[] values = (count == 0) ? NO_STRINGS : new String[count];
+            for (int lcv = 0; lcv < count; lcv++) {
+                String namespace = in.getAttributeNamespace(lcv);
+                String prefix = in.getAttributePrefix(lcv);
+
+                names[lcv] = in.getAttributeLocalName(lcv);
+                namespaces[lcv] = (namespace == null) ? XMLConstants.NULL_NS_URI : namespace;
+                prefixes[lcv] = (prefix == null) ? XMLConstants.DEFAULT_NS_PREFIX : prefix;
+                values[lcv] = in.getAttributeValue(lcv);
+            }
+
+            int declared = in.getNamespaceCount();
+            String[] declaredPrefixes = (declared == 0) ? NO_STRINGS : new String[declared];
+            String[] declaredURIs = (declared == 0) ? NO_STRINGS : new String[declared];
+            for (int lcv = 0; lcv < declared; lcv++) {
+                String prefix = in.getNamespacePrefix(lcv);
+                String uri = in.getNamespaceURI(lcv);
+
+                declaredPrefixes[lcv] = (prefix == null) ? XMLConstants.DEFAULT_NS_PREFIX : prefix;
+                declaredURIs[lcv] = (uri == null) ? XMLConstants.NULL_NS_URI : uri;
+            }
+
+            return new Event(START_ELEMENT, in.getLocalName(), in.getNamespaceURI(), in.getPrefix(),
+                    names, namespaces, prefixes, values, declaredPrefixes, declaredURIs,
+                    declare(in, parentScope), null, new LocationImpl(in.getLocation()));
+        }
+
+        /**
+         * The namespaces declared by an element are reported, and remain in
+         * scope, at its end element as well
+         */
+        private static Event endElement(XMLStreamReader in, Event start) {
+            return new Event(END_ELEMENT, in.getLocalName(), in.getNamespaceURI(), in.getPrefix(),
+                    NO_STRINGS, NO_STRINGS, NO_STRINGS, NO_STRINGS,
+                    start.declaredPrefixes, start.declaredURIs, start.scope, null, null);
+        }
+
+        private static Event characters(String text, Map<String, String> scope) {
+            return new Event(CHARACTERS, null, null, null,
+                    NO_STRINGS, NO_STRINGS, NO_STRINGS, NO_STRINGS, NO_STRINGS, NO_STRINGS,
+                    scope, text, null);
+        }
+    }
+
+    /**
+     * The namespace bindings in scope at one recorded event
+     */
+    private static final class ScopeNamespaceContext implements NamespaceContext {
+        private final Map<String, String> scope;
+
+        private ScopeNamespaceContext(Map<String, String> scope) {
+            this.scope = scope;
+        }
+
+        /* (non-Javadoc)
+         * @see javax.xml.namespace.NamespaceContext#getNamespaceURI(java.lang.String)
+         */
+        @Override
+        public String getNamespaceURI(String prefix) {
+            if (prefix == null) throw new IllegalArgumentException();
+
+            String retVal = resolve(scope, prefix);
+            return (retVal == null) ? XMLConstants.NULL_NS_URI : retVal;
+        }
+
+        /* (non-Javadoc)
+         * @see javax.xml.namespace.NamespaceContext#getPrefix(java.lang.String)
+         */
+        @Override
+        public String getPrefix(String namespaceURI) {
+            Iterator<String> prefixes = getPrefixes(namespaceURI);
+            return prefixes.hasNext() ? prefixes.next() : null;
+        }
+
+        /* (non-Javadoc)
+         * @see javax.xml.namespace.NamespaceContext#getPrefixes(java.lang.String)
+         */
+        @Override
+        public Iterator<String> getPrefixes(String namespaceURI) {
+            if (namespaceURI == null) throw new IllegalArgumentException();
+
+            if (XMLConstants.XML_NS_URI.equals(namespaceURI)) {
+                return Collections.singletonList(XMLConstants.XML_NS_PREFIX).iterator();
+            }
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(namespaceURI)) {
+                return Collections.singletonList(XMLConstants.XMLNS_ATTRIBUTE).iterator();
+            }
+
+            List<String> retVal = new ArrayList<String>();
+            for (Map.Entry<String, String> binding : scope.entrySet()) {
+                if (binding.getValue().equals(namespaceURI)) retVal.add(binding.getKey());
+            }
+            return Collections.unmodifiableList(retVal).iterator();
+        }
+    }
+}
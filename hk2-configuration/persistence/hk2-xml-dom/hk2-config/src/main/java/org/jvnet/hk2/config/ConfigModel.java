@@ -61,6 +61,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Describes the configuration model for a particular class (called "target type" in this class.)
@@ -92,6 +93,11 @@ public final class ConfigModel {
      * Cache to map methods to properties
      */
     final Map<Method,Property> methodCache = new HashMap<Method,Property>();
+
+    /**
+     * Cache of how each method of the proxy type is dispatched
+     */
+    private final ConcurrentHashMap<Method,MethodDispatch> dispatchCache = new ConcurrentHashMap<Method,MethodDispatch>();
     
     /**
      * Contracts under which the inhabitant should be registered.
@@ -232,6 +238,9 @@ public final class ConfigModel {
      * Obtains the duck method implementation from a method on the {@link ConfigBeanProxy}-derived interface.
      */
     public Method getDuckMethod(Method method) throws ClassNotFoundException, NoSuchMethodException {
+        MethodDispatch dispatch = dispatchCache.get(method);
+        if (dispatch != null && dispatch.duckMethod != null) return dispatch.duckMethod;
+
         synchronized (duckMethods) {
             Method duckMethod = duckMethods.get(method);
             if(duckMethod!=null)    return duckMethod;
@@ -252,17 +261,59 @@ public final class ConfigModel {
             paramTypes[0] = clz;
             duckMethod = duck.getMethod(method.getName(), paramTypes);
             duckMethods.put(method,duckMethod);
+            if (dispatch != null) dispatch.duckMethod = duckMethod;
 
             return duckMethod;
         }
     }
 
+    /**
+     * Returns how the given method of the proxy type is to be dispatched.
+     * The annotations, property and generic return type of the method are
+     * only looked up the first time a method is seen
+     *
+     * @param method a method of the proxy type of this model
+     * @return the dispatch information for the method, never null
+     */
+    /* package */ MethodDispatch getDispatch(Method method) {
+        MethodDispatch retVal = dispatchCache.get(method);
+        if (retVal != null) return retVal;
+
+        if (method.getDeclaringClass() == Object.class) {
+            retVal = new MethodDispatch(DispatchType.OBJECT, null, null, null);
+        }
+        else if (method.getAnnotation(DuckTyped.class) != null) {
+            retVal = new MethodDispatch(DispatchType.DUCK, null, null, null);
+        }
+        else if (method.getAnnotation(ConfigExtensionMethod.class) != null) {
+            ConfigExtensionMethod cem = method.getAnnotation(ConfigExtensionMethod.class);
+            retVal = new MethodDispatch(DispatchType.EXTENSION, null, null, cem.value());
+        }
+        else {
+            Property property = toProperty(method);
+            retVal = new MethodDispatch(
+                    (property == null) ? DispatchType.UNKNOWN : DispatchType.PROPERTY,
+                    property,
+                    method.getGenericReturnType(),
+                    null);
+        }
+
+        MethodDispatch existing = dispatchCache.putIfAbsent(method, retVal);
+        return (existing == null) ? retVal : existing;
+    }
+
     /**
      * Obtain XML names (like "abc-def") from strings like "getAbcDef" and "hasAbcDef".
      * <p>
      * The conversion rule uses the model to find a good match.
      */
     public ConfigModel.Property toProperty(Method method) {
+        synchronized (methodCache) {
+            return _toProperty(method);
+        }
+    }
+
+    private ConfigModel.Property _toProperty(Method method) {
         Property prop = methodCache.get(method);
         if (prop != null) {
             return prop;
@@ -332,6 +383,50 @@ public final class ConfigModel {
         return buf.toString();
     }
 
+    /**
+     * The ways in which a method of a proxy type can be dispatched
+     */
+    /* package */ static enum DispatchType {
+        /** A method of {@link Object}, served by the {@link Dom} itself */
+        OBJECT,
+        /** A {@link DuckTyped} method */
+        DUCK,
+        /** A {@link ConfigExtensionMethod} */
+        EXTENSION,
+        /** A getter or setter of a property of the model */
+        PROPERTY,
+        /** A method with no corresponding property */
+        UNKNOWN
+    }
+
+    /**
+     * Pre-computed dispatch information for one method of a proxy type.
+     * <p>
+     * The conversion of the value of a property is not resolved into this
+     * record.  It is done by {@link Property#get} from the generic return
+     * type, and the getter of {@link Dom}, {@link ConfigBean} and
+     * {@link WriteableView} may each replace or wrap that value, so a
+     * converter chosen here would bypass them
+     */
+    /* package */ static final class MethodDispatch {
+        final DispatchType type;
+        final Property property;
+        final Type genericReturnType;
+        final String extensionName;
+
+        /**
+         * The duck method, filled in the first time it is resolved
+         */
+        volatile Method duckMethod;
+
+        private MethodDispatch(DispatchType type, Property property, Type genericReturnType, String extensionName) {
+            this.type = type;
+            this.property = property;
+            this.genericReturnType = genericReturnType;
+            this.extensionName = extensionName;
+        }
+    }
+
     public abstract static class Property {
 
         public final List<String> annotations = new ArrayList<String>();
@@ -57,7 +57,13 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -79,9 +85,33 @@ public class ConfigParser {
      */
     protected final ServiceLocator habitat;
 
+    /**
+     * If not null, the subtrees of the top-level element are built on this executor
+     */
+    private final ExecutorService executor;
+
 
     public ConfigParser(ServiceLocator habitat) {
+        this(habitat, null);
+    }
+
+    /**
+     * Creates a parser that builds the {@link Dom} trees of the children of the
+     * top-level element in parallel.  The XML is still read by the calling thread,
+     * which records each child element into an in-memory buffer that is then
+     * parsed by the given executor.  The children are added to the top-level
+     * element in document order, and the top-level element is registered after
+     * all of its children, as with sequential parsing.  If any child fails to
+     * parse the children that were not yet started are skipped and those that
+     * were built are released before the failure is thrown.  The executor must not
+     * be one whose tasks can only run on the calling thread
+     *
+     * @param habitat where the parsed {@link Dom}s are registered
+     * @param executor the executor building the subtrees, or null to parse sequentially
+     */
+    public ConfigParser(ServiceLocator habitat, ExecutorService executor) {
         this.habitat = habitat;
+        this.executor = executor;
     }
 
 
@@ -98,7 +128,12 @@ public class ConfigParser {
     public void parse(XMLStreamReader in, DomDocument document, Dom parent) throws XMLStreamException {
         try {
             in.nextTag();
-            document.root = handleElement(in, document, parent);
+            if (executor == null) {
+                document.root = handleElement(in, document, parent);
+            }
+            else {
+                document.root = handleElementInParallel(in, document, parent);
+            }
         }
         finally {
             in.close();
@@ -242,6 +277,139 @@ public class ConfigParser {
             }
         }
 
+        return completeElement(dom, children);
+    }
+
+    /**
+     * Parses the top-level element like {@link #handleElement(XMLStreamReader, DomDocument, Dom)},
+     * except that the child elements that are not leaves are buffered and turned into
+     * {@link Dom} trees by the executor
+     */
+    private Dom handleElementInParallel(XMLStreamReader in, final DomDocument document, Dom parent) throws XMLStreamException {
+        final ConfigModel model = document.getModelByElementName(in.getLocalName());
+        if (model == null) {
+            // will be skipped
+            return handleElement(in, document, parent);
+        }
+
+        final Dom dom = document.make(habitat, in, parent, model);
+
+        // read values and fill DOM
+        dom.fillAttributes(in);
+
+        // the top-level element is the document element, so these are all of the bindings in scope
+        Map<String, String> namespaces = BufferedXMLStreamReader.getNamespaceDeclarations(in);
+
+        // either a Child or a Future<Child>, in document order
+        List<Object> pending = new ArrayList<Object>();
+        final AtomicBoolean failed = new AtomicBoolean(false);
+
+        boolean success = false;
+        try {
+            while(in.nextTag()==START_ELEMENT) {
+                final String name = in.getLocalName();
+                final ConfigModel.Property a = model.elements.get(name);
+
+                if(a!=null && a.isLeaf()) {
+                    pending.add(new Dom.LeafChild(name,in.getElementText()));
+                    continue;
+                }
+
+                final BufferedXMLStreamReader subtree = BufferedXMLStreamReader.record(in, namespaces);
+                pending.add(executor.submit(new Callable<Child>() {
+                    @Override
+                    public Child call() throws Exception {
+                        if (failed.get()) return null;
+
+                        boolean built = false;
+                        try {
+                            Dom child = (a == null) ?
+                                    handleElement(subtree, document, dom) :
+                                    handleElement(subtree, document, dom, ((ConfigModel.Node) a).model);
+
+                            built = true;
+                            return (child == null) ? null : new Dom.NodeChild(name, child);
+                        }
+                        finally {
+                            // the children not yet started need not be built
+                            if (!built) failed.set(true);
+                        }
+                    }
+                }));
+            }
+
+            List<Child> children = new ArrayList<Child>(pending.size());
+            for (Object item : pending) {
+                if (item instanceof Child) {
+                    children.add((Child) item);
+                    continue;
+                }
+
+                @SuppressWarnings("unchecked")
+                Child child = ((Future<Child>) item).get();
+                if (child != null) children.add(child);
+            }
+
+            success = true;
+            return completeElement(dom, children);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new XMLStreamException(e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof XMLStreamException) throw (XMLStreamException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new XMLStreamException(cause);
+        }
+        finally {
+            if (!success) {
+                failed.set(true);
+                rollback(pending);
+            }
+        }
+    }
+
+    /**
+     * Waits for the children that are still being built and releases
+     * all of the subtrees that were registered
+     */
+    private static void rollback(List<Object> pending) {
+        boolean interrupted = Thread.interrupted();
+
+        for (Object item : pending) {
+            if (!(item instanceof Future)) continue;
+
+            @SuppressWarnings("unchecked")
+            Future<Child> future = (Future<Child>) item;
+
+            Child child = null;
+            while (true) {
+                try {
+                    child = future.get();
+                    break;
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+                catch (ExecutionException e) {
+                    // this is the failure being thrown, or one that came after it
+                    break;
+                }
+            }
+
+            if (child != null) ((Dom.NodeChild) child).dom.releaseTree();
+        }
+
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Adds the parsed children to the given element and registers it
+     */
+    private Dom completeElement(Dom dom, List<Child> children) {
         if (children==null) {
             children = new ArrayList<Dom.Child>();
         }
@@ -60,6 +60,8 @@ import java.lang.annotation.Annotation;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 /**
@@ -199,6 +201,61 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
         }
     }
 
+    /**
+     * Immutable index over one snapshot of the children list.  The
+     * children of each element name are computed when the index is
+     * built, the key to child maps are computed lazily per element name
+     * the first time they are asked for
+     */
+    private static final class ChildIndex {
+        private final List<Child> children;
+        private final int keyVersion;
+        private final Map<String, List<Child>> byName;
+        private final ConcurrentHashMap<String, Map<String, Dom>> byKey =
+                new ConcurrentHashMap<String, Map<String, Dom>>();
+
+        private ChildIndex(List<Child> children, int keyVersion) {
+            this.children = children;
+            this.keyVersion = keyVersion;
+
+            HashMap<String, List<Child>> named = new HashMap<String, List<Child>>();
+            for (Child child : children) {
+                List<Child> list = named.get(child.name);
+                if (list == null) {
+                    list = new ArrayList<Child>();
+                    named.put(child.name, list);
+                }
+                list.add(child);
+            }
+            byName = named;
+        }
+
+        private List<Child> get(String name) {
+            List<Child> retVal = byName.get(name);
+            if (retVal == null) return Collections.emptyList();
+            return retVal;
+        }
+
+        private Map<String, Dom> getKeyed(String name) {
+            Map<String, Dom> retVal = byKey.get(name);
+            if (retVal != null) return retVal;
+
+            retVal = new HashMap<String, Dom>();
+            for (Child child : get(name)) {
+                if (!(child instanceof NodeChild)) continue;
+                Dom dom = ((NodeChild) child).dom;
+
+                String key = dom.getKey();
+                if (key == null || retVal.containsKey(key)) continue;   // first one wins, as with a scan
+
+                retVal.put(key, dom);
+            }
+
+            byKey.putIfAbsent(name, retVal);
+            return retVal;
+        }
+    }
+
     public void initializationCompleted() {
     }
 
@@ -299,6 +356,15 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      * The list is read-only and copy-on-write to support concurrent access.
      */
     private volatile List<Child> children = Collections.emptyList();
+    /**
+     * Index over {@link #children}, rebuilt on demand whenever the children
+     * list is replaced or the key of a child changes.  Null if not built
+     */
+    private volatile ChildIndex childIndex;
+    /**
+     * Incremented whenever the key of one of the children changes
+     */
+    private final AtomicInteger childKeyVersion = new AtomicInteger();
     private final Location location;
 
     /**
@@ -457,7 +523,7 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      */
     private String t(String s) {
         if(s==null) return null;
-        return document.getTranslator().translate(s);
+        return document.translate(s);
     }
 
     /**
@@ -518,6 +584,7 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
             // since we can't enumerate all scope instances.)
             getInjector().injectAttribute(this,name,get());
         }
+        valueChanged(name, false);
     }
 
     /**
@@ -526,15 +593,7 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      * @return child element
      */
     public Dom element(String name) {
-        
-        List<Child> children = this.children; // fix the snapshot that we'll work with
-
-        for (Child child : children) {
-            if (child.name.equals(name)) {
-                return ((NodeChild) child).dom;
-            }
-        }
-        return null;
+        return nodeElement(name);
     }
 
     /**
@@ -578,22 +637,24 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
         if(name.equals("*"))    name=newNode.model.tagName;
         NodeChild newChild = new NodeChild(name, newNode);
 
-        if (children.size()==0) {
-            children = new ArrayList<Child>();
-        }
+        List<Child> newChildren = new ArrayList<Child>(children);
         if(reference==null) {
-            children.add(0, newChild);
+            newChildren.add(0, newChild);
+            children = newChildren;
+            document.invalidateTranslations();
             newNode.domDescriptor = addWithAlias(getHabitat(), newNode, newNode.getProxyType(), newNode.getKey());
             return;
         }
 
-        ListIterator<Child> itr = children.listIterator();
+        ListIterator<Child> itr = newChildren.listIterator();
         while(itr.hasNext()) {
             Child child = itr.next();
             if (child instanceof NodeChild) {
                 NodeChild nc = (NodeChild) child;
                 if(nc.dom==reference) {
                     itr.add(newChild);
+                    children = newChildren;
+                    document.invalidateTranslations();
                     newNode.domDescriptor = addWithAlias(getHabitat(), newNode, newNode.getProxyType(), newNode.getKey());
                     
                     return;
@@ -609,7 +670,8 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      * @see #insertAfter(Dom, String, Dom)
      */
     public synchronized void replaceChild(Dom reference, String name, Dom newNode) {
-        ListIterator<Child> itr = children.listIterator();
+        List<Child> newChildren = new ArrayList<Child>(children);
+        ListIterator<Child> itr = newChildren.listIterator();
         while(itr.hasNext()) {
             Child child = itr.next();   
             if (child instanceof NodeChild) {
@@ -619,6 +681,8 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
                     newNode.domDescriptor = addWithAlias(getHabitat(), newNode,newNode.getProxyType(), newNode.getKey());
                     
                     itr.set(new NodeChild(name,newNode));
+                    children = newChildren;
+                    document.invalidateTranslations();
                     return;
                 }
             }
@@ -631,13 +695,16 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      *
      */
     public synchronized void removeChild(final Dom reference) {
-        ListIterator<Child> itr = children.listIterator();
+        List<Child> newChildren = new ArrayList<Child>(children);
+        ListIterator<Child> itr = newChildren.listIterator();
         while(itr.hasNext()) {
             Child child = itr.next();
             if (child instanceof NodeChild) {
                 NodeChild nc = (NodeChild) child;
                 if(nc.dom==reference) {
                     itr.remove();
+                    children = newChildren;
+                    document.invalidateTranslations();
                     reference.release();
                     return;
                 }
@@ -648,19 +715,26 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
     }
 
     public synchronized boolean addLeafElement(String xmlName, String value) {
-        if (children.size()==0) {
-            children = new ArrayList<Child>();
-        }
-        return children.add(new LeafChild(xmlName, value));
+        List<Child> newChildren = new ArrayList<Child>(children);
+        newChildren.add(new LeafChild(xmlName, value));
+        children = newChildren;
+        valueChanged(xmlName, true);
+        return true;
         
     }
 
     public synchronized boolean removeLeafElement(String xmlName, String element) {
         List<Child> children = this.children; // fix the snapshot that we'll work with
 
-        for (Child child : children) {
+        int len = children.size();
+        for( int i=0; i<len; i++ ) {
+            Child child = children.get(i);
             if(child.name.equals(xmlName) && ((LeafChild) child).value.equals(element)) {
-                return children.remove(child);
+                List<Child> newChildren = new ArrayList<Child>(children);
+                newChildren.remove(i);
+                this.children = newChildren;
+                valueChanged(xmlName, true);
+                return true;
             }
         }
         return false;
@@ -674,7 +748,11 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
         for( int i=0; i<len; i++ ) {
             Child child = children.get(i);
             if(child.name.equals(xmlName) && ((LeafChild) child).value.equals(oldValue)) {
-                return (children.set(i, new LeafChild(xmlName, newValue))!=null);
+                List<Child> newChildren = new ArrayList<Child>(children);
+                newChildren.set(i, new LeafChild(xmlName, newValue));
+                this.children = newChildren;
+                valueChanged(xmlName, true);
+                return true;
             }
         }
         return false;
@@ -684,17 +762,11 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      * Picks up one leaf-element value without variable expansion.
      */
     public String rawLeafElement(String name) {
-        List<Child> children = this.children; // fix the snapshot that we'll work with
+        List<Child> children = getChildIndex().get(name);
+        if (children.isEmpty()) return null;
 
-        int len = children.size();
-        for( int i=0; i<len; i++ ) {
-            Child child = children.get(i);
-            if(child.name.equals(name)) {
-                // error check on model guarantees that this works.
-                return ((LeafChild)child).value;
-            }
-        }
-        return null;
+        // error check on model guarantees that this works.
+        return ((LeafChild) children.get(0)).value;
     }
 
     /**
@@ -762,6 +834,7 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
 
         stitchList(newChildren,name,Arrays.asList(leaves));
         children = newChildren;
+        valueChanged(name, true);
 
         // see attribute(String,String) for the issue with this
         getInjector().injectElement(this,name,get());
@@ -773,14 +846,12 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      *      Can be empty but never null.
      */
     public List<String> leafElements(String name) {
-        List<Child> children = this.children; // fix the snapshot that we'll work with
+        List<Child> children = getChildIndex().get(name);
 
-        final List<String> r = new ArrayList<String>();
+        final List<String> r = new ArrayList<String>(children.size());
         for (Child child : children) {
-            if (child.name.equals(name)) {
-                // error check on model guarantees that this cast works.
-                r.add(t(((LeafChild) child).value));
-            }
+            // error check on model guarantees that this cast works.
+            r.add(t(((LeafChild) child).value));
         }
         return r;
     }
@@ -793,14 +864,12 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      *      can be empty, but never null (even if such element name is not defined in the model.)
      */
     public List<String> rawLeafElements(String name) {
-        List<Child> children = this.children; // fix the snapshot that we'll work with
+        List<Child> children = getChildIndex().get(name);
 
-        final List<String> r = new ArrayList<String>();
+        final List<String> r = new ArrayList<String>(children.size());
         for (Child child : children) {
-            if (child.name.equals(name)) {
-                // error check on model guarantees that this cast works.
-                r.add(((LeafChild) child).value);
-            }
+            // error check on model guarantees that this cast works.
+            r.add(((LeafChild) child).value);
         }
         return r;
     }
@@ -809,15 +878,32 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      * Picks up one node-element value.
      */
     public Dom nodeElement(String name) {
-        List<Child> children = this.children; // fix the snapshot that we'll work with
+        List<Child> children = getChildIndex().get(name);
+        if (children.isEmpty()) return null;
 
-        int len = children.size();
-        for( int i=0; i<len; i++ ) {
-            Child child = children.get(i);
-            if(child.name.equals(name)) {
-                // error check on model guarantees that this works.
-                return ((NodeChild)child).dom;
-            }
+        // error check on model guarantees that this works.
+        return ((NodeChild) children.get(0)).dom;
+    }
+
+    /**
+     * Picks up the node-element with the given element name whose
+     * key (see {@link #getKey()}) is equal to the given key.
+     *
+     * @param name the element name of the child
+     * @param key the key of the child to find
+     * @return the first such child, or null if there is none
+     */
+    public Dom nodeElement(String name, String key) {
+        if (key == null) return null;
+
+        Dom retVal = getChildIndex().getKeyed(name).get(key);
+        if (retVal != null && key.equals(retVal.getKey())) return retVal;
+
+        // keys that go through variable expansion can change without any
+        // modification of this tree, so neither a hit that no longer has
+        // the key nor a miss can be trusted, in which case fall back to a scan
+        for (Dom candidate : nodeElements(name)) {
+            if (key.equals(candidate.getKey())) return candidate;
         }
         return null;
     }
@@ -836,6 +922,7 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
 
         List<Child> removed = stitchList(newChildren,name,Arrays.asList(leaves));
         children = newChildren;
+        document.invalidateTranslations();
 
         for (Child c : removed) {
             ((NodeChild) c).dom.release();
@@ -849,20 +936,53 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      * Picks up all node-elements that have the given element name.
      */
     public List<Dom> nodeElements(String elementName) {
-        List<Child> children = this.children; // fix the snapshot that we'll work with
+        List<Child> children = getChildIndex().get(elementName);
 
-        final List<Dom> r = new ArrayList<Dom>();
+        final List<Dom> r = new ArrayList<Dom>(children.size());
         int len = children.size();
         for( int i=0; i<len; i++ ) {
-            Child child = children.get(i);
-            if(child.name.equals(elementName)) {
-                // error check on model guarantees that this works.
-                r.add(((NodeChild)child).dom);
-            }
+            // error check on model guarantees that this works.
+            r.add(((NodeChild) children.get(i)).dom);
         }
         return r;
     }
 
+    /**
+     * Returns the index over the current children, building it if the
+     * children have changed since it was last built
+     */
+    private ChildIndex getChildIndex() {
+        int keyVersion = childKeyVersion.get();
+        List<Child> children = this.children; // fix the snapshot that we'll work with
+
+        ChildIndex index = childIndex;
+        if (index != null && index.children == children && index.keyVersion == keyVersion) return index;
+
+        index = new ChildIndex(children, keyVersion);
+        childIndex = index;
+        return index;
+    }
+
+    /**
+     * Called when the value of the given leaf or attribute of this
+     * node changes, so that cached translations are dropped and the
+     * keyed index of the parent is dropped if the key of this node changed
+     */
+    private void valueChanged(String name, boolean leaf) {
+        document.invalidateTranslations();
+
+        Dom parent = this.parent;
+        if (parent == null) return;
+
+        String k = model.key;
+        if (k == null) return;
+
+        if (leaf ? k.equals("<" + name + ">") : k.equals("@" + name)) {
+            parent.childKeyVersion.incrementAndGet();
+        }
+    }
+
+
     /**
      * Picks up all node elements that are assignable to the given type,
      * except those who are matched by other named elements in the model.
@@ -1060,34 +1180,31 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      * code that does this during the development time by looking at the interface.
      */
     public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-        // serve java.lang.Object methods by ourselves
-        Class<?> clazz = method.getDeclaringClass();
-        if(clazz ==Object.class) {
+        ConfigModel.MethodDispatch dispatch = model.getDispatch(method);
+        switch (dispatch.type) {
+        case OBJECT:
+            // serve java.lang.Object methods by ourselves
             try {
                 return method.invoke(this,args);
             } catch (InvocationTargetException e) {
                 throw e.getTargetException();
             }
-        }
-        
-        if(method.getAnnotation(DuckTyped.class)!=null) {
+        case DUCK:
             return invokeDuckMethod(method,proxy,args);
-        }
-        if(method.getAnnotation(ConfigExtensionMethod.class) != null) {
-            ConfigExtensionMethod cem = method.getAnnotation(ConfigExtensionMethod.class);
-            ConfigExtensionHandler handler = (ConfigExtensionHandler) ((cem.value() != null)
-                ? getServiceLocator().getService(ConfigExtensionHandler.class, cem.value())
+        case EXTENSION:
+            ConfigExtensionHandler handler = (ConfigExtensionHandler) ((dispatch.extensionName != null)
+                ? getServiceLocator().getService(ConfigExtensionHandler.class, dispatch.extensionName)
                 : getServiceLocator().getService(ConfigExtensionHandler.class));
             return invokeConfigExtensionMethod(handler, this, model.getProxyType(), args);
-        }
-
-        ConfigModel.Property p = model.toProperty(method);
-        if(p==null)
+        case UNKNOWN:
             throw new IllegalArgumentException("No corresponding property found for method: "+method);
+        default:
+            break;
+        }
 
         if(args==null || args.length==0) {
             // getter
-            return getter(p, method.getGenericReturnType());
+            return getter(dispatch.property, dispatch.genericReturnType);
         } else {
             throw new PropertyVetoException("Instance of " + getImplementation() + " named '" + getKey() +
                     "' is not locked for writing when invoking method " + method.getName()
@@ -1237,6 +1354,7 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
      */
     /*package*/ void setChildren(List<Child> children) {
        this.children = children;
+       this.childIndex = null;
     }
 
     /**
@@ -1322,6 +1440,16 @@ public class Dom extends AbstractActiveDescriptor implements InvocationHandler,
         listeners.clear();
     }
 
+    /**
+     * Releases this element and all of the elements below it
+     */
+    /* package */ void releaseTree() {
+        for (Child child : children) {
+            if (child instanceof NodeChild) ((NodeChild) child).dom.releaseTree();
+        }
+        release();
+    }
+
     Set<ConfigListener> listeners = new HashSet<ConfigListener>();
 
     public void addListener(ConfigListener listener) {
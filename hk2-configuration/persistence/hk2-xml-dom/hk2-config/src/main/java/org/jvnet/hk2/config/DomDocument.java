@@ -52,6 +52,7 @@ import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
 import javax.xml.stream.XMLStreamException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a whole DOM tree.
@@ -68,6 +69,13 @@ public class DomDocument<T extends Dom> {
      */
     private volatile Translator translator = Translator.NOOP;
 
+    /**
+     * Raw values that contain variable references mapped to their translated
+     * value, only used with a {@link CacheableTranslator}.  Replaced with an
+     * empty map whenever the translations might change
+     */
+    private volatile ConcurrentHashMap<String, String> translations = new ConcurrentHashMap<String, String>();
+
     protected final Map<ActiveDescriptor<? extends ConfigInjector>,ConfigModel> models = new HashMap<ActiveDescriptor<? extends ConfigInjector>, ConfigModel>();
     private final MultiMap<Class, List<ConfigModel>> implementorsOf = new MultiMap<Class, List<ConfigModel>>();
 
@@ -103,16 +111,62 @@ public class DomDocument<T extends Dom> {
 
     public void setTranslator(Translator translator) {
         this.translator = translator;
+        invalidateTranslations();
+    }
+
+    /**
+     * Translates the given raw value with the {@link Translator} of this
+     * document.  If the translator is a {@link CacheableTranslator} values
+     * that contain variable references are only translated once, after which
+     * the result is served from a cache until {@link #invalidateTranslations()}
+     * is called.  Other translators are called every time
+     *
+     * @param raw the raw value to translate, may not be null
+     * @return the translated value
+     * @throws TranslationException if the translator could not translate the value
+     */
+    public String translate(String raw) throws TranslationException {
+        // The cache is read before the translator so a translator that is
+        // being replaced can only ever store into a discarded cache
+        ConcurrentHashMap<String, String> cache = translations;
+        Translator t = translator;
+        if (t == Translator.NOOP) return raw;
+        if (!(t instanceof CacheableTranslator) || raw.indexOf('$') < 0) {
+            return t.translate(raw);
+        }
+
+        String retVal = cache.get(raw);
+        if (retVal != null) return retVal;
+
+        retVal = t.translate(raw);
+        if (retVal != null) cache.put(raw, retVal);
+
+        return retVal;
+    }
+
+    /**
+     * Drops all cached translations of a {@link CacheableTranslator}.  This
+     * is done automatically when the translator is changed and whenever any
+     * node of this document is modified, since variables may be defined in
+     * the configuration itself
+     */
+    public void invalidateTranslations() {
+        // Always swapped, even when empty, since a translation computed before
+        // this call may not have been put into the current map yet
+        translations = new ConcurrentHashMap<String, String>();
     }
 
     /**
      * Creates {@link ConfigModel} for the given {@link ConfigInjector} if we haven't done so.
      */
     /*package*/ ConfigModel buildModel(ActiveDescriptor<? extends ConfigInjector> i) {
-        ConfigModel m = models.get(i);
-        if(m==null)
-            m = new ConfigModel(this, i, i.getMetadata(), habitat);
-        return m;
+        // models may be built by several threads when parsing in parallel
+        synchronized (models) {
+            ConfigModel m = models.get(i);
+            if(m==null)
+                m = new ConfigModel(this, i, i.getMetadata(), habitat);
+            return m;
+        }
     }
 
     /**
@@ -228,7 +282,11 @@ public class DomDocument<T extends Dom> {
         for (ServiceHandle<?> i : habitat.getAllServiceHandles(ConfigInjector.class)) {
             buildModel((ActiveDescriptor<? extends ConfigInjector>) i.getActiveDescriptor());
         }
-        for (ConfigModel cm : models.values()) {
+        List<ConfigModel> allModels;
+        synchronized (models) {
+            allModels = new ArrayList<ConfigModel>(models.values());
+        }
+        for (ConfigModel cm : allModels) {
             Class targetType = cm.classLoaderHolder.loadClass(cm.targetTypeName);
             do {
                 Class[] intfs = targetType.getInterfaces();
@@ -47,12 +47,13 @@ import java.util.logging.Level;
 import java.beans.PropertyChangeEvent;
 import java.lang.reflect.Proxy;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.jvnet.hk2.annotations.Optional;
 import org.jvnet.hk2.annotations.Service;
 import javax.inject.Inject;
 import javax.inject.Named;
-import javax.inject.Provider;
 
 import org.glassfish.hk2.api.PostConstruct;
 import org.glassfish.hk2.api.PreDestroy;
@@ -61,347 +62,560 @@ import org.glassfish.hk2.api.PreDestroy;
  * Transactions is a singleton service that receives transaction notifications and dispatch these
  * notifications asynchronously to listeners.
  *
+ * <p>
+ * Every listener has its own queue of pending notifications which are delivered in
+ * the order they were received, by at most one thread at a time.  Adding to a queue
+ * never blocks the committing thread, and an empty queue does not hold on to a thread.
+ * Unless an {@link ExecutorService} named "transactions-executor" is available the
+ * notifications are delivered by a pool whose size is given by the
+ * {@value #MAX_THREADS_PROPERTY} system property (by default twice the number of
+ * processors, and at least four).
+ *
+ * <p>
+ * If the {@value #COALESCE_PROPERTY} system property is true then notifications that
+ * are still pending for a listener are merged, and several changes of the same
+ * attribute of the same bean are reported as one change from the oldest old value
+ * to the newest new value
+ *
  * @author Jerome Dochez
  */
 
 @Service
 public final class Transactions implements PostConstruct, PreDestroy {
 
-    // each transaction listener has a notification pump.
-    private final List<Provider<ListenerNotifier<TransactionListener, ?, Void>>> listeners =
-            new ArrayList<Provider<ListenerNotifier<TransactionListener, ?, Void>>>();
+    /**
+     * System property with the maximum number of threads used to notify listeners
+     */
+    public static final String MAX_THREADS_PROPERTY = "org.glassfish.hk2.config.transactions.maxthreads";
+
+    /**
+     * System property which, if true, turns on coalescing of pending notifications
+     */
+    public static final String COALESCE_PROPERTY = "org.glassfish.hk2.config.transactions.coalesce";
+
+    private static final int MAX_THREADS = Integer.getInteger(MAX_THREADS_PROPERTY,
+            Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+
+    // listeners taking longer than this to process a notification are reported
+    private static final long SLOW_LISTENER_NANOS = TimeUnit.SECONDS.toNanos(200);
+
+    // number of notifications a queue delivers before giving its thread to other queues
+    private static final int DRAIN_BATCH = 32;
+
+    // set on the threads that are delivering notifications
+    private static final ThreadLocal<Boolean> DELIVERING = new ThreadLocal<Boolean>();
+
+    // each transaction listener has a notification queue.
+    private final List<ListenerNotifier> listeners = new ArrayList<ListenerNotifier>();
+
+    // each configuration listener has a notification queue while it has pending notifications
+    private final ConcurrentHashMap<ConfigListener, ConfigListenerNotifier> configNotifiers =
+            new ConcurrentHashMap<ConfigListener, ConfigListenerNotifier>();
 
     private final Map<Class, Set<ConfigListener>> typeListeners = new HashMap<Class, Set<ConfigListener>>();
 
     @Inject @Named("transactions-executor") @Optional
     private ExecutorService executor;
 
-    // all configuration listeners are notified though one notifier.
-    private final Provider<ConfigListenerNotifier> configListenerNotifier = new Provider<ConfigListenerNotifier>() {
-
-            private final ConfigListenerNotifier configListenerNotifier = new ConfigListenerNotifier();
-            private final CountDownLatch initialized = new CountDownLatch(1);
+    private final boolean coalescing = Boolean.getBoolean(COALESCE_PROPERTY);
 
-            public ConfigListenerNotifier get() {
-                synchronized(initialized) {
-                    if (initialized.getCount()>0) {
-                        configListenerNotifier.start();
-                        initialized.countDown();
-                    }
-
-                return configListenerNotifier;
-            }
-        }
-    };
+    // statistics
+    private final AtomicLong pendingNotifications = new AtomicLong();
+    private final AtomicLong maxPendingNotifications = new AtomicLong();
+    private final AtomicLong deliveredNotifications = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
 
     public void postConstruct() {
         if (executor==null) {
-            executor = Executors.newCachedThreadPool();
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS,
+                    60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
         }
     }
 
     public void preDestroy() {
-       for (Provider<ListenerNotifier<TransactionListener,  ?, Void>> listener : listeners) {
-           listener.get().stop();
+       synchronized(listeners) {
+           for (ListenerNotifier listener : listeners) {
+               listener.stop();
+           }
        }
-       configListenerNotifier.get().stop();
        executor.shutdown();
     }
 
     /**
-     * Abstract notification pump, it adds jobs to the queue and process them in the order
-     * jobs were added.
-     *
-     * Jobs are just a wrapper for events of type <U> and a notification mechanism for
-     * completion notification
+     * Notification queue of one listener.  Deliveries are processed in the order
+     * they were added, at most one at a time.  The queue only occupies a thread
+     * of the executor while it has pending deliveries.
      *
      * @param <T> type of listener interface
-     * @param <U> type of events the listener methods are expecting
-     * @param <V> return type of the listener interface methods.
      */
-    private abstract class Notifier<T, U, V> {
-        
-        private final BlockingQueue<FutureTask> pendingJobs = new ArrayBlockingQueue<FutureTask>(50);
-        private CountDownLatch latch = new CountDownLatch(1);
+    private abstract class Notifier<T> {
 
-        /**
-         * Creates the task that will notify the listeners of a particular job.
-         * @param job contains the specifics of the notification like the events that need to be notified.
-         * @return a task that can be run and return an optional value.
-         */
-        protected abstract FutureTask<V> prepare(final Job<T, U, V> job);
+        final T listener;
+        private final LinkedList<Delivery<T>> pendingJobs = new LinkedList<Delivery<T>>();
+        private boolean scheduled;
+        private boolean stopped;
+
+        private final Runnable drainer = new Runnable() {
+            public void run() {
+                if (drain(DRAIN_BATCH)) return;
+
+                // more pending, but let the other queues have the thread
+                schedule();
+            }
+        };
+
+        Notifier(T listener) {
+            this.listener = listener;
+        }
 
         /**
-         * Adds a job to the notification pump. This job will be processed as soon as all other pending
-         * jobs have completed.
+         * Adds a delivery to this queue.  It will be processed as soon as all other pending
+         * deliveries have completed.  This method never blocks.
          *
-         * @param job new notification job.
-         * @return a future on the return value.
+         * @param delivery the new delivery
+         * @return false if this queue has been stopped, in which case the delivery was not added
          */
-        public Future<V> add(final Job<T, U, V> job) {
-                
-            // NOTE that this is put() which blocks, *not* add() which will not block and will
-            // throw an IllegalStateException if the queue is full.
-            if (latch.getCount()==0) {
-                throw new RuntimeException("TransactionListener is inactive, yet jobs are published to it");
+        boolean add(Delivery<T> delivery) {
+            synchronized (this) {
+                if (stopped) return false;
+
+                if (coalescing && !pendingJobs.isEmpty() && pendingJobs.getLast().merge(delivery)) {
+                    return true;
+                }
+
+                pendingJobs.add(delivery);
+                queued();
+
+                if (scheduled) return true;
+                scheduled = true;
             }
+
+            schedule();
+            return true;
+        }
+
+        /**
+         * Hands the queue to a thread of the executor.  Must only be called by
+         * the owner of the queue, which is whoever set scheduled to true
+         */
+        private void schedule() {
             try {
-                pendingJobs.put(prepare(job));
-            } catch (InterruptedException e ) {
-                throw new RuntimeException(e);
+                executor.execute(drainer);
+            }
+            catch (RejectedExecutionException ree) {
+                // the executor is saturated or shut down, so this thread keeps the
+                // queue and delivers what is pending itself rather than failing
+                // the committer or leaving waiters blocked forever
+                Logger.getAnonymousLogger().log(Level.FINE, "Notifications of " + listener.getClass() +
+                        " are delivered by the calling thread", ree);
+
+                drain(Integer.MAX_VALUE);
             }
-            return null;
         }
-        
-        protected void start() {
-
-            executor.submit(new Runnable() {
-
-                public void run() {
-                    while (latch.getCount()>0) {
-                        try {
-                            final FutureTask job = pendingJobs.take();
-                            // when listeners start a transaction themselves, several jobs try to get published
-                            // simultaneously so we cannot block the pump while delivering the messages. 
-                            executor.submit(new Runnable() {
-                                public void run() {
-                                    job.run();
-                                }
-                            });
-                        }
 
-                        catch (InterruptedException e) {
-                            // do anything here?
+        /**
+         * Delivers up to the given number of pending deliveries.  Must only be called
+         * by the owner of the queue
+         *
+         * @param max the maximum number of deliveries to make
+         * @return true if the queue became empty, in which case it is no longer owned
+         */
+        private boolean drain(int max) {
+            boolean outermost = DELIVERING.get() == null;
+            DELIVERING.set(Boolean.TRUE);
+            try {
+                for (int lcv = 0; lcv < max; lcv++) {
+                    Delivery<T> delivery;
+                    synchronized (this) {
+                        delivery = pendingJobs.poll();
+                        if (delivery == null) {
+                            scheduled = false;
+                            drained();
+                            return true;
                         }
                     }
+                    pendingNotifications.decrementAndGet();
+
+                    deliver(delivery);
                 }
-                
-            });
+            }
+            finally {
+                if (outermost) DELIVERING.remove();
+            }
+
+            return false;
         }
 
-        void stop() {
-            latch.countDown();
-            // last event to force the close
-            pendingJobs.add(prepare(new Job<T, U, V>(null, null) {
-                public V process(T target) {
-                    return null;
-                }
-            }));
+        /**
+         * Called with the lock of this notifier held when the queue has become empty
+         */
+        protected void drained() {
+        }
+
+        /**
+         * Stops this queue, deliveries already added will still be processed
+         */
+        synchronized void stop() {
+            stopped = true;
+        }
+
+        private void deliver(Delivery<T> delivery) {
+            long start = System.nanoTime();
+            try {
+                delivery.deliver(listener);
+            }
+            catch (Throwable th) {
+                Logger.getAnonymousLogger().log(Level.SEVERE, "Notification of " + listener.getClass() + " failed", th);
+            }
+            finally {
+                delivered(listener, System.nanoTime() - start);
+            }
         }
     }
 
     /**
-     * Default listener notification pump. One thread per listener, jobs processed in
-     * the order it was received.
-     *
-     * @param <T> type of listener interface
-     * @param <U> type of events the listener methods are expecting
-     * @param <V> return type of the listener interface methods.
+     * Notification queue of a {@link TransactionListener}
      */
-    private class ListenerNotifier<T,U,V> extends Notifier<T,U,V> {
-        
-        final T listener;
+    private class ListenerNotifier extends Notifier<TransactionListener> {
+        ListenerNotifier(TransactionListener listener) {
+            super(listener);
+        }
+    }
 
-        public ListenerNotifier(T listener) {
-            this.listener = listener;
+    /**
+     * Notification queue of a {@link ConfigListener}.  The queue retires itself when it
+     * becomes empty so that listeners which are no longer notified are not retained
+     */
+    private class ConfigListenerNotifier extends Notifier<ConfigListener> {
+        ConfigListenerNotifier(ConfigListener listener) {
+            super(listener);
         }
 
-        protected FutureTask<V> prepare(final Job<T, U, V> job) {
-            return new FutureTask<V>(new Callable<V>() {
-                    public V call() throws Exception {
-                        try {
-                            if ( job.mEvents.size() != 0 ) {
-                                return job.process(listener);
-                           }
-                        } finally {
-                            job.releaseLatch();
-                        }
-                        return null;
-                    }
-                });
-        }   
-        
+        @Override
+        protected void drained() {
+            stop();
+            configNotifiers.remove(listener, this);
+        }
     }
 
     /**
-     * Configuration listener notification pump. All Listeners are notified within their own thread, only on thread
-     * takes care of the job pump.
-     * 
+     * One notification to be given to one listener.
+     *
+     * @param <T> type of listener interface
      */
-    private class ConfigListenerNotifier extends Notifier<ConfigListener,PropertyChangeEvent,UnprocessedChangeEvents> {
+    private abstract static class Delivery<T> {
+        /**
+         * Notifies the listener and signals completion of this delivery
+         */
+        abstract void deliver(T listener);
 
-        protected FutureTask<UnprocessedChangeEvents>
-            prepare(final Job<ConfigListener, PropertyChangeEvent, UnprocessedChangeEvents> job) {
+        /**
+         * Merges a delivery added later into this one
+         *
+         * @return true if the later delivery was merged and needs no delivery of its own
+         */
+        boolean merge(Delivery<T> later) {
+            return false;
+        }
+    }
 
-        // first, calculate the recipients.
-        final Set<ConfigListener> configListeners = new HashSet<ConfigListener>();
-            if (job.mEvents != null) {
-                for (PropertyChangeEvent event : job.mEvents) {
-                    final Dom dom = (Dom) ((ConfigView) Proxy.getInvocationHandler(event.getSource())).getMasterView();
-                    configListeners.addAll(dom.getListeners());
-
-                    // we also notify the parent.
-                    if (dom.parent()!=null) {
-                        configListeners.addAll(dom.parent().getListeners());
-                    }
+    /**
+     * Delivery of committed changes to a {@link TransactionListener}.  Waiters are
+     * released once the listener has been notified
+     */
+    private static class TransactionDelivery extends Delivery<TransactionListener> {
+        private List<PropertyChangeEvent> events;
+        private final List<CountDownLatch> latches = new LinkedList<CountDownLatch>();
 
-                    // and now, notify all listeners for the changed types.
-                    Set<ConfigListener> listeners = typeListeners.get(dom.getProxyType());
-                    if (listeners!=null) {
-                        configListeners.addAll(listeners);
-                    }
+        TransactionDelivery(List<PropertyChangeEvent> events, CountDownLatch latch) {
+            this.events = events;
+            if (latch != null) latches.add(latch);
+        }
 
-                    // we need to check if elements are removed to ensure
-                    // the typed listeners are notified.
-                    if (event.getNewValue()==null) {
-                        Object oldValue = event.getOldValue();
-                        if (oldValue instanceof ConfigBeanProxy) {
-                            Dom domOldValue = Dom.unwrap((ConfigBeanProxy) oldValue);
-                            Set<ConfigListener> typedListeners = typeListeners.get(domOldValue.<ConfigBeanProxy>getProxyType());
-                            if (typedListeners!=null) {
-                                configListeners.addAll(typedListeners);
-                            }
-                        }
-                    }
+        @Override
+        void deliver(TransactionListener listener) {
+            try {
+                if (!events.isEmpty()) {
+                    listener.transactionCommited(events);
+                }
+            } catch(Exception e) {
+                e.printStackTrace();
+            } finally {
+                for (CountDownLatch latch : latches) {
+                    latch.countDown();
                 }
             }
+        }
 
-            return new FutureTask<UnprocessedChangeEvents>(new Callable<UnprocessedChangeEvents>() {
-            public UnprocessedChangeEvents call() throws Exception {
-
-                try {
-                    // temporary structure to store our future notifications with pointer to the
-                    // originator config listener
-                    Map<Future<UnprocessedChangeEvents>, ConfigListener> futures = new HashMap<Future<UnprocessedChangeEvents>, ConfigListener>();
+        @Override
+        boolean merge(Delivery<TransactionListener> later) {
+            if (!(later instanceof TransactionDelivery)) return false;
+            TransactionDelivery other = (TransactionDelivery) later;
 
-                    for (final ConfigListener listener : configListeners) {
-                        // each listener is notified in it's own thread.
-                        futures.put(executor.submit(new Callable<UnprocessedChangeEvents>() {
-                            public UnprocessedChangeEvents call() throws Exception {
-                                UnprocessedChangeEvents e = job.process(listener);
-                                return e;
+            events = coalesce(events, other.events);
+            latches.addAll(other.latches);
+            return true;
+        }
+    }
 
-                            }
-                        }), listener);
-                    }
-                    List<UnprocessedChangeEvents> unprocessed = new ArrayList<UnprocessedChangeEvents>(futures.size());
-                    for (Future<UnprocessedChangeEvents> future : futures.keySet()) {
-                        try {
-                            UnprocessedChangeEvents result = future.get(200, TimeUnit.SECONDS);
-                            if (result!=null && result.getUnprocessed()!=null && result.getUnprocessed().size()>0) {
-                                for (UnprocessedChangeEvent event : result.getUnprocessed()) {
-                                    Logger.getAnonymousLogger().log(Level.WARNING, "Unprocessed event : " + event);
-                                }
-                                unprocessed.add(result);
-                            }
-                        } catch (InterruptedException e) {
-                            Logger.getAnonymousLogger().log(Level.SEVERE, "Config Listener notification got interrupted", e);
-                        } catch (ExecutionException e) {
-                            Logger.getAnonymousLogger().log(Level.SEVERE, "Config Listener notification got interrupted", e);
-                        } catch (TimeoutException e) {
-                            ConfigListener cl = futures.get(future);
-                            Logger.getAnonymousLogger().log(Level.SEVERE, "Config Listener " + cl.getClass() + " notification took too long", e);
-                        }
-                    }
+    /**
+     * Delivery of events that configuration listeners could not process to a
+     * {@link TransactionListener}
+     */
+    private static class UnprocessedEventsDelivery extends Delivery<TransactionListener> {
+        private final List<UnprocessedChangeEvents> events;
 
-                    // all notification have been successful, I just need to notify the unprocessed events.
-                    // note these events are always synchronous so far.
-                    if (!unprocessed.isEmpty()) {
-                        Job unprocessedJob = new UnprocessedEventsJob(unprocessed, null);
-                        for (Provider<ListenerNotifier<TransactionListener, ?, Void>> listener : Transactions.this.listeners) {
-                            listener.get().add(unprocessedJob);
-                        }
-                    }
-                } finally {
-                    job.releaseLatch();
-                }
+        UnprocessedEventsDelivery(List<UnprocessedChangeEvents> events) {
+            this.events = events;
+        }
 
-                // in theory I should aggregate my unprocessed events but nobody cares.
-                return null;
+        @Override
+        void deliver(TransactionListener listener) {
+            try {
+                listener.unprocessedTransactedEvents(events);
+            } catch(Exception e) {
+                e.printStackTrace();
             }
-        });
+        }
     }
 
-    }
+    /**
+     * Delivery of committed changes to a {@link ConfigListener}.  The result of the
+     * listener is reported to the transaction the changes came from
+     */
+    private static class ConfigDelivery extends Delivery<ConfigListener> {
+        private List<PropertyChangeEvent> events;
+        private final List<ConfigTransaction> transactions = new LinkedList<ConfigTransaction>();
+
+        ConfigDelivery(List<PropertyChangeEvent> events, ConfigTransaction transaction) {
+            this.events = events;
+            transactions.add(transaction);
+        }
+
+        @Override
+        void deliver(ConfigListener listener) {
+            UnprocessedChangeEvents result = null;
+            try {
+                if (!events.isEmpty()) {
+                    result = listener.changed(events.toArray(new PropertyChangeEvent[events.size()]));
+                }
+            } finally {
+                // merged transactions all completed with this one notification, the
+                // unprocessed events are only reported once, with the last of them
+                Iterator<ConfigTransaction> iterator = transactions.iterator();
+                while (iterator.hasNext()) {
+                    ConfigTransaction transaction = iterator.next();
+                    transaction.completed(listener, iterator.hasNext() ? null : result);
+                }
+            }
+        }
 
+        @Override
+        boolean merge(Delivery<ConfigListener> later) {
+            ConfigDelivery other = (ConfigDelivery) later;
+
+            events = coalesce(events, other.events);
+            transactions.addAll(other.transactions);
+            return true;
+        }
+    }
 
     /**
-        A job contains an optional CountdownLatch so that a caller can learn when the
-        transaction has "cleared" by blocking until that time.
+     * Collects the results of all the {@link ConfigListener}s notified of one
+     * transaction.  Once the last of them is done the unprocessed events are
+     * given to the transaction listeners and waiters are released
      */
-    private abstract static class Job<T,U,V> {
-
-        private final CountDownLatch mLatch;
-        protected final List<U> mEvents;
-        
-        public Job(List<U> events, final CountDownLatch latch ) {
-            mLatch  = latch;
-            mEvents = events;
+    private class ConfigTransaction {
+        private final AtomicInteger remaining;
+        private final CountDownLatch latch;
+        private final List<UnprocessedChangeEvents> unprocessed = new ArrayList<UnprocessedChangeEvents>();
+
+        ConfigTransaction(int recipients, CountDownLatch latch) {
+            this.remaining = new AtomicInteger(recipients);
+            this.latch = latch;
         }
-        
-        public void waitForLatch() throws InterruptedException {
-            if ( mLatch != null ) {
-                mLatch.await();
+
+        void completed(ConfigListener listener, UnprocessedChangeEvents result) {
+            if (result!=null && result.getUnprocessed()!=null && result.getUnprocessed().size()>0) {
+                for (UnprocessedChangeEvent event : result.getUnprocessed()) {
+                    Logger.getAnonymousLogger().log(Level.WARNING, "Unprocessed event : " + event);
+                }
+                synchronized (unprocessed) {
+                    unprocessed.add(result);
+                }
             }
+
+            if (remaining.decrementAndGet() > 0) return;
+            allCompleted();
         }
-        
-        public void releaseLatch() {
-            if ( mLatch != null ) {
-                mLatch.countDown();
+
+        void allCompleted() {
+            try {
+                // all notification have been done, I just need to notify the unprocessed events.
+                List<UnprocessedChangeEvents> copy;
+                synchronized (unprocessed) {
+                    copy = new ArrayList<UnprocessedChangeEvents>(unprocessed);
+                }
+                if (!copy.isEmpty()) {
+                    for (ListenerNotifier listener : getListenerNotifiers()) {
+                        listener.add(new UnprocessedEventsDelivery(copy));
+                    }
+                }
+            } finally {
+                if (latch != null) latch.countDown();
             }
         }
-        
-        public abstract V process(T target);
     }
-    
-    private static class TransactionListenerJob extends Job<TransactionListener, PropertyChangeEvent, Void> {
 
-        public TransactionListenerJob(List<PropertyChangeEvent> events, CountDownLatch latch) {
-            super(events,  latch);
+    /**
+     * Merges two lists of change events.  An attribute change in the later list
+     * that changes the same property of the same bean as an attribute change in
+     * the earlier list replaces it with a single change from the earlier old value
+     * to the later new value.  Changes that add or remove beans are never merged
+     */
+    private static List<PropertyChangeEvent> coalesce(List<PropertyChangeEvent> earlier,
+            List<PropertyChangeEvent> later) {
+        List<PropertyChangeEvent> retVal = new ArrayList<PropertyChangeEvent>(earlier.size() + later.size());
+        Map<EventKey, Integer> positions = new HashMap<EventKey, Integer>();
+
+        for (PropertyChangeEvent event : earlier) {
+            if (isMergeable(event)) {
+                positions.put(new EventKey(event), retVal.size());
+            }
+            retVal.add(event);
         }
-        
-        @Override
-        public Void process(TransactionListener listener) {
-            try {
-                listener.transactionCommited(mEvents);
-            } catch(Exception e) {
-                e.printStackTrace();
+
+        for (PropertyChangeEvent event : later) {
+            Integer position = (isMergeable(event)) ? positions.get(new EventKey(event)) : null;
+            if (position == null) {
+                retVal.add(event);
+                continue;
             }
-            return null;
+
+            PropertyChangeEvent first = retVal.get(position);
+            retVal.set(position, new PropertyChangeEvent(event.getSource(), event.getPropertyName(),
+                    first.getOldValue(), event.getNewValue()));
         }
+
+        return retVal;
+    }
+
+    private static boolean isMergeable(PropertyChangeEvent event) {
+        return event.getPropertyName() != null &&
+                !(event.getOldValue() instanceof ConfigBeanProxy) &&
+                !(event.getNewValue() instanceof ConfigBeanProxy);
     }
 
-    private static class UnprocessedEventsJob extends Job<TransactionListener, UnprocessedChangeEvents, Void> {
+    /**
+     * Identifies the bean and property changed by an event.  Events of different
+     * transactions have different proxies as source, so the underlying {@link Dom}
+     * is used when there is one
+     */
+    private static final class EventKey {
+        private final Object bean;
+        private final String propertyName;
+
+        private EventKey(PropertyChangeEvent event) {
+            Object source = event.getSource();
+            Dom dom = (source instanceof ConfigBeanProxy) ? Dom.unwrap((ConfigBeanProxy) source) : null;
 
-        public UnprocessedEventsJob(List<UnprocessedChangeEvents> events, CountDownLatch latch) {
-            super(events, latch);
+            bean = (dom != null) ? dom : source;
+            propertyName = event.getPropertyName();
         }
 
         @Override
-        public Void process(TransactionListener listener) {
-            try {
-                listener.unprocessedTransactedEvents(mEvents);
-            } catch(Exception e) {
-                e.printStackTrace();
-            }
-            return null;
+        public int hashCode() {
+            return System.identityHashCode(bean) ^ propertyName.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof EventKey)) return false;
+            EventKey other = (EventKey) o;
+
+            return bean == other.bean && propertyName.equals(other.propertyName);
         }
     }
 
-    private class ConfigListenerJob extends Job<ConfigListener, PropertyChangeEvent, UnprocessedChangeEvents> {
+    private void queued() {
+        long pending = pendingNotifications.incrementAndGet();
+        updateMaximum(maxPendingNotifications, pending);
+    }
 
-        final PropertyChangeEvent[] eventsArray;
+    private void delivered(Object listener, long nanos) {
+        deliveredNotifications.incrementAndGet();
+        totalLatency.addAndGet(nanos);
+        updateMaximum(maxLatency, nanos);
 
-        public ConfigListenerJob(List<PropertyChangeEvent> events, CountDownLatch latch) {
-            super(events, latch);
-            eventsArray = mEvents.toArray(new PropertyChangeEvent[mEvents.size()]);            
+        if (nanos > SLOW_LISTENER_NANOS) {
+            Logger.getAnonymousLogger().log(Level.SEVERE, "Listener " + listener.getClass() +
+                    " notification took too long (" + TimeUnit.NANOSECONDS.toSeconds(nanos) + " seconds)");
         }
+    }
 
-        public UnprocessedChangeEvents process(ConfigListener target) {
-            return target.changed(eventsArray);
+    private static void updateMaximum(AtomicLong maximum, long value) {
+        long current;
+        while (value > (current = maximum.get())) {
+            if (maximum.compareAndSet(current, value)) return;
         }
     }
 
+    /**
+     * Returns the number of notifications that are waiting to be delivered
+     * to a listener
+     *
+     * @return the number of pending notifications
+     */
+    public long getPendingNotifications() {
+        return pendingNotifications.get();
+    }
+
+    /**
+     * Returns the highest number of notifications that were waiting to be
+     * delivered at the same time
+     *
+     * @return the maximum number of pending notifications
+     */
+    public long getMaximumPendingNotifications() {
+        return maxPendingNotifications.get();
+    }
+
+    /**
+     * Returns the number of notifications that have been delivered to listeners.
+     * Merged notifications are counted once
+     *
+     * @return the number of delivered notifications
+     */
+    public long getDeliveredNotifications() {
+        return deliveredNotifications.get();
+    }
+
+    /**
+     * Returns the average time listeners took to process a notification
+     *
+     * @param unit the unit of the returned value
+     * @return the average listener latency, or zero if nothing was delivered
+     */
+    public long getAverageListenerLatency(TimeUnit unit) {
+        long delivered = deliveredNotifications.get();
+        if (delivered == 0) return 0;
+
+        return unit.convert(totalLatency.get() / delivered, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the longest time a listener took to process a notification
+     *
+     * @param unit the unit of the returned value
+     * @return the maximum listener latency
+     */
+    public long getMaximumListenerLatency(TimeUnit unit) {
+        return unit.convert(maxLatency.get(), TimeUnit.NANOSECONDS);
+    }
+
     /**
      * adds a listener for a particular config type
      * @param listenerType the config type
@@ -439,21 +653,7 @@ public final class Transactions implements PostConstruct, PreDestroy {
      */
     public void addTransactionsListener(final TransactionListener listener) {
         synchronized(listeners) {
-            listeners.add(new Provider<ListenerNotifier<TransactionListener, ?, Void>>() {
-
-                final ListenerNotifier<TransactionListener, PropertyChangeEvent, Void> tsListener = new ListenerNotifier<TransactionListener, PropertyChangeEvent, Void>(listener);
-                final CountDownLatch initialized = new CountDownLatch(1);
-
-                public ListenerNotifier<TransactionListener, PropertyChangeEvent, Void> get() {
-                    synchronized(initialized) {
-                        if (initialized.getCount()>0) {
-                            tsListener.start();
-                            initialized.countDown();
-                        }
-                    }
-                    return tsListener;
-                }
-            });
+            listeners.add(new ListenerNotifier(listener));
         }
     }
 
@@ -464,11 +664,10 @@ public final class Transactions implements PostConstruct, PreDestroy {
      */
     public boolean removeTransactionsListener(TransactionListener listener) {
         synchronized(listeners) {
-            for (Provider<ListenerNotifier<TransactionListener, ?, Void>> holder : listeners) {
-                ListenerNotifier info = holder.get();
+            for (ListenerNotifier info : listeners) {
                 if (info.listener==listener) {
                     info.stop();
-                    return listeners.remove(holder);
+                    return listeners.remove(info);
                 }
             }
         }
@@ -478,14 +677,70 @@ public final class Transactions implements PostConstruct, PreDestroy {
     public List<TransactionListener> currentListeners() {
         synchronized(listeners) {            
             List<TransactionListener> l = new ArrayList<TransactionListener>();
-            for (Provider<ListenerNotifier<TransactionListener, ?, Void>> holder : listeners) {
-                ListenerNotifier<TransactionListener, ?, Void> info = holder.get();
+            for (ListenerNotifier info : listeners) {
                 l.add(info.listener);
             }
             return l;
         }
     }
 
+    private List<ListenerNotifier> getListenerNotifiers() {
+        synchronized(listeners) {
+            return new ArrayList<ListenerNotifier>(listeners);
+        }
+    }
+
+    /**
+     * Calculates the configuration listeners to notify of the given events
+     */
+    private synchronized Set<ConfigListener> getConfigListeners(List<PropertyChangeEvent> events) {
+        final Set<ConfigListener> configListeners = new HashSet<ConfigListener>();
+        for (PropertyChangeEvent event : events) {
+            final Dom dom = (Dom) ((ConfigView) Proxy.getInvocationHandler(event.getSource())).getMasterView();
+            configListeners.addAll(dom.getListeners());
+
+            // we also notify the parent.
+            if (dom.parent()!=null) {
+                configListeners.addAll(dom.parent().getListeners());
+            }
+
+            // and now, notify all listeners for the changed types.
+            Set<ConfigListener> listeners = typeListeners.get(dom.getProxyType());
+            if (listeners!=null) {
+                configListeners.addAll(listeners);
+            }
+
+            // we need to check if elements are removed to ensure
+            // the typed listeners are notified.
+            if (event.getNewValue()==null) {
+                Object oldValue = event.getOldValue();
+                if (oldValue instanceof ConfigBeanProxy) {
+                    Dom domOldValue = Dom.unwrap((ConfigBeanProxy) oldValue);
+                    Set<ConfigListener> typedListeners = typeListeners.get(domOldValue.<ConfigBeanProxy>getProxyType());
+                    if (typedListeners!=null) {
+                        configListeners.addAll(typedListeners);
+                    }
+                }
+            }
+        }
+        return configListeners;
+    }
+
+    private void addConfigDelivery(ConfigListener listener, ConfigDelivery delivery) {
+        while (true) {
+            ConfigListenerNotifier notifier = configNotifiers.get(listener);
+            if (notifier == null) {
+                notifier = new ConfigListenerNotifier(listener);
+                ConfigListenerNotifier existing = configNotifiers.putIfAbsent(listener, notifier);
+                if (existing != null) notifier = existing;
+            }
+
+            if (notifier.add(delivery)) return;
+
+            // the queue retired itself in the meantime
+            configNotifiers.remove(listener, notifier);
+        }
+    }
 
     /**
      * Synchronous notification of a new transactional configuration change operation.
@@ -498,39 +753,47 @@ public final class Transactions implements PostConstruct, PreDestroy {
         
     /**
      * Notification of a new transaction completion
+     * <p>
+     * When called by a listener while it is being notified the call never waits,
+     * since the notifications of that listener can only continue once it returns
      *
      * @param events accumulated list of changes
      * @param waitTillCleared  synchronous semantics; wait until all change events are sent
      */
-    @SuppressWarnings("cast")
     void addTransaction(
         final List<PropertyChangeEvent> events,
         final boolean waitTillCleared ) {
+
+        final boolean wait = waitTillCleared && DELIVERING.get() == null;
         
-        final List<ListenerNotifier<TransactionListener, ?, Void>> listInfos = new ArrayList<ListenerNotifier<TransactionListener, ?, Void>>();
-        for (Provider<ListenerNotifier<TransactionListener, ?, Void>> holder : listeners) {
-            ListenerNotifier<TransactionListener, ?, Void> info = holder.get();
-            listInfos.add(info);
-        }
+        final List<ListenerNotifier> listInfos = getListenerNotifiers();
         
         // create a CountDownLatch to implement waiting for events to actually be sent
-        final Job<TransactionListener, ?, Void> job = new TransactionListenerJob( events,
-                                waitTillCleared ? new CountDownLatch(listInfos.size()) : null);
-        
-        final ConfigListenerJob configJob = new ConfigListenerJob(events,
-                waitTillCleared? new CountDownLatch(1):null);
-        
-        // NOTE that this is put() which blocks, *not* add() which will not block and will
-        // throw an IllegalStateException if the queue is full.
-        try {
-            for (ListenerNotifier listener : listInfos) {
-                listener.add(job);
+        final CountDownLatch latch = wait ? new CountDownLatch(listInfos.size()) : null;
+        for (ListenerNotifier listener : listInfos) {
+            if (!listener.add(new TransactionDelivery(events, latch)) && latch != null) {
+                // removed since we got the list of listeners
+                latch.countDown();
             }
+        }
+
+        // an empty list of events is used to drain the queues, so it must go to every queue
+        final Set<ConfigListener> recipients = events.isEmpty() ?
+                new HashSet<ConfigListener>(configNotifiers.keySet()) :
+                getConfigListeners(events);
 
-            configListenerNotifier.get().add(configJob);
+        final CountDownLatch configLatch = wait ? new CountDownLatch(1) : null;
+        final ConfigTransaction configTransaction = new ConfigTransaction(recipients.size(), configLatch);
+        if (recipients.isEmpty()) {
+            configTransaction.allCompleted();
+        }
+        for (ConfigListener listener : recipients) {
+            addConfigDelivery(listener, new ConfigDelivery(events, configTransaction));
+        }
 
-            job.waitForLatch();
-            configJob.waitForLatch();
+        try {
+            if (latch != null) latch.await();
+            if (configLatch != null) configLatch.await();
         } catch (InterruptedException e ) {
             throw new RuntimeException(e);
         }
@@ -543,9 +806,3 @@ public final class Transactions implements PostConstruct, PreDestroy {
         // at this point all prior transactions are guaranteed to have cleared
     }    
 }
-
-
-
-
-
-
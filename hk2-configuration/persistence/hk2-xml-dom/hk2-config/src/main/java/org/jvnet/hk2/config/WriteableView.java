@@ -133,11 +133,12 @@ public class WriteableView implements InvocationHandler, Transactor, ConfigView
         if (method.getName().equals("equals"))
             return super.equals(args[0]);
 
-        if(method.getAnnotation(DuckTyped.class)!=null) {
+        ConfigModel.MethodDispatch dispatch = bean.model.getDispatch(method);
+        if(dispatch.type == ConfigModel.DispatchType.DUCK) {
             return bean.invokeDuckMethod(method,proxy,args);
         }
         
-        ConfigModel.Property property = bean.model.toProperty(method);
+        ConfigModel.Property property = dispatch.property;
 
         if(property==null)
              throw new IllegalArgumentException(
@@ -155,7 +156,7 @@ public class WriteableView implements InvocationHandler, Transactor, ConfigView
                 }
             } else {
                 // pass through.
-                return getter(property, method.getGenericReturnType());
+                return getter(property, dispatch.genericReturnType);
             }
         } else {
             setter(property, args[0], method.getGenericParameterTypes()[0]);
@@ -0,0 +1,280 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.jvnet.hk2.config;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.glassfish.hk2.api.DynamicConfiguration;
+import org.glassfish.hk2.api.DynamicConfigurationService;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.ServiceLocatorFactory;
+import org.glassfish.hk2.utilities.BuilderHelper;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.jvnet.hk2.config.test.ConfigModule;
+
+/**
+ * Tests the building of the subtrees of the top-level element in parallel
+ * 
+ * @author jwells
+ *
+ */
+public class ConfigParserParallelTest {
+    private final static String EXT_NS = "urn:org.jvnet.hk2.config.ext";
+    private final static String OTHER_NS = "urn:org.jvnet.hk2.config.other";
+    private final static String BAD = "bad";
+    
+    private final static String DOCUMENT =
+            "<simple-connector xmlns:ext=\"" + EXT_NS + "\" port=\"9090\">" +
+            "  <ejb-container-availability ext:flag=\"ejb\"/>" +
+            "  <web-container-availability availability-enabled=\"false\"/>" +
+            "  <generic-container max-pool-size=\"16\">" +
+            "    <generic-config name=\"test1\">" +
+            "      <generic-config name=\"test\">" +
+            "        <!-- not kept -->" +
+            "        <generic-config name=\"test\"/>" +
+            "      </generic-config>" +
+            "    </generic-config>" +
+            "    <generic-config name=\"test2\" xmlns:other=\"" + OTHER_NS + "\" other:note=\"two\"/>" +
+            "  </generic-container>" +
+            "</simple-connector>";
+    
+    private final static String FAILING_DOCUMENT =
+            "<simple-connector>" +
+            "  <ejb-container-availability/>" +
+            "  <generic-container>" +
+            "    <generic-config name=\"test1\"><generic-config name=\"test\"/></generic-config>" +
+            "  </generic-container>" +
+            "  <web-container-availability name=\"" + BAD + "\"/>" +
+            "</simple-connector>";
+    
+    private final static XMLInputFactory XIF = XMLInputFactory.newInstance();
+    
+    private ExecutorService executor;
+    
+    @Before
+    public void before() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+    
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+    
+    private static ServiceLocator createLocator() {
+        ServiceLocator locator = ServiceLocatorFactory.getInstance().create(null);
+        
+        DynamicConfigurationService dcs = locator.getService(DynamicConfigurationService.class);
+        DynamicConfiguration config = dcs.createDynamicConfiguration();
+        new ConfigModule(locator).configure(config);
+        config.commit();
+        
+        return locator;
+    }
+    
+    private static XMLStreamReader read(String xml) throws XMLStreamException {
+        return XIF.createXMLStreamReader(new StringReader(xml));
+    }
+    
+    private static String write(DomDocument<?> document) throws XMLStreamException {
+        StringWriter retVal = new StringWriter();
+        
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(retVal);
+        document.writeTo(writer);
+        writer.close();
+        
+        return retVal.toString();
+    }
+    
+    private static int countDescriptors(ServiceLocator locator) {
+        return locator.getDescriptors(BuilderHelper.allFilter()).size();
+    }
+    
+    /**
+     * The tree built in parallel is the same as the one built sequentially,
+     * and registers the same services
+     * 
+     * @throws XMLStreamException
+     */
+    @Test
+    public void testParallelTreeIsSameAsSequential() throws XMLStreamException {
+        ServiceLocator sequentialLocator = createLocator();
+        DomDocument<?> sequential = new ConfigParser(sequentialLocator).parse(read(DOCUMENT));
+        
+        ServiceLocator parallelLocator = createLocator();
+        DomDocument<?> parallel = new ConfigParser(parallelLocator, executor).parse(read(DOCUMENT));
+        
+        Assert.assertEquals(write(sequential), write(parallel));
+        Assert.assertEquals(countDescriptors(sequentialLocator), countDescriptors(parallelLocator));
+        
+        Dom container = parallel.getRoot().nodeElement("generic-container");
+        Assert.assertEquals("16", container.attribute("max-pool-size"));
+        Assert.assertNotNull(container.nodeElement("generic-config", "test2"));
+        
+        Dom test1 = container.nodeElement("generic-config", "test1");
+        Assert.assertSame(container, test1.parent());
+        Assert.assertEquals("test", test1.nodeElement("generic-config").nodeElement("generic-config").getKey());
+    }
+    
+    /**
+     * When a subtree fails to parse the subtrees that were built
+     * are released
+     * 
+     * @throws XMLStreamException
+     */
+    @Test
+    public void testFailureReleasesBuiltSubtrees() throws XMLStreamException {
+        ServiceLocator locator = createLocator();
+        int before = countDescriptors(locator);
+        
+        DomDocument<Dom> document = new DomDocument<Dom>(locator) {
+            @Override
+            public Dom make(ServiceLocator habitat, XMLStreamReader in, Dom parent, ConfigModel model) {
+                if (in != null && BAD.equals(in.getAttributeValue(null, "name"))) {
+                    throw new ConfigurationException("Expected failure");
+                }
+                
+                return super.make(habitat, in, parent, model);
+            }
+        };
+        
+        try {
+            new ConfigParser(locator, executor).parse(read(FAILING_DOCUMENT), document);
+            Assert.fail("The bad element should have failed the parse");
+        }
+        catch (ConfigurationException expected) {
+            Assert.assertEquals("Expected failure", expected.getMessage());
+        }
+        
+        Assert.assertEquals(before, countDescriptors(locator));
+    }
+    
+    /**
+     * The buffered copy of an element keeps the namespaces declared on
+     * it, below it and on its ancestors
+     * 
+     * @throws XMLStreamException
+     */
+    @Test
+    public void testBufferedNamespaces() throws XMLStreamException {
+        XMLStreamReader in = read(DOCUMENT);
+        in.nextTag();
+        
+        Map<String, String> inherited = BufferedXMLStreamReader.getNamespaceDeclarations(in);
+        Assert.assertEquals(Collections.singletonMap("ext", EXT_NS), inherited);
+        
+        // ejb-container-availability
+        in.nextTag();
+        BufferedXMLStreamReader ejb = BufferedXMLStreamReader.record(in, inherited);
+        
+        Assert.assertEquals(XMLStreamConstants.START_ELEMENT, ejb.getEventType());
+        Assert.assertEquals(EXT_NS, ejb.getNamespaceURI("ext"));
+        Assert.assertEquals(EXT_NS, ejb.getNamespaceContext().getNamespaceURI("ext"));
+        Assert.assertEquals("ext", ejb.getNamespaceContext().getPrefix(EXT_NS));
+        Assert.assertEquals(0, ejb.getNamespaceCount());
+        
+        Assert.assertEquals("ejb", ejb.getAttributeValue(EXT_NS, "flag"));
+        Assert.assertEquals("ejb", ejb.getAttributeValue(null, "flag"));
+        Assert.assertNull(ejb.getAttributeValue(OTHER_NS, "flag"));
+        Assert.assertEquals(EXT_NS, ejb.getAttributeNamespace(0));
+        Assert.assertEquals("ext", ejb.getAttributePrefix(0));
+        Assert.assertEquals(EXT_NS, ejb.getAttributeName(0).getNamespaceURI());
+        
+        // web-container-availability, then generic-container
+        in.nextTag();
+        in.nextTag();
+        in.nextTag();
+        Assert.assertEquals("generic-container", in.getLocalName());
+        
+        BufferedXMLStreamReader container = BufferedXMLStreamReader.record(in, inherited);
+        Assert.assertEquals(XMLStreamConstants.END_ELEMENT, in.getEventType());
+        
+        // test1 and its two children
+        for (int lcv = 0; lcv < 3; lcv++) {
+            Assert.assertEquals(XMLStreamConstants.START_ELEMENT, container.nextTag());
+            Assert.assertNull(container.getNamespaceURI("other"));
+        }
+        for (int lcv = 0; lcv < 3; lcv++) {
+            Assert.assertEquals(XMLStreamConstants.END_ELEMENT, container.nextTag());
+        }
+        
+        // test2 declares a namespace of its own
+        Assert.assertEquals(XMLStreamConstants.START_ELEMENT, container.nextTag());
+        Assert.assertEquals("test2", container.getAttributeValue(null, "name"));
+        Assert.assertEquals("two", container.getAttributeValue(OTHER_NS, "note"));
+        Assert.assertEquals(1, container.getNamespaceCount());
+        Assert.assertEquals("other", container.getNamespacePrefix(0));
+        Assert.assertEquals(OTHER_NS, container.getNamespaceURI(0));
+        Assert.assertEquals(OTHER_NS, container.getNamespaceURI("other"));
+        Assert.assertEquals(EXT_NS, container.getNamespaceURI("ext"));
+        
+        Iterator<?> prefixes = container.getNamespaceContext().getPrefixes(OTHER_NS);
+        Assert.assertEquals("other", prefixes.next());
+        Assert.assertFalse(prefixes.hasNext());
+        
+        // still in scope at the end of test2, but not after it
+        Assert.assertEquals(XMLStreamConstants.END_ELEMENT, container.nextTag());
+        Assert.assertEquals(1, container.getNamespaceCount());
+        Assert.assertEquals(OTHER_NS, container.getNamespaceURI("other"));
+        
+        Assert.assertEquals(XMLStreamConstants.END_ELEMENT, container.nextTag());
+        Assert.assertEquals("generic-container", container.getLocalName());
+        Assert.assertEquals(0, container.getNamespaceCount());
+        Assert.assertNull(container.getNamespaceURI("other"));
+        Assert.assertEquals(EXT_NS, container.getNamespaceURI("ext"));
+    }
+
+}
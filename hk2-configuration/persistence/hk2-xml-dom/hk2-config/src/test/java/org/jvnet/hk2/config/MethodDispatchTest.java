@@ -0,0 +1,240 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.jvnet.hk2.config;
+
+import java.beans.PropertyVetoException;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.List;
+
+import org.glassfish.hk2.api.DynamicConfiguration;
+import org.glassfish.hk2.api.DynamicConfigurationService;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.ServiceLocatorFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.jvnet.hk2.config.test.ConfigModule;
+import org.jvnet.hk2.config.test.GenericConfig;
+import org.jvnet.hk2.config.test.GenericContainer;
+import org.jvnet.hk2.config.test.SimpleDocument;
+import org.jvnet.hk2.config.test.WebContainerAvailability;
+
+/**
+ * Tests the dispatch of the methods of config bean proxies through
+ * {@link Dom#invoke} and {@link WriteableView#invoke}
+ * 
+ * @author jwells
+ *
+ */
+public class MethodDispatchTest {
+    private final static String GENERIC_CONTAINER = "generic-container";
+    private final static String TEST1 = "test1";
+    private final static String TEST2 = "test2";
+    private final static String RENAMED = "renamed";
+    
+    private ServiceLocator locator;
+    private ConfigBean bean;
+    private GenericContainer container;
+    
+    @Before
+    public void before() {
+        locator = ServiceLocatorFactory.getInstance().create(null);
+        
+        DynamicConfigurationService dcs = locator.getService(DynamicConfigurationService.class);
+        DynamicConfiguration config = dcs.createDynamicConfiguration();
+        new ConfigModule(locator).configure(config);
+        config.commit();
+        
+        DomDocument<?> document = new ConfigParser(locator).parse(getClass().getResource("/domain.xml"),
+                new SimpleDocument(locator));
+        bean = (ConfigBean) document.getRoot().nodeElement(GENERIC_CONTAINER);
+        container = bean.createProxy();
+    }
+    
+    @After
+    public void after() {
+        if (locator != null) {
+            locator.shutdown();
+            locator = null;
+        }
+    }
+    
+    private GenericConfig getConfig(String name) {
+        for (GenericConfig config : container.getExtensions()) {
+            if (name.equals(config.getName())) return config;
+        }
+        
+        Assert.fail("No generic-config named " + name);
+        return null;
+    }
+    
+    /**
+     * Getters of attributes are dispatched to the property and converted
+     * to the return type, and the record is kept for the next call
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testAttributeGetter() throws Exception {
+        Assert.assertEquals(1234, container.getIntValue());
+        Assert.assertEquals(1234L, container.getStartupTime());
+        Assert.assertEquals("32", container.getMaxPoolSize());
+        
+        ConfigModel.MethodDispatch dispatch = bean.model.getDispatch(
+                GenericContainer.class.getMethod("getIntValue"));
+        Assert.assertEquals(ConfigModel.DispatchType.PROPERTY, dispatch.type);
+        Assert.assertEquals("int-value", dispatch.property.xmlName());
+        Assert.assertEquals(int.class, dispatch.genericReturnType);
+        
+        Assert.assertSame(dispatch, bean.model.getDispatch(
+                GenericContainer.class.getMethod("getIntValue")));
+    }
+    
+    /**
+     * Methods of Object are served by the Dom itself
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testObjectMethods() throws Exception {
+        Assert.assertEquals(bean.toString(), container.toString());
+        Assert.assertEquals(ConfigModel.DispatchType.OBJECT,
+                bean.model.getDispatch(Object.class.getMethod("toString")).type);
+    }
+    
+    /**
+     * Getters of single and collection elements return proxies of the children
+     */
+    @Test
+    public void testElementGetter() {
+        WebContainerAvailability web = container.getWebContainerAvailability();
+        Assert.assertNotNull(web);
+        Assert.assertSame(bean.nodeElement("web-container-availability"), Dom.unwrap(web));
+        
+        List<GenericConfig> extensions = container.getExtensions();
+        Assert.assertEquals(2, extensions.size());
+        Assert.assertEquals(TEST1, extensions.get(0).getName());
+        Assert.assertEquals(TEST2, extensions.get(1).getName());
+        
+        GenericConfig nested = extensions.get(0).getGenericConfig();
+        Assert.assertNotNull(nested);
+        Assert.assertEquals("test", nested.getName());
+    }
+    
+    /**
+     * Setters are refused outside of a transaction
+     */
+    @Test
+    public void testSetterOutsideOfTransaction() {
+        try {
+            getConfig(TEST1).setName(RENAMED);
+            Assert.fail("Setter worked outside of a transaction");
+        }
+        catch (UndeclaredThrowableException expected) {
+            Assert.assertTrue(expected.getCause() instanceof PropertyVetoException);
+        }
+        
+        Assert.assertEquals(TEST1, getConfig(TEST1).getName());
+    }
+    
+    /**
+     * Setters and getters of a writeable view see the pending change, and
+     * the read-only view sees it once committed
+     * 
+     * @throws TransactionFailure
+     */
+    @Test
+    public void testWriteableViewSetterAndGetter() throws TransactionFailure {
+        GenericConfig test1 = getConfig(TEST1);
+        
+        ConfigSupport.apply(new SingleConfigCode<GenericConfig>() {
+
+            @Override
+            public Object run(GenericConfig writeable) throws PropertyVetoException,
+                    TransactionFailure {
+                Assert.assertEquals(TEST1, writeable.getName());
+                writeable.setName(RENAMED);
+                Assert.assertEquals(RENAMED, writeable.getName());
+                return null;
+            }
+            
+        }, test1);
+        
+        Assert.assertEquals(RENAMED, test1.getName());
+    }
+    
+    /**
+     * A reference attribute is set from a proxy and read back as the
+     * referenced bean, both in the writeable view and after the commit
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testReferenceSetterAndGetter() throws Exception {
+        GenericConfig test1 = getConfig(TEST1);
+        final GenericConfig test2 = getConfig(TEST2);
+        Assert.assertNull(test1.getPeer());
+        
+        ConfigSupport.apply(new SingleConfigCode<GenericConfig>() {
+
+            @Override
+            public Object run(GenericConfig writeable) throws PropertyVetoException,
+                    TransactionFailure {
+                writeable.setPeer(test2);
+                Assert.assertEquals(TEST2, writeable.getPeer().getName());
+                return null;
+            }
+            
+        }, test1);
+        
+        Assert.assertEquals(TEST2, Dom.unwrap(test1).attribute("peer"));
+        
+        GenericConfig peer = test1.getPeer();
+        Assert.assertNotNull(peer);
+        Assert.assertEquals(TEST2, peer.getName());
+        Assert.assertSame(Dom.unwrap(test2), Dom.unwrap(peer));
+        
+        ConfigModel.MethodDispatch dispatch = Dom.unwrap(test1).model.getDispatch(
+                GenericConfig.class.getMethod("getPeer"));
+        Assert.assertEquals(ConfigModel.DispatchType.PROPERTY, dispatch.type);
+        Assert.assertTrue(((ConfigModel.AttributeLeaf) dispatch.property).isReference());
+    }
+}
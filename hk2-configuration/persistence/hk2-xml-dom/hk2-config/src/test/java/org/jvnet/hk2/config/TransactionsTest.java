@@ -0,0 +1,473 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.jvnet.hk2.config;
+
+import java.beans.PropertyChangeEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.hk2.api.DynamicConfiguration;
+import org.glassfish.hk2.api.DynamicConfigurationService;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.ServiceLocatorFactory;
+import org.glassfish.hk2.utilities.BuilderHelper;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.jvnet.hk2.config.test.ConfigModule;
+import org.jvnet.hk2.config.test.SimpleDocument;
+
+/**
+ * Tests the delivery of transaction notifications by {@link Transactions}
+ * 
+ * @author jwells
+ *
+ */
+public class TransactionsTest {
+    private final static String EXECUTOR_NAME = "transactions-executor";
+    private final static String GENERIC_CONTAINER = "generic-container";
+    private final static String PROPERTY = "max-pool-size";
+    
+    private final static int NUM_TRANSACTIONS = 200;
+    private final static int NUM_THREADS = 4;
+    
+    private ServiceLocator locator;
+    private Transactions transactions;
+    private ConfigBean bean;
+    private ConfigBeanProxy proxy;
+    
+    private void setUp(ExecutorService executor) {
+        locator = ServiceLocatorFactory.getInstance().create(null);
+        
+        DynamicConfigurationService dcs = locator.getService(DynamicConfigurationService.class);
+        DynamicConfiguration config = dcs.createDynamicConfiguration();
+        new ConfigModule(locator).configure(config);
+        if (executor != null) {
+            config.addActiveDescriptor(BuilderHelper.createConstantDescriptor(executor, EXECUTOR_NAME, ExecutorService.class));
+        }
+        config.commit();
+        
+        transactions = locator.getService(Transactions.class);
+        
+        DomDocument<?> document = new ConfigParser(locator).parse(getClass().getResource("/domain.xml"),
+                new SimpleDocument(locator));
+        bean = (ConfigBean) document.getRoot().nodeElement(GENERIC_CONTAINER);
+        proxy = bean.createProxy();
+    }
+    
+    @After
+    public void after() {
+        System.clearProperty(Transactions.COALESCE_PROPERTY);
+        
+        if (locator != null) {
+            locator.shutdown();
+            locator = null;
+        }
+    }
+    
+    private void commit(int newValue, boolean waitTillCleared) {
+        List<PropertyChangeEvent> events = new ArrayList<PropertyChangeEvent>();
+        events.add(new PropertyChangeEvent(proxy, PROPERTY, newValue - 1, newValue));
+        
+        transactions.addTransaction(events, waitTillCleared);
+    }
+    
+    private static List<Integer> expected(int count) {
+        List<Integer> retVal = new ArrayList<Integer>(count);
+        for (int lcv = 0; lcv < count; lcv++) {
+            retVal.add(lcv);
+        }
+        return retVal;
+    }
+    
+    /**
+     * Each listener sees the transactions in the order they were committed
+     */
+    @Test
+    public void testDeliveriesAreInOrderPerListener() {
+        setUp(null);
+        
+        RecordingTransactionListener first = new RecordingTransactionListener();
+        RecordingTransactionListener second = new RecordingTransactionListener();
+        RecordingConfigListener configListener = new RecordingConfigListener();
+        
+        transactions.addTransactionsListener(first);
+        transactions.addTransactionsListener(second);
+        bean.addListener(configListener);
+        
+        for (int lcv = 0; lcv < NUM_TRANSACTIONS; lcv++) {
+            commit(lcv, false);
+        }
+        
+        transactions.waitForDrain();
+        
+        Assert.assertEquals(expected(NUM_TRANSACTIONS), first.getValues());
+        Assert.assertEquals(expected(NUM_TRANSACTIONS), second.getValues());
+        Assert.assertEquals(expected(NUM_TRANSACTIONS), configListener.getValues());
+    }
+    
+    /**
+     * With coalescing on, changes of the same property that are pending
+     * for a listener are given to it as one change
+     * 
+     * @throws InterruptedException
+     */
+    @Test
+    public void testPendingDeliveriesAreCoalesced() throws InterruptedException {
+        System.setProperty(Transactions.COALESCE_PROPERTY, "true");
+        setUp(null);
+        
+        BlockingTransactionListener listener = new BlockingTransactionListener();
+        transactions.addTransactionsListener(listener);
+        
+        commit(1, false);
+        Assert.assertTrue(listener.entered.await(20, TimeUnit.SECONDS));
+        
+        // These three are all pending while the listener is busy with the first
+        commit(2, false);
+        commit(3, false);
+        commit(4, false);
+        
+        listener.release.countDown();
+        transactions.waitForDrain();
+        
+        List<List<PropertyChangeEvent>> calls = listener.getCalls();
+        Assert.assertEquals(2, calls.size());
+        
+        Assert.assertEquals(1, calls.get(0).size());
+        Assert.assertEquals(1, calls.get(0).get(0).getNewValue());
+        
+        Assert.assertEquals(1, calls.get(1).size());
+        Assert.assertEquals(1, calls.get(1).get(0).getOldValue());
+        Assert.assertEquals(4, calls.get(1).get(0).getNewValue());
+    }
+    
+    /**
+     * Without coalescing every transaction is delivered on its own
+     * 
+     * @throws InterruptedException
+     */
+    @Test
+    public void testNoCoalescingByDefault() throws InterruptedException {
+        setUp(null);
+        
+        BlockingTransactionListener listener = new BlockingTransactionListener();
+        transactions.addTransactionsListener(listener);
+        
+        commit(1, false);
+        Assert.assertTrue(listener.entered.await(20, TimeUnit.SECONDS));
+        
+        commit(2, false);
+        commit(3, false);
+        
+        listener.release.countDown();
+        transactions.waitForDrain();
+        
+        Assert.assertEquals(3, listener.getCalls().size());
+    }
+    
+    /**
+     * A synchronous commit returns only once all listeners were notified
+     */
+    @Test
+    public void testWaitTillCleared() {
+        setUp(null);
+        
+        RecordingTransactionListener transactionListener = new RecordingTransactionListener(100);
+        RecordingConfigListener configListener = new RecordingConfigListener(100);
+        
+        transactions.addTransactionsListener(transactionListener);
+        bean.addListener(configListener);
+        
+        commit(0, true);
+        
+        Assert.assertEquals(expected(1), transactionListener.getValues());
+        Assert.assertEquals(expected(1), configListener.getValues());
+    }
+    
+    /**
+     * The queue of a configuration listener retires itself whenever it
+     * runs empty, which must not lose deliveries added concurrently
+     * or from within the listener itself
+     * 
+     * @throws InterruptedException
+     */
+    @Test
+    public void testConfigListenerRetirementDuringDelivery() throws InterruptedException {
+        setUp(null);
+        
+        final RecordingConfigListener configListener = new RecordingConfigListener() {
+            @Override
+            public UnprocessedChangeEvents changed(PropertyChangeEvent[] events) {
+                UnprocessedChangeEvents retVal = super.changed(events);
+                
+                // commits from within the listener, which must not wait
+                if (Integer.valueOf(-1).equals(events[0].getNewValue())) {
+                    commit(-2, true);
+                }
+                
+                return retVal;
+            }
+        };
+        bean.addListener(configListener);
+        
+        commit(-1, true);
+        transactions.waitForDrain();
+        
+        Assert.assertEquals(2, configListener.getValues().size());
+        
+        List<Thread> threads = new LinkedList<Thread>();
+        for (int lcv = 0; lcv < NUM_THREADS; lcv++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    for (int inner = 0; inner < NUM_TRANSACTIONS; inner++) {
+                        commit(inner, false);
+                    }
+                }
+            };
+            
+            threads.add(thread);
+            thread.start();
+        }
+        
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        transactions.waitForDrain();
+        
+        Assert.assertEquals(2 + (NUM_THREADS * NUM_TRANSACTIONS), configListener.getValues().size());
+    }
+    
+    /**
+     * A shut down executor does not fail the committer, the
+     * notifications are delivered by the committing thread instead
+     */
+    @Test
+    public void testShutDownExecutorDeliversOnCommitter() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        
+        setUp(executor);
+        
+        RecordingTransactionListener transactionListener = new RecordingTransactionListener();
+        RecordingConfigListener configListener = new RecordingConfigListener();
+        transactions.addTransactionsListener(transactionListener);
+        bean.addListener(configListener);
+        
+        commit(0, true);
+        commit(1, false);
+        
+        Assert.assertEquals(expected(2), transactionListener.getValues());
+        Assert.assertEquals(expected(2), configListener.getValues());
+        
+        Assert.assertEquals(Collections.singleton(Thread.currentThread()), transactionListener.getThreads());
+        Assert.assertEquals(Collections.singleton(Thread.currentThread()), configListener.getThreads());
+    }
+    
+    /**
+     * An executor that has no thread to spare does not fail the
+     * committer, and the order of deliveries is kept
+     * 
+     * @throws InterruptedException
+     */
+    @Test
+    public void testSaturatedExecutor() throws InterruptedException {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60L, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>());
+        
+        setUp(executor);
+        
+        try {
+            BlockingTransactionListener blocker = new BlockingTransactionListener();
+            RecordingTransactionListener transactionListener = new RecordingTransactionListener();
+            transactions.addTransactionsListener(blocker);
+            transactions.addTransactionsListener(transactionListener);
+            
+            commit(0, false);
+            Assert.assertTrue(blocker.entered.await(20, TimeUnit.SECONDS));
+            
+            // The only thread is taken by the blocker
+            commit(1, false);
+            commit(2, false);
+            
+            blocker.release.countDown();
+            transactions.waitForDrain();
+            
+            Assert.assertEquals(expected(3), transactionListener.getValues());
+            Assert.assertEquals(3, blocker.getCalls().size());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    private static List<Integer> getNewValues(List<PropertyChangeEvent> events) {
+        List<Integer> retVal = new ArrayList<Integer>(events.size());
+        for (PropertyChangeEvent event : events) {
+            retVal.add((Integer) event.getNewValue());
+        }
+        return retVal;
+    }
+    
+    private static void sleep(long millis) {
+        if (millis <= 0) return;
+        
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+    
+    private static class RecordingTransactionListener implements TransactionListener {
+        private final long delay;
+        private final List<Integer> values = new ArrayList<Integer>();
+        private final List<Thread> threads = new ArrayList<Thread>();
+        
+        private RecordingTransactionListener() {
+            this(0);
+        }
+        
+        private RecordingTransactionListener(long delay) {
+            this.delay = delay;
+        }
+        
+        @Override
+        public void transactionCommited(List<PropertyChangeEvent> changes) {
+            sleep(delay);
+            
+            synchronized (this) {
+                values.addAll(getNewValues(changes));
+                threads.add(Thread.currentThread());
+            }
+        }
+
+        @Override
+        public void unprocessedTransactedEvents(List<UnprocessedChangeEvents> changes) {
+        }
+        
+        private synchronized List<Integer> getValues() {
+            return new ArrayList<Integer>(values);
+        }
+        
+        private synchronized Set<Thread> getThreads() {
+            return new HashSet<Thread>(threads);
+        }
+    }
+    
+    private static class RecordingConfigListener implements ConfigListener {
+        private final long delay;
+        private final List<Integer> values = new ArrayList<Integer>();
+        private final List<Thread> threads = new ArrayList<Thread>();
+        
+        private RecordingConfigListener() {
+            this(0);
+        }
+        
+        private RecordingConfigListener(long delay) {
+            this.delay = delay;
+        }
+
+        @Override
+        public UnprocessedChangeEvents changed(PropertyChangeEvent[] events) {
+            sleep(delay);
+            
+            synchronized (this) {
+                for (PropertyChangeEvent event : events) {
+                    values.add((Integer) event.getNewValue());
+                }
+                threads.add(Thread.currentThread());
+            }
+            
+            return null;
+        }
+        
+        private synchronized List<Integer> getValues() {
+            return new ArrayList<Integer>(values);
+        }
+        
+        private synchronized Set<Thread> getThreads() {
+            return new HashSet<Thread>(threads);
+        }
+    }
+    
+    private static class BlockingTransactionListener implements TransactionListener {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<List<PropertyChangeEvent>> calls = new ArrayList<List<PropertyChangeEvent>>();
+        
+        @Override
+        public void transactionCommited(List<PropertyChangeEvent> changes) {
+            synchronized (this) {
+                calls.add(new ArrayList<PropertyChangeEvent>(changes));
+            }
+            
+            entered.countDown();
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void unprocessedTransactedEvents(List<UnprocessedChangeEvents> changes) {
+        }
+        
+        private synchronized List<List<PropertyChangeEvent>> getCalls() {
+            return new ArrayList<List<PropertyChangeEvent>>(calls);
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.jvnet.hk2.config.test;
+
+import java.net.URL;
+
+import org.glassfish.hk2.api.DynamicConfiguration;
+import org.glassfish.hk2.api.DynamicConfigurationService;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.ServiceLocatorFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.jvnet.hk2.config.ConfigParser;
+import org.jvnet.hk2.config.Dom;
+import org.jvnet.hk2.config.DomDocument;
+import org.jvnet.hk2.config.Translator;
+
+/**
+ * Tests the lookup of children by element name and by key
+ * 
+ * @author jwells
+ *
+ */
+public class DomChildIndexTest {
+    private final static String GENERIC_CONTAINER = "generic-container";
+    private final static String GENERIC_CONFIG = "generic-config";
+    private final static String NAME = "name";
+    
+    private final static String TEST1 = "test1";
+    private final static String TEST2 = "test2";
+    private final static String RENAMED = "renamed";
+    private final static String VARIABLE = "${variable}";
+    
+    private DomDocument<?> document;
+    private Dom container;
+    
+    @Before
+    public void before() throws Exception {
+        ServiceLocator locator = ServiceLocatorFactory.getInstance().create(null);
+        
+        DynamicConfigurationService dcs = locator.getService(DynamicConfigurationService.class);
+        DynamicConfiguration config = dcs.createDynamicConfiguration();
+        new ConfigModule(locator).configure(config);
+        config.commit();
+        
+        URL url = getClass().getResource("/domain.xml");
+        document = new ConfigParser(locator).parse(url);
+        
+        container = document.getRoot().nodeElement(GENERIC_CONTAINER);
+        Assert.assertNotNull(container);
+    }
+    
+    /**
+     * Tests lookups by key, including keys that do not exist
+     */
+    @Test
+    public void testLookupByKey() {
+        Dom test1 = container.nodeElement(GENERIC_CONFIG, TEST1);
+        Assert.assertNotNull(test1);
+        Assert.assertEquals(TEST1, test1.getKey());
+        
+        Dom test2 = container.nodeElement(GENERIC_CONFIG, TEST2);
+        Assert.assertNotNull(test2);
+        Assert.assertEquals(TEST2, test2.getKey());
+        
+        Assert.assertNull(container.nodeElement(GENERIC_CONFIG, RENAMED));
+        Assert.assertNull(container.nodeElement(GENERIC_CONTAINER, TEST1));
+        
+        Assert.assertSame(test1, container.nodeElement(GENERIC_CONFIG));
+        Assert.assertEquals(2, container.nodeElements(GENERIC_CONFIG).size());
+    }
+    
+    /**
+     * Tests that a lookup by key sees a change of the key of a child
+     */
+    @Test
+    public void testLookupAfterKeyChange() {
+        Dom test2 = container.nodeElement(GENERIC_CONFIG, TEST2);
+        Assert.assertNotNull(test2);
+        
+        test2.attribute(NAME, RENAMED);
+        
+        Assert.assertNull(container.nodeElement(GENERIC_CONFIG, TEST2));
+        Assert.assertSame(test2, container.nodeElement(GENERIC_CONFIG, RENAMED));
+    }
+    
+    /**
+     * Tests that a lookup by key sees a key whose variable expands
+     * differently, even though the tree itself did not change
+     */
+    @Test
+    public void testLookupOfExpandedKey() {
+        Dom test2 = container.nodeElement(GENERIC_CONFIG, TEST2);
+        Assert.assertNotNull(test2);
+        
+        VariableTranslator translator = new VariableTranslator(RENAMED);
+        document.setTranslator(translator);
+        test2.attribute(NAME, VARIABLE);
+        
+        Assert.assertSame(test2, container.nodeElement(GENERIC_CONFIG, RENAMED));
+        
+        // Only the definition of the variable changes
+        translator.value = TEST2;
+        document.invalidateTranslations();
+        
+        Assert.assertNull(container.nodeElement(GENERIC_CONFIG, RENAMED));
+        Assert.assertSame(test2, container.nodeElement(GENERIC_CONFIG, TEST2));
+    }
+    
+    private static class VariableTranslator implements Translator {
+        private volatile String value;
+        
+        private VariableTranslator(String value) {
+            this.value = value;
+        }
+        
+        @Override
+        public String translate(String str) {
+            return VARIABLE.equals(str) ? value : str;
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.jvnet.hk2.config.test;
+
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.ServiceLocatorFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.jvnet.hk2.config.CacheableTranslator;
+import org.jvnet.hk2.config.Dom;
+import org.jvnet.hk2.config.DomDocument;
+import org.jvnet.hk2.config.Translator;
+
+/**
+ * Tests the cache of translated values kept by {@link DomDocument}
+ * 
+ * @author jwells
+ *
+ */
+public class DomDocumentTranslationTest {
+    private final static String VARIABLE = "${variable}";
+    private final static String PLAIN = "plain";
+    private final static String ALICE = "Alice";
+    private final static String BOB = "Bob";
+    private final static String PROPERTY = "hk2.config.translation.test";
+    private final static String PROPERTY_VARIABLE = "${" + PROPERTY + "}";
+    
+    private DomDocument<?> document;
+    private CountingTranslator translator;
+    
+    @Before
+    public void before() {
+        ServiceLocator locator = ServiceLocatorFactory.getInstance().create(null);
+        
+        document = new DomDocument<Dom>(locator);
+        translator = new CountingTranslator(ALICE);
+        document.setTranslator(translator);
+    }
+    
+    /**
+     * Values with variables are translated once, other values every time
+     */
+    @Test
+    public void testTranslationsAreCached() {
+        Assert.assertEquals(ALICE, document.translate(VARIABLE));
+        Assert.assertEquals(ALICE, document.translate(VARIABLE));
+        Assert.assertEquals(1, translator.calls);
+        
+        Assert.assertEquals(PLAIN, document.translate(PLAIN));
+        Assert.assertEquals(PLAIN, document.translate(PLAIN));
+        Assert.assertEquals(3, translator.calls);
+    }
+    
+    /**
+     * Invalidation and a new translator both drop the cached values
+     */
+    @Test
+    public void testInvalidation() {
+        Assert.assertEquals(ALICE, document.translate(VARIABLE));
+        
+        translator.value = BOB;
+        Assert.assertEquals(ALICE, document.translate(VARIABLE));
+        
+        document.invalidateTranslations();
+        Assert.assertEquals(BOB, document.translate(VARIABLE));
+        Assert.assertEquals(2, translator.calls);
+        
+        document.setTranslator(new CountingTranslator(ALICE));
+        Assert.assertEquals(ALICE, document.translate(VARIABLE));
+    }
+    
+    /**
+     * A translation that is still being computed when the cache is
+     * invalidated must not be served after the invalidation, even if
+     * the cache was empty when it was invalidated
+     */
+    @Test
+    public void testInvalidationDuringTranslation() {
+        translator.invalidateOnNextCall = true;
+        
+        Assert.assertEquals(ALICE, document.translate(VARIABLE));
+        
+        Assert.assertEquals(BOB, document.translate(VARIABLE));
+    }
+    
+    /**
+     * The system property translator is not cached, so a change of a system
+     * property is seen by the next translation
+     */
+    @Test
+    public void testSystemPropertyChangeIsSeen() {
+        document.setTranslator(Translator.SYS_PROP_TR);
+        
+        System.setProperty(PROPERTY, ALICE);
+        try {
+            Assert.assertEquals(ALICE, document.translate(PROPERTY_VARIABLE));
+            
+            System.setProperty(PROPERTY, BOB);
+            Assert.assertEquals(BOB, document.translate(PROPERTY_VARIABLE));
+        }
+        finally {
+            System.clearProperty(PROPERTY);
+        }
+    }
+    
+    /**
+     * A translator that is not cacheable is called on every translation
+     */
+    @Test
+    public void testPlainTranslatorIsNotCached() {
+        final int calls[] = new int[1];
+        document.setTranslator(new Translator() {
+
+            @Override
+            public String translate(String str) {
+                calls[0]++;
+                return ALICE;
+            }
+            
+        });
+        
+        Assert.assertEquals(ALICE, document.translate(VARIABLE));
+        Assert.assertEquals(ALICE, document.translate(VARIABLE));
+        Assert.assertEquals(2, calls[0]);
+    }
+    
+    private class CountingTranslator implements CacheableTranslator {
+        private volatile String value;
+        private volatile boolean invalidateOnNextCall;
+        private int calls;
+        
+        private CountingTranslator(String value) {
+            this.value = value;
+        }
+        
+        @Override
+        public String translate(String str) {
+            calls++;
+            
+            if (!VARIABLE.equals(str)) return str;
+            
+            String retVal = value;
+            
+            if (invalidateOnNextCall) {
+                // Another thread changes the variable while this translation is in flight
+                invalidateOnNextCall = false;
+                
+                value = BOB;
+                document.invalidateTranslations();
+            }
+            
+            return retVal;
+        }
+    }
+
+}
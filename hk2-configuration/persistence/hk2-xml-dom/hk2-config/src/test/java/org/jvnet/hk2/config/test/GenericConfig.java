@@ -54,4 +54,8 @@ public interface GenericConfig extends ConfigBeanProxy {
     @Element
     GenericConfig getGenericConfig();
     void setGenericConfig(GenericConfig genericConfig);
+
+    @Attribute(reference = true)
+    GenericConfig getPeer();
+    void setPeer(GenericConfig peer);
 }
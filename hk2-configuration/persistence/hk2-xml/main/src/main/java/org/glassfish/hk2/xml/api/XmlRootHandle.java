@@ -40,6 +40,8 @@
 
 package org.glassfish.hk2.xml.api;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 
 /**
@@ -126,7 +128,11 @@ public interface XmlRootHandle<T> {
      * since the parent keeps no track of children.  However,
      * the {@link XmlRootCopy#merge()} method will fail if
      * a modification has been made to the parent since the
-     * time the copy was created 
+     * time the copy was created
+     * <p>
+     * Parts of the tree are only copied when they are first
+     * used in the copy, so creating a copy of a large tree
+     * and modifying a few beans in it is inexpensive
      * 
      * @return A non-null copy of this root that can be modified
      * and then merged back in a single transaction
@@ -187,4 +193,31 @@ public interface XmlRootHandle<T> {
      * if the root was already null
      */
     public T removeRoot();
+    
+    /**
+     * Writes the current tree as xml to the given output stream.
+     * The output stream is flushed but is not closed.  The tree
+     * cannot be modified while it is being written
+     * 
+     * @param outputStream The non-null stream to write the
+     * xml to
+     * @throws IOException On any error writing to the stream
+     * @throws IllegalStateException if this handle has no root
+     */
+    public void marshall(OutputStream outputStream) throws IOException;
+    
+    /**
+     * Writes the current tree as xml back to the file from
+     * which it was parsed.  The xml written for every bean
+     * is remembered, so subsequent saves only need to generate
+     * the xml for the beans that changed (or whose descendants
+     * changed) since the previous save.  This makes saving a
+     * large tree that changes frequently but in small ways
+     * much less expensive
+     * 
+     * @throws IOException On any error writing to the file
+     * @throws IllegalStateException if this handle has no root
+     * or if the URI of this handle is not a file URI
+     */
+    public void save() throws IOException;
 }
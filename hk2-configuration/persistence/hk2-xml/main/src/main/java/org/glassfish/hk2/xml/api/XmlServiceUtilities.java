@@ -44,6 +44,7 @@ import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.hk2.configuration.hub.api.ManagerUtilities;
 import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
 import org.glassfish.hk2.xml.internal.DomXmlParser;
+import org.glassfish.hk2.xml.internal.StaxXmlParser;
 import org.glassfish.hk2.xml.internal.XmlServiceImpl;
 import org.glassfish.hk2.xml.jaxb.internal.JAXBXmlParser;
 
@@ -89,4 +90,23 @@ public class XmlServiceUtilities {
         
         ServiceLocatorUtilities.addClasses(locator, DomXmlParser.class, XmlServiceImpl.class);
     }
+    
+    /**
+     * Enables the Hk2 XmlService in the given locator using a
+     * streaming parser that does not hold the entire document
+     * in memory while parsing.  Will also enable the HK2
+     * Configuration Hub if the hub has not already been started.
+     * This operation is idempotent in that if the XmlService is
+     * already available in the given locator then this method does nothing
+     * 
+     * @param locator The non-null locator to which to add
+     * the {@link XmlService}
+     */
+    public static void enableStaxXmlService(ServiceLocator locator) {
+        if (locator.getService(XmlService.class) != null) return;
+        
+        ManagerUtilities.enableConfigurationHub(locator);
+        
+        ServiceLocatorUtilities.addClasses(locator, StaxXmlParser.class, XmlServiceImpl.class);
+    }
 }
@@ -49,6 +49,14 @@ import java.lang.annotation.Target;
 /**
  * This annotation is placed on interfaces that should
  * have their implementations pre-generated at build time
+ * <p>
+ * If the annotation processor is given the option
+ * org.glassfish.hk2.xml.pregenerateChildren=true (for example
+ * with -Aorg.glassfish.hk2.xml.pregenerateChildren=true) then the
+ * children of the annotated interface that are compiled along
+ * with it are also pre-generated, so it is enough to place this
+ * annotation on the root of a tree.  Proxies that were not
+ * pre-generated are generated when they are first needed
  * 
  * @author jwells
  */
@@ -74,6 +74,9 @@ public class ChildDataModel implements Serializable {
     private String childType;
     private String defaultAsString;
     
+    /** Set at compile time, true if this property is written as an xml attribute */
+    private boolean xmlAttribute;
+    
     private ClassLoader myLoader;
     private Class<?> childTypeAsClass;
     
@@ -81,8 +84,13 @@ public class ChildDataModel implements Serializable {
     }
     
     public ChildDataModel(String childType, String defaultAsString) {
+        this(childType, defaultAsString, false);
+    }
+    
+    public ChildDataModel(String childType, String defaultAsString, boolean xmlAttribute) {
         this.childType = childType;
         this.defaultAsString = defaultAsString;
+        this.xmlAttribute = xmlAttribute;
     }
     
     public String getChildType() {
@@ -93,6 +101,21 @@ public class ChildDataModel implements Serializable {
         return defaultAsString;
     }
     
+    /**
+     * Gets the primitive type of this property without
+     * needing a class loader
+     * 
+     * @return The primitive class of this property, or
+     * null if this property is not of a primitive type
+     */
+    public Class<?> getPrimitiveType() {
+        return TYPE_MAP.get(childType);
+    }
+    
+    public boolean isXmlAttribute() {
+        return xmlAttribute;
+    }
+    
     public void setLoader(ClassLoader myLoader) {
         synchronized (lock) {
             this.myLoader = myLoader;
@@ -115,7 +138,7 @@ public class ChildDataModel implements Serializable {
     
     @Override
     public String toString() {
-        return "ChildDataModel(" + childType + "," + defaultAsString + ")";
+        return "ChildDataModel(" + childType + "," + defaultAsString + "," + xmlAttribute + ")";
     }
 
 }
@@ -40,6 +40,7 @@
 package org.glassfish.hk2.xml.internal;
 
 import java.beans.Introspector;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -193,6 +194,38 @@ public class Generator {
             Logger.getLogger().debug("Analyzing " + allMethods.size() + " methods of " + convertMe.getName());
         }
         
+        // The model must be complete before any method body is generated, since
+        // the bodies address properties by their slot in the model
+        for (AltMethod wrapper : allMethods) {
+            MethodInformation mi = getMethodInformation(wrapper, xmlNameMap);
+            if (!MethodType.SETTER.equals(mi.getMethodType()) &&
+                    !MethodType.GETTER.equals(mi.getMethodType())) continue;
+            
+            AltClass childType = mi.getBaseChildType();
+            if (childType != null) {
+                Map<String, String> defaultChild = null;
+                AltAnnotation defaultChildAnnotation= mi.getOriginalMethod().getAnnotation(DefaultChild.class.getName());
+                if (defaultChildAnnotation != null) {
+                    String[] defaultStrings = defaultChildAnnotation.getStringArrayValue("value");
+                    
+                    defaultChild = convertDefaultChildValueArray(defaultStrings);
+                }
+                
+                compiledModel.addChild(
+                        childType.getName(),
+                        mi.getRepresentedProperty(),
+                        getChildType(mi.isList(), mi.isArray()),
+                        mi.getDefaultValue(),
+                        defaultChild);
+            }
+            else {
+                compiledModel.addNonChild(mi.getRepresentedProperty(), mi.getDefaultValue(),
+                        mi.getGetterSetterType().getName(),
+                        (mi.getOriginalMethod().getAnnotation(XmlAttribute.class.getName()) != null));
+            }
+        }
+        PropertySlots slots = compiledModel.getPropertySlots();
+        
         HashSet<String> setters = new HashSet<String>();
         HashMap<String, MethodInformation> getters = new HashMap<String, MethodInformation>();
         for (AltMethod wrapper : allMethods) {
@@ -247,7 +280,7 @@ public class Generator {
                 
                 childType = mi.getBaseChildType();
                 
-                sb.append(getCompilableClass(mi.getGetterSetterType()) + " arg0) { super._setProperty(\"" + mi.getRepresentedProperty() + "\", arg0); }");
+                sb.append(getCompilableClass(mi.getGetterSetterType()) + " arg0) { super._setProperty(" + slots.getSlot(mi.getRepresentedProperty()) + ", arg0); }");
             }
             else if (MethodType.GETTER.equals(mi.getMethodType())) {
                 getterOrSetter = true;
@@ -285,7 +318,7 @@ public class Generator {
                     cast = "(" + getCompilableClass(mi.getGetterSetterType()) + ") ";
                 }
                 
-                sb.append(") { return " + cast + "super." + superMethodName + "(\"" + mi.getRepresentedProperty() + "\"); }");
+                sb.append(") { return " + cast + "super." + superMethodName + "(" + slots.getSlot(mi.getRepresentedProperty()) + "); }");
             }
             else if (MethodType.LOOKUP.equals(mi.getMethodType())) {
                 sb.append("java.lang.String arg0) { return (" + getCompilableClass(originalRetType) +
@@ -485,29 +518,6 @@ public class Generator {
                 }
             }
             
-            if (getterOrSetter) {
-                if (childType != null) {
-                    Map<String, String> defaultChild = null;
-                    AltAnnotation defaultChildAnnotation= mi.getOriginalMethod().getAnnotation(DefaultChild.class.getName());
-                    if (defaultChildAnnotation != null) {
-                        String[] defaultStrings = defaultChildAnnotation.getStringArrayValue("value");
-                        
-                        defaultChild = convertDefaultChildValueArray(defaultStrings);
-                    }
-                    
-                    compiledModel.addChild(
-                            childType.getName(),
-                            mi.getRepresentedProperty(),
-                            getChildType(mi.isList(), mi.isArray()),
-                            mi.getDefaultValue(),
-                            defaultChild);
-                }
-                else {
-                    compiledModel.addNonChild(mi.getRepresentedProperty(), mi.getDefaultValue(),
-                            mi.getGetterSetterType().getName());
-                }
-            }
-            
             if (getterOrSetter && childType != null &&
                     xmlNameMap.hasNoXmlElement(mi.getRepresentedProperty()) &&
                     !alreadyAddedNaked.contains(mi.getRepresentedProperty())) {
@@ -547,7 +557,7 @@ public class Generator {
             String setterName = Utilities.convertToSetter(getterName);
             
             StringBuffer sb = new StringBuffer("private void " + setterName + "(");
-            sb.append(getCompilableClass(mi.getGetterSetterType()) + " arg0) { super._setProperty(\"" + mi.getRepresentedProperty() + "\", arg0); }");
+            sb.append(getCompilableClass(mi.getGetterSetterType()) + " arg0) { super._setProperty(" + slots.getSlot(mi.getRepresentedProperty()) + ", arg0); }");
             
             CtMethod addMeCtMethod = CtNewMethod.make(sb.toString(), targetCtClass);
             targetCtClass.addMethod(addMeCtMethod);
@@ -601,7 +611,8 @@ public class Generator {
             sb.append("retVal.addNonChild(" +
               asParameter(entry.getKey()) + "," +
               asParameter(entry.getValue().getDefaultAsString()) + "," +
-              asParameter(entry.getValue().getChildType()) + ");\n");
+              asParameter(entry.getValue().getChildType()) + "," +
+              entry.getValue().isXmlAttribute() + ");\n");
         }
         
         sb.append("return retVal; }");
@@ -907,6 +918,37 @@ public class Generator {
         
     }
     
+    /**
+     * Gets the interfaces of all the children of the given
+     * interface, which are the types for which proxies
+     * would also need to be generated
+     * 
+     * @param convertMe The interface to get the children of
+     * @return The interfaces of the children of convertMe, with
+     * no duplicates.  Will not return null, but may return an
+     * empty list
+     */
+    public static List<AltClass> getChildInterfaces(AltClass convertMe) {
+        NameInformation xmlNameMap = getXmlNameMap(convertMe);
+        
+        HashSet<String> found = new HashSet<String>();
+        List<AltClass> retVal = new ArrayList<AltClass>();
+        for (AltMethod wrapper : convertMe.getMethods()) {
+            MethodInformation mi = getMethodInformation(wrapper, xmlNameMap);
+            if (!MethodType.GETTER.equals(mi.getMethodType()) &&
+                    !MethodType.SETTER.equals(mi.getMethodType())) continue;
+            
+            AltClass childType = mi.getBaseChildType();
+            if (childType == null) continue;
+            
+            if (found.add(childType.getName())) {
+                retVal.add(childType);
+            }
+        }
+        
+        return retVal;
+    }
+    
     /* package */ static NameInformation getXmlNameMap(AltClass convertMe) {
         Map<String, XmlElementData> xmlNameMap = new HashMap<String, XmlElementData>();
         HashSet<String> unmappedNames = new HashSet<String>();
@@ -83,8 +83,17 @@ public class JAUtilities {
     public final static String JAXB_DEFAULT_DEFAULT = "\u0000";
     
     private final ClassReflectionHelper classReflectionHelper;
-    private final ClassPool defaultClassPool = ClassPool.getDefault(); // TODO:  We probably need to be more sophisticated about this
-    private final CtClass superClazz;
+    
+    /**
+     * Only needed when a proxy was not pre-generated, so these
+     * are not set up until the first proxy must be generated.  They
+     * are guarded by their own lock rather than this object, since
+     * convertRootAndLeaves holds this object while waiting for proxies
+     * being generated on other threads
+     */
+    private final Object generatorLock = new Object();
+    private ClassPool defaultClassPool; // TODO:  We probably need to be more sophisticated about this
+    private CtClass superClazz;
     
     private final Computer computer;
     private final LRUHybridCache<Class<?>, Model> interface2ModelCache;
@@ -93,12 +102,6 @@ public class JAUtilities {
     
     /* package */ JAUtilities(ClassReflectionHelper classReflectionHelper) {
         this.classReflectionHelper = classReflectionHelper;
-        try {
-            superClazz = defaultClassPool.get(BaseHK2JAXBBean.class.getName());
-        }
-        catch (NotFoundException e) {
-            throw new MultiException(e);
-        }
         
         computer = new Computer(this);
         interface2ModelCache = new LRUHybridCache<Class<?>, Model>(Integer.MAX_VALUE - 1, computer);
@@ -205,11 +208,34 @@ public class JAUtilities {
     }
     
     private CtClass getBaseClass() {
-        return superClazz;
+        synchronized (generatorLock) {
+            initializeGenerator();
+            return superClazz;
+        }
     }
     
     private ClassPool getClassPool() {
-        return defaultClassPool;
+        synchronized (generatorLock) {
+            initializeGenerator();
+            return defaultClassPool;
+        }
+    }
+    
+    /**
+     * Must be called with generatorLock held
+     */
+    private void initializeGenerator() {
+        if (defaultClassPool != null) return;
+        
+        ClassPool classPool = ClassPool.getDefault();
+        try {
+            superClazz = classPool.get(BaseHK2JAXBBean.class.getName());
+        }
+        catch (NotFoundException e) {
+            throw new MultiException(e);
+        }
+        
+        defaultClassPool = classPool;
     }
     
     public int getNumGenerated() {
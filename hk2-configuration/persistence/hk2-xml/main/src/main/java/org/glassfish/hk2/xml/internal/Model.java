@@ -42,8 +42,8 @@ package org.glassfish.hk2.xml.internal;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -79,11 +79,11 @@ public class Model implements Serializable {
     /** If this node can be a root, the xml tag of the root of the document */
     private String rootName;
     
-    /** A map from the xml tag to the parented child node */
-    private final Map<String, ParentedModel> childrenByName = new HashMap<String, ParentedModel>();
+    /** A map from the xml tag to the parented child node, in the order the properties were declared */
+    private final Map<String, ParentedModel> childrenByName = new LinkedHashMap<String, ParentedModel>();
     
-    /** A map from xml tag to information about the non-child property */
-    private final Map<String, ChildDataModel> nonChildProperty = new HashMap<String, ChildDataModel>();
+    /** A map from xml tag to information about the non-child property, in the order the properties were declared */
+    private final Map<String, ChildDataModel> nonChildProperty = new LinkedHashMap<String, ChildDataModel>();
     
     /** If this node has a key, this is the property name of the key */
     private String keyProperty;
@@ -94,6 +94,7 @@ public class Model implements Serializable {
     private Set<String> unKeyedChildren = null;
     private Set<String> keyedChildren = null;
     private transient JAUtilities jaUtilities = null;
+    private transient volatile PropertySlots propertySlots = null;
     private ClassLoader myLoader;
     
     public Model() {
@@ -124,7 +125,17 @@ public class Model implements Serializable {
     }
     
     public void addNonChild(String xmlTag, String defaultValue, String childType) {
-        nonChildProperty.put(xmlTag, new ChildDataModel(childType, defaultValue));
+        addNonChild(xmlTag, defaultValue, childType, false);
+    }
+    
+    public void addNonChild(String xmlTag, String defaultValue, String childType, boolean xmlAttribute) {
+        ChildDataModel existing = nonChildProperty.get(xmlTag);
+        if (existing != null && existing.isXmlAttribute()) {
+            // The getter and the setter both come through here, only one need be annotated
+            xmlAttribute = true;
+        }
+        
+        nonChildProperty.put(xmlTag, new ChildDataModel(childType, defaultValue, xmlAttribute));
     }
 
     /**
@@ -163,6 +174,24 @@ public class Model implements Serializable {
         return nonChildProperty;
     }
     
+    /**
+     * Gets the slots of the properties of this model.  Must
+     * not be called until all children and non-children have
+     * been added to this model
+     * 
+     * @return The slots of the properties of this model
+     */
+    public PropertySlots getPropertySlots() {
+        if (propertySlots != null) return propertySlots;
+        
+        synchronized (lock) {
+            if (propertySlots != null) return propertySlots;
+            
+            propertySlots = new PropertySlots(childrenByName, nonChildProperty);
+            return propertySlots;
+        }
+    }
+    
     public Set<String> getUnKeyedChildren() {
         synchronized (lock) {
             if (unKeyedChildren != null) return unKeyedChildren;
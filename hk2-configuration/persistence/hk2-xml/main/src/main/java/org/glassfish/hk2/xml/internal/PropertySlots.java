@@ -0,0 +1,272 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.hk2.xml.internal;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns every property of a {@link Model} a fixed slot number.
+ * Children come first, in the order of the model, followed by the
+ * non-child properties.  Since the slots depend only on the model the
+ * same slots are calculated when the proxy is generated and when the
+ * model is re-created from the proxy at runtime, so the generated
+ * proxies can address their properties by slot.
+ * <p>
+ * Properties of primitive type are stored as bits in a long (see
+ * {@link #toBits(Class, Object)}) in a separate storage area from
+ * the other properties so that they need not be boxed
+ * 
+ * @author jwells
+ *
+ */
+public class PropertySlots implements Serializable {
+    private static final long serialVersionUID = -5394857289817304417L;
+    
+    private final Map<String, Integer> slotsByName = new HashMap<String, Integer>();
+    private final String names[];
+    private final ParentedModel children[];
+    private final Class<?> primitiveTypes[];
+    private final int storageIndexes[];
+    private final long primitiveDefaults[];
+    private final int numObjects;
+    private final int numPrimitives;
+    
+    /* package */ PropertySlots(Map<String, ParentedModel> childrenByName, Map<String, ChildDataModel> nonChildProperties) {
+        int numSlots = childrenByName.size() + nonChildProperties.size();
+        
+        names = new String[numSlots];
+        children = new ParentedModel[numSlots];
+        primitiveTypes = new Class<?>[numSlots];
+        storageIndexes = new int[numSlots];
+        primitiveDefaults = new long[numSlots];
+        
+        int slot = 0;
+        int objects = 0;
+        int primitives = 0;
+        for (Map.Entry<String, ParentedModel> entry : childrenByName.entrySet()) {
+            slotsByName.put(entry.getKey(), slot);
+            names[slot] = entry.getKey();
+            children[slot] = entry.getValue();
+            storageIndexes[slot] = objects++;
+            
+            slot++;
+        }
+        
+        for (Map.Entry<String, ChildDataModel> entry : nonChildProperties.entrySet()) {
+            slotsByName.put(entry.getKey(), slot);
+            names[slot] = entry.getKey();
+            
+            Class<?> primitiveType = entry.getValue().getPrimitiveType();
+            if (primitiveType != null) {
+                primitiveTypes[slot] = primitiveType;
+                storageIndexes[slot] = primitives++;
+                primitiveDefaults[slot] = toBits(primitiveType,
+                        Utilities.getDefaultValue(entry.getValue().getDefaultAsString(), primitiveType));
+            }
+            else {
+                storageIndexes[slot] = objects++;
+            }
+            
+            slot++;
+        }
+        
+        numObjects = objects;
+        numPrimitives = primitives;
+    }
+    
+    /**
+     * Gets the slot of the given property
+     * 
+     * @param propName The xml tag of the property
+     * @return The slot of the property, or -1 if
+     * there is no such property
+     */
+    public int getSlot(String propName) {
+        Integer retVal = slotsByName.get(propName);
+        if (retVal == null) return -1;
+        return retVal;
+    }
+    
+    public int getNumSlots() {
+        return names.length;
+    }
+    
+    /**
+     * @return the xml tag of the property in the slot
+     */
+    public String getName(int slot) {
+        return names[slot];
+    }
+    
+    /**
+     * @return the child model of the property in the slot, or
+     * null if the property is not a child
+     */
+    public ParentedModel getChild(int slot) {
+        return children[slot];
+    }
+    
+    /**
+     * @return the primitive type of the property in the slot, or
+     * null if the property is not a primitive
+     */
+    public Class<?> getPrimitiveType(int slot) {
+        return primitiveTypes[slot];
+    }
+    
+    /**
+     * @return the index of the slot in the primitive storage if the
+     * slot has a primitive type, or in the object storage otherwise
+     */
+    public int getStorageIndex(int slot) {
+        return storageIndexes[slot];
+    }
+    
+    /**
+     * @return the default value of a primitive slot, as bits
+     */
+    public long getPrimitiveDefault(int slot) {
+        return primitiveDefaults[slot];
+    }
+    
+    public int getNumObjectSlots() {
+        return numObjects;
+    }
+    
+    public int getNumPrimitiveSlots() {
+        return numPrimitives;
+    }
+    
+    /**
+     * Converts a value into the bits stored in a slot.  Besides the
+     * boxed type of the slot, other boxed numbers are converted as by
+     * a cast, and strings are parsed as they are in a document
+     * 
+     * @param primitiveType The primitive type of the slot
+     * @param value The non-null value
+     * @return The bits representing value
+     * @throws IllegalArgumentException If the value cannot be converted
+     * to the type of the slot
+     */
+    public static long toBits(Class<?> primitiveType, Object value) throws IllegalArgumentException {
+        if (value instanceof String) {
+            try {
+                value = Utilities.getDefaultValue((String) value, primitiveType);
+            }
+            catch (RuntimeException re) {
+                throw new IllegalArgumentException("The value " + value + " cannot be converted to " + primitiveType.getName(), re);
+            }
+        }
+        
+        if (boolean.class.equals(primitiveType)) {
+            if (value instanceof Boolean) {
+                return ((Boolean) value) ? 1L : 0L;
+            }
+        }
+        else if (char.class.equals(primitiveType)) {
+            if (value instanceof Character) {
+                return (Character) value;
+            }
+            if (value instanceof Number) {
+                return (char) ((Number) value).intValue();
+            }
+        }
+        else if (float.class.equals(primitiveType)) {
+            if (value instanceof Number) {
+                return Float.floatToRawIntBits(((Number) value).floatValue());
+            }
+        }
+        else if (double.class.equals(primitiveType)) {
+            if (value instanceof Number) {
+                return Double.doubleToRawLongBits(((Number) value).doubleValue());
+            }
+        }
+        else {
+            // byte, short, int and long
+            if (value instanceof Number) {
+                return ((Number) value).longValue();
+            }
+            if (value instanceof Character) {
+                return (Character) value;
+            }
+        }
+        
+        throw new IllegalArgumentException("A value of type " + value.getClass().getName() +
+                " cannot be stored in a property of type " + primitiveType.getName() + ": " + value);
+    }
+    
+    /**
+     * Converts the bits stored in a slot into a boxed primitive
+     * 
+     * @param primitiveType The primitive type of the slot
+     * @param bits The bits stored in the slot
+     * @return The boxed value
+     */
+    public static Object fromBits(Class<?> primitiveType, long bits) {
+        if (int.class.equals(primitiveType)) {
+            return (int) bits;
+        }
+        if (long.class.equals(primitiveType)) {
+            return bits;
+        }
+        if (boolean.class.equals(primitiveType)) {
+            return (bits != 0L);
+        }
+        if (byte.class.equals(primitiveType)) {
+            return (byte) bits;
+        }
+        if (short.class.equals(primitiveType)) {
+            return (short) bits;
+        }
+        if (char.class.equals(primitiveType)) {
+            return (char) bits;
+        }
+        if (float.class.equals(primitiveType)) {
+            return Float.intBitsToFloat((int) bits);
+        }
+        if (double.class.equals(primitiveType)) {
+            return Double.longBitsToDouble(bits);
+        }
+        
+        throw new AssertionError("Unknown primitive type " + primitiveType);
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.hk2.xml.internal;
+
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import javax.xml.bind.Unmarshaller.Listener;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.glassfish.hk2.utilities.reflection.ClassReflectionHelper;
+import org.glassfish.hk2.xml.jaxb.internal.BaseHK2JAXBBean;
+import org.glassfish.hk2.xml.spi.PreGenerationRequirement;
+import org.glassfish.hk2.xml.spi.XmlServiceParser;
+
+/**
+ * A parser that populates the hk2 beans directly from
+ * a {@link XMLStreamReader}, and hence never holds the
+ * entire document in memory
+ * 
+ * @author jwells
+ *
+ */
+@Singleton
+public class StaxXmlParser implements XmlServiceParser {
+    @Inject
+    private Provider<XmlServiceImpl> xmlService;
+    
+    private final XMLInputFactory inputFactory;
+    
+    private StaxXmlParser() {
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    }
+
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.xml.spi.XmlServiceParser#parseRoot(java.lang.Class, java.net.URI, javax.xml.bind.Unmarshaller.Listener)
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> T parseRoot(Class<T> clazz, URI location, Listener listener)
+            throws Exception {
+        ClassReflectionHelper classReflectionHelper = xmlService.get().getClassReflectionHelper();
+        
+        BaseHK2JAXBBean hk2Root = Utilities.createBean(clazz);
+        hk2Root._setClassReflectionHelper(classReflectionHelper);
+        
+        InputStream urlStream = location.toURL().openStream();
+        try {
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(urlStream);
+            try {
+                while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    // Skip prolog, comments and the like
+                }
+                
+                handleElement(hk2Root, null, reader, classReflectionHelper, listener);
+            }
+            finally {
+                reader.close();
+            }
+        }
+        finally {
+            urlStream.close();
+        }
+        
+        return (T) hk2Root;
+    }
+    
+    /**
+     * Fills in the target from the element the reader is positioned on.  On
+     * entry the reader must be on the START_ELEMENT of the element, on
+     * exit it is left on the matching END_ELEMENT
+     */
+    private void handleElement(BaseHK2JAXBBean target, BaseHK2JAXBBean parent,
+            XMLStreamReader reader, ClassReflectionHelper classReflectionHelper, Listener listener) throws XMLStreamException {
+        listener.beforeUnmarshal(target, parent);
+        
+        Map<String, List<BaseHK2JAXBBean>> listChildren = new HashMap<String, List<BaseHK2JAXBBean>>();
+        Map<String, List<BaseHK2JAXBBean>> arrayChildren = new HashMap<String, List<BaseHK2JAXBBean>>();
+        
+        Model model = target._getModel();
+        
+        int attributeCount = reader.getAttributeCount();
+        for (int lcv = 0; lcv < attributeCount; lcv++) {
+            String attributeName = reader.getAttributeLocalName(lcv);
+            
+            if (model.getNonChildProperties().containsKey(attributeName)) {
+                Class<?> childType = model.getNonChildType(attributeName);
+                
+                Object convertedValue = Utilities.getDefaultValue(reader.getAttributeValue(lcv), childType);
+                target._setProperty(attributeName, convertedValue);
+            }
+        }
+        
+        while (reader.next() != XMLStreamConstants.END_ELEMENT) {
+            if (reader.getEventType() != XMLStreamConstants.START_ELEMENT) continue;
+            
+            String tagName = reader.getLocalName();
+            
+            if (model.getNonChildProperties().containsKey(tagName)) {
+                Class<?> childType = model.getNonChildType(tagName);
+                
+                String valueString = readText(reader);
+                
+                Object convertedValue = Utilities.getDefaultValue(valueString, childType);
+                target._setProperty(tagName, convertedValue);
+            }
+            else if (model.getKeyedChildren().contains(tagName) ||
+                     model.getUnKeyedChildren().contains(tagName)) {
+                ParentedModel informedChild = model.getChild(tagName);
+                Model grandChild = informedChild.getChildModel();
+                
+                BaseHK2JAXBBean hk2Root = Utilities.createBean(grandChild.getProxyAsClass());
+                hk2Root._setClassReflectionHelper(classReflectionHelper);
+                
+                handleElement(hk2Root, target, reader, classReflectionHelper, listener);
+                
+                if (informedChild.getChildType().equals(ChildType.DIRECT)) {
+                    target._setProperty(tagName, hk2Root);
+                }
+                else if (informedChild.getChildType().equals(ChildType.LIST)) {
+                    List<BaseHK2JAXBBean> cList = listChildren.get(tagName);
+                    if (cList == null) {
+                        cList = new ArrayList<BaseHK2JAXBBean>();
+                        listChildren.put(tagName, cList);
+                    }
+                    cList.add(hk2Root);
+                }
+                else if (informedChild.getChildType().equals(ChildType.ARRAY)) {
+                    List<BaseHK2JAXBBean> cList = arrayChildren.get(tagName);
+                    if (cList == null) {
+                        cList = new LinkedList<BaseHK2JAXBBean>();
+                        arrayChildren.put(tagName, cList);
+                    }
+                    cList.add(hk2Root);
+                }
+            }
+            else {
+                // Probably just ignore it
+                skipElement(reader);
+            }
+        }
+        
+        for (Map.Entry<String, List<BaseHK2JAXBBean>> entry : listChildren.entrySet()) {
+            // Kind of cheating with the erasure, but hey, it works!
+            target._setProperty(entry.getKey(), entry.getValue());
+        }
+        
+        for (Map.Entry<String, List<BaseHK2JAXBBean>> entry : arrayChildren.entrySet()) {
+            String childTag = entry.getKey();
+            ParentedModel pn = model.getChild(childTag);
+            Class<?> childType = pn.getChildModel().getOriginalInterfaceAsClass();
+            
+            List<BaseHK2JAXBBean> individuals = entry.getValue();
+            
+            Object actualArray = Array.newInstance(childType, individuals.size());
+            
+            int index = 0;
+            for (BaseHK2JAXBBean individual : individuals) {
+                Array.set(actualArray, index++, individual);
+            }
+            
+            target._setProperty(childTag, actualArray);
+        }
+        
+        listener.afterUnmarshal(target, parent);
+    }
+    
+    /**
+     * Reads the text directly contained in the current element, leaving the
+     * reader on the END_ELEMENT of the element.  Text of nested elements
+     * is ignored
+     * 
+     * @return The trimmed text of the element, or null if the element
+     * has no text at all
+     */
+    private static String readText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder sb = null;
+        
+        int depth = 0;
+        while (true) {
+            int event = reader.next();
+            
+            switch (event) {
+            case XMLStreamConstants.START_ELEMENT:
+                depth++;
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                if (depth == 0) {
+                    return (sb == null) ? null : sb.toString().trim();
+                }
+                depth--;
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+            case XMLStreamConstants.SPACE:
+                if (depth == 0) {
+                    if (sb == null) sb = new StringBuilder();
+                    sb.append(reader.getText());
+                }
+                break;
+            default:
+                break;
+            }
+        }
+    }
+    
+    /**
+     * Skips the current element and all of its children, leaving
+     * the reader on the END_ELEMENT of the element
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 0;
+        while (true) {
+            int event = reader.next();
+            
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth == 0) return;
+                depth--;
+            }
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.xml.spi.XmlServiceParser#getPreGenerationRequirement()
+     */
+    @Override
+    public PreGenerationRequirement getPreGenerationRequirement() {
+        return PreGenerationRequirement.LAZY_PREGENERATION;
+    }
+}
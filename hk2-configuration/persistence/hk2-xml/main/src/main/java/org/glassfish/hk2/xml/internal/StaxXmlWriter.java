@@ -0,0 +1,274 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.hk2.xml.internal;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.glassfish.hk2.xml.jaxb.internal.BaseHK2JAXBBean;
+
+/**
+ * Writes a tree of hk2 beans as xml with a {@link XMLStreamWriter},
+ * reading the properties directly from the beans.  If asked to
+ * the whole document written is remembered in the root, and each
+ * bean remembers where its own xml is in that document.  The xml of
+ * a bean is then copied from the previous document the next time
+ * unless the bean or one of its descendants has been changed in the
+ * meantime
+ * 
+ * @author jwells
+ *
+ */
+public class StaxXmlWriter {
+    private final static String ENCODING = "UTF-8";
+    private final static String VERSION = "1.0";
+    private final static String NEW_LINE = "\n";
+    private final static String INDENT = "  ";
+    private final static String EMPTY = "";
+    
+    private final static XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    
+    private StaxXmlWriter() {
+    }
+    
+    /**
+     * Writes the tree under root to the output stream.  The
+     * output stream is flushed but not closed.  The caller must
+     * hold the read lock of the tree, if the tree has one
+     * 
+     * @param root The non-null root of the tree to write
+     * @param outputStream The non-null stream to write the tree to
+     * @param keepFragments If true the document written is kept
+     * by the root, so that the xml of the beans that do not change
+     * need not be generated again
+     * @throws IOException On any error writing to the stream
+     */
+    public static void write(BaseHK2JAXBBean root, OutputStream outputStream, boolean keepFragments) throws IOException {
+        String rootTag = root._getModel().getRootName();
+        if (rootTag == null) {
+            throw new IllegalArgumentException("The bean " + root + " is not the root of a tree");
+        }
+        
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, ENCODING));
+        
+        if (!keepFragments) {
+            writeDocument(root, rootTag, writer, null);
+        }
+        else {
+            // Two writers with the read lock must not mix their positions
+            synchronized (root) {
+                StringWriter document = new StringWriter();
+                
+                writeDocument(root, rootTag, document, document.getBuffer());
+                
+                String text = document.toString();
+                root._setXmlDocument(text);
+                
+                writer.write(text);
+            }
+        }
+        
+        writer.flush();
+    }
+    
+    private static void writeDocument(BaseHK2JAXBBean root, String rootTag, Writer writer,
+            StringBuffer document) throws IOException {
+        try {
+            XMLStreamWriter xmlWriter = OUTPUT_FACTORY.createXMLStreamWriter(writer);
+            
+            xmlWriter.writeStartDocument(ENCODING, VERSION);
+            xmlWriter.writeCharacters(NEW_LINE);
+            
+            String previous = root._getXmlDocument();
+            writeBean(root, rootTag, 0, xmlWriter, writer, document, previous, (previous == null) ? -1 : 0, 0);
+            
+            // The root may have been copied from the previous document, which some writers
+            // do not count as a root element, so the document is not ended
+            // (or the writer closed, which ends the document) explicitly
+            xmlWriter.writeCharacters(NEW_LINE);
+            xmlWriter.flush();
+        }
+        catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+    
+    /**
+     * Writes one bean, copying its xml from the previous document if
+     * it has not changed since
+     * 
+     * @param document The document being written, where the position
+     * of each bean is recorded, or null if positions are not recorded
+     * @param previous The previously written document or null if there is none
+     * @param parentPreviousStart Where the parent starts in the previous
+     * document, or -1 if the parent is not in the previous document
+     * @param parentStart Where the parent starts in the document being written
+     */
+    private static void writeBean(BaseHK2JAXBBean bean, String xmlTag, int depth,
+            XMLStreamWriter xmlWriter, Writer writer, StringBuffer document,
+            String previous, int parentPreviousStart, int parentStart) throws XMLStreamException, IOException {
+        int previousStart = -1;
+        if (parentPreviousStart >= 0 && bean._getXmlFragmentLength() >= 0) {
+            previousStart = parentPreviousStart + bean._getXmlFragmentStart();
+        }
+        
+        // Finishes any open start tag and pushes everything written so far to the writer
+        xmlWriter.writeCharacters(EMPTY);
+        xmlWriter.flush();
+        
+        int start = (document == null) ? 0 : document.length();
+        
+        if (previousStart >= 0 && bean._hasXmlFragment()) {
+            writer.write(previous, previousStart, bean._getXmlFragmentLength());
+        }
+        else {
+            writeElement(bean, xmlTag, depth, xmlWriter, writer, document, previous, previousStart, start);
+            xmlWriter.flush();
+        }
+        
+        if (document != null) {
+            bean._setXmlFragment(start - parentStart, document.length() - start);
+        }
+    }
+    
+    private static void writeElement(BaseHK2JAXBBean bean, String xmlTag, int depth,
+            XMLStreamWriter xmlWriter, Writer writer, StringBuffer document,
+            String previous, int previousStart, int start) throws XMLStreamException, IOException {
+        Model model = bean._getModel();
+        Map<String, Object> beanLikeMap = bean._getBeanLikeMap();
+        
+        xmlWriter.writeStartElement(xmlTag);
+        
+        for (Map.Entry<String, ChildDataModel> entry : model.getNonChildProperties().entrySet()) {
+            if (!entry.getValue().isXmlAttribute()) continue;
+            
+            Object value = beanLikeMap.get(entry.getKey());
+            if (value == null) continue;
+            
+            xmlWriter.writeAttribute(entry.getKey(), toXmlValue(value));
+        }
+        
+        boolean hasContent = false;
+        for (Map.Entry<String, ChildDataModel> entry : model.getNonChildProperties().entrySet()) {
+            if (entry.getValue().isXmlAttribute()) continue;
+            
+            Object value = beanLikeMap.get(entry.getKey());
+            if (value == null) continue;
+            
+            indent(xmlWriter, depth + 1);
+            hasContent = true;
+            
+            xmlWriter.writeStartElement(entry.getKey());
+            xmlWriter.writeCharacters(toXmlValue(value));
+            xmlWriter.writeEndElement();
+        }
+        
+        for (Map.Entry<String, ParentedModel> entry : model.getChildrenByName().entrySet()) {
+            String childTag = entry.getKey();
+            
+            Object child = beanLikeMap.get(childTag);
+            if (child == null) continue;
+            
+            ChildType childType = entry.getValue().getChildType();
+            if (ChildType.LIST.equals(childType)) {
+                for (Object listChild : (List<?>) child) {
+                    indent(xmlWriter, depth + 1);
+                    hasContent = true;
+                    
+                    writeBean((BaseHK2JAXBBean) listChild, childTag, depth + 1, xmlWriter, writer, document, previous, previousStart, start);
+                }
+            }
+            else if (ChildType.ARRAY.equals(childType)) {
+                int length = Array.getLength(child);
+                for (int lcv = 0; lcv < length; lcv++) {
+                    indent(xmlWriter, depth + 1);
+                    hasContent = true;
+                    
+                    writeBean((BaseHK2JAXBBean) Array.get(child, lcv), childTag, depth + 1, xmlWriter, writer, document, previous, previousStart, start);
+                }
+            }
+            else {
+                indent(xmlWriter, depth + 1);
+                hasContent = true;
+                
+                writeBean((BaseHK2JAXBBean) child, childTag, depth + 1, xmlWriter, writer, document, previous, previousStart, start);
+            }
+        }
+        
+        if (hasContent) {
+            indent(xmlWriter, depth);
+        }
+        
+        xmlWriter.writeEndElement();
+    }
+    
+    /**
+     * The inverse of {@link Utilities#getDefaultValue(String, Class)}, which
+     * is how the hk2 parsers convert the text of the document into values
+     * 
+     * @param value The non-null value of a non-child property
+     * @return The text to write for the value
+     */
+    private static String toXmlValue(Object value) {
+        if (value instanceof byte[]) {
+            return new String((byte[]) value);
+        }
+        
+        return value.toString();
+    }
+    
+    private static void indent(XMLStreamWriter xmlWriter, int depth) throws XMLStreamException {
+        xmlWriter.writeCharacters(NEW_LINE);
+        for (int lcv = 0; lcv < depth; lcv++) {
+            xmlWriter.writeCharacters(INDENT);
+        }
+    }
+}
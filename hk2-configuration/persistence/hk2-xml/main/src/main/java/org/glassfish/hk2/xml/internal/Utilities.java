@@ -144,6 +144,30 @@ public class Utilities {
         }
     }
     
+    /**
+     * Creates a copy of the given bean for an XmlRootCopy.  Only the
+     * non-child properties are copied here, the children are copied
+     * the first time they are asked for, so parts of the tree that are
+     * never visited in the copy are never copied
+     * 
+     * @param copyMe The non-null bean to copy
+     * @param copyParent The copy of the parent of copyMe, or null if copyMe is a root
+     * @param copyController The change control of the copied tree
+     * @return The copy of copyMe
+     */
+    public static BaseHK2JAXBBean createLazyCopy(BaseHK2JAXBBean copyMe,
+            BaseHK2JAXBBean copyParent,
+            DynamicChangeInfo copyController) {
+        BaseHK2JAXBBean retVal = createBean(copyMe.getClass());
+        retVal._shallowCopyFrom(copyMe);
+        retVal._setClassReflectionHelper(copyMe._getClassReflectionHelper());
+        retVal._setParent(copyParent);
+        retVal._setCopySource(copyMe);
+        
+        retVal._setDynamicChangeInfo(copyController);
+        return retVal;
+    }
+    
     private static String getKeySegment(BaseHK2JAXBBean bean) {
         String baseKeySegment = bean._getKeyValue();
         if (baseKeySegment == null) {
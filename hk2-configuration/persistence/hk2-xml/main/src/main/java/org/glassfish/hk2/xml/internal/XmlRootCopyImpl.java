@@ -40,6 +40,11 @@
 
 package org.glassfish.hk2.xml.internal;
 
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
 import org.glassfish.hk2.api.MultiException;
 import org.glassfish.hk2.configuration.hub.api.Hub;
 import org.glassfish.hk2.configuration.hub.api.PrepareFailedException;
@@ -98,6 +103,18 @@ public class XmlRootCopyImpl<T> implements XmlRootCopy<T> {
      */
     @Override
     public void merge() {
+        BaseHK2JAXBBean copyBean = (BaseHK2JAXBBean) copy;
+        
+        // Only the parts of the copy that were modified need to be merged.  They
+        // are gathered before taking the lock of the parent tree
+        List<BaseHK2JAXBBean> modifiedCopies = new LinkedList<BaseHK2JAXBBean>();
+        copyBean._getModifiedCopies(modifiedCopies);
+        
+        List<Map<String, Object>> copiedProperties = new ArrayList<Map<String, Object>>(modifiedCopies.size());
+        for (BaseHK2JAXBBean modifiedCopy : modifiedCopies) {
+            copiedProperties.add(modifiedCopy._getNonChildProperties());
+        }
+        
         parent.getChangeInfo().getWriteLock().lock();
         try {
             if (!isMergeable()) {
@@ -108,15 +125,22 @@ public class XmlRootCopyImpl<T> implements XmlRootCopy<T> {
             if (hub != null) {
                 writeableDatabase = hub.getWriteableDatabaseCopy();
             }
-        
-            BaseHK2JAXBBean copyBean = (BaseHK2JAXBBean) copy;
-            BaseHK2JAXBBean original = (BaseHK2JAXBBean) parent.getRoot();
             
-            original._merge(copyBean, writeableDatabase);
+            List<BaseHK2JAXBBean> merging = new LinkedList<BaseHK2JAXBBean>();
             
             boolean success = false;
             try {
-                writeableDatabase.commit(new XmlHubCommitMessage(){});
+                int lcv = 0;
+                for (BaseHK2JAXBBean modifiedCopy : modifiedCopies) {
+                    BaseHK2JAXBBean original = modifiedCopy._getCopySource();
+                    
+                    original._merge(copiedProperties.get(lcv++), writeableDatabase);
+                    merging.add(original);
+                }
+                
+                if (writeableDatabase != null) {
+                    writeableDatabase.commit(new XmlHubCommitMessage(){});
+                }
                 success = true;
             }
             catch (MultiException me) {
@@ -145,14 +169,14 @@ public class XmlRootCopyImpl<T> implements XmlRootCopy<T> {
                     parent.getChangeInfo().incrementChangeNumber();
                 }
                 
-                original._endMerge(success);
+                for (BaseHK2JAXBBean original : merging) {
+                    original._endMerge(success);
+                }
             }
         }
         finally {
             parent.getChangeInfo().getWriteLock().unlock();
         }
     }
-    
-    
 
 }
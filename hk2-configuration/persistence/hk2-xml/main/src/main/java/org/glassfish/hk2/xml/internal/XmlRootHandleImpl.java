@@ -40,10 +40,11 @@
 
 package org.glassfish.hk2.xml.internal;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Set;
 
 import org.glassfish.hk2.api.DynamicConfiguration;
 import org.glassfish.hk2.configuration.hub.api.Hub;
@@ -160,16 +161,8 @@ public class XmlRootHandleImpl<T> implements XmlRootHandle<T> {
                 return new XmlRootCopyImpl<T>(useHub, this, changeControl.getChangeNumber(), null);
             }
         
-            BaseHK2JAXBBean copy;
-            try {
-                copy = doCopy(bean, copyController);
-            }
-            catch (RuntimeException re) {
-                throw re;
-            }
-            catch (Throwable th) {
-                throw new RuntimeException(th);
-            }
+            // Only the root is copied here, the rest of the tree is copied as it is used
+            BaseHK2JAXBBean copy = Utilities.createLazyCopy(bean, null, copyController);
         
             return new XmlRootCopyImpl<T>(useHub, this, changeControl.getChangeNumber(), (T) copy);
         }
@@ -178,45 +171,6 @@ public class XmlRootHandleImpl<T> implements XmlRootHandle<T> {
         }
     }
     
-    private static BaseHK2JAXBBean doCopy(BaseHK2JAXBBean copyMe, DynamicChangeInfo copyController) throws Throwable {
-        if (copyMe == null) return null;
-        
-        BaseHK2JAXBBean retVal = Utilities.createBean(copyMe.getClass());
-        retVal._shallowCopyFrom(copyMe);
-        
-        Set<String> childrenProps = copyMe._getChildrenXmlTags();
-        for (String childProp : childrenProps) {
-            Object child = copyMe._getProperty(childProp);
-            if (child == null) continue;
-            
-            if (child instanceof List) {
-                List<?> childList = (List<?>) child;
-                
-                ArrayList<Object> toSetChildList = new ArrayList<Object>(childList.size());
-                
-                for (Object subChild : childList) {
-                    BaseHK2JAXBBean copiedChild = doCopy((BaseHK2JAXBBean) subChild, copyController);
-                    copiedChild._setParent(retVal);
-                    
-                    toSetChildList.add(copiedChild);
-                }
-                
-                // Sets the list property into the parent
-                retVal._setProperty(childProp, toSetChildList);
-            }
-            else {
-                // A direct child
-                BaseHK2JAXBBean copiedChild = doCopy((BaseHK2JAXBBean) child, copyController);
-                copiedChild._setParent(retVal);
-                
-                retVal._setProperty(childProp, copiedChild);
-            }
-        }
-        
-        retVal._setDynamicChangeInfo(copyController);
-        return retVal;
-    }
-    
     /* package */ long getRevision() {
         return changeControl.getChangeNumber();
     }
@@ -293,6 +247,65 @@ public class XmlRootHandleImpl<T> implements XmlRootHandle<T> {
         throw new AssertionError("getReadOnlyRoot not implemented");
     }
     
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.xml.api.XmlRootHandle#marshall(java.io.OutputStream)
+     */
+    @Override
+    public void marshall(OutputStream outputStream) throws IOException {
+        marshall(outputStream, false);
+    }
+    
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.xml.api.XmlRootHandle#save()
+     */
+    @Override
+    public void save() throws IOException {
+        if (rootURI == null || !"file".equals(rootURI.getScheme())) {
+            throw new IllegalStateException("Can only save to a file, but the URI of this handle is " + rootURI);
+        }
+        
+        File saveFile = new File(rootURI);
+        
+        // Written beside the file and then swapped in, so a failure
+        // while writing never leaves a partially written file behind
+        File tmpFile = File.createTempFile(saveFile.getName(), ".tmp", saveFile.getAbsoluteFile().getParentFile());
+        boolean swapped = false;
+        try {
+            FileOutputStream fileStream = new FileOutputStream(tmpFile);
+            try {
+                marshall(fileStream, true);
+            }
+            finally {
+                fileStream.close();
+            }
+            
+            if (!tmpFile.renameTo(saveFile)) {
+                throw new IOException("Unable to swap saved file " + tmpFile.getAbsolutePath() + " to " + saveFile.getAbsolutePath());
+            }
+            
+            swapped = true;
+        }
+        finally {
+            if (!swapped) {
+                tmpFile.delete();
+            }
+        }
+    }
+    
+    private void marshall(OutputStream outputStream, boolean keepFragments) throws IOException {
+        changeControl.getReadLock().lock();
+        try {
+            if (root == null) {
+                throw new IllegalStateException("There is no root in handle " + this);
+            }
+            
+            StaxXmlWriter.write((BaseHK2JAXBBean) root, outputStream, keepFragments);
+        }
+        finally {
+            changeControl.getReadLock().unlock();
+        }
+    }
+    
     /* package */ DynamicChangeInfo getChangeInfo() {
         return changeControl;
     }
@@ -68,7 +68,9 @@ import org.glassfish.hk2.xml.api.XmlHk2ConfigurationBean;
 import org.glassfish.hk2.xml.api.XmlHubCommitMessage;
 import org.glassfish.hk2.xml.api.annotations.Customizer;
 import org.glassfish.hk2.xml.internal.DynamicChangeInfo;
+import org.glassfish.hk2.xml.internal.Model;
 import org.glassfish.hk2.xml.internal.ParentedModel;
+import org.glassfish.hk2.xml.internal.PropertySlots;
 import org.glassfish.hk2.xml.internal.Utilities;
 
 /**
@@ -85,9 +87,10 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
     public final static char XML_PATH_SEPARATOR = '/';
     
     /**
-     * All fields, including child lists and direct children
+     * All fields, including child lists and direct children,
+     * stored in the slots given them by the model
      */
-    private final HashMap<String, Object> beanLikeMap = new HashMap<String, Object>();
+    private final PropertyValues values;
     
     /**
      * All children whose type has an identifier.  First key is the xml parameter name, second
@@ -142,23 +145,81 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
      */
     private transient ActiveDescriptor<?> selfDescriptor;
     
+    /**
+     * If this bean is part of an {@link org.glassfish.hk2.xml.api.XmlRootCopy}
+     * then this is the bean in the parent tree it was copied from
+     */
+    private transient BaseHK2JAXBBean copySource;
+    
+    /**
+     * True once the children of a copy have themselves been copied
+     * from copySource.  Until then the children of copySource are
+     * not copied at all
+     */
+    private volatile boolean copyChildrenCopied = false;
+    
+    /** True if a property of this copy has been set */
+    private volatile boolean copyModified = false;
+    
+    /**
+     * The whole document last written, only kept by the root of the tree
+     */
+    private transient volatile String xmlDocument;
+    
+    /**
+     * Where the xml last written for this bean and its children starts,
+     * relative to where the xml of the parent starts in the same document
+     */
+    private transient int xmlFragmentStart;
+    
+    /** The length of the xml last written for this bean, or -1 if never written */
+    private transient int xmlFragmentLength = -1;
+    
+    /**
+     * False whenever this bean or one of its descendants changed since
+     * it was last written.  The position of the xml of the bean stays
+     * known, so that unchanged descendants can still be found in it
+     */
+    private transient volatile boolean xmlFragmentValid;
+    
     /**
      * For JAXB and Serialization
      */
     public BaseHK2JAXBBean() {
+        values = new PropertyValues(_getModel().getPropertySlots());
     }
     
     public void _setProperty(String propName, Object propValue) {
         _setProperty(propName, propValue, true);
     }
     
-    @SuppressWarnings("unchecked")
     public void _setProperty(String propName, Object propValue, boolean changeInHub) {
         if (propName == null) throw new IllegalArgumentException("properyName may not be null");
         
+        _setProperty(getSlot(propName), propValue, changeInHub);
+    }
+    
+    /**
+     * Called by proxy
+     * 
+     * @param slot The slot of the property
+     * @param propValue The new value of the property
+     */
+    public void _setProperty(int slot, Object propValue) {
+        _setProperty(slot, propValue, true);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void _setProperty(int slot, Object propValue, boolean changeInHub) {
         if (DEBUG_GETS_AND_SETS) {
             // Hidden behind static because of potential expensive toString costs
-            Logger.getLogger().debug("XmlService setting property " + propName + " to " + propValue + " in " + this);
+            Logger.getLogger().debug("XmlService setting property " + values.getSlots().getName(slot) + " to " + propValue + " in " + this);
+        }
+        
+        Class<?> primitiveType = values.getSlots().getPrimitiveType(slot);
+        if (propValue != null && primitiveType != null) {
+            // Converted before the hub sees it, and fails before anything is changed
+            propValue = PropertySlots.fromBits(primitiveType, PropertySlots.toBits(primitiveType, propValue));
         }
         
         if (propValue != null && (propValue instanceof List)) {
@@ -171,84 +232,211 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
             }
         }
         
+        if (copySource != null) {
+            if (values.getSlots().getChild(slot) != null) {
+                // Otherwise the lazy copy of the children would later overwrite this value
+                copyChildren();
+            }
+            
+            copyModified = true;
+        }
+        
         if (changeControl == null) {
             if (active) {
                 synchronized (this) {
-                    beanLikeMap.put(propName, propValue);
+                    values.set(slot, propValue);
                 }
             }
             else {
-                beanLikeMap.put(propName, propValue);
+                values.set(slot, propValue);
             }
         }
         else {
             changeControl.getWriteLock().lock();
             try {
                 if (changeInHub) {
-                    changeInHub(propName, propValue);
+                    changeInHub(values.getSlots().getName(slot), propValue);
                 }
                 
-                beanLikeMap.put(propName, propValue);
+                values.set(slot, propValue);
             }
             finally {
                 changeControl.getWriteLock().unlock();
             }
         }
+        
+        invalidateXmlFragments();
     }
     
     public void _setProperty(String propName, byte propValue) {
         if (propName == null) throw new IllegalArgumentException("properyName may not be null");
         
-        _setProperty(propName, (Byte) propValue);
+        _setProperty(getSlot(propName), propValue);
+    }
+    
+    /**
+     * Called by proxy
+     * 
+     * @param slot The slot of the property
+     * @param propValue The new value of the property
+     */
+    public void _setProperty(int slot, byte propValue) {
+        setPrimitive(slot, byte.class, propValue);
     }
     
     public void _setProperty(String propName, boolean propValue) {
         if (propName == null) throw new IllegalArgumentException("properyName may not be null");
         
-        _setProperty(propName, (Boolean) propValue);
+        _setProperty(getSlot(propName), propValue);
+    }
+    
+    /**
+     * Called by proxy
+     * 
+     * @param slot The slot of the property
+     * @param propValue The new value of the property
+     */
+    public void _setProperty(int slot, boolean propValue) {
+        setPrimitive(slot, boolean.class, (propValue) ? 1L : 0L);
     }
     
     public void _setProperty(String propName, char propValue) {
         if (propName == null) throw new IllegalArgumentException("properyName may not be null");
         
-        _setProperty(propName, (Character) propValue);
+        _setProperty(getSlot(propName), propValue);
+    }
+    
+    /**
+     * Called by proxy
+     * 
+     * @param slot The slot of the property
+     * @param propValue The new value of the property
+     */
+    public void _setProperty(int slot, char propValue) {
+        setPrimitive(slot, char.class, propValue);
     }
     
     public void _setProperty(String propName, short propValue) {
         if (propName == null) throw new IllegalArgumentException("properyName may not be null");
         
-        _setProperty(propName, (Short) propValue);
+        _setProperty(getSlot(propName), propValue);
+    }
+    
+    /**
+     * Called by proxy
+     * 
+     * @param slot The slot of the property
+     * @param propValue The new value of the property
+     */
+    public void _setProperty(int slot, short propValue) {
+        setPrimitive(slot, short.class, propValue);
     }
     
     public void _setProperty(String propName, int propValue) {
         if (propName == null) throw new IllegalArgumentException("properyName may not be null");
         
-        _setProperty(propName, (Integer) propValue);
+        _setProperty(getSlot(propName), propValue);
+    }
+    
+    /**
+     * Called by proxy
+     * 
+     * @param slot The slot of the property
+     * @param propValue The new value of the property
+     */
+    public void _setProperty(int slot, int propValue) {
+        setPrimitive(slot, int.class, propValue);
     }
     
     public void _setProperty(String propName, float propValue) {
         if (propName == null) throw new IllegalArgumentException("properyName may not be null");
         
-        _setProperty(propName, (Float) propValue);
+        _setProperty(getSlot(propName), propValue);
+    }
+    
+    /**
+     * Called by proxy
+     * 
+     * @param slot The slot of the property
+     * @param propValue The new value of the property
+     */
+    public void _setProperty(int slot, float propValue) {
+        setPrimitive(slot, float.class, Float.floatToRawIntBits(propValue));
     }
     
     public void _setProperty(String propName, long propValue) {
         if (propName == null) throw new IllegalArgumentException("properyName may not be null");
         
-        _setProperty(propName, (Long) propValue);
+        _setProperty(getSlot(propName), propValue);
+    }
+    
+    /**
+     * Called by proxy
+     * 
+     * @param slot The slot of the property
+     * @param propValue The new value of the property
+     */
+    public void _setProperty(int slot, long propValue) {
+        setPrimitive(slot, long.class, propValue);
     }
     
     public void _setProperty(String propName, double propValue) {
         if (propName == null) throw new IllegalArgumentException("properyName may not be null");
         
-        _setProperty(propName, (Double) propValue);
+        _setProperty(getSlot(propName), propValue);
     }
     
-    private Object _getProperty(String propName, Class<?> expectedClass) {
-        return _getProperty(propName, expectedClass, null);
+    /**
+     * Called by proxy
+     * 
+     * @param slot The slot of the property
+     * @param propValue The new value of the property
+     */
+    public void _setProperty(int slot, double propValue) {
+        setPrimitive(slot, double.class, Double.doubleToRawLongBits(propValue));
     }
     
-    private Object _getProperty(String propName, Class<?> expectedClass, ParentedModel parentNode) {
+    /**
+     * Sets a primitive property without boxing it, unless the boxed
+     * value is needed anyway for the hub
+     * 
+     * @param slot The slot of the property
+     * @param primitiveType The type of the value
+     * @param bits The value as bits (see {@link PropertySlots#toBits(Class, Object)})
+     */
+    private void setPrimitive(int slot, Class<?> primitiveType, long bits) {
+        if (changeControl != null || DEBUG_GETS_AND_SETS ||
+                !primitiveType.equals(values.getSlots().getPrimitiveType(slot))) {
+            _setProperty(slot, PropertySlots.fromBits(primitiveType, bits), true);
+            return;
+        }
+        
+        if (copySource != null) {
+            copyModified = true;
+        }
+        
+        if (active) {
+            synchronized (this) {
+                values.setBits(slot, bits);
+            }
+        }
+        else {
+            values.setBits(slot, bits);
+        }
+        
+        invalidateXmlFragments();
+    }
+    
+    private int getSlot(String propName) {
+        int retVal = values.getSlots().getSlot(propName);
+        if (retVal < 0) {
+            throw new IllegalArgumentException("Unknown property " + propName + " for " + _getModel());
+        }
+        
+        return retVal;
+    }
+    
+    private Object _getProperty(int slot, ParentedModel parentNode) {
         boolean isSet;
         Object retVal;
         boolean doDefaulting = active ? true : false;
@@ -256,32 +444,34 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
         if (changeControl == null) {
             if (active) {
                 synchronized (this) {
-                    isSet = beanLikeMap.containsKey(propName);
-                    retVal = beanLikeMap.get(propName);
+                    isSet = values.isSet(slot);
+                    retVal = values.get(slot);
                 }
             }
             else {
-                isSet = beanLikeMap.containsKey(propName);
-                retVal = beanLikeMap.get(propName);
+                isSet = values.isSet(slot);
+                retVal = values.get(slot);
             }
         }
         else {
             changeControl.getReadLock().lock();
             try {
                 doDefaulting = true;
-                isSet = beanLikeMap.containsKey(propName);
-                retVal = beanLikeMap.get(propName);
+                isSet = values.isSet(slot);
+                retVal = values.get(slot);
             }
             finally {
                 changeControl.getReadLock().unlock();
             }
         }
         
+        String propName = values.getSlots().getName(slot);
         if (doDefaulting && (retVal == null) && !isSet) {
-            if (expectedClass != null) {
-                retVal = Utilities.getDefaultValue(_getModel().getDefaultChildValue(propName), expectedClass);
+            if (parentNode == null) {
+                Model model = _getModel();
+                retVal = Utilities.getDefaultValue(model.getDefaultChildValue(propName), model.getNonChildType(propName));
             }
-            else if (parentNode != null) {
+            else {
                 switch (parentNode.getChildType()) {
                 case LIST:
                     retVal = Collections.EMPTY_LIST;
@@ -307,6 +497,64 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
         return retVal;
     }
     
+    /**
+     * Gets a primitive property without boxing it
+     * 
+     * @param slot The slot of the property
+     * @param primitiveType The type expected by the caller
+     * @return The value (or default value) of the property as bits
+     */
+    private long getPrimitive(int slot, Class<?> primitiveType) {
+        PropertySlots slots = values.getSlots();
+        if (!primitiveType.equals(slots.getPrimitiveType(slot))) {
+            // Not stored unboxed as this type
+            Object boxed = _getProperty(slot);
+            if (boxed == null) boxed = Utilities.getDefaultValue(null, primitiveType);
+            
+            return PropertySlots.toBits(primitiveType, boxed);
+        }
+        
+        boolean isSet;
+        long retVal;
+        boolean doDefaulting = active ? true : false;
+        if (changeControl == null) {
+            if (active) {
+                synchronized (this) {
+                    isSet = values.isSet(slot);
+                    retVal = values.getBits(slot);
+                }
+            }
+            else {
+                isSet = values.isSet(slot);
+                retVal = values.getBits(slot);
+            }
+        }
+        else {
+            changeControl.getReadLock().lock();
+            try {
+                doDefaulting = true;
+                isSet = values.isSet(slot);
+                retVal = values.getBits(slot);
+            }
+            finally {
+                changeControl.getReadLock().unlock();
+            }
+        }
+        
+        if (!isSet) {
+            // As in _getProperty, the zero value when not defaulting
+            retVal = doDefaulting ? slots.getPrimitiveDefault(slot) : 0L;
+        }
+        
+        if (DEBUG_GETS_AND_SETS) {
+            // Hidden behind static because of potential expensive toString costs
+            Logger.getLogger().debug("XmlService getting property " + slots.getName(slot) + "=" +
+                    PropertySlots.fromBits(primitiveType, retVal) + " in " + this);
+        }
+        
+        return retVal;
+    }
+    
     /**
      * Called by proxy
      * 
@@ -314,12 +562,24 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
      * @return Value
      */
     public Object _getProperty(String propName) {
-        if (!_getModel().isChildProperty(propName)) {
-            return _getProperty(propName, _getModel().getNonChildType(propName));
+        return _getProperty(getSlot(propName));
+    }
+    
+    /**
+     * Called by proxy
+     * 
+     * @param slot Slot of child or non-child element or attribute
+     * @return Value
+     */
+    public Object _getProperty(int slot) {
+        ParentedModel parent = values.getSlots().getChild(slot);
+        if (parent == null) {
+            return _getProperty(slot, null);
         }
         
-        ParentedModel parent = _getModel().getChild(propName);
-        return _getProperty(propName, null, parent);
+        copyChildren();
+        
+        return _getProperty(slot, parent);
     }
     
     /**
@@ -328,8 +588,19 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
      * @param propName
      * @return
      */
-    public boolean _getPropertyZ(String propName) {
-        return (Boolean) _getProperty(propName, boolean.class);
+    public byte _getPropertyB(String propName) {
+        return _getPropertyB(getSlot(propName));
+    }
+    
+    /**
+     * Called by proxy
+     * 
+     * @param slot
+     * @return
+     */
+    public byte _getPropertyB(int slot) {
+        long bits = getPrimitive(slot, byte.class);
+        return (byte) bits;
     }
     
     /**
@@ -338,8 +609,19 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
      * @param propName
      * @return
      */
-    public byte _getPropertyB(String propName) {
-        return (Byte) _getProperty(propName, byte.class);
+    public boolean _getPropertyZ(String propName) {
+        return _getPropertyZ(getSlot(propName));
+    }
+    
+    /**
+     * Called by proxy
+     * 
+     * @param slot
+     * @return
+     */
+    public boolean _getPropertyZ(int slot) {
+        long bits = getPrimitive(slot, boolean.class);
+        return (bits != 0L);
     }
     
     /**
@@ -349,7 +631,18 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
      * @return
      */
     public char _getPropertyC(String propName) {
-        return (Character) _getProperty(propName, char.class);
+        return _getPropertyC(getSlot(propName));
+    }
+    
+    /**
+     * Called by proxy
+     * 
+     * @param slot
+     * @return
+     */
+    public char _getPropertyC(int slot) {
+        long bits = getPrimitive(slot, char.class);
+        return (char) bits;
     }
     
     /**
@@ -359,7 +652,18 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
      * @return
      */
     public short _getPropertyS(String propName) {
-        return (Short) _getProperty(propName, short.class);
+        return _getPropertyS(getSlot(propName));
+    }
+    
+    /**
+     * Called by proxy
+     * 
+     * @param slot
+     * @return
+     */
+    public short _getPropertyS(int slot) {
+        long bits = getPrimitive(slot, short.class);
+        return (short) bits;
     }
     
     /**
@@ -369,7 +673,18 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
      * @return
      */
     public int _getPropertyI(String propName) {
-        return (Integer) _getProperty(propName, int.class);
+        return _getPropertyI(getSlot(propName));
+    }
+    
+    /**
+     * Called by proxy
+     * 
+     * @param slot
+     * @return
+     */
+    public int _getPropertyI(int slot) {
+        long bits = getPrimitive(slot, int.class);
+        return (int) bits;
     }
     
     /**
@@ -379,7 +694,18 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
      * @return
      */
     public float _getPropertyF(String propName) {
-        return (Float) _getProperty(propName, float.class);
+        return _getPropertyF(getSlot(propName));
+    }
+    
+    /**
+     * Called by proxy
+     * 
+     * @param slot
+     * @return
+     */
+    public float _getPropertyF(int slot) {
+        long bits = getPrimitive(slot, float.class);
+        return Float.intBitsToFloat((int) bits);
     }
     
     /**
@@ -389,7 +715,18 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
      * @return
      */
     public long _getPropertyJ(String propName) {
-        return (Long) _getProperty(propName, long.class);
+        return _getPropertyJ(getSlot(propName));
+    }
+    
+    /**
+     * Called by proxy
+     * 
+     * @param slot
+     * @return
+     */
+    public long _getPropertyJ(int slot) {
+        long bits = getPrimitive(slot, long.class);
+        return bits;
     }
     
     /**
@@ -399,7 +736,18 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
      * @return
      */
     public double _getPropertyD(String propName) {
-        return (Double) _getProperty(propName, double.class);
+        return _getPropertyD(getSlot(propName));
+    }
+    
+    /**
+     * Called by proxy
+     * 
+     * @param slot
+     * @return
+     */
+    public double _getPropertyD(int slot) {
+        long bits = getPrimitive(slot, double.class);
+        return Double.longBitsToDouble(bits);
     }
     
     @SuppressWarnings("unchecked")
@@ -463,6 +811,8 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
     }
     
     public Object _lookupChild(String propName, String keyValue) {
+        copyChildren();
+        
         if (changeControl == null) {
             return internalLookup(propName, keyValue);
         }
@@ -477,6 +827,9 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
     }
     
     public Object _doAdd(String childProperty, Object rawChild, String childKey, int index) {
+        // Must be done before the lock of this tree is held
+        copyChildren();
+        
         if (changeControl == null) {
             return Utilities.internalAdd(this, childProperty, rawChild, childKey, index, null, null, null);
         }
@@ -622,6 +975,9 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
     }
     
     public Object _doRemove(String childProperty, String childKey, int index) {
+        // Must be done before the lock of this tree is held
+        copyChildren();
+        
         if (changeControl == null) {
             Object retVal = Utilities.internalRemove(this, childProperty, childKey, index, null, null, null);
             
@@ -666,19 +1022,26 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
     }
 
     public boolean _hasProperty(String propName) {
+        int slot = values.getSlots().getSlot(propName);
+        if (slot < 0) return false;
+        
+        if (copySource != null && values.getSlots().getChild(slot) != null) {
+            copyChildren();
+        }
+        
         if (changeControl == null) {
             if (active) {
                 synchronized (this) {
-                    return beanLikeMap.containsKey(propName);
+                    return values.isSet(slot);
                 }
             }
             
-            return beanLikeMap.containsKey(propName);
+            return values.isSet(slot);
         }
         
         changeControl.getReadLock().lock();
         try {
-            return beanLikeMap.containsKey(propName);
+            return values.isSet(slot);
         }
         finally {
             changeControl.getReadLock().unlock();
@@ -690,18 +1053,20 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
      */
     @Override
     public Map<String, Object> _getBeanLikeMap() {
+        copyChildren();
+        
         if (changeControl == null) {
             if (active) {
                 synchronized (this) {
-                    return Collections.unmodifiableMap(beanLikeMap);
+                    return Collections.unmodifiableMap(values.toBeanLikeMap());
                 }
             }
-            return Collections.unmodifiableMap(beanLikeMap);
+            return Collections.unmodifiableMap(values.toBeanLikeMap());
         }
         
         changeControl.getReadLock().lock();
         try {
-            return Collections.unmodifiableMap(beanLikeMap);
+            return Collections.unmodifiableMap(values.toBeanLikeMap());
         }
         finally {
             changeControl.getReadLock().unlock();
@@ -834,38 +1199,216 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
         keyValue = copyMe.keyValue;
         xmlPath = copyMe.xmlPath;
         
-        Map<String, Object> copyBeanLikeMap = copyMe._getBeanLikeMap();
+        PropertySlots slots = values.getSlots();
+        int numSlots = slots.getNumSlots();
+        for (int slot = 0; slot < numSlots; slot++) {
+            if (slots.getChild(slot) != null) continue;
+            
+            values.copySlot(copyMe.values, slot);
+        }
+    }
+    
+    /**
+     * Marks this bean as a copy of the given bean.  The children
+     * of the source are copied the first time they are needed
+     * 
+     * @param copySource The non-null bean this is a copy of
+     */
+    public void _setCopySource(BaseHK2JAXBBean copySource) {
+        this.copySource = copySource;
+    }
+    
+    /**
+     * Returns the bean this bean was copied from
+     * 
+     * @return The bean this was copied from, or null
+     * if this bean is not a copy
+     */
+    public BaseHK2JAXBBean _getCopySource() {
+        return copySource;
+    }
+    
+    /**
+     * Adds this copy and all of its copied descendants that have had
+     * a property set to the given list.  Descendants that have never
+     * been copied cannot have been modified and are not visited
+     * 
+     * @param modified The list to add the modified copies to
+     */
+    public void _getModifiedCopies(List<BaseHK2JAXBBean> modified) {
+        if (copyModified) modified.add(this);
+        if (!copyChildrenCopied) return;
+        
+        List<Object> children = new LinkedList<Object>();
+        
+        changeControl.getReadLock().lock();
+        try {
+            PropertySlots slots = values.getSlots();
+            int numSlots = slots.getNumSlots();
+            for (int slot = 0; slot < numSlots; slot++) {
+                if (slots.getChild(slot) == null) continue;
+                
+                Object child = values.get(slot);
+                if (child == null) continue;
+                
+                if (child instanceof List) {
+                    children.addAll((List<?>) child);
+                }
+                else if (child.getClass().isArray()) {
+                    int length = Array.getLength(child);
+                    for (int lcv = 0; lcv < length; lcv++) {
+                        children.add(Array.get(child, lcv));
+                    }
+                }
+                else {
+                    children.add(child);
+                }
+            }
+        }
+        finally {
+            changeControl.getReadLock().unlock();
+        }
+        
+        for (Object child : children) {
+            if (child == null) continue;
+            
+            ((BaseHK2JAXBBean) child)._getModifiedCopies(modified);
+        }
+    }
+    
+    /**
+     * Gets a snapshot of the properties of this
+     * bean that are not children
+     * 
+     * @return A copy of the non-child properties of this bean
+     */
+    public Map<String, Object> _getNonChildProperties() {
+        PropertySlots slots = values.getSlots();
+        HashMap<String, Object> retVal = new HashMap<String, Object>();
+        
+        if (changeControl != null) changeControl.getReadLock().lock();
+        try {
+            int numSlots = slots.getNumSlots();
+            for (int slot = 0; slot < numSlots; slot++) {
+                if (slots.getChild(slot) != null || !values.isSet(slot)) continue;
+                
+                retVal.put(slots.getName(slot), values.get(slot));
+            }
+        }
+        finally {
+            if (changeControl != null) changeControl.getReadLock().unlock();
+        }
+        
+        return retVal;
+    }
+    
+    /**
+     * If this is a copy whose children have not yet been copied then
+     * the children of the source are copied now, one level deep.  The
+     * tree lock of this copy must not be held by the caller
+     */
+    private void copyChildren() {
+        BaseHK2JAXBBean source = copySource;
+        if (source == null || copyChildrenCopied) return;
+        
+        PropertySlots slots = values.getSlots();
+        HashMap<Integer, Object> sourceChildren = new HashMap<Integer, Object>();
         
-        for (Map.Entry<String, Object> entrySet : copyBeanLikeMap.entrySet()) {
-            String xmlTag = entrySet.getKey();
+        // Never hold the lock of both trees at the same time
+        DynamicChangeInfo sourceControl = source.changeControl;
+        if (sourceControl != null) sourceControl.getReadLock().lock();
+        try {
+            int numSlots = slots.getNumSlots();
+            for (int slot = 0; slot < numSlots; slot++) {
+                if (slots.getChild(slot) == null || !source.values.isSet(slot)) continue;
+                
+                sourceChildren.put(slot, source.values.get(slot));
+            }
+        }
+        finally {
+            if (sourceControl != null) sourceControl.getReadLock().unlock();
+        }
+        
+        changeControl.getWriteLock().lock();
+        try {
+            if (copyChildrenCopied) return;
             
-            if (copyMe.keyedChildrenCache.containsKey(xmlTag) || copyMe._getModel().getUnKeyedChildren().contains(xmlTag)) continue;
+            for (Map.Entry<Integer, Object> entry : sourceChildren.entrySet()) {
+                values.set(entry.getKey(), copyChild(entry.getValue()));
+            }
             
-            beanLikeMap.put(entrySet.getKey(), entrySet.getValue());
+            copyChildrenCopied = true;
+        }
+        finally {
+            changeControl.getWriteLock().unlock();
         }
     }
     
+    private Object copyChild(Object sourceChild) {
+        if (sourceChild == null) return null;
+        
+        if (sourceChild instanceof List) {
+            List<?> sourceList = (List<?>) sourceChild;
+            
+            ArrayList<Object> copiedList = new ArrayList<Object>(sourceList.size());
+            for (Object sourceListChild : sourceList) {
+                copiedList.add(copyChild(sourceListChild));
+            }
+            
+            return Collections.unmodifiableList(copiedList);
+        }
+        
+        if (sourceChild.getClass().isArray()) {
+            int length = Array.getLength(sourceChild);
+            
+            Object copiedArray = Array.newInstance(sourceChild.getClass().getComponentType(), length);
+            for (int lcv = 0; lcv < length; lcv++) {
+                Array.set(copiedArray, lcv, copyChild(Array.get(sourceChild, lcv)));
+            }
+            
+            return copiedArray;
+        }
+        
+        return Utilities.createLazyCopy((BaseHK2JAXBBean) sourceChild, this, changeControl);
+    }
+    
     private PropertyChangeEvent changes[] = null;
     
     /**
-     * Called with writeLock held
+     * Called with writeLock held.  Children are not merged
      * 
-     * @param other
-     * @param writeableDatabase
+     * @param copiedProperties The non-child properties of the copy of this bean
+     * @param writeableDatabase The database to record the changes in, or null
+     * if this bean is not in the hub
      */
-    public void _merge(BaseHK2JAXBBean other, WriteableBeanDatabase writeableDatabase) {
+    public void _merge(Map<String, Object> copiedProperties, WriteableBeanDatabase writeableDatabase) {
         if (changes != null) throw new IllegalStateException("Bean " + this + " has a merge on-going");
         
-        Map<String, Object> otherMap = other._getBeanLikeMap();
-        
-        WriteableType wt = writeableDatabase.getWriteableType(xmlPath);
+        HashMap<String, Object> beanLikeMap = values.toBeanLikeMap();
+        HashMap<String, Object> mergedMap = new HashMap<String, Object>(beanLikeMap);
+        mergedMap.putAll(copiedProperties);
         
         changes = BeanReflectionHelper.getChangeEvents(classReflectionHelper,
-                beanLikeMap, otherMap);
+                beanLikeMap, mergedMap);
         
         // TODO:  Children
         
-        wt.modifyInstance(instanceName, otherMap, changes);
+        boolean merging = false;
+        try {
+            if (writeableDatabase != null && changes.length > 0) {
+                WriteableType wt = writeableDatabase.getWriteableType(xmlPath);
+                
+                wt.modifyInstance(instanceName, mergedMap, changes);
+            }
+            
+            merging = true;
+        }
+        finally {
+            if (!merging) {
+                // _endMerge will not be called for this bean
+                changes = null;
+            }
+        }
     }
     
     /**
@@ -884,11 +1427,15 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
             String propName = pce.getPropertyName();
             Object newValue = pce.getNewValue();
             
-            beanLikeMap.put(propName, newValue);
+            values.set(getSlot(propName), newValue);
             
             // TODO: Children
         }
         
+        if (changes.length > 0) {
+            invalidateXmlFragments();
+        }
+        
         changes = null;
     }
     
@@ -899,14 +1446,14 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
      * @param propValue The new value of the property
      */
     public boolean changeInHub(String propName, Object propValue, WriteableBeanDatabase wbd) {
-        if (GeneralUtilities.safeEquals(beanLikeMap.get(propName), propValue)) {
+        if (GeneralUtilities.safeEquals(values.get(getSlot(propName)), propValue)) {
             // Calling set, but the value was not in fact changed
             return false;
         }
         
         WriteableType wt = wbd.getWriteableType(xmlPath);
         
-        HashMap<String, Object> modified = new HashMap<String, Object>(beanLikeMap);
+        HashMap<String, Object> modified = values.toBeanLikeMap();
         modified.put(propName, propValue);
         
         wt.modifyInstance(instanceName, modified);
@@ -928,6 +1475,108 @@ public abstract class BaseHK2JAXBBean implements XmlHk2ConfigurationBean, Serial
         }
     }
     
+    /**
+     * Gets the xml last written for this bean, if this
+     * bean and all its descendants have not changed since
+     * 
+     * @return The xml fragment for this bean, or null if
+     * this bean has changed since it was last written
+     */
+    public String _getXmlFragment() {
+        if (!xmlFragmentValid) return null;
+        
+        int start = 0;
+        Object current = this;
+        BaseHK2JAXBBean root = null;
+        while (current instanceof BaseHK2JAXBBean) {
+            root = (BaseHK2JAXBBean) current;
+            if (root.xmlFragmentLength < 0) return null;
+            
+            start += root.xmlFragmentStart;
+            current = root.parent;
+        }
+        
+        String document = root.xmlDocument;
+        if (document == null) return null;
+        
+        return document.substring(start, start + xmlFragmentLength);
+    }
+    
+    /**
+     * True if this bean and all its descendants have not
+     * changed since this bean was last written
+     * 
+     * @return true if the xml last written for this bean can be used again
+     */
+    public boolean _hasXmlFragment() {
+        return xmlFragmentValid;
+    }
+    
+    /**
+     * Where the xml last written for this bean starts, relative to
+     * the start of the xml of its parent (or of the document for the root)
+     * 
+     * @return The start of the xml last written for this bean
+     */
+    public int _getXmlFragmentStart() {
+        return xmlFragmentStart;
+    }
+    
+    /**
+     * The length of the xml last written for this bean
+     * 
+     * @return The length of the xml last written for this bean,
+     * or -1 if this bean has never been written
+     */
+    public int _getXmlFragmentLength() {
+        return xmlFragmentLength;
+    }
+    
+    /**
+     * Records where the xml written for this bean and its descendants is
+     * 
+     * @param start The start of the xml of this bean, relative to the start of
+     * the xml of its parent (or of the document for the root)
+     * @param length The length of the xml of this bean
+     */
+    public void _setXmlFragment(int start, int length) {
+        xmlFragmentStart = start;
+        xmlFragmentLength = length;
+        xmlFragmentValid = true;
+    }
+    
+    /**
+     * Gets the whole document last written from this root
+     * 
+     * @return The document last written or null if there is none
+     */
+    public String _getXmlDocument() {
+        return xmlDocument;
+    }
+    
+    /**
+     * Records the whole document written from this root.  The positions
+     * recorded in the beans of the tree are within this document
+     * 
+     * @param xmlDocument The document written from this root
+     */
+    public void _setXmlDocument(String xmlDocument) {
+        this.xmlDocument = xmlDocument;
+    }
+    
+    /**
+     * A change to this bean changes the xml of all its ancestors
+     */
+    private void invalidateXmlFragments() {
+        Object current = this;
+        while (current instanceof BaseHK2JAXBBean) {
+            BaseHK2JAXBBean bean = (BaseHK2JAXBBean) current;
+            
+            bean.xmlFragmentValid = false;
+            current = bean.parent;
+        }
+    }
+    
     /**
      * Gets the change control information for this bean
      * 
@@ -0,0 +1,198 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.hk2.xml.jaxb.internal;
+
+import java.io.Serializable;
+import java.util.HashMap;
+
+import org.glassfish.hk2.xml.internal.PropertySlots;
+
+/**
+ * The storage for the properties of a {@link BaseHK2JAXBBean}.
+ * Properties are addressed by their slot in the {@link PropertySlots}
+ * of the model of the bean.  Properties of primitive type are kept
+ * unboxed in a long array, all others are kept in an object array.
+ * This class does no locking, the caller must hold the appropriate
+ * locks of the bean
+ * 
+ * @author jwells
+ *
+ */
+/* package */ class PropertyValues implements Serializable {
+    private static final long serialVersionUID = 2867512460154622381L;
+    
+    private final PropertySlots slots;
+    private final Object objects[];
+    private final long primitives[];
+    
+    /** One bit per slot, on if the property in that slot has been set */
+    private final long setSlots[];
+    
+    /* package */ PropertyValues(PropertySlots slots) {
+        this.slots = slots;
+        
+        objects = new Object[slots.getNumObjectSlots()];
+        primitives = new long[slots.getNumPrimitiveSlots()];
+        setSlots = new long[(slots.getNumSlots() + 63) / 64];
+    }
+    
+    /* package */ PropertySlots getSlots() {
+        return slots;
+    }
+    
+    /* package */ boolean isSet(int slot) {
+        return (setSlots[slot >> 6] & (1L << slot)) != 0L;
+    }
+    
+    private void markSet(int slot, boolean set) {
+        if (set) {
+            setSlots[slot >> 6] |= (1L << slot);
+        }
+        else {
+            setSlots[slot >> 6] &= ~(1L << slot);
+        }
+    }
+    
+    /**
+     * Gets the value in the slot, boxing it if it is a primitive
+     * 
+     * @param slot The slot to get
+     * @return The value in the slot, or null if it has not been set
+     */
+    /* package */ Object get(int slot) {
+        if (!isSet(slot)) return null;
+        
+        Class<?> primitiveType = slots.getPrimitiveType(slot);
+        if (primitiveType == null) {
+            return objects[slots.getStorageIndex(slot)];
+        }
+        
+        return PropertySlots.fromBits(primitiveType, primitives[slots.getStorageIndex(slot)]);
+    }
+    
+    /**
+     * Sets the value in the slot.  Setting a primitive
+     * slot to null makes the slot unset
+     * 
+     * @param slot The slot to set
+     * @param value The value, which must be of the boxed type
+     * of the slot if the slot is primitive
+     */
+    /* package */ void set(int slot, Object value) {
+        Class<?> primitiveType = slots.getPrimitiveType(slot);
+        if (primitiveType == null) {
+            objects[slots.getStorageIndex(slot)] = value;
+            markSet(slot, true);
+            return;
+        }
+        
+        if (value == null) {
+            primitives[slots.getStorageIndex(slot)] = 0L;
+            markSet(slot, false);
+            return;
+        }
+        
+        primitives[slots.getStorageIndex(slot)] = PropertySlots.toBits(primitiveType, value);
+        markSet(slot, true);
+    }
+    
+    /**
+     * Gets the bits of a primitive slot
+     * 
+     * @param slot A slot of primitive type
+     * @return The bits of the slot, which are
+     * zero if the slot has not been set
+     */
+    /* package */ long getBits(int slot) {
+        return primitives[slots.getStorageIndex(slot)];
+    }
+    
+    /**
+     * Sets the bits of a primitive slot
+     * 
+     * @param slot A slot of primitive type
+     * @param bits The bits to place in the slot
+     */
+    /* package */ void setBits(int slot, long bits) {
+        primitives[slots.getStorageIndex(slot)] = bits;
+        markSet(slot, true);
+    }
+    
+    /**
+     * Copies the slot from the other values, which
+     * must have the same slots
+     * 
+     * @param other The values to copy from
+     * @param slot The slot to copy
+     */
+    /* package */ void copySlot(PropertyValues other, int slot) {
+        if (!other.isSet(slot)) return;
+        
+        int storageIndex = slots.getStorageIndex(slot);
+        if (slots.getPrimitiveType(slot) == null) {
+            objects[storageIndex] = other.objects[storageIndex];
+        }
+        else {
+            primitives[storageIndex] = other.primitives[storageIndex];
+        }
+        
+        markSet(slot, true);
+    }
+    
+    /**
+     * Creates a bean-like map of all the slots that
+     * have been set
+     * 
+     * @return A new map from xml tag to value of
+     * every property that has been set
+     */
+    /* package */ HashMap<String, Object> toBeanLikeMap() {
+        int numSlots = slots.getNumSlots();
+        HashMap<String, Object> retVal = new HashMap<String, Object>();
+        
+        for (int slot = 0; slot < numSlots; slot++) {
+            if (!isSet(slot)) continue;
+            
+            retVal.put(slots.getName(slot), get(slot));
+        }
+        
+        return retVal;
+    }
+}
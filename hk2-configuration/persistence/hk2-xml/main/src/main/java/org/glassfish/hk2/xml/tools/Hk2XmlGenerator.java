@@ -46,6 +46,9 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.Set;
 
 import javassist.ClassPool;
@@ -56,6 +59,7 @@ import javax.annotation.processing.AbstractProcessor;
 import javax.annotation.processing.Filer;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
@@ -64,19 +68,42 @@ import javax.tools.Diagnostic.Kind;
 import javax.tools.JavaFileObject;
 
 import org.glassfish.hk2.xml.internal.Generator;
+import org.glassfish.hk2.xml.internal.Utilities;
+import org.glassfish.hk2.xml.internal.alt.AltClass;
 import org.glassfish.hk2.xml.internal.alt.papi.TypeElementAltClassImpl;
 
 /**
+ * Pre-generates the proxies of interfaces annotated with
+ * {@link org.glassfish.hk2.xml.api.annotations.Hk2XmlPreGenerate}.
+ * If the {@link #PREGENERATE_CHILDREN_OPTION} processor option is
+ * set to true then the children of those interfaces (and their
+ * children) are also pre-generated, provided they are compiled
+ * along with them.  This allows all the proxies of a configuration
+ * tree to be pre-generated by annotating only the root
+ * 
  * @author jwells
  *
  */
 @SupportedAnnotationTypes("org.glassfish.hk2.xml.api.annotations.Hk2XmlPreGenerate")
 @SupportedSourceVersion(SourceVersion.RELEASE_7)
+@SupportedOptions(Hk2XmlGenerator.PREGENERATE_CHILDREN_OPTION)
 public class Hk2XmlGenerator extends AbstractProcessor {
+    /**
+     * If this processor option is true the children of annotated
+     * interfaces are also pre-generated
+     */
+    public final static String PREGENERATE_CHILDREN_OPTION = "org.glassfish.hk2.xml.pregenerateChildren";
+    
     private volatile boolean initialized;
     private ClassPool defaultClassPool;
     private CtClass superClazz;
     
+    /** Binary names of the types being compiled */
+    private final Set<String> sourceTypes = new HashSet<String>();
+    
+    /** Binary names of the interfaces already pre-generated */
+    private final Set<String> generated = new HashSet<String>();
+    
     private  void initializeHk2XmlGenerator() {
         if (initialized) return;
         
@@ -128,6 +155,11 @@ public class Hk2XmlGenerator extends AbstractProcessor {
             RoundEnvironment roundEnv) {
         Filer filer = processingEnv.getFiler();
         
+        boolean pregenerateChildren = Boolean.parseBoolean(processingEnv.getOptions().get(PREGENERATE_CHILDREN_OPTION));
+        if (pregenerateChildren) {
+            addSourceTypes(roundEnv.getRootElements());
+        }
+        
         for (TypeElement annotation : annotations) {
             Set<? extends Element> clazzes = roundEnv.getElementsAnnotatedWith(annotation);
             
@@ -138,41 +170,71 @@ public class Hk2XmlGenerator extends AbstractProcessor {
                 
                 TypeElement clazz = (TypeElement) clazzElement;
                 
-                TypeElementAltClassImpl altClass = new TypeElementAltClassImpl(clazz, processingEnv);
+                LinkedList<AltClass> toGenerate = new LinkedList<AltClass>();
+                toGenerate.add(new TypeElementAltClassImpl(clazz, processingEnv));
                 
-                try {
-                    CtClass ctClass = Generator.generate(altClass, superClazz, defaultClassPool);
-                    
-                    String ctClassName = ctClass.getName();
-                    
-                    JavaFileObject jfo = filer.createClassFile(ctClassName, clazzElement);
+                while (!toGenerate.isEmpty()) {
+                    AltClass altClass = toGenerate.removeFirst();
+                    if (!generated.add(altClass.getName())) continue;
                     
-                    OutputStream outputStream = jfo.openOutputStream();
-                    DataOutputStream dataOutputStream = null;
                     try {
-                        dataOutputStream = new DataOutputStream(outputStream);
-                    
-                        ctClass.toBytecode(dataOutputStream);
-                    }
-                    finally {
-                        if (dataOutputStream != null) {
-                            dataOutputStream.close();
-                        }
+                        generate(altClass, clazz, filer);
+                        
+                        if (!pregenerateChildren) continue;
                         
-                        outputStream.close();
+                        for (AltClass child : Generator.getChildInterfaces(altClass)) {
+                            // Children from other modules are left to those modules
+                            if (!sourceTypes.contains(child.getName())) continue;
+                            
+                            toGenerate.add(child);
+                        }
+                    }
+                    catch (Throwable e) {
+                        String msg = e.getMessage();
+                        if (msg == null) msg = "Exception of type " + e.getClass().getName();
+                    
+                        processingEnv.getMessager().printMessage(Kind.ERROR, "While processing class: " + altClass.getName() + " got exeption: " + msg);
+                        e.printStackTrace();
                     }
-                }
-                catch (Throwable e) {
-                    String msg = e.getMessage();
-                    if (msg == null) msg = "Exception of type " + e.getClass().getName();
-                
-                    processingEnv.getMessager().printMessage(Kind.ERROR, "While processing class: " + clazz.getQualifiedName() + " got exeption: " + msg);
-                    e.printStackTrace();
                 }
             }
         }
         
         return true;
     }
+    
+    private void generate(AltClass altClass, Element originatingElement, Filer filer) throws Throwable {
+        CtClass ctClass = Generator.generate(altClass, superClazz, defaultClassPool);
+        
+        String ctClassName = ctClass.getName();
+        
+        JavaFileObject jfo = filer.createClassFile(ctClassName, originatingElement);
+        
+        OutputStream outputStream = jfo.openOutputStream();
+        DataOutputStream dataOutputStream = null;
+        try {
+            dataOutputStream = new DataOutputStream(outputStream);
+        
+            ctClass.toBytecode(dataOutputStream);
+        }
+        finally {
+            if (dataOutputStream != null) {
+                dataOutputStream.close();
+            }
+            
+            outputStream.close();
+        }
+    }
+    
+    private void addSourceTypes(Collection<? extends Element> elements) {
+        for (Element element : elements) {
+            if (!(element instanceof TypeElement)) continue;
+            
+            sourceTypes.add(Utilities.convertNameToString(
+                    processingEnv.getElementUtils().getBinaryName((TypeElement) element)));
+            
+            addSourceTypes(element.getEnclosedElements());
+        }
+    }
 
 }
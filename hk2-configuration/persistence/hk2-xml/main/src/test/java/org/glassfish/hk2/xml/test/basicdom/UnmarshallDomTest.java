@@ -39,6 +39,7 @@
  */
 package org.glassfish.hk2.xml.test.basicdom;
 
+import java.io.ByteArrayOutputStream;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.util.Arrays;
@@ -102,6 +103,16 @@ public class UnmarshallDomTest {
     public final static String ID_TAG = "id";
     private final static String COKE_ENV = "cokeenv";
     
+    /**
+     * Creates the locator used by these tests.  Subclasses
+     * override this to run the same tests with other parsers
+     * 
+     * @return A locator with the XmlService added
+     */
+    protected ServiceLocator createLocator() {
+        return Utilities.createDomLocator();
+    }
+    
     /**
      * Tests the most basic of xml files can be unmarshalled with an interface
      * annotated with jaxb annotations
@@ -110,7 +121,7 @@ public class UnmarshallDomTest {
      */
     @Test // @org.junit.Ignore
     public void testInterfaceJaxbUnmarshalling() throws Exception {
-        ServiceLocator locator = Utilities.createDomLocator();
+        ServiceLocator locator = createLocator();
         XmlService xmlService = locator.getService(XmlService.class);
         
         URL url = getClass().getClassLoader().getResource(MUSEUM1_FILE);
@@ -137,7 +148,7 @@ public class UnmarshallDomTest {
     @SuppressWarnings("unchecked")
     @Test // @org.junit.Ignore
     public void testBeanLikeMapOfInterface() throws Exception {
-        ServiceLocator locator = Utilities.createDomLocator();
+        ServiceLocator locator = createLocator();
         XmlService xmlService = locator.getService(XmlService.class);
         
         URL url = getClass().getClassLoader().getResource(ACME1_FILE);
@@ -190,7 +201,7 @@ public class UnmarshallDomTest {
      */
     @Test // @org.junit.Ignore
     public void testInterfaceJaxbUnmarshallingWithChildren() throws Exception {
-        ServiceLocator locator = Utilities.createDomLocator();
+        ServiceLocator locator = createLocator();
         XmlService xmlService = locator.getService(XmlService.class);
         Hub hub = locator.getService(Hub.class);
         
@@ -249,7 +260,7 @@ public class UnmarshallDomTest {
      */
     @Test // @org.junit.Ignore
     public void testComplexUnmarshalling() throws Exception {
-        ServiceLocator locator = Utilities.createDomLocator();
+        ServiceLocator locator = createLocator();
         XmlService xmlService = locator.getService(XmlService.class);
         Hub hub = locator.getService(Hub.class);
         
@@ -299,7 +310,7 @@ public class UnmarshallDomTest {
     @SuppressWarnings("unchecked")
     @Test // @org.junit.Ignore
     public void testUnkeyedChildren() throws Exception {
-        ServiceLocator locator = Utilities.createDomLocator();
+        ServiceLocator locator = createLocator();
         XmlService xmlService = locator.getService(XmlService.class);
         Hub hub = locator.getService(Hub.class);
         
@@ -386,7 +397,7 @@ public class UnmarshallDomTest {
      */
     @Test // @org.junit.Ignore
     public void testSameClassTwoChildren() throws Exception {
-        ServiceLocator locator = Utilities.createDomLocator();
+        ServiceLocator locator = createLocator();
         XmlService xmlService = locator.getService(XmlService.class);
         Hub hub = locator.getService(Hub.class);
         
@@ -410,7 +421,7 @@ public class UnmarshallDomTest {
      */
     @Test // @org.junit.Ignore
     public void testBeanCycle() throws Exception {
-        ServiceLocator locator = Utilities.createDomLocator();
+        ServiceLocator locator = createLocator();
         XmlService xmlService = locator.getService(XmlService.class);
         
         URL url = getClass().getClassLoader().getResource(CYCLE);
@@ -431,7 +442,7 @@ public class UnmarshallDomTest {
      */
     @Test // @org.junit.Ignore
     public void testEveryType() throws Exception {
-        ServiceLocator locator = Utilities.createDomLocator();
+        ServiceLocator locator = createLocator();
         XmlService xmlService = locator.getService(XmlService.class);
         
         URL url = getClass().getClassLoader().getResource(TYPE1_FILE);
@@ -456,7 +467,7 @@ public class UnmarshallDomTest {
      */
     @Test // @org.junit.Ignore
     public void testAnnotationWithEverythingCopied() throws Exception {
-        ServiceLocator locator = Utilities.createDomLocator();
+        ServiceLocator locator = createLocator();
         XmlService xmlService = locator.getService(XmlService.class);
         
         URL url = getClass().getClassLoader().getResource(ACME1_FILE);
@@ -504,7 +515,7 @@ public class UnmarshallDomTest {
      */
     @Test // @org.junit.Ignore
     public void testEmptyListChildReturnsEmptyList() throws Exception {
-        ServiceLocator locator = Utilities.createDomLocator();
+        ServiceLocator locator = createLocator();
         XmlService xmlService = locator.getService(XmlService.class);
         
         URL url = getClass().getClassLoader().getResource(ACME1_FILE);
@@ -524,7 +535,7 @@ public class UnmarshallDomTest {
      */
     @Test // @org.junit.Ignore
     public void testEmptyArrayChildReturnsEmptyArray() throws Exception {
-        ServiceLocator locator = Utilities.createDomLocator();
+        ServiceLocator locator = createLocator();
         XmlService xmlService = locator.getService(XmlService.class);
         
         URL url = getClass().getClassLoader().getResource(ACME1_FILE);
@@ -545,7 +556,7 @@ public class UnmarshallDomTest {
      */
     @Test // @org.junit.Ignore
     public void testByteArrayNonChild() throws Exception {
-        ServiceLocator locator = Utilities.createDomLocator();
+        ServiceLocator locator = createLocator();
         XmlService xmlService = locator.getService(XmlService.class);
         
         URL url = getClass().getClassLoader().getResource(ACME2_FILE);
@@ -560,4 +571,26 @@ public class UnmarshallDomTest {
         
         Assert.assertEquals("Garbledeguk", asString);
     }
+    
+    /**
+     * Tests that a byte[] non-child is written the same
+     * way it is read
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testByteArrayNonChildMarshalled() throws Exception {
+        ServiceLocator locator = createLocator();
+        XmlService xmlService = locator.getService(XmlService.class);
+        
+        URL url = getClass().getClassLoader().getResource(ACME2_FILE);
+        
+        XmlRootHandle<Employees> rootHandle = xmlService.unmarshall(url.toURI(), Employees.class);
+        
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        rootHandle.marshall(baos);
+        
+        String asString = baos.toString("UTF-8");
+        Assert.assertTrue(asString, asString.contains("<encrypted-credentials>Garbledeguk</encrypted-credentials>"));
+    }
 }
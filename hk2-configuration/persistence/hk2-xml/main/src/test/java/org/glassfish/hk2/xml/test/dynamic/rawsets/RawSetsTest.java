@@ -41,7 +41,15 @@
 package org.glassfish.hk2.xml.test.dynamic.rawsets;
 
 import java.beans.PropertyChangeEvent;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -54,9 +62,13 @@ import org.glassfish.hk2.configuration.hub.api.Change;
 import org.glassfish.hk2.configuration.hub.api.Change.ChangeCategory;
 import org.glassfish.hk2.configuration.hub.api.Hub;
 import org.glassfish.hk2.configuration.hub.api.Instance;
+import org.glassfish.hk2.configuration.hub.api.WriteableBeanDatabase;
 import org.glassfish.hk2.xml.api.XmlRootCopy;
 import org.glassfish.hk2.xml.api.XmlRootHandle;
 import org.glassfish.hk2.xml.api.XmlService;
+import org.glassfish.hk2.xml.jaxb.internal.BaseHK2JAXBBean;
+import org.glassfish.hk2.xml.test.basic.Employee;
+import org.glassfish.hk2.xml.test.basic.Employees;
 import org.glassfish.hk2.xml.test.basic.Museum;
 import org.glassfish.hk2.xml.test.basic.UnmarshallTest;
 import org.glassfish.hk2.xml.test.utilities.Utilities;
@@ -77,6 +89,12 @@ public class RawSetsTest {
     
     private final static int ONE_OH_ONE_INT = 101;
     
+    private final static String EMPLOYEE_TYPE = "/employees/employee";
+    private final static String CAROL_INSTANCE = "employees.Carol";
+    private final static String ID_TAG = "id";
+    private final static long CAROL_ID = 101L;
+    private final static long NEW_CAROL_ID = 102L;
+    
     /**
      * Just verifies that the original state of the Museum
      * object from the file is as expected
@@ -214,6 +232,328 @@ public class RawSetsTest {
         }
     }
     
+    /**
+     * Modifies a child deep in a copy of the tree, and ensures
+     * only that child is changed when the copy is merged
+     * 
+     * @throws Exception
+     */
+    @SuppressWarnings("unchecked")
+    @Test // @org.junit.Ignore
+    public void testModifyChildOfCopy() throws Exception {
+        ServiceLocator locator = Utilities.createLocator(UpdateListener.class);
+        XmlService xmlService = locator.getService(XmlService.class);
+        Hub hub = locator.getService(Hub.class);
+        UpdateListener listener = locator.getService(UpdateListener.class);
+        
+        URL url = getClass().getClassLoader().getResource(UnmarshallTest.ACME1_FILE);
+        
+        XmlRootHandle<Employees> rootHandle = xmlService.unmarshall(url.toURI(), Employees.class);
+        Employees original = rootHandle.getRoot();
+        Employee originalCarol = original.lookupEmployee(UnmarshallTest.CAROL);
+        
+        XmlRootCopy<Employees> copy = rootHandle.getXmlRootCopy();
+        Employees employeesCopy = copy.getChildRoot();
+        
+        Employee carolCopy = employeesCopy.lookupEmployee(UnmarshallTest.CAROL);
+        Assert.assertNotNull(carolCopy);
+        Assert.assertNotSame(originalCarol, carolCopy);
+        Assert.assertEquals(CAROL_ID, carolCopy.getId());
+        
+        carolCopy.setId(NEW_CAROL_ID);
+        
+        // The parent is not changed until the merge
+        Assert.assertEquals(CAROL_ID, originalCarol.getId());
+        
+        copy.merge();
+        
+        Assert.assertEquals(NEW_CAROL_ID, originalCarol.getId());
+        Assert.assertSame(originalCarol, original.lookupEmployee(UnmarshallTest.CAROL));
+        Assert.assertEquals(2, original.getEmployees().size());
+        Assert.assertEquals(UnmarshallTest.ACME, original.getCompanyName());
+        
+        Instance instance = hub.getCurrentDatabase().getInstance(EMPLOYEE_TYPE, CAROL_INSTANCE);
+        Map<String, Object> beanLikeMap = (Map<String, Object>) instance.getBean();
+        Assert.assertEquals(NEW_CAROL_ID, beanLikeMap.get(ID_TAG));
+        
+        List<Change> changes = listener.changes;
+        Assert.assertNotNull(changes);
+        Assert.assertEquals(1, changes.size());
+        
+        Change change = changes.get(0);
+        Assert.assertEquals(ChangeCategory.MODIFY_INSTANCE, change.getChangeCategory());
+        Assert.assertEquals(CAROL_INSTANCE, change.getInstanceKey());
+        Assert.assertEquals(1, change.getModifiedProperties().size());
+    }
+    
+    /**
+     * Tests that a modified tree can be saved back to its file,
+     * and that only the modified part of the tree is regenerated
+     * 
+     * @throws Exception
+     */
+    @Test // @org.junit.Ignore
+    public void testSaveModifiedTree() throws Exception {
+        ServiceLocator locator = Utilities.createLocator();
+        XmlService xmlService = locator.getService(XmlService.class);
+        
+        final File saveFile = copyToTempFile(UnmarshallTest.ACME1_FILE);
+        try {
+            XmlRootHandle<Employees> rootHandle = xmlService.unmarshall(saveFile.toURI(), Employees.class);
+            Employees employees = rootHandle.getRoot();
+            
+            rootHandle.save();
+            
+            Employee bob = employees.lookupEmployee(UnmarshallTest.BOB);
+            Employee carol = employees.lookupEmployee(UnmarshallTest.CAROL);
+            Assert.assertNotNull(((BaseHK2JAXBBean) bob)._getXmlFragment());
+            Assert.assertNotNull(((BaseHK2JAXBBean) carol)._getXmlFragment());
+            
+            carol.setId(NEW_CAROL_ID);
+            
+            // Only carol and her ancestors need to be written again
+            Assert.assertNotNull(((BaseHK2JAXBBean) bob)._getXmlFragment());
+            Assert.assertNull(((BaseHK2JAXBBean) carol)._getXmlFragment());
+            Assert.assertNull(((BaseHK2JAXBBean) employees)._getXmlFragment());
+            
+            rootHandle.save();
+            
+            XmlRootHandle<Employees> savedHandle = xmlService.unmarshall(saveFile.toURI(), Employees.class, false, false);
+            Employees saved = savedHandle.getRoot();
+            
+            Assert.assertEquals(UnmarshallTest.ACME, saved.getCompanyName());
+            Assert.assertEquals(2, saved.getEmployees().size());
+            Assert.assertEquals(UnmarshallTest.HUNDRED_LONG, saved.lookupEmployee(UnmarshallTest.BOB).getId());
+            Assert.assertEquals(NEW_CAROL_ID, saved.lookupEmployee(UnmarshallTest.CAROL).getId());
+            Assert.assertNotNull(saved.getFinancials());
+            
+            // Nothing is left behind beside the saved file
+            String leftOvers[] = saveFile.getAbsoluteFile().getParentFile().list(new FilenameFilter() {
+
+                @Override
+                public boolean accept(File dir, String name) {
+                    return name.startsWith(saveFile.getName()) && !name.equals(saveFile.getName());
+                }
+                
+            });
+            Assert.assertEquals(0, leftOvers.length);
+        }
+        finally {
+            saveFile.delete();
+        }
+    }
+    
+    /**
+     * Tests that only the root keeps the saved document, and that
+     * the xml copied from it for unchanged beans is what a full
+     * write would produce, also after their parent was written again
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testSaveReusesUnchangedXml() throws Exception {
+        ServiceLocator locator = Utilities.createLocator();
+        XmlService xmlService = locator.getService(XmlService.class);
+        
+        final File saveFile = copyToTempFile(UnmarshallTest.ACME1_FILE);
+        try {
+            XmlRootHandle<Employees> rootHandle = xmlService.unmarshall(saveFile.toURI(), Employees.class);
+            Employees employees = rootHandle.getRoot();
+            Employee bob = employees.lookupEmployee(UnmarshallTest.BOB);
+            Employee carol = employees.lookupEmployee(UnmarshallTest.CAROL);
+            
+            rootHandle.save();
+            
+            Assert.assertNotNull(((BaseHK2JAXBBean) employees)._getXmlDocument());
+            Assert.assertNull(((BaseHK2JAXBBean) bob)._getXmlDocument());
+            Assert.assertNull(((BaseHK2JAXBBean) carol)._getXmlDocument());
+            Assert.assertEquals(readFile(saveFile), fullyWritten(xmlService, saveFile));
+            
+            carol.setId(NEW_CAROL_ID);
+            rootHandle.save();
+            
+            Assert.assertEquals(readFile(saveFile), fullyWritten(xmlService, saveFile));
+            
+            // Carol is now copied into a parent that is written again
+            bob.setId(CAROL_ID);
+            rootHandle.save();
+            
+            String savedText = readFile(saveFile);
+            Assert.assertEquals(savedText, fullyWritten(xmlService, saveFile));
+            Assert.assertTrue(savedText.endsWith(((BaseHK2JAXBBean) employees)._getXmlFragment() + "\n"));
+            
+            Employees saved = xmlService.unmarshall(saveFile.toURI(), Employees.class, false, false).getRoot();
+            Assert.assertEquals(CAROL_ID, saved.lookupEmployee(UnmarshallTest.BOB).getId());
+            Assert.assertEquals(NEW_CAROL_ID, saved.lookupEmployee(UnmarshallTest.CAROL).getId());
+            Assert.assertNotNull(saved.getFinancials());
+        }
+        finally {
+            saveFile.delete();
+        }
+    }
+    
+    private static String fullyWritten(XmlService xmlService, File file) throws Exception {
+        XmlRootHandle<Employees> handle = xmlService.unmarshall(file.toURI(), Employees.class, false, false);
+        
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        handle.marshall(baos);
+        
+        return baos.toString("UTF-8");
+    }
+    
+    private static String readFile(File file) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        
+        InputStream is = new FileInputStream(file);
+        try {
+            byte buffer[] = new byte[1024];
+            int read;
+            while ((read = is.read(buffer)) > 0) {
+                baos.write(buffer, 0, read);
+            }
+        }
+        finally {
+            is.close();
+        }
+        
+        return baos.toString("UTF-8");
+    }
+    
+    /**
+     * Tests that attributes are marshalled as attributes
+     * 
+     * @throws Exception
+     */
+    @Test // @org.junit.Ignore
+    public void testMarshallAttribute() throws Exception {
+        ServiceLocator locator = Utilities.createLocator();
+        XmlService xmlService = locator.getService(XmlService.class);
+        
+        URL url = getClass().getClassLoader().getResource(UnmarshallTest.MUSEUM1_FILE);
+        
+        XmlRootHandle<Museum> rootHandle = xmlService.unmarshall(url.toURI(), Museum.class);
+        
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        rootHandle.marshall(baos);
+        
+        String xml = baos.toString("UTF-8");
+        
+        Assert.assertTrue(xml, xml.contains("<museum id=\"100\">"));
+        Assert.assertTrue(xml, xml.contains("<name>" + UnmarshallTest.BEN_FRANKLIN + "</name>"));
+    }
+    
+    private File copyToTempFile(String resource) throws Exception {
+        File retVal = File.createTempFile("hk2-xml", ".xml");
+        
+        InputStream is = getClass().getClassLoader().getResourceAsStream(resource);
+        try {
+            OutputStream os = new FileOutputStream(retVal);
+            try {
+                byte buffer[] = new byte[1024];
+                int read;
+                while ((read = is.read(buffer)) > 0) {
+                    os.write(buffer, 0, read);
+                }
+            }
+            finally {
+                os.close();
+            }
+        }
+        finally {
+            is.close();
+        }
+        
+        return retVal;
+    }
+    
+    /**
+     * Sets a child property of a copy before the children of the
+     * copy have been read, and ensures the set value is not replaced
+     * by the lazily copied children
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testSetChildOfCopyBeforeGet() throws Exception {
+        ServiceLocator locator = Utilities.createLocator();
+        XmlService xmlService = locator.getService(XmlService.class);
+        
+        URL url = getClass().getClassLoader().getResource(UnmarshallTest.ACME1_FILE);
+        
+        XmlRootHandle<Employees> rootHandle = xmlService.unmarshall(url.toURI(), Employees.class);
+        Employees original = rootHandle.getRoot();
+        
+        XmlRootCopy<Employees> copy = rootHandle.getXmlRootCopy();
+        Employees employeesCopy = copy.getChildRoot();
+        
+        employeesCopy.setEmployees(new LinkedList<Employee>());
+        
+        Assert.assertTrue(employeesCopy.getEmployees().isEmpty());
+        Assert.assertNull(employeesCopy.lookupEmployee(UnmarshallTest.CAROL));
+        
+        // Other children of the copy are still copied
+        Assert.assertNotNull(employeesCopy.getFinancials());
+        Assert.assertNotSame(original.getFinancials(), employeesCopy.getFinancials());
+        
+        // The original is untouched
+        Assert.assertEquals(2, original.getEmployees().size());
+        Assert.assertNotNull(original.lookupEmployee(UnmarshallTest.CAROL));
+    }
+    
+    /**
+     * Tests that a merge that fails part way does not leave the
+     * original bean refusing later merges
+     * 
+     * @throws Exception
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testMergeAfterFailedMerge() throws Exception {
+        ServiceLocator locator = Utilities.createLocator();
+        XmlService xmlService = locator.getService(XmlService.class);
+        Hub hub = locator.getService(Hub.class);
+        
+        URL url = getClass().getClassLoader().getResource(UnmarshallTest.MUSEUM1_FILE);
+        
+        XmlRootHandle<Museum> rootHandle = xmlService.unmarshall(url.toURI(), Museum.class);
+        
+        verifyPreState(rootHandle, hub);
+        
+        Instance museumInstance = hub.getCurrentDatabase().getInstance(MUSEUM_TYPE, MUSEUM_INSTANCE);
+        
+        // Without its type in the hub the merge fails
+        WriteableBeanDatabase wbd = hub.getWriteableDatabaseCopy();
+        wbd.removeType(MUSEUM_TYPE);
+        wbd.commit();
+        
+        XmlRootCopy<Museum> copy = rootHandle.getXmlRootCopy();
+        copy.getChildRoot().setAge(ONE_OH_ONE_INT);
+        
+        try {
+            copy.merge();
+            Assert.fail("The merge should fail with the type missing from the hub");
+        }
+        catch (RuntimeException re) {
+            // expected
+        }
+        
+        Assert.assertEquals(UnmarshallTest.HUNDRED_TEN_INT, rootHandle.getRoot().getAge());
+        
+        wbd = hub.getWriteableDatabaseCopy();
+        wbd.addType(MUSEUM_TYPE).addInstance(MUSEUM_INSTANCE, museumInstance.getBean());
+        wbd.commit();
+        
+        copy = rootHandle.getXmlRootCopy();
+        copy.getChildRoot().setAge(ONE_OH_ONE_INT);
+        copy.merge();
+        
+        Assert.assertEquals(ONE_OH_ONE_INT, rootHandle.getRoot().getAge());
+        
+        Map<String, Object> beanLikeMap = (Map<String, Object>) hub.getCurrentDatabase().
+                getInstance(MUSEUM_TYPE, MUSEUM_INSTANCE).getBean();
+        Assert.assertEquals(ONE_OH_ONE_INT, beanLikeMap.get(AGE_TAG));
+    }
+    
     /**
      * Overlays original file with new file
      * 
@@ -0,0 +1,243 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.hk2.xml.test.pregenerate;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.annotation.processing.Processor;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.glassfish.hk2.xml.internal.Utilities;
+import org.glassfish.hk2.xml.tools.Hk2XmlGenerator;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs the {@link Hk2XmlGenerator} annotation processor over a small
+ * tree of interfaces of which only the root is annotated
+ * 
+ * @author jwells
+ *
+ */
+public class PreGenerateChildrenTest {
+    private final static String PACKAGE = "pregen";
+    private final static String ROOT = PACKAGE + ".Root";
+    private final static String CHILD = PACKAGE + ".Child";
+    private final static String GRANDCHILD = PACKAGE + ".GrandChild";
+    
+    private final static String ROOT_SOURCE =
+        "package pregen;\n" +
+        "@org.glassfish.hk2.xml.api.annotations.Hk2XmlPreGenerate\n" +
+        "@javax.xml.bind.annotation.XmlRootElement(name=\"root\")\n" +
+        "public interface Root {\n" +
+        "  @javax.xml.bind.annotation.XmlElement(name=\"child\")\n" +
+        "  public Child getChild();\n" +
+        "  public void setChild(Child child);\n" +
+        "}\n";
+    
+    private final static String CHILD_SOURCE =
+        "package pregen;\n" +
+        "public interface Child {\n" +
+        "  @javax.xml.bind.annotation.XmlElement(name=\"grand-child\")\n" +
+        "  public java.util.List<GrandChild> getGrandChildren();\n" +
+        "  public void setGrandChildren(java.util.List<GrandChild> grandChildren);\n" +
+        "}\n";
+    
+    private final static String GRANDCHILD_SOURCE =
+        "package pregen;\n" +
+        "public interface GrandChild {\n" +
+        "  @javax.xml.bind.annotation.XmlAttribute(name=\"name\")\n" +
+        "  public String getName();\n" +
+        "  public void setName(String name);\n" +
+        "}\n";
+    
+    private File workDir;
+    
+    @Before
+    public void before() throws IOException {
+        workDir = File.createTempFile("PreGenerateChildrenTest", "");
+        Assert.assertTrue(workDir.delete());
+        Assert.assertTrue(workDir.mkdirs());
+    }
+    
+    @After
+    public void after() {
+        delete(workDir);
+    }
+    
+    /**
+     * Without the option only the annotated interface is pre-generated
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testChildrenNotPreGeneratedByDefault() throws Exception {
+        File classes = compile(false);
+        
+        Assert.assertTrue(isGenerated(classes, ROOT));
+        Assert.assertFalse(isGenerated(classes, CHILD));
+        Assert.assertFalse(isGenerated(classes, GRANDCHILD));
+    }
+    
+    /**
+     * With the option the whole tree under the annotated interface
+     * is pre-generated
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testChildrenPreGeneratedWithOption() throws Exception {
+        File classes = compile(true);
+        
+        Assert.assertTrue(isGenerated(classes, ROOT));
+        Assert.assertTrue(isGenerated(classes, CHILD));
+        Assert.assertTrue(isGenerated(classes, GRANDCHILD));
+    }
+    
+    private File compile(boolean pregenerateChildren) throws Exception {
+        File sources = new File(workDir, "src");
+        File classes = new File(workDir, "classes");
+        Assert.assertTrue(classes.mkdirs());
+        
+        List<File> sourceFiles = new LinkedList<File>();
+        sourceFiles.add(writeSource(sources, ROOT, ROOT_SOURCE));
+        sourceFiles.add(writeSource(sources, CHILD, CHILD_SOURCE));
+        sourceFiles.add(writeSource(sources, GRANDCHILD, GRANDCHILD_SOURCE));
+        
+        List<String> options = new LinkedList<String>();
+        options.add("-proc:only");
+        options.add("-d");
+        options.add(classes.getAbsolutePath());
+        options.add("-classpath");
+        options.add(System.getProperty("java.class.path"));
+        if (pregenerateChildren) {
+            options.add("-A" + Hk2XmlGenerator.PREGENERATE_CHILDREN_OPTION + "=true");
+        }
+        
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assert.assertNotNull("These tests must be run with a JDK", compiler);
+        
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+        
+        URLClassLoader processorLoader = createProcessorLoader();
+        try {
+            JavaCompiler.CompilationTask task = compiler.getTask(null,
+                    fileManager,
+                    diagnostics,
+                    options,
+                    null,
+                    fileManager.getJavaFileObjectsFromFiles(sourceFiles));
+            
+            Processor processor = (Processor) processorLoader.loadClass(Hk2XmlGenerator.class.getName()).newInstance();
+            task.setProcessors(Collections.singletonList(processor));
+            
+            Assert.assertTrue(diagnostics.getDiagnostics().toString(), task.call());
+        }
+        finally {
+            fileManager.close();
+        }
+        
+        return classes;
+    }
+    
+    /**
+     * The processor finds its classes from the URLs of the loader that
+     * loaded it, so it is loaded in a URLClassLoader of the test class path
+     */
+    private static URLClassLoader createProcessorLoader() throws Exception {
+        List<URL> urls = new LinkedList<URL>();
+        for (String element : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (element.length() == 0) continue;
+            
+            urls.add(new File(element).toURI().toURL());
+        }
+        
+        return new URLClassLoader(urls.toArray(new URL[urls.size()]), ClassLoader.getSystemClassLoader().getParent());
+    }
+    
+    private static File writeSource(File sources, String className, String source) throws IOException {
+        File sourceFile = new File(sources, className.replace('.', File.separatorChar) + ".java");
+        Assert.assertTrue(sourceFile.getParentFile().isDirectory() || sourceFile.getParentFile().mkdirs());
+        
+        Writer writer = new OutputStreamWriter(new FileOutputStream(sourceFile), "UTF-8");
+        try {
+            writer.write(source);
+        }
+        finally {
+            writer.close();
+        }
+        
+        return sourceFile;
+    }
+    
+    private static boolean isGenerated(File classes, String iFaceName) {
+        String proxyName = Utilities.getProxyNameFromInterfaceName(iFaceName);
+        
+        return new File(classes, proxyName.replace('.', File.separatorChar) + ".class").isFile();
+    }
+    
+    private static void delete(File file) {
+        File children[] = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        
+        file.delete();
+    }
+
+}
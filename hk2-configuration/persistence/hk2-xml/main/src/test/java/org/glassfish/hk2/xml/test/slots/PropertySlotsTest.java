@@ -0,0 +1,268 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.hk2.xml.test.slots;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.xml.api.XmlService;
+import org.glassfish.hk2.xml.jaxb.internal.BaseHK2JAXBBean;
+import org.glassfish.hk2.xml.test.utilities.Utilities;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the storage of the properties of beans in slots
+ * 
+ * @author jwells
+ *
+ */
+public class PropertySlotsTest {
+    private final static int NUM_INT_PROPS = 70;
+    private final static int INT_DEFAULT_BASE = 1000;
+    
+    private final static String FLOAT_PROP = "floatProp";
+    private final static String DOUBLE_PROP = "doubleProp";
+    private final static String CHAR_PROP = "charProp";
+    private final static String BOOLEAN_PROP = "booleanProp";
+    private final static String LONG_PROP = "longProp";
+    
+    private static WideBean createWideBean() {
+        ServiceLocator locator = Utilities.createLocator();
+        XmlService xmlService = locator.getService(XmlService.class);
+        
+        return xmlService.createBean(WideBean.class);
+    }
+    
+    private static int getP(WideBean bean, int index) throws Exception {
+        Method getter = WideBean.class.getMethod("getP" + index);
+        return (Integer) getter.invoke(bean);
+    }
+    
+    private static void setP(WideBean bean, int index, int value) throws Exception {
+        Method setter = WideBean.class.getMethod("setP" + index, int.class);
+        setter.invoke(bean, value);
+    }
+    
+    /**
+     * Tests that primitives that were never set read back their defaults
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testUnsetPrimitivesReadDefaults() throws Exception {
+        WideBean bean = createWideBean();
+        
+        for (int lcv = 0; lcv < NUM_INT_PROPS; lcv++) {
+            Assert.assertEquals(INT_DEFAULT_BASE + lcv, getP(bean, lcv));
+        }
+        
+        Assert.assertEquals(0, Float.compare(1.5F, bean.getFloatProp()));
+        Assert.assertEquals(0, Double.compare(2.5, bean.getDoubleProp()));
+        Assert.assertEquals('c', bean.getCharProp());
+        Assert.assertTrue(bean.isBooleanProp());
+        Assert.assertEquals(-1L, bean.getLongProp());
+        
+        Assert.assertTrue(((BaseHK2JAXBBean) bean)._getBeanLikeMap().isEmpty());
+    }
+    
+    /**
+     * Tests that setting each slot of a bean with more than 64
+     * slots leaves the slots not yet set unset
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testSlotsPastSixtyFourAreIndependent() throws Exception {
+        WideBean bean = createWideBean();
+        
+        for (int set = 0; set < NUM_INT_PROPS; set++) {
+            setP(bean, set, -set);
+            
+            for (int lcv = 0; lcv < NUM_INT_PROPS; lcv++) {
+                int expected = (lcv <= set) ? -lcv : INT_DEFAULT_BASE + lcv;
+                Assert.assertEquals("p" + lcv + " after setting p" + set, expected, getP(bean, lcv));
+            }
+        }
+        
+        Map<String, Object> beanLikeMap = ((BaseHK2JAXBBean) bean)._getBeanLikeMap();
+        Assert.assertEquals(NUM_INT_PROPS, beanLikeMap.size());
+        for (int lcv = 0; lcv < NUM_INT_PROPS; lcv++) {
+            Assert.assertEquals(-lcv, beanLikeMap.get("p" + lcv));
+        }
+        
+        // Unsetting one slot past the first word leaves the others alone
+        ((BaseHK2JAXBBean) bean)._setProperty("p65", null);
+        
+        Assert.assertEquals(INT_DEFAULT_BASE + 65, getP(bean, 65));
+        Assert.assertEquals(-1, getP(bean, 1));
+        Assert.assertEquals(-64, getP(bean, 64));
+        Assert.assertEquals(-66, getP(bean, 66));
+        Assert.assertFalse(((BaseHK2JAXBBean) bean)._getBeanLikeMap().containsKey("p65"));
+    }
+    
+    /**
+     * Tests that float, double, char and boolean values keep
+     * all their bits through the slots
+     */
+    @Test
+    public void testPrimitiveBitsRoundTrip() {
+        WideBean bean = createWideBean();
+        BaseHK2JAXBBean base = (BaseHK2JAXBBean) bean;
+        
+        float floats[] = { -0.0F, Float.MIN_VALUE, -Float.MAX_VALUE, Float.NEGATIVE_INFINITY, Float.NaN };
+        for (float value : floats) {
+            bean.setFloatProp(value);
+            
+            Assert.assertEquals(Float.floatToRawIntBits(value), Float.floatToRawIntBits(bean.getFloatProp()));
+            Assert.assertEquals(Float.floatToRawIntBits(value),
+                    Float.floatToRawIntBits((Float) base._getBeanLikeMap().get(FLOAT_PROP)));
+        }
+        
+        double doubles[] = { -0.0, Double.MIN_VALUE, -Double.MAX_VALUE, Double.POSITIVE_INFINITY, Double.NaN };
+        for (double value : doubles) {
+            bean.setDoubleProp(value);
+            
+            Assert.assertEquals(Double.doubleToRawLongBits(value), Double.doubleToRawLongBits(bean.getDoubleProp()));
+            Assert.assertEquals(Double.doubleToRawLongBits(value),
+                    Double.doubleToRawLongBits((Double) base._getBeanLikeMap().get(DOUBLE_PROP)));
+        }
+        
+        char chars[] = { '\u0000', 'z', '\u7fff', '\u8000', '\uffff' };
+        for (char value : chars) {
+            bean.setCharProp(value);
+            
+            Assert.assertEquals(value, bean.getCharProp());
+            Assert.assertEquals(value, base._getBeanLikeMap().get(CHAR_PROP));
+        }
+        
+        boolean booleans[] = { false, true, false };
+        for (boolean value : booleans) {
+            bean.setBooleanProp(value);
+            
+            Assert.assertEquals(value, bean.isBooleanProp());
+            Assert.assertEquals(value, base._getBeanLikeMap().get(BOOLEAN_PROP));
+        }
+        
+        bean.setLongProp(Long.MIN_VALUE);
+        Assert.assertEquals(Long.MIN_VALUE, bean.getLongProp());
+        Assert.assertEquals(Long.MIN_VALUE, base._getBeanLikeMap().get(LONG_PROP));
+    }
+    
+    /**
+     * Tests that raw values not of the boxed type of a primitive
+     * property are converted, or refused with an IllegalArgumentException
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testRawValuesOfOtherTypes() throws Exception {
+        WideBean bean = createWideBean();
+        BaseHK2JAXBBean base = (BaseHK2JAXBBean) bean;
+        
+        base._setProperty("p3", "12");
+        Assert.assertEquals(12, getP(bean, 3));
+        Assert.assertEquals(12, base._getBeanLikeMap().get("p3"));
+        
+        base._setProperty("p4", 13L);
+        Assert.assertEquals(13, getP(bean, 4));
+        
+        base._setProperty(FLOAT_PROP, 3);
+        Assert.assertEquals(0, Float.compare(3.0F, bean.getFloatProp()));
+        
+        base._setProperty(BOOLEAN_PROP, "false");
+        Assert.assertFalse(bean.isBooleanProp());
+        
+        base._setProperty(CHAR_PROP, "x");
+        Assert.assertEquals('x', bean.getCharProp());
+        
+        try {
+            base._setProperty("p5", new Object());
+            Assert.fail("An Object cannot be stored in an int property");
+        }
+        catch (IllegalArgumentException iae) {
+            // expected
+        }
+        
+        try {
+            base._setProperty("p5", "five");
+            Assert.fail("five cannot be parsed as an int");
+        }
+        catch (IllegalArgumentException iae) {
+            // expected
+        }
+        
+        try {
+            base._setProperty(BOOLEAN_PROP, 1);
+            Assert.fail("A number cannot be stored in a boolean property");
+        }
+        catch (IllegalArgumentException iae) {
+            // expected
+        }
+        
+        // Refused values leave the property as it was
+        Assert.assertEquals(INT_DEFAULT_BASE + 5, getP(bean, 5));
+        Assert.assertFalse(bean.isBooleanProp());
+    }
+    
+    /**
+     * Tests that a bean that is not active does not default its
+     * primitives, whether they are read boxed or not
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void testInactiveBeanDoesNotDefault() throws Exception {
+        WideBean active = createWideBean();
+        
+        WideBean inactive = (WideBean) active.getClass().newInstance();
+        
+        Assert.assertNull(((BaseHK2JAXBBean) inactive)._getProperty("p0"));
+        Assert.assertEquals(0, getP(inactive, 0));
+        Assert.assertEquals(0, getP(inactive, 69));
+        Assert.assertEquals(0, Float.compare(0.0F, inactive.getFloatProp()));
+        Assert.assertFalse(inactive.isBooleanProp());
+        Assert.assertEquals(0L, inactive.getLongProp());
+        
+        Assert.assertEquals(INT_DEFAULT_BASE, getP(active, 0));
+    }
+
+}
@@ -0,0 +1,355 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.hk2.xml.test.slots;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.jvnet.hk2.annotations.Contract;
+
+/**
+ * A bean with more properties than fit in one word of
+ * set bits.  The default of property pN is 1000 + N
+ * 
+ * @author jwells
+ *
+ */
+@XmlRootElement(name="wide-bean") @Contract
+public interface WideBean {
+    @XmlElement(defaultValue="1000")
+    public int getP0();
+    public void setP0(int p);
+    
+    @XmlElement(defaultValue="1001")
+    public int getP1();
+    public void setP1(int p);
+    
+    @XmlElement(defaultValue="1002")
+    public int getP2();
+    public void setP2(int p);
+    
+    @XmlElement(defaultValue="1003")
+    public int getP3();
+    public void setP3(int p);
+    
+    @XmlElement(defaultValue="1004")
+    public int getP4();
+    public void setP4(int p);
+    
+    @XmlElement(defaultValue="1005")
+    public int getP5();
+    public void setP5(int p);
+    
+    @XmlElement(defaultValue="1006")
+    public int getP6();
+    public void setP6(int p);
+    
+    @XmlElement(defaultValue="1007")
+    public int getP7();
+    public void setP7(int p);
+    
+    @XmlElement(defaultValue="1008")
+    public int getP8();
+    public void setP8(int p);
+    
+    @XmlElement(defaultValue="1009")
+    public int getP9();
+    public void setP9(int p);
+    
+    @XmlElement(defaultValue="1010")
+    public int getP10();
+    public void setP10(int p);
+    
+    @XmlElement(defaultValue="1011")
+    public int getP11();
+    public void setP11(int p);
+    
+    @XmlElement(defaultValue="1012")
+    public int getP12();
+    public void setP12(int p);
+    
+    @XmlElement(defaultValue="1013")
+    public int getP13();
+    public void setP13(int p);
+    
+    @XmlElement(defaultValue="1014")
+    public int getP14();
+    public void setP14(int p);
+    
+    @XmlElement(defaultValue="1015")
+    public int getP15();
+    public void setP15(int p);
+    
+    @XmlElement(defaultValue="1016")
+    public int getP16();
+    public void setP16(int p);
+    
+    @XmlElement(defaultValue="1017")
+    public int getP17();
+    public void setP17(int p);
+    
+    @XmlElement(defaultValue="1018")
+    public int getP18();
+    public void setP18(int p);
+    
+    @XmlElement(defaultValue="1019")
+    public int getP19();
+    public void setP19(int p);
+    
+    @XmlElement(defaultValue="1020")
+    public int getP20();
+    public void setP20(int p);
+    
+    @XmlElement(defaultValue="1021")
+    public int getP21();
+    public void setP21(int p);
+    
+    @XmlElement(defaultValue="1022")
+    public int getP22();
+    public void setP22(int p);
+    
+    @XmlElement(defaultValue="1023")
+    public int getP23();
+    public void setP23(int p);
+    
+    @XmlElement(defaultValue="1024")
+    public int getP24();
+    public void setP24(int p);
+    
+    @XmlElement(defaultValue="1025")
+    public int getP25();
+    public void setP25(int p);
+    
+    @XmlElement(defaultValue="1026")
+    public int getP26();
+    public void setP26(int p);
+    
+    @XmlElement(defaultValue="1027")
+    public int getP27();
+    public void setP27(int p);
+    
+    @XmlElement(defaultValue="1028")
+    public int getP28();
+    public void setP28(int p);
+    
+    @XmlElement(defaultValue="1029")
+    public int getP29();
+    public void setP29(int p);
+    
+    @XmlElement(defaultValue="1030")
+    public int getP30();
+    public void setP30(int p);
+    
+    @XmlElement(defaultValue="1031")
+    public int getP31();
+    public void setP31(int p);
+    
+    @XmlElement(defaultValue="1032")
+    public int getP32();
+    public void setP32(int p);
+    
+    @XmlElement(defaultValue="1033")
+    public int getP33();
+    public void setP33(int p);
+    
+    @XmlElement(defaultValue="1034")
+    public int getP34();
+    public void setP34(int p);
+    
+    @XmlElement(defaultValue="1035")
+    public int getP35();
+    public void setP35(int p);
+    
+    @XmlElement(defaultValue="1036")
+    public int getP36();
+    public void setP36(int p);
+    
+    @XmlElement(defaultValue="1037")
+    public int getP37();
+    public void setP37(int p);
+    
+    @XmlElement(defaultValue="1038")
+    public int getP38();
+    public void setP38(int p);
+    
+    @XmlElement(defaultValue="1039")
+    public int getP39();
+    public void setP39(int p);
+    
+    @XmlElement(defaultValue="1040")
+    public int getP40();
+    public void setP40(int p);
+    
+    @XmlElement(defaultValue="1041")
+    public int getP41();
+    public void setP41(int p);
+    
+    @XmlElement(defaultValue="1042")
+    public int getP42();
+    public void setP42(int p);
+    
+    @XmlElement(defaultValue="1043")
+    public int getP43();
+    public void setP43(int p);
+    
+    @XmlElement(defaultValue="1044")
+    public int getP44();
+    public void setP44(int p);
+    
+    @XmlElement(defaultValue="1045")
+    public int getP45();
+    public void setP45(int p);
+    
+    @XmlElement(defaultValue="1046")
+    public int getP46();
+    public void setP46(int p);
+    
+    @XmlElement(defaultValue="1047")
+    public int getP47();
+    public void setP47(int p);
+    
+    @XmlElement(defaultValue="1048")
+    public int getP48();
+    public void setP48(int p);
+    
+    @XmlElement(defaultValue="1049")
+    public int getP49();
+    public void setP49(int p);
+    
+    @XmlElement(defaultValue="1050")
+    public int getP50();
+    public void setP50(int p);
+    
+    @XmlElement(defaultValue="1051")
+    public int getP51();
+    public void setP51(int p);
+    
+    @XmlElement(defaultValue="1052")
+    public int getP52();
+    public void setP52(int p);
+    
+    @XmlElement(defaultValue="1053")
+    public int getP53();
+    public void setP53(int p);
+    
+    @XmlElement(defaultValue="1054")
+    public int getP54();
+    public void setP54(int p);
+    
+    @XmlElement(defaultValue="1055")
+    public int getP55();
+    public void setP55(int p);
+    
+    @XmlElement(defaultValue="1056")
+    public int getP56();
+    public void setP56(int p);
+    
+    @XmlElement(defaultValue="1057")
+    public int getP57();
+    public void setP57(int p);
+    
+    @XmlElement(defaultValue="1058")
+    public int getP58();
+    public void setP58(int p);
+    
+    @XmlElement(defaultValue="1059")
+    public int getP59();
+    public void setP59(int p);
+    
+    @XmlElement(defaultValue="1060")
+    public int getP60();
+    public void setP60(int p);
+    
+    @XmlElement(defaultValue="1061")
+    public int getP61();
+    public void setP61(int p);
+    
+    @XmlElement(defaultValue="1062")
+    public int getP62();
+    public void setP62(int p);
+    
+    @XmlElement(defaultValue="1063")
+    public int getP63();
+    public void setP63(int p);
+    
+    @XmlElement(defaultValue="1064")
+    public int getP64();
+    public void setP64(int p);
+    
+    @XmlElement(defaultValue="1065")
+    public int getP65();
+    public void setP65(int p);
+    
+    @XmlElement(defaultValue="1066")
+    public int getP66();
+    public void setP66(int p);
+    
+    @XmlElement(defaultValue="1067")
+    public int getP67();
+    public void setP67(int p);
+    
+    @XmlElement(defaultValue="1068")
+    public int getP68();
+    public void setP68(int p);
+    
+    @XmlElement(defaultValue="1069")
+    public int getP69();
+    public void setP69(int p);
+    
+    @XmlElement(defaultValue="1.5")
+    public float getFloatProp();
+    public void setFloatProp(float prop);
+    
+    @XmlElement(defaultValue="2.5")
+    public double getDoubleProp();
+    public void setDoubleProp(double prop);
+    
+    @XmlElement(defaultValue="c")
+    public char getCharProp();
+    public void setCharProp(char prop);
+    
+    @XmlElement(defaultValue="true")
+    public boolean isBooleanProp();
+    public void setBooleanProp(boolean prop);
+    
+    @XmlElement(defaultValue="-1")
+    public long getLongProp();
+    public void setLongProp(long prop);
+}
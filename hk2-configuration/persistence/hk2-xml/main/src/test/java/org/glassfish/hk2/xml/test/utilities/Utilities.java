@@ -83,5 +83,21 @@ public class Utilities {
         
         return retVal;
     }
+    
+    /**
+     * Creates a fresh service locator with the XmlService added
+     * using the streaming parser
+     * 
+     * @return A service locator with the XmlService added
+     */
+    public static ServiceLocator createStaxLocator(Class<?>... classes) {
+        ServiceLocator retVal = ServiceLocatorFactory.getInstance().create(null, null, GENERATOR);
+        
+        ServiceLocatorUtilities.addClasses(retVal, classes);
+        
+        XmlServiceUtilities.enableStaxXmlService(retVal);
+        
+        return retVal;
+    }
 
 }
@@ -186,6 +186,12 @@ public class ExtrasUtilities {
      * will not be distributed to.  Only services created AFTER the topic
      * distribution service is enabled will be distributed to.
      * <p>
+     * If an implementation of {@link org.glassfish.hk2.extras.events.AsynchronousDeliveryPolicy}
+     * is registered messages are instead delivered by the executor of that policy.
+     * The distribution service also implements
+     * {@link org.glassfish.hk2.extras.events.AsynchronousTopicDistributionService}, which
+     * can be used to find out when a message has been delivered
+     * <p>
      * This method is idempotent, so that if there is already a
      * TopicDistributionService with the default name is available this method
      * will do nothing
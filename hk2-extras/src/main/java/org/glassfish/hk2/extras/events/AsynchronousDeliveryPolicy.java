@@ -0,0 +1,141 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.hk2.extras.events;
+
+import java.util.concurrent.Executor;
+
+import org.glassfish.hk2.api.messaging.Topic;
+import org.jvnet.hk2.annotations.Contract;
+
+/**
+ * When using the TopicDistributionService added with
+ * {@link org.glassfish.hk2.extras.ExtrasUtilities#enableTopicDistribution(org.glassfish.hk2.api.ServiceLocator)}
+ * messages are delivered to subscribers on the thread that called
+ * {@link Topic#publish(Object)}.  If an implementation of this service
+ * is registered with the ServiceLocator messages are instead delivered
+ * by the {@link Executor} returned from {@link #getExecutor()}.
+ * <p>
+ * Messages are queued before being given to the executor.  The queues are
+ * per subscriber or per topic, as returned by {@link #getDeliveryOrder()}.
+ * Messages in the same queue are delivered one at a time in the order in
+ * which they were published, while different queues may be delivered in
+ * parallel.  A subscriber that publishes a message while it is being
+ * given a message is never blocked by {@link Backpressure#BLOCK}, whatever
+ * queue the new message goes to, since the queue it is being delivered
+ * from might be the one that has to make room.  The message is added
+ * even if that makes the queue longer than its maximum depth
+ * <p>
+ * The values returned by this service are read when the first message
+ * is published and again after every change to the configuration of
+ * the ServiceLocator
+ * 
+ * @author jwells
+ */
+@Contract
+public interface AsynchronousDeliveryPolicy {
+    /**
+     * The granularity at which message ordering is guaranteed
+     */
+    public enum DeliveryOrder {
+        /**
+         * Each subscriber has its own queue.  A subscriber receives messages in
+         * the order in which they were published, but different subscribers
+         * of the same message may receive it in parallel
+         */
+        PER_SUBSCRIBER,
+        
+        /**
+         * Each topic (topic type and qualifiers) has its own queue.  All subscribers
+         * of a message receive it, one after the other, before any subscriber
+         * receives the next message published to the same topic
+         */
+        PER_TOPIC
+    }
+    
+    /**
+     * What to do when a message is published to a queue that is full
+     */
+    public enum Backpressure {
+        /**
+         * The publishing thread waits until there is room in the queue,
+         * unless it is a thread that is delivering messages
+         */
+        BLOCK,
+        
+        /**
+         * The message is not delivered to the subscribers of the full queue.
+         * A {@link java.util.concurrent.RejectedExecutionException} is reported
+         * to the {@link DefaultTopicDistributionErrorService} for each such subscriber
+         */
+        FAIL
+    }
+    
+    /**
+     * The executor that will deliver messages
+     * 
+     * @return The executor to use to deliver messages.  If null messages
+     * will be delivered on the thread of the publisher
+     */
+    public Executor getExecutor();
+    
+    /**
+     * Gets the granularity of the delivery queues
+     * 
+     * @return The non-null delivery order
+     */
+    public DeliveryOrder getDeliveryOrder();
+    
+    /**
+     * The maximum number of messages that may be waiting in
+     * a single delivery queue
+     * 
+     * @return The maximum number of messages in a delivery queue.
+     * Zero or a negative number means the queues are not bounded
+     */
+    public int getMaximumQueueDepth();
+    
+    /**
+     * What to do when a message is published to a full delivery queue
+     * 
+     * @return The non-null backpressure policy
+     */
+    public Backpressure getBackpressure();
+
+}
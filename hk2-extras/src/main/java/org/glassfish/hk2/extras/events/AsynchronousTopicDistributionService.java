@@ -0,0 +1,100 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.hk2.extras.events;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.glassfish.hk2.api.MultiException;
+import org.glassfish.hk2.api.messaging.BatchTopicDistributionService;
+import org.glassfish.hk2.api.messaging.Topic;
+import org.jvnet.hk2.annotations.Contract;
+
+/**
+ * The TopicDistributionService added with
+ * {@link org.glassfish.hk2.extras.ExtrasUtilities#enableTopicDistribution(org.glassfish.hk2.api.ServiceLocator)}
+ * also implements this contract, which allows a publisher to find out when
+ * a message has been delivered to all of its subscribers
+ * 
+ * @author jwells
+ */
+@Contract
+public interface AsynchronousTopicDistributionService extends BatchTopicDistributionService {
+    /**
+     * Distributes the message to all of the matching topic subscribers.  If an
+     * {@link AsynchronousDeliveryPolicy} is registered the message is delivered
+     * as described by that policy, otherwise it is delivered before this method
+     * returns.
+     * <p>
+     * The returned future is done once every subscriber has been given the
+     * message.  If any subscriber failed then the errors are first given to
+     * all {@link DefaultTopicDistributionErrorService} implementations and
+     * then {@link Future#get()} will throw an
+     * {@link java.util.concurrent.ExecutionException} whose cause is a
+     * {@link MultiException} containing the errors.  The returned
+     * future cannot be cancelled
+     * 
+     * @param topic The topic to which to distribute the message.  Must not be null
+     * @param message The message to send to the topic.  Must not be null
+     * @return A future that is done once the message has been delivered to all subscribers
+     */
+    public Future<Void> distributeMessageAsynchronously(Topic<?> topic, Object message);
+    
+    /**
+     * Distributes all of the messages, in order, to all of the matching topic
+     * subscribers.  The subscribers are found and the injection points of
+     * the subscription methods that are not {@link org.glassfish.hk2.api.PerLookup}
+     * are resolved once for all of the messages.  The returned future is done
+     * once every subscriber has been given every message.  The
+     * {@link DefaultTopicDistributionErrorService} implementations are called
+     * once for each message that caused a subscriber to fail.  Errors from
+     * subscribers that received all of the messages as one list, or that could
+     * not be called at all, are reported once with the list of messages as the
+     * message.  The {@link java.util.concurrent.ExecutionException} thrown by
+     * {@link Future#get()} will contain all of the errors
+     * 
+     * @param topic The topic to which to distribute the messages.  Must not be null
+     * @param messages The messages to send to the topic.  Must not be null and
+     * must not contain null
+     * @return A future that is done once the messages have been delivered to all subscribers
+     */
+    public Future<Void> distributeMessagesAsynchronously(Topic<?> topic, List<?> messages);
+
+}
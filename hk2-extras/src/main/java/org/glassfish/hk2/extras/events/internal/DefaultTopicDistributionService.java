@@ -43,7 +43,12 @@ import java.lang.annotation.Annotation;
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -52,6 +57,13 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
@@ -63,6 +75,8 @@ import javax.inject.Singleton;
 import org.glassfish.hk2.api.AOPProxyCtl;
 import org.glassfish.hk2.api.ActiveDescriptor;
 import org.glassfish.hk2.api.Descriptor;
+import org.glassfish.hk2.api.DynamicConfigurationChange;
+import org.glassfish.hk2.api.DynamicConfigurationChangeListener;
 import org.glassfish.hk2.api.DynamicConfigurationListener;
 import org.glassfish.hk2.api.Filter;
 import org.glassfish.hk2.api.InstanceLifecycleEvent;
@@ -74,10 +88,13 @@ import org.glassfish.hk2.api.Self;
 import org.glassfish.hk2.api.ServiceHandle;
 import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.hk2.api.Unqualified;
+import org.glassfish.hk2.api.messaging.BatchTopicDistributionService;
 import org.glassfish.hk2.api.messaging.MessageReceiver;
 import org.glassfish.hk2.api.messaging.SubscribeTo;
 import org.glassfish.hk2.api.messaging.Topic;
 import org.glassfish.hk2.api.messaging.TopicDistributionService;
+import org.glassfish.hk2.extras.events.AsynchronousDeliveryPolicy;
+import org.glassfish.hk2.extras.events.AsynchronousTopicDistributionService;
 import org.glassfish.hk2.extras.events.DefaultTopicDistributionErrorService;
 import org.glassfish.hk2.utilities.InjecteeImpl;
 import org.glassfish.hk2.utilities.reflection.ClassReflectionHelper;
@@ -96,9 +113,19 @@ import org.jvnet.hk2.annotations.Optional;
  */
 @Singleton
 @Named(TopicDistributionService.HK2_DEFAULT_TOPIC_DISTRIBUTOR)
-@ContractsProvided({TopicDistributionService.class, InstanceLifecycleListener.class, DynamicConfigurationListener.class})
+@ContractsProvided({TopicDistributionService.class, BatchTopicDistributionService.class,
+    AsynchronousTopicDistributionService.class, InstanceLifecycleListener.class, DynamicConfigurationListener.class})
 public class DefaultTopicDistributionService implements
-        TopicDistributionService, InstanceLifecycleListener, DynamicConfigurationListener {
+        AsynchronousTopicDistributionService, InstanceLifecycleListener, DynamicConfigurationListener,
+        DynamicConfigurationChangeListener {
+    /** The maximum number of messages a delivery queue delivers before giving up its thread */
+    private final static int DRAIN_BATCH = 32;
+    
+    private final static DeliverySettings SYNCHRONOUS_DELIVERY = new DeliverySettings(null, null, 0, null);
+    
+    /** The delivery queue being drained by the current thread, if any */
+    private final static ThreadLocal<DeliveryQueue> DRAINING = new ThreadLocal<DeliveryQueue>();
+    
     private final static Filter SUBSCRIBER_FILTER = new Filter() {
 
         @Override
@@ -118,111 +145,239 @@ public class DefaultTopicDistributionService implements
     private final HashMap<ActiveDescriptor<?>, Set<Class<?>>> descriptor2Classes = new HashMap<ActiveDescriptor<?>, Set<Class<?>>>();
     private final HashMap<ActivatorClassKey, List<SubscriberInfo>> class2Subscribers = new HashMap<ActivatorClassKey, List<SubscriberInfo>>();
     
+    /**
+     * All subscribers keyed by the raw class of the event they subscribe to
+     */
+    private final HashMap<Class<?>, List<SubscriberInfo>> eventClass2Subscribers = new HashMap<Class<?>, List<SubscriberInfo>>();
+    
+    /**
+     * Keyed by the name of the raw class of a published event, the subscribers whose
+     * raw event class is assignable from that class.  Filled in lazily under the read
+     * lock and kept up to date under the write lock.  The routes are keyed by name and
+     * hold the published class weakly, since a subscriber in a route may refer to the
+     * published class itself and would keep a class key from ever being collected
+     */
+    private final Map<String, Route> routes =
+            Collections.synchronizedMap(new HashMap<String, Route>());
+    
     private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
     private final WriteLock wLock = readWriteLock.writeLock();
     private final ReadLock rLock = readWriteLock.readLock();
     
-    private static void fire(Object message, Method subscription, SubscriberInfo subscriptionInfo, Object target, ServiceLocator locator) throws Throwable {
-        Object arguments[] = new Object[subscriptionInfo.otherInjectees.length];
+    /** Null until the first publish and after every configuration change */
+    private volatile DeliverySettings deliverySettings;
+    
+    /** Keyed by SubscriberInfo or by TopicKey depending on the delivery order */
+    private final ConcurrentHashMap<Object, DeliveryQueue> deliveryQueues = new ConcurrentHashMap<Object, DeliveryQueue>();
+    
+    /**
+     * Resolves the arguments of a subscription method.  The arguments
+     * that are not {@link PerLookup} are resolved once, when the invocation
+     * is created, and are then used for every message given to {@link #invoke(Object)}
+     * 
+     * @author jwells
+     *
+     */
+    private static final class Invocation {
+        private final Method subscription;
+        private final SubscriberInfo subscriptionInfo;
+        private final Object target;
+        private final ServiceLocator locator;
+        private final boolean neutralCCL;
+        private final Object arguments[];
         
-        List<ServiceHandle<?>> destroyMe = new LinkedList<ServiceHandle<?>>();
-        try {
-            for (int lcv = 0; lcv < subscriptionInfo.otherInjectees.length; lcv++) {
+        /** Non-null in the slots that must be created for every message */
+        private final ActiveDescriptor<?> perLookupArguments[];
+        
+        private Invocation(FireResults fireResult, ServiceLocator locator) {
+            subscription = fireResult.subscriberMethod;
+            subscriptionInfo = fireResult.subscriberInfo;
+            target = fireResult.target;
+            this.locator = locator;
+            neutralCCL = locator.getNeutralContextClassLoader();
+            
+            arguments = new Object[subscriptionInfo.otherInjectees.length];
+            perLookupArguments = new ActiveDescriptor<?>[arguments.length];
+            
+            for (int lcv = 0; lcv < arguments.length; lcv++) {
                 InjecteeImpl injectee = subscriptionInfo.otherInjectees[lcv];
-                if (injectee == null) {
-                    arguments[lcv] = message;
+                if (injectee == null) continue;
+                
+                if (injectee.isSelf()) {
+                    arguments[lcv] = injectee.getInjecteeDescriptor();
+                    continue;
                 }
-                else {
-                    if (injectee.isSelf()) {
-                        arguments[lcv] = injectee.getInjecteeDescriptor();
+                
+                ActiveDescriptor<?> injecteeDescriptor = locator.getInjecteeDescriptor(injectee);
+                if (injecteeDescriptor == null) {
+                    if (injectee.isOptional()) {
+                        arguments[lcv] = null;
                         continue;
                     }
                     
-                    ActiveDescriptor<?> injecteeDescriptor = locator.getInjecteeDescriptor(injectee);
-                    if (injecteeDescriptor == null) {
-                        if (injectee.isOptional()) {
-                            arguments[lcv] = null;
-                            continue;
-                        }
-                        
-                        throw new IllegalStateException("Could not find injectee " + injectee + " for subscriber " +
-                                Pretty.method(subscription) + " on class " + target.getClass().getName());
-                    }
+                    throw new IllegalStateException("Could not find injectee " + injectee + " for subscriber " +
+                            Pretty.method(subscription) + " on class " + target.getClass().getName());
+                }
+                
+                if (injecteeDescriptor.getScope().equals(PerLookup.class.getName())) {
+                    // Only will live as long as the method
+                    perLookupArguments[lcv] = injecteeDescriptor;
+                    continue;
+                }
                 
-                    ServiceHandle<?> handle = locator.getServiceHandle(injecteeDescriptor);
-                    if (injecteeDescriptor.getScope().equals(PerLookup.class.getName())) {
-                        // Only will live as long as the method
-                        destroyMe.add(handle);
+                arguments[lcv] = locator.getServiceHandle(injecteeDescriptor).getService();
+            }
+        }
+        
+        private void invoke(Object message) throws Throwable {
+            Object callArguments[] = arguments.clone();
+            
+            List<ServiceHandle<?>> destroyMe = null;
+            try {
+                for (int lcv = 0; lcv < callArguments.length; lcv++) {
+                    if (subscriptionInfo.otherInjectees[lcv] == null) {
+                        callArguments[lcv] = message;
+                        continue;
                     }
                     
-                    arguments[lcv] = handle.getService();
+                    if (perLookupArguments[lcv] == null) continue;
+                    
+                    ServiceHandle<?> handle = locator.getServiceHandle(perLookupArguments[lcv]);
+                    if (destroyMe == null) destroyMe = new LinkedList<ServiceHandle<?>>();
+                    destroyMe.add(handle);
+                    
+                    callArguments[lcv] = handle.getService();
                 }
+                
+                // OK, everything filled in!
+                ReflectionHelper.invoke(target, subscription, callArguments, neutralCCL);
             }
-            
-            // OK, everything filled in!
-            ReflectionHelper.invoke(target, subscription, arguments, locator.getNeutralContextClassLoader());
-        }
-        finally {
-            for (ServiceHandle<?> dead : destroyMe) {
-                dead.destroy();
+            finally {
+                if (destroyMe != null) {
+                    for (ServiceHandle<?> dead : destroyMe) {
+                        dead.destroy();
+                    }
+                }
             }
         }
     }
     
-    private List<FireResults> handleDescriptorToClass(ActiveDescriptor<?> descriptor, Class<?> clazz, Type eventType, Topic<?> topic) {
-        LinkedList<FireResults> retVal = new LinkedList<FireResults>();
+    private static Class<?> getRawEventClass(Type eventType) {
+        Class<?> rawClass = ReflectionHelper.getRawClass(eventType);
+        if (rawClass == null) return null;
+        
+        return ReflectionHelper.translatePrimitiveType(rawClass);
+    }
+    
+    /**
+     * Gets the subscribers whose raw event class is assignable from the
+     * given raw class.  Must be called with the read or write lock held
+     * 
+     * @param rawEventClass The raw class of the event being published
+     * @return The (unmodifiable) list of subscribers that may receive the event
+     */
+    private List<SubscriberInfo> getRoute(Class<?> rawEventClass) {
+        String routeName = rawEventClass.getName();
         
-        List<SubscriberInfo> subscribers = class2Subscribers.get(new ActivatorClassKey(descriptor, clazz));
-        if (subscribers == null) subscribers = Collections.emptyList();
+        Route existing = routes.get(routeName);
+        if (existing != null && existing.eventClass.get() == rawEventClass) return existing.subscribers;
         
-        for (SubscriberInfo subscriberInfo : subscribers) {    
-            Type subscriptionType = subscriberInfo.eventType;
-            
-            if (!TypeChecker.isRawTypeSafe(subscriptionType, eventType)) {
-                // Not a type match
-                continue;
-            }
-                
-            if (!subscriberInfo.eventQualifiers.isEmpty()) {
-                if (!ReflectionHelper.annotationContainsAll(topic.getTopicQualifiers(), subscriberInfo.eventQualifiers)) {
-                    // The qualifiers do not match
-                    continue;
-                }
+        List<SubscriberInfo> route = new ArrayList<SubscriberInfo>();
+        for (Map.Entry<Class<?>, List<SubscriberInfo>> entry : eventClass2Subscribers.entrySet()) {
+            if (entry.getKey().isAssignableFrom(rawEventClass)) {
+                route.addAll(entry.getValue());
             }
+        }
+        
+        List<SubscriberInfo> retVal = Collections.unmodifiableList(route);
+        
+        // Writers hold the write lock, so only other readers can race us here
+        synchronized (routes) {
+            existing = routes.get(routeName);
+            if (existing != null && existing.eventClass.get() == rawEventClass) return existing.subscribers;
             
-            if ((subscriberInfo.unqualified != null) && !topic.getTopicQualifiers().isEmpty()) {
-                if (subscriberInfo.unqualified.value().length == 0) {
-                    // publisher must not have any qualifiers,
-                    // but it DOES have some, so forget it!
-                    continue;
-                }
+            // Also replaces the route of a class of the same name from another loader
+            routes.put(routeName, new Route(rawEventClass, retVal));
+            return retVal;
+        }
+    }
+    
+    /**
+     * Adds the subscriber to the routing index.  Must be called with the write lock held
+     * 
+     * @param subscriberInfo The newly found subscriber
+     */
+    private void indexSubscriber(SubscriberInfo subscriberInfo) {
+        Class<?> rawEventClass = subscriberInfo.rawEventClass;
+        if (rawEventClass == null) {
+            // Can never match any topic
+            return;
+        }
+        
+        List<SubscriberInfo> subscribers = eventClass2Subscribers.get(rawEventClass);
+        if (subscribers == null) {
+            subscribers = new LinkedList<SubscriberInfo>();
+            eventClass2Subscribers.put(rawEventClass, subscribers);
+        }
+        subscribers.add(subscriberInfo);
+        
+        synchronized (routes) {
+            Iterator<Route> iterator = routes.values().iterator();
+            while (iterator.hasNext()) {
+                Route route = iterator.next();
                 
-                Set<Class<? extends Annotation>> topicQualifierClasses = new HashSet<Class<? extends Annotation>>();
-                for (Annotation topicQualifier : topic.getTopicQualifiers()) {
-                    topicQualifierClasses.add(topicQualifier.annotationType());
-                }
-                    
-                boolean found = false;
-                for (Class<? extends Annotation> verbotenQualifier : subscriberInfo.unqualified.value()) {
-                    if (topicQualifierClasses.contains(verbotenQualifier)) {
-                        found = true;
-                        break;
-                    }
-                }
-                    
-                if (found) {
-                    // Found one of the qualifiers we are not allowed to have!
+                Class<?> routeClass = route.eventClass.get();
+                if (routeClass == null) {
+                    // The published class is gone
+                    iterator.remove();
                     continue;
                 }
+                if (!rawEventClass.isAssignableFrom(routeClass)) continue;
+                
+                List<SubscriberInfo> newRoute = new ArrayList<SubscriberInfo>(route.subscribers);
+                newRoute.add(subscriberInfo);
+                
+                route.subscribers = Collections.unmodifiableList(newRoute);
             }
-            
-            for (WeakReference<Object> targetReference : subscriberInfo.targets) {
-                Object target = targetReference.get();
-                retVal.add(new FireResults(subscriberInfo.method, subscriberInfo, target));
-            }    
+        }
+    }
+    
+    /**
+     * Removes the subscriber from the routing index.  The caller must clear
+     * the routes once all subscribers have been removed.  Must be called with
+     * the write lock held
+     * 
+     * @param subscriberInfo The subscriber that is going away
+     */
+    private void unindexSubscriber(SubscriberInfo subscriberInfo) {
+        Class<?> rawEventClass = subscriberInfo.rawEventClass;
+        if (rawEventClass == null) return;
+        
+        List<SubscriberInfo> subscribers = eventClass2Subscribers.get(rawEventClass);
+        if (subscribers == null) return;
+        
+        subscribers.remove(subscriberInfo);
+        if (subscribers.isEmpty()) {
+            eventClass2Subscribers.remove(rawEventClass);
+        }
+    }
+    
+    private static boolean isUnqualifiedViolated(SubscriberInfo subscriberInfo,
+            Set<Class<? extends Annotation>> topicQualifierClasses) {
+        if (subscriberInfo.unqualifiedClasses.isEmpty()) {
+            // publisher must not have any qualifiers,
+            // but it DOES have some, so forget it!
+            return true;
         }
         
-        return retVal;
+        for (Class<? extends Annotation> verbotenQualifier : subscriberInfo.unqualifiedClasses) {
+            if (topicQualifierClasses.contains(verbotenQualifier)) {
+                // Found one of the qualifiers we are not allowed to have!
+                return true;
+            }
+        }
+        
+        return false;
     }
 
     /* (non-Javadoc)
@@ -230,15 +385,82 @@ public class DefaultTopicDistributionService implements
      */
     @Override
     public void distributeMessage(Topic<?> topic, Object message) {
+        distributeMessageAsynchronously(topic, message);
+    }
+    
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.extras.events.AsynchronousTopicDistributionService#distributeMessageAsynchronously(org.glassfish.hk2.api.messaging.Topic, java.lang.Object)
+     */
+    @Override
+    public Future<Void> distributeMessageAsynchronously(Topic<?> topic, Object message) {
+        return distribute(topic, Collections.singletonList(message), false);
+    }
+    
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.api.messaging.BatchTopicDistributionService#distributeMessages(org.glassfish.hk2.api.messaging.Topic, java.util.List)
+     */
+    @Override
+    public void distributeMessages(Topic<?> topic, List<?> messages) {
+        distributeMessagesAsynchronously(topic, messages);
+    }
+    
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.extras.events.AsynchronousTopicDistributionService#distributeMessagesAsynchronously(org.glassfish.hk2.api.messaging.Topic, java.util.List)
+     */
+    @Override
+    public Future<Void> distributeMessagesAsynchronously(Topic<?> topic, List<?> messages) {
+        // Deliveries may happen after the caller has changed its list
+        List<Object> copy = new ArrayList<Object>(messages);
+        for (Object message : copy) {
+            if (message == null) throw new IllegalArgumentException();
+        }
         
+        return distribute(topic, Collections.unmodifiableList(copy), true);
+    }
+    
+    private DeliveryResult distribute(Topic<?> topic, List<?> messages, boolean batch) {
         Type eventType = topic.getTopicType();
+        Class<?> rawEventClass = getRawEventClass(eventType);
+        if (rawEventClass == null) {
+            throw new IllegalArgumentException("The type " + Pretty.type(eventType) +
+                    " of a topic must have a raw class for its messages to be distributed");
+        }
+        if (messages.isEmpty()) return new DeliveryResult(topic, messages, batch, 0);
+        
+        Set<Annotation> topicQualifiers = topic.getTopicQualifiers();
+        Set<Class<? extends Annotation>> topicQualifierClasses = null;
         
         LinkedList<FireResults> fireResults = new LinkedList<FireResults>();
         rLock.lock();
         try {
-            for (Map.Entry<ActiveDescriptor<?>, Set<Class<?>>> d2cEntry : descriptor2Classes.entrySet()) {
-                for (Class<?> clazz : d2cEntry.getValue()) {
-                    fireResults.addAll(handleDescriptorToClass(d2cEntry.getKey(), clazz, eventType, topic));
+            for (SubscriberInfo subscriberInfo : getRoute(rawEventClass)) {
+                if (subscriberInfo.parameterizedEventType &&
+                        !TypeChecker.isRawTypeSafe(subscriberInfo.eventType, eventType)) {
+                    // Not a type match
+                    continue;
+                }
+                
+                if (!subscriberInfo.eventQualifiers.isEmpty()) {
+                    if (!ReflectionHelper.annotationContainsAll(topicQualifiers, subscriberInfo.eventQualifiers)) {
+                        // The qualifiers do not match
+                        continue;
+                    }
+                }
+                
+                if ((subscriberInfo.unqualified != null) && !topicQualifiers.isEmpty()) {
+                    if (topicQualifierClasses == null) {
+                        topicQualifierClasses = new HashSet<Class<? extends Annotation>>();
+                        for (Annotation topicQualifier : topicQualifiers) {
+                            topicQualifierClasses.add(topicQualifier.annotationType());
+                        }
+                    }
+                    
+                    if (isUnqualifiedViolated(subscriberInfo, topicQualifierClasses)) continue;
+                }
+                
+                for (WeakReference<Object> targetReference : subscriberInfo.targets) {
+                    Object target = targetReference.get();
+                    fireResults.add(new FireResults(subscriberInfo.method, subscriberInfo, target));
                 }
             }
         }
@@ -249,42 +471,13 @@ public class DefaultTopicDistributionService implements
         // Do everything else outside the lock
         Set<SubscriberInfo> hasDeadReferences = new HashSet<SubscriberInfo>();
         
-        MultiException errors = null;
+        List<FireResults> liveResults = new ArrayList<FireResults>(fireResults.size());
         for (FireResults fireResult : fireResults) {
             if (fireResult.target == null) {
                 hasDeadReferences.add(fireResult.subscriberInfo);
             }
             else {
-                try {
-                    fire(message,
-                           fireResult.subscriberMethod,
-                           fireResult.subscriberInfo,
-                           fireResult.target,
-                           locator);
-                }
-                catch (Throwable th) {
-                    if (errors == null) {
-                        errors = new MultiException(th);
-                    }
-                    else {
-                        errors.addError(th);
-                    }
-                }
-            }
-        }
-        
-        if (errors != null) {
-            for (ServiceHandle<DefaultTopicDistributionErrorService> handle : errorHandlers.handleIterator()) {
-                try {
-                    handle.getService().subscribersFailed(topic, message, errors);
-                    
-                    if (handle.getActiveDescriptor().getScope().equals(PerLookup.class.getName())) {
-                        handle.destroy();
-                    }
-                }
-                catch (Throwable ignore) {
-                    // ignore it
-                }
+                liveResults.add(fireResult);
             }
         }
         
@@ -308,6 +501,75 @@ public class DefaultTopicDistributionService implements
             }
         }
         
+        DeliveryResult retVal = new DeliveryResult(topic, messages, batch, liveResults.size());
+        if (liveResults.isEmpty()) return retVal;
+        
+        DeliverySettings settings = getDeliverySettings();
+        if (settings.executor == null) {
+            new Delivery(retVal, liveResults).run();
+        }
+        else if (AsynchronousDeliveryPolicy.DeliveryOrder.PER_TOPIC.equals(settings.order)) {
+            enqueue(new TopicKey(topic), new Delivery(retVal, liveResults), settings);
+        }
+        else {
+            for (FireResults fireResult : liveResults) {
+                enqueue(fireResult.subscriberInfo,
+                        new Delivery(retVal, Collections.singletonList(fireResult)),
+                        settings);
+            }
+        }
+        
+        return retVal;
+    }
+    
+    private DeliverySettings getDeliverySettings() {
+        DeliverySettings retVal = deliverySettings;
+        if (retVal != null) return retVal;
+        
+        AsynchronousDeliveryPolicy policy = locator.getService(AsynchronousDeliveryPolicy.class);
+        if (policy == null) {
+            retVal = SYNCHRONOUS_DELIVERY;
+        }
+        else {
+            retVal = new DeliverySettings(policy.getExecutor(),
+                    policy.getDeliveryOrder(),
+                    policy.getMaximumQueueDepth(),
+                    policy.getBackpressure());
+        }
+        
+        deliverySettings = retVal;
+        return retVal;
+    }
+    
+    private void enqueue(Object key, Delivery delivery, DeliverySettings settings) {
+        for (;;) {
+            DeliveryQueue queue = deliveryQueues.get(key);
+            if (queue == null) {
+                DeliveryQueue created = new DeliveryQueue(key, settings);
+                
+                queue = deliveryQueues.putIfAbsent(key, created);
+                if (queue == null) queue = created;
+            }
+            
+            if (queue.add(delivery)) return;
+            
+            // The queue drained and retired itself, try again with a new one
+        }
+    }
+    
+    private void reportErrors(Topic<?> topic, Object message, MultiException errors) {
+        for (ServiceHandle<DefaultTopicDistributionErrorService> handle : errorHandlers.handleIterator()) {
+            try {
+                handle.getService().subscribersFailed(topic, message, errors);
+                
+                if (handle.getActiveDescriptor().getScope().equals(PerLookup.class.getName())) {
+                    handle.destroy();
+                }
+            }
+            catch (Throwable ignore) {
+                // ignore it
+            }
+        }
     }
 
     @Override
@@ -411,6 +673,7 @@ public class DefaultTopicDistributionService implements
             si.targets.add(new WeakReference<Object>(target));
             
             existingMethods.add(si);
+            indexSubscriber(si);
         }
         
     }
@@ -452,9 +715,14 @@ public class DefaultTopicDistributionService implements
         // Get the event qualifiers and the Unqualified
         Set<Annotation> eventQualifiers = new HashSet<Annotation>();
         Unqualified eventUnqualified = null;
+        boolean batch = false;
         
         Annotation subscribeToAnnotations[] = paramAnnotations[subscribeToPosition];
         for (Annotation possibleQualifier : subscribeToAnnotations) {
+            if (SubscribeTo.class.equals(possibleQualifier.annotationType())) {
+                batch = ((SubscribeTo) possibleQualifier).batch();
+            }
+            
             if (ReflectionHelper.isAnnotationAQualifier(possibleQualifier)) {
                 eventQualifiers.add(possibleQualifier);
             }
@@ -508,7 +776,36 @@ public class DefaultTopicDistributionService implements
             }
         }
         
-        return new SubscriberInfo(subscriber, eventType, eventQualifiers, eventUnqualified, injectees);
+        if (batch) {
+            eventType = getBatchElementType(subscriber, eventType);
+        }
+        
+        return new SubscriberInfo(subscriber, eventType, batch, eventQualifiers, eventUnqualified, injectees);
+    }
+    
+    /**
+     * Gets the type of the messages received by a batch subscriber
+     * 
+     * @param subscriber The subscription method
+     * @param listType The type of the parameter annotated with SubscribeTo
+     * @return The type of the elements of the list
+     */
+    private static Type getBatchElementType(Method subscriber, Type listType) {
+        Class<?> rawListClass = ReflectionHelper.getRawClass(listType);
+        if ((rawListClass == null) || !Iterable.class.isAssignableFrom(rawListClass) ||
+                !rawListClass.isAssignableFrom(List.class)) {
+            throw new IllegalArgumentException("A method " + Pretty.method(subscriber) + " on class " +
+                    subscriber.getDeclaringClass().getName() +
+                    " has a batch @SubscribeTo annotation on a parameter that is not a List");
+        }
+        
+        Type retVal = ReflectionHelper.getFirstTypeArgument(listType);
+        if (retVal instanceof WildcardType) {
+            // List<? extends Foo> receives Foo messages
+            retVal = ((WildcardType) retVal).getUpperBounds()[0];
+        }
+        
+        return retVal;
     }
     
     private void preDestruction(InstanceLifecycleEvent lifecycleEvent) {
@@ -567,6 +864,9 @@ public class DefaultTopicDistributionService implements
     
     @Override
     public void configurationChanged() {
+        // The policy may have been added, removed or replaced
+        deliverySettings = null;
+        
         List<ActiveDescriptor<?>> allDescriptors = locator.getDescriptors(SUBSCRIBER_FILTER);
         
         wLock.lock();
@@ -574,15 +874,7 @@ public class DefaultTopicDistributionService implements
             HashSet<ActiveDescriptor<?>> removeMe = new HashSet<ActiveDescriptor<?>>(descriptor2Classes.keySet());
             removeMe.removeAll(allDescriptors);
             
-            for (ActiveDescriptor<?> parent : removeMe) {
-                Set<Class<?>> clazzes = descriptor2Classes.remove(parent);
-                
-                if (clazzes == null) continue;
-                
-                for (Class<?> clazz : clazzes) {
-                    class2Subscribers.remove(new ActivatorClassKey(parent, clazz));
-                }
-            }
+            removeSubscribers(removeMe);
         }
         finally {
             wLock.unlock();
@@ -591,24 +883,109 @@ public class DefaultTopicDistributionService implements
         
     }
     
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.api.DynamicConfigurationChangeListener#configurationChanged(org.glassfish.hk2.api.DynamicConfigurationChange)
+     */
+    @Override
+    public void configurationChanged(DynamicConfigurationChange change) {
+        if (change.getAffectedContracts().contains(AsynchronousDeliveryPolicy.class.getName())) {
+            deliverySettings = null;
+        }
+        
+        // Added subscribers are found as they are created
+        if (change.getRemovedDescriptors().isEmpty()) return;
+        
+        wLock.lock();
+        try {
+            removeSubscribers(change.getRemovedDescriptors());
+        }
+        finally {
+            wLock.unlock();
+        }
+    }
+    
+    /**
+     * Forgets the subscribers of the given descriptors.  Must be called
+     * with the write lock held
+     * 
+     * @param removeMe The descriptors that are no longer in the locator
+     */
+    private void removeSubscribers(Collection<ActiveDescriptor<?>> removeMe) {
+        boolean removedAny = false;
+        for (ActiveDescriptor<?> parent : removeMe) {
+            Set<Class<?>> clazzes = descriptor2Classes.remove(parent);
+            
+            if (clazzes == null) continue;
+            removedAny = true;
+            
+            for (Class<?> clazz : clazzes) {
+                List<SubscriberInfo> removed = class2Subscribers.remove(new ActivatorClassKey(parent, clazz));
+                if (removed == null) continue;
+                
+                for (SubscriberInfo subscriberInfo : removed) {
+                    unindexSubscriber(subscriberInfo);
+                }
+            }
+        }
+        
+        if (removedAny) {
+            // Rebuilt lazily on the next publish
+            routes.clear();
+        }
+    }
+    
+    /**
+     * The subscribers for one published raw event class.  The subscribers
+     * are only replaced while holding the lock of the routes and the write
+     * lock, and read with the read lock held
+     */
+    private static final class Route {
+        private final WeakReference<Class<?>> eventClass;
+        private volatile List<SubscriberInfo> subscribers;
+        
+        private Route(Class<?> eventClass, List<SubscriberInfo> subscribers) {
+            this.eventClass = new WeakReference<Class<?>>(eventClass);
+            this.subscribers = subscribers;
+        }
+    }
+    
     private static class SubscriberInfo {
         private final Method method;
         private final LinkedList<WeakReference<Object>> targets = new LinkedList<WeakReference<Object>>();
         private final Type eventType;
+        private final boolean batch;
+        private final Class<?> rawEventClass;
+        private final boolean parameterizedEventType;
         private final Set<Annotation> eventQualifiers;
         private final Unqualified unqualified;
+        private final Set<Class<? extends Annotation>> unqualifiedClasses;
         private final InjecteeImpl otherInjectees[];  // There will be a null in the slot for the event
         
         private SubscriberInfo(Method method,
                 Type eventType,
+                boolean batch,
                 Set<Annotation> eventQualifiers,
                 Unqualified unqualified,
                 InjecteeImpl otherInjectees[]) {
             this.method = method;
             this.eventType = eventType;
+            this.batch = batch;
+            this.rawEventClass = getRawEventClass(eventType);
+            this.parameterizedEventType = (eventType instanceof ParameterizedType);
             this.eventQualifiers = eventQualifiers;
             this.unqualified = unqualified;
             this.otherInjectees = otherInjectees;
+            
+            if (unqualified == null) {
+                unqualifiedClasses = Collections.emptySet();
+            }
+            else {
+                unqualifiedClasses = new HashSet<Class<? extends Annotation>>(Arrays.asList(unqualified.value()));
+            }
+        }
+        
+        public String toString() {
+            return "SubscriberInfo(" + method.getDeclaringClass().getName() + "." + Pretty.method(method) + ")";
         }
     }
     
@@ -625,6 +1002,415 @@ public class DefaultTopicDistributionService implements
         
     }
     
+    /**
+     * The result of one publish, done once every subscriber has been
+     * given the messages
+     * 
+     * @author jwells
+     *
+     */
+    private final class DeliveryResult implements Future<Void> {
+        private final Topic<?> topic;
+        private final List<?> messages;
+        private final boolean batch;
+        private int outstanding;
+        
+        /** Errors from subscribers that failed for all of the messages at once */
+        private List<Throwable> batchErrors;
+        
+        /** Errors from subscribers that failed for a single message, by message index */
+        private List<Throwable> messageErrors[];
+        
+        private MultiException failure;
+        private boolean done;
+        
+        private DeliveryResult(Topic<?> topic, List<?> messages, boolean batch, int outstanding) {
+            this.topic = topic;
+            this.messages = messages;
+            this.batch = batch;
+            this.outstanding = outstanding;
+            this.done = (outstanding == 0);
+        }
+        
+        /**
+         * Records the failure of one subscriber
+         * 
+         * @param index The index of the message that failed, or -1
+         * if the subscriber failed for all of the messages
+         * @param error The error from the subscriber
+         */
+        @SuppressWarnings("unchecked")
+        private synchronized void failed(int index, Throwable error) {
+            if (index < 0) {
+                if (batchErrors == null) batchErrors = new LinkedList<Throwable>();
+                batchErrors.add(error);
+                return;
+            }
+            
+            if (messageErrors == null) messageErrors = new List[messages.size()];
+            if (messageErrors[index] == null) messageErrors[index] = new LinkedList<Throwable>();
+            messageErrors[index].add(error);
+        }
+        
+        /**
+         * Called once for every subscriber after it has been given all of the messages
+         */
+        private void subscriberDone() {
+            synchronized (this) {
+                if (--outstanding > 0) return;
+            }
+            
+            // Nothing else changes the errors now.  Error services are
+            // called before the result becomes done
+            MultiException reported = reportErrors();
+            
+            synchronized (this) {
+                failure = reported;
+                done = true;
+                notifyAll();
+            }
+        }
+        
+        private MultiException reportErrors() {
+            if (!batch) {
+                List<Throwable> all = new LinkedList<Throwable>();
+                if (batchErrors != null) all.addAll(batchErrors);
+                if (messageErrors != null) all.addAll(messageErrors[0]);
+                if (all.isEmpty()) return null;
+                
+                MultiException retVal = new MultiException(all);
+                DefaultTopicDistributionService.this.reportErrors(topic, messages.get(0), retVal);
+                return retVal;
+            }
+            
+            List<Throwable> all = new LinkedList<Throwable>();
+            if (messageErrors != null) {
+                for (int lcv = 0; lcv < messageErrors.length; lcv++) {
+                    if (messageErrors[lcv] == null) continue;
+                    
+                    all.addAll(messageErrors[lcv]);
+                    DefaultTopicDistributionService.this.reportErrors(topic, messages.get(lcv),
+                            new MultiException(messageErrors[lcv]));
+                }
+            }
+            
+            if (batchErrors != null) {
+                all.addAll(batchErrors);
+                DefaultTopicDistributionService.this.reportErrors(topic, messages,
+                        new MultiException(batchErrors));
+            }
+            
+            if (all.isEmpty()) return null;
+            return new MultiException(all);
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.concurrent.Future#cancel(boolean)
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.concurrent.Future#isCancelled()
+         */
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.concurrent.Future#isDone()
+         */
+        @Override
+        public synchronized boolean isDone() {
+            return done;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.concurrent.Future#get()
+         */
+        @Override
+        public synchronized Void get() throws InterruptedException, ExecutionException {
+            while (!done) {
+                wait();
+            }
+            
+            if (failure != null) throw new ExecutionException(failure);
+            return null;
+        }
+
+        /* (non-Javadoc)
+         * @see java.util.concurrent.Future#get(long, java.util.concurrent.TimeUnit)
+         */
+        @Override
+        public synchronized Void get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            while (!done) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L) throw new TimeoutException();
+                
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            
+            if (failure != null) throw new ExecutionException(failure);
+            return null;
+        }
+    }
+    
+    /**
+     * Gives the messages of one publish to a list of subscribers, in order
+     * 
+     * @author jwells
+     *
+     */
+    private final class Delivery implements Runnable {
+        private final DeliveryResult result;
+        private final List<FireResults> fireResults;
+        
+        private Delivery(DeliveryResult result, List<FireResults> fireResults) {
+            this.result = result;
+            this.fireResults = fireResults;
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+            List<?> messages = result.messages;
+            
+            for (FireResults fireResult : fireResults) {
+                try {
+                    Invocation invocation = new Invocation(fireResult, locator);
+                    
+                    if (fireResult.subscriberInfo.batch) {
+                        try {
+                            invocation.invoke(messages);
+                        }
+                        catch (Throwable th) {
+                            result.failed(-1, th);
+                        }
+                    }
+                    else {
+                        for (int lcv = 0; lcv < messages.size(); lcv++) {
+                            try {
+                                invocation.invoke(messages.get(lcv));
+                            }
+                            catch (Throwable th) {
+                                result.failed(lcv, th);
+                            }
+                        }
+                    }
+                }
+                catch (Throwable th) {
+                    // The subscriber could not be called at all
+                    result.failed(-1, th);
+                }
+                
+                result.subscriberDone();
+            }
+        }
+        
+        /**
+         * Called instead of run if this delivery could not be queued
+         * 
+         * @param error The reason this delivery was rejected
+         */
+        private void reject(Throwable error) {
+            for (int lcv = 0; lcv < fireResults.size(); lcv++) {
+                result.failed(-1, error);
+                result.subscriberDone();
+            }
+        }
+    }
+    
+    /**
+     * An ordered queue of deliveries, drained by the executor of the
+     * {@link AsynchronousDeliveryPolicy}.  The queue retires itself
+     * when it becomes empty so that subscribers and topics that are
+     * no longer published to are not retained
+     * 
+     * @author jwells
+     *
+     */
+    private final class DeliveryQueue implements Runnable {
+        private final Object key;
+        private final DeliverySettings settings;
+        private final LinkedList<Delivery> pending = new LinkedList<Delivery>();
+        private boolean scheduled;
+        private boolean retired;
+        
+        private DeliveryQueue(Object key, DeliverySettings settings) {
+            this.key = key;
+            this.settings = settings;
+        }
+        
+        /**
+         * Adds a delivery to the end of this queue, applying the backpressure
+         * policy if the queue is full
+         * 
+         * @param delivery The delivery to add
+         * @return false if this queue has been retired, in which case the delivery
+         * was not added
+         */
+        private boolean add(Delivery delivery) {
+            Throwable rejection = null;
+            synchronized (this) {
+                if (retired) return false;
+                
+                // A delivery thread never blocks, not even on another queue, since
+                // the queue it is draining could be the one that has to make room
+                DeliveryQueue draining = DRAINING.get();
+                boolean fail = AsynchronousDeliveryPolicy.Backpressure.FAIL.equals(settings.backpressure);
+                if ((settings.maximumDepth > 0) && (fail ? (draining != this) : (draining == null))) {
+                    while (rejection == null && pending.size() >= settings.maximumDepth) {
+                        if (fail) {
+                            rejection = new RejectedExecutionException("The delivery queue for " + key +
+                                    " already has " + pending.size() + " messages");
+                        }
+                        else {
+                            try {
+                                wait();
+                            }
+                            catch (InterruptedException ie) {
+                                Thread.currentThread().interrupt();
+                                rejection = ie;
+                            }
+                            
+                            // May have drained completely while this thread was waiting
+                            if (retired) return false;
+                        }
+                    }
+                }
+                
+                if (rejection == null) {
+                    pending.add(delivery);
+                    
+                    if (scheduled) return true;
+                    scheduled = true;
+                }
+            }
+            
+            if (rejection != null) {
+                delivery.reject(rejection);
+                return true;
+            }
+            
+            schedule();
+            return true;
+        }
+        
+        private void schedule() {
+            try {
+                settings.executor.execute(this);
+            }
+            catch (RejectedExecutionException ree) {
+                // The executor is saturated or shut down, deliver on this thread
+                run();
+            }
+        }
+
+        /* (non-Javadoc)
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public void run() {
+            DeliveryQueue previous = DRAINING.get();
+            DRAINING.set(this);
+            try {
+                for (int lcv = 0; lcv < DRAIN_BATCH; lcv++) {
+                    Delivery delivery;
+                    synchronized (this) {
+                        delivery = pending.poll();
+                        if (delivery == null) {
+                            scheduled = false;
+                            retired = true;
+                            deliveryQueues.remove(key, this);
+                            return;
+                        }
+                        
+                        if (settings.maximumDepth > 0) notifyAll();
+                    }
+                    
+                    delivery.run();
+                }
+            }
+            finally {
+                if (previous == null) {
+                    DRAINING.remove();
+                }
+                else {
+                    DRAINING.set(previous);
+                }
+            }
+            
+            // more pending, but let the other queues have the thread
+            schedule();
+        }
+    }
+    
+    /**
+     * The values read from the {@link AsynchronousDeliveryPolicy}
+     * 
+     * @author jwells
+     *
+     */
+    private static final class DeliverySettings {
+        private final Executor executor;
+        private final AsynchronousDeliveryPolicy.DeliveryOrder order;
+        private final int maximumDepth;
+        private final AsynchronousDeliveryPolicy.Backpressure backpressure;
+        
+        private DeliverySettings(Executor executor,
+                AsynchronousDeliveryPolicy.DeliveryOrder order,
+                int maximumDepth,
+                AsynchronousDeliveryPolicy.Backpressure backpressure) {
+            this.executor = executor;
+            this.order = order;
+            this.maximumDepth = maximumDepth;
+            this.backpressure = backpressure;
+        }
+    }
+    
+    /**
+     * Identifies a topic by its type and qualifiers, as
+     * Topic implementations need not implement equals
+     * 
+     * @author jwells
+     *
+     */
+    private static final class TopicKey {
+        private final Type topicType;
+        private final Set<Annotation> topicQualifiers;
+        private final int hashCode;
+        
+        private TopicKey(Topic<?> topic) {
+            topicType = topic.getTopicType();
+            topicQualifiers = topic.getTopicQualifiers();
+            hashCode = topicType.hashCode() ^ topicQualifiers.hashCode();
+        }
+        
+        public int hashCode() {
+            return hashCode;
+        }
+        
+        public boolean equals(Object o) {
+            if (o == null) return false;
+            if (!(o instanceof TopicKey)) return false;
+            
+            TopicKey other = (TopicKey) o;
+            
+            return topicType.equals(other.topicType) && topicQualifiers.equals(other.topicQualifiers);
+        }
+        
+        public String toString() {
+            return "TopicKey(" + topicType + "," + topicQualifiers + ")";
+        }
+    }
+    
     /**
      * This is here to handle the case where a PerLookup Factory (or the like)
      * could possibly return different classes every time it is looked up.  For
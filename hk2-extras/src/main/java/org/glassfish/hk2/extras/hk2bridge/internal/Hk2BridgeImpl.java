@@ -39,10 +39,12 @@
  */
 package org.glassfish.hk2.extras.hk2bridge.internal;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.PreDestroy;
@@ -53,12 +55,15 @@ import org.glassfish.hk2.api.ActiveDescriptor;
 import org.glassfish.hk2.api.Descriptor;
 import org.glassfish.hk2.api.DescriptorVisibility;
 import org.glassfish.hk2.api.DynamicConfiguration;
+import org.glassfish.hk2.api.DynamicConfigurationChange;
+import org.glassfish.hk2.api.DynamicConfigurationChangeListener;
 import org.glassfish.hk2.api.DynamicConfigurationListener;
 import org.glassfish.hk2.api.DynamicConfigurationService;
 import org.glassfish.hk2.api.Filter;
 import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.hk2.api.Visibility;
 import org.glassfish.hk2.extras.ExtrasUtilities;
+import org.glassfish.hk2.utilities.BuilderHelper;
 
 /**
  * @author jwells
@@ -66,12 +71,18 @@ import org.glassfish.hk2.extras.ExtrasUtilities;
  */
 @Singleton
 @Visibility(DescriptorVisibility.LOCAL)
-public class Hk2BridgeImpl implements DynamicConfigurationListener {
+public class Hk2BridgeImpl implements DynamicConfigurationListener, DynamicConfigurationChangeListener {
     private final ServiceLocator local;
     private ServiceLocator remote;
     private Filter filter;
+    private long generation;
     
-    private List<ActiveDescriptor<?>> mirroredDescriptors = new ArrayList<ActiveDescriptor<?>>();
+    /**
+     * Maps each mirrored descriptor to the descriptor added for it to
+     * the remote locator
+     */
+    private final Map<ActiveDescriptor<?>, ActiveDescriptor<?>> mirroredDescriptors =
+            new LinkedHashMap<ActiveDescriptor<?>, ActiveDescriptor<?>>();
     
     @Inject
     private Hk2BridgeImpl(ServiceLocator local) {
@@ -83,42 +94,106 @@ public class Hk2BridgeImpl implements DynamicConfigurationListener {
         this.remote = remote;
         this.filter = new NoLocalNoRemoteFilter(remote.getLocatorId());
         
+        rescan();
+    }
+    
+    /**
+     * Mirrors all the descriptors currently in the local locator,
+     * including those of its parents
+     */
+    private synchronized void rescan() {
+        if (remote == null) return;
+        
+        // Read first, so that the scan includes every change up to it
+        long scanned = local.getGeneration();
+        
         List<ActiveDescriptor<?>> newDescriptors = local.getDescriptors(filter);
         
         handleChange(newDescriptors);
+        
+        generation = scanned;
     }
     
-    @SuppressWarnings("unchecked")
     private synchronized void handleChange(List<ActiveDescriptor<?>> newDescriptors) {
         if (remote == null) return;
         
-        HashSet<ActiveDescriptor<?>> toRemove = new HashSet<ActiveDescriptor<?>>(mirroredDescriptors);
+        HashSet<ActiveDescriptor<?>> toRemove = new HashSet<ActiveDescriptor<?>>(mirroredDescriptors.keySet());
         toRemove.removeAll(newDescriptors);
         
-        HashSet<ActiveDescriptor<?>> toAdd = new HashSet<ActiveDescriptor<?>>(newDescriptors);
-        toAdd.removeAll(mirroredDescriptors);
+        LinkedHashSet<ActiveDescriptor<?>> toAdd = new LinkedHashSet<ActiveDescriptor<?>>(newDescriptors);
+        toAdd.removeAll(mirroredDescriptors.keySet());
+        
+        mirror(toAdd, toRemove);
+    }
+    
+    /**
+     * Mirrors the descriptors added and removed by one commit to the local
+     * locator.  Commits to a parent are not reported to the local locator,
+     * so if the local locator has a parent, or if its generation shows that
+     * a commit was missed, the local locator is scanned in full instead.
+     * Commits on different threads may be reported out of order, so a
+     * descriptor is only mirrored if it is still in the local locator.  A
+     * removal reported before the addition then leaves nothing behind,
+     * since the late addition finds the descriptor gone
+     */
+    private synchronized void handleDelta(DynamicConfigurationChange change) {
+        if (remote == null) return;
+        
+        if (change.getGeneration() <= generation) {
+            // Already seen by an earlier scan
+            return;
+        }
+        
+        if ((local.getParent() != null) || (change.getGeneration() != generation + 1)) {
+            rescan();
+            return;
+        }
+        
+        generation = change.getGeneration();
+        
+        HashSet<ActiveDescriptor<?>> toRemove = new HashSet<ActiveDescriptor<?>>();
+        for (ActiveDescriptor<?> removed : change.getRemovedDescriptors()) {
+            if (mirroredDescriptors.containsKey(removed)) {
+                toRemove.add(removed);
+            }
+        }
+        
+        LinkedHashSet<ActiveDescriptor<?>> toAdd = new LinkedHashSet<ActiveDescriptor<?>>();
+        for (ActiveDescriptor<?> added : change.getAddedDescriptors()) {
+            if (mirroredDescriptors.containsKey(added)) continue;
+            if (!filter.matches(added)) continue;
+            if (local.getBestDescriptor(BuilderHelper.createSpecificDescriptorFilter(added)) == null) continue;
+            
+            toAdd.add(added);
+        }
+        
+        mirror(toAdd, toRemove);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void mirror(Set<ActiveDescriptor<?>> toAdd, Set<ActiveDescriptor<?>> toRemove) {
+        if (toAdd.isEmpty() && toRemove.isEmpty()) return;
         
         DynamicConfigurationService remoteDCS = remote.getService(DynamicConfigurationService.class);
         DynamicConfiguration config = remoteDCS.createDynamicConfiguration();
         
-        boolean dirty = false;
         for (ActiveDescriptor<?> removeMe : toRemove) {
-            Filter removeFilter = new RemoveFilter(removeMe.getLocatorId(), removeMe.getServiceId());
+            // Service ids are only unique per locator, so the descriptor
+            // is removed by the identity it was given in the remote locator
+            Filter removeFilter = BuilderHelper.createSpecificDescriptorFilter(mirroredDescriptors.get(removeMe));
             config.addUnbindFilter(removeFilter);
-            dirty = true;
         }
         
+        Map<ActiveDescriptor<?>, ActiveDescriptor<?>> added = new LinkedHashMap<ActiveDescriptor<?>, ActiveDescriptor<?>>();
         for (ActiveDescriptor<?> addMe : toAdd) {
             CrossOverDescriptor<Object> cod = new CrossOverDescriptor<Object>(local, (ActiveDescriptor<Object>) addMe);
-            config.addActiveDescriptor(cod);
-            dirty = true;
+            added.put(addMe, config.addActiveDescriptor(cod));
         }
         
-        if (dirty) {
-            config.commit();
-        }
+        config.commit();
         
-        mirroredDescriptors = newDescriptors;
+        mirroredDescriptors.keySet().removeAll(toRemove);
+        mirroredDescriptors.putAll(added);
     }
     
     /* (non-Javadoc)
@@ -126,9 +201,15 @@ public class Hk2BridgeImpl implements DynamicConfigurationListener {
      */
     @Override
     public void configurationChanged() {
-        List<ActiveDescriptor<?>> newDescriptors = local.getDescriptors(filter);
-        
-        handleChange(newDescriptors);
+        rescan();
+    }
+    
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.api.DynamicConfigurationChangeListener#configurationChanged(org.glassfish.hk2.api.DynamicConfigurationChange)
+     */
+    @Override
+    public void configurationChanged(DynamicConfigurationChange change) {
+        handleDelta(change);
     }
     
     private static class NoLocalNoRemoteFilter implements Filter {
@@ -163,39 +244,6 @@ public class Hk2BridgeImpl implements DynamicConfigurationListener {
         handleChange(Collections.<ActiveDescriptor<?>>emptyList());
     }
     
-    private static class RemoveFilter implements Filter {
-        private final long localLocatorId;
-        private final long localServiceId;
-        
-        private RemoveFilter(long localLocatorId, long localServiceId) {
-            this.localLocatorId = localLocatorId;
-            this.localServiceId = localServiceId;
-        }
-
-        /* (non-Javadoc)
-         * @see org.glassfish.hk2.api.Filter#matches(org.glassfish.hk2.api.Descriptor)
-         */
-        @Override
-        public boolean matches(Descriptor d) {
-            List<Long> locatorIds = getMetadataLongsList(d, ExtrasUtilities.HK2BRIDGE_LOCATOR_ID);
-            int index = -1;
-            int lcv = 0;
-            for (Long locatorId : locatorIds) {
-                if (localLocatorId == locatorId) {
-                    index = lcv;
-                    break;
-                }
-                lcv++;
-            }
-            if (index == -1) return false;
-            
-            List<Long> serviceIds = getMetadataLongsList(d, ExtrasUtilities.HK2BRIDGE_SERVICE_ID);
-            Long serviceId = serviceIds.get(index);
-            
-            return (serviceId == localServiceId);
-        }
-    }
-    
     /**
      * Gets all of the longs encoded into this descriptors metadata
      * field
@@ -222,35 +270,6 @@ public class Hk2BridgeImpl implements DynamicConfigurationListener {
         
         return retVal;
     }
-    
-    private final static List<Long> EMPTY_LIST = Collections.emptyList();
-    
-    /**
-     * Gets all of the longs encoded into this descriptors metadata
-     * field
-     * 
-     * @param d
-     * @param field
-     * @return
-     */
-    private static List<Long> getMetadataLongsList(Descriptor d, String field) {
-        List<String> metadataValues = d.getMetadata().get(field);
-        if (metadataValues == null) return EMPTY_LIST;
-        
-        List<Long> retVal = new ArrayList<Long>(metadataValues.size());
-        
-        for (String metadataValue : metadataValues) {
-            try {
-                Long val = new Long(metadataValue);
-                retVal.add(val);
-            }
-            catch (NumberFormatException nfe) {
-                // Do nothing, just skip it
-            }
-        }
-        
-        return retVal;
-    }
 
     
 }
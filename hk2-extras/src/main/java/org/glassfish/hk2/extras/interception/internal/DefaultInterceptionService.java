@@ -43,10 +43,14 @@ package org.glassfish.hk2.extras.interception.internal;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -65,6 +69,8 @@ import org.glassfish.hk2.api.Visibility;
 import org.glassfish.hk2.extras.interception.Intercepted;
 import org.glassfish.hk2.extras.interception.Interceptor;
 import org.glassfish.hk2.extras.interception.InterceptorOrderingService;
+import org.glassfish.hk2.utilities.cache.Computable;
+import org.glassfish.hk2.utilities.cache.LocatorDependentCache;
 
 /**
  * A default implementation of the interception service using annotation to
@@ -119,6 +125,24 @@ public class DefaultInterceptionService implements InterceptionService {
     
     @Inject
     private IterableProvider<InterceptorOrderingService> orderers;
+    
+    /** Rebuilt whenever interceptors of the kind are added or removed */
+    private LocatorDependentCache<IndexedFilter, InterceptorIndex> indexes;
+    
+    private final Computable<IndexedFilter, InterceptorIndex> indexBuilder =
+            new Computable<IndexedFilter, InterceptorIndex>() {
+
+        @Override
+        public InterceptorIndex compute(IndexedFilter filter) {
+            return new InterceptorIndex(locator, locator.getDescriptors(filter));
+        }
+        
+    };
+    
+    @PostConstruct
+    private void postConstruct() {
+        indexes = new LocatorDependentCache<IndexedFilter, InterceptorIndex>(locator);
+    }
 
     /* (non-Javadoc)
      * @see org.glassfish.hk2.api.InterceptionService#getDescriptorFilter()
@@ -177,6 +201,17 @@ public class DefaultInterceptionService implements InterceptionService {
         return retVal;
     }
 
+    /**
+     * Gets the index of the method or constructor interceptors, building
+     * it if interceptors of that kind have changed since it was last built
+     * 
+     * @param filter Either the METHOD_FILTER or the CONSTRUCTOR_FILTER
+     * @return The current index
+     */
+    private InterceptorIndex getIndex(IndexedFilter filter) {
+        return indexes.compute(filter, filter.getAdvertisedContract(), indexBuilder);
+    }
+
     /* (non-Javadoc)
      * @see org.glassfish.hk2.api.InterceptionService#getMethodInterceptors(java.lang.reflect.Method)
      */
@@ -185,30 +220,11 @@ public class DefaultInterceptionService implements InterceptionService {
     public List<MethodInterceptor> getMethodInterceptors(Method method) {
         HashSet<String> allBindings = ReflectionUtilities.getAllBindingsFromMethod(method);
         
-        List<ServiceHandle<?>> allInterceptors = locator.getAllServiceHandles(METHOD_FILTER);
+        List<ActiveDescriptor<?>> matches = getIndex(METHOD_FILTER).getMatches(allBindings);
         
-        List<ServiceHandle<MethodInterceptor>> handles = new ArrayList<ServiceHandle<MethodInterceptor>>(allInterceptors.size());
-        
-        for (ServiceHandle<?> handle : allInterceptors) {
-            ActiveDescriptor<?> ad = handle.getActiveDescriptor();
-            if (!ad.isReified()) {
-                ad = locator.reifyDescriptor(ad);
-            }
-            
-            Class<?> interceptorClass = ad.getImplementationClass();
-            
-            HashSet<String> allInterceptorBindings = ReflectionUtilities.getAllBindingsFromClass(interceptorClass);
-            
-            boolean found = false;
-            for (String interceptorBinding : allInterceptorBindings) {
-                if (allBindings.contains(interceptorBinding)) {
-                    found = true;
-                    break;
-                }
-            }
-            if (!found) continue;
-            
-            ServiceHandle<MethodInterceptor> interceptor = (ServiceHandle<MethodInterceptor>) handle;
+        List<ServiceHandle<MethodInterceptor>> handles = new ArrayList<ServiceHandle<MethodInterceptor>>(matches.size());
+        for (ActiveDescriptor<?> match : matches) {
+            ServiceHandle<MethodInterceptor> interceptor = (ServiceHandle<MethodInterceptor>) locator.getServiceHandle(match);
             if (interceptor != null) {
                 handles.add(interceptor);
             }
@@ -236,30 +252,11 @@ public class DefaultInterceptionService implements InterceptionService {
             Constructor<?> constructor) {
         HashSet<String> allBindings = ReflectionUtilities.getAllBindingsFromConstructor(constructor);
         
-        List<ServiceHandle<?>> allInterceptors = locator.getAllServiceHandles(CONSTRUCTOR_FILTER);
-        
-        List<ServiceHandle<ConstructorInterceptor>> handles = new ArrayList<ServiceHandle<ConstructorInterceptor>>(allInterceptors.size());
+        List<ActiveDescriptor<?>> matches = getIndex(CONSTRUCTOR_FILTER).getMatches(allBindings);
         
-        for (ServiceHandle<?> handle : allInterceptors) {
-            ActiveDescriptor<?> ad = handle.getActiveDescriptor();
-            if (!ad.isReified()) {
-                ad = locator.reifyDescriptor(ad);
-            }
-            
-            Class<?> interceptorClass = ad.getImplementationClass();
-            
-            HashSet<String> allInterceptorBindings = ReflectionUtilities.getAllBindingsFromClass(interceptorClass);
-            
-            boolean found = false;
-            for (String interceptorBinding : allInterceptorBindings) {
-                if (allBindings.contains(interceptorBinding)) {
-                    found = true;
-                    break;
-                }
-            }
-            if (!found) continue;
-            
-            ServiceHandle<ConstructorInterceptor> interceptor = (ServiceHandle<ConstructorInterceptor>) handle;
+        List<ServiceHandle<ConstructorInterceptor>> handles = new ArrayList<ServiceHandle<ConstructorInterceptor>>(matches.size());
+        for (ActiveDescriptor<?> match : matches) {
+            ServiceHandle<ConstructorInterceptor> interceptor = (ServiceHandle<ConstructorInterceptor>) locator.getServiceHandle(match);
             if (interceptor != null) {
                 handles.add(interceptor);
             }
@@ -277,4 +274,69 @@ public class DefaultInterceptionService implements InterceptionService {
         }
         return retVal;
     }
+    
+    /**
+     * The interceptors of one kind, in ranked order, indexed by the
+     * names of the binding annotations on their implementation classes
+     * 
+     * @author jwells
+     *
+     */
+    private static final class InterceptorIndex {
+        private final List<ActiveDescriptor<?>> interceptors;
+        private final HashMap<String, BitSet> bindingToInterceptors = new HashMap<String, BitSet>();
+        
+        private InterceptorIndex(ServiceLocator locator, List<ActiveDescriptor<?>> descriptors) {
+            interceptors = new ArrayList<ActiveDescriptor<?>>(descriptors.size());
+            
+            for (ActiveDescriptor<?> ad : descriptors) {
+                if (!ad.isReified()) {
+                    ad = locator.reifyDescriptor(ad);
+                }
+                
+                int position = interceptors.size();
+                interceptors.add(ad);
+                
+                for (String binding : ReflectionUtilities.getAllBindingsFromClass(ad.getImplementationClass())) {
+                    BitSet positions = bindingToInterceptors.get(binding);
+                    if (positions == null) {
+                        positions = new BitSet();
+                        bindingToInterceptors.put(binding, positions);
+                    }
+                    
+                    positions.set(position);
+                }
+            }
+        }
+        
+        /**
+         * Gets the interceptors that share at least one binding with the given set
+         * 
+         * @param bindings The names of the bindings of a method or constructor
+         * @return The matching interceptors, in ranked order
+         */
+        private List<ActiveDescriptor<?>> getMatches(Set<String> bindings) {
+            BitSet matches = null;
+            for (String binding : bindings) {
+                BitSet positions = bindingToInterceptors.get(binding);
+                if (positions == null) continue;
+                
+                if (matches == null) {
+                    matches = (BitSet) positions.clone();
+                }
+                else {
+                    matches.or(positions);
+                }
+            }
+            
+            if (matches == null) return Collections.emptyList();
+            
+            List<ActiveDescriptor<?>> retVal = new ArrayList<ActiveDescriptor<?>>(matches.cardinality());
+            for (int position = matches.nextSetBit(0); position >= 0; position = matches.nextSetBit(position + 1)) {
+                retVal.add(interceptors.get(position));
+            }
+            
+            return retVal;
+        }
+    }
 }
@@ -40,12 +40,12 @@
 package org.glassfish.hk2.extras.operation;
 
 import java.lang.annotation.Annotation;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.glassfish.hk2.api.ActiveDescriptor;
 import org.glassfish.hk2.api.Context;
@@ -84,12 +84,14 @@ import org.jvnet.hk2.annotations.Contract;
  */
 @Contract
 public abstract class OperationContext<T extends Annotation> implements Context<T> {
-    private SingleOperationManager<T> manager;
-    private final HashMap<OperationHandleImpl<T>, LinkedHashMap<ActiveDescriptor<?>, Object>> operationMap =
-            new HashMap<OperationHandleImpl<T>, LinkedHashMap<ActiveDescriptor<?>, Object>>();
-    private final HashSet<ActiveDescriptor<?>> creating = new HashSet<ActiveDescriptor<?>>();
-    private final HashMap<Long, LinkedList<OperationHandleImpl<T>>> closingOperations = new HashMap<Long, LinkedList<OperationHandleImpl<T>>>();
-    private boolean shuttingDown = false;
+    private volatile SingleOperationManager<T> manager;
+    private final ConcurrentHashMap<OperationHandleImpl<T>, OperationServices> operationMap =
+            new ConcurrentHashMap<OperationHandleImpl<T>, OperationServices>();
+    
+    /** Each stack is only ever touched by the thread whose id is its key */
+    private final ConcurrentHashMap<Long, LinkedList<OperationHandleImpl<T>>> closingOperations =
+            new ConcurrentHashMap<Long, LinkedList<OperationHandleImpl<T>>>();
+    private volatile boolean shuttingDown = false;
 
     /* (non-Javadoc)
      * @see org.glassfish.hk2.api.Context#findOrCreate(org.glassfish.hk2.api.ActiveDescriptor, org.glassfish.hk2.api.ServiceHandle)
@@ -98,15 +100,9 @@ public abstract class OperationContext<T extends Annotation> implements Context<
     @Override
     public <U> U findOrCreate(ActiveDescriptor<U> activeDescriptor,
             ServiceHandle<?> root) {
-        SingleOperationManager<T> localManager;
-        LinkedList<OperationHandleImpl<T>> closingOperationStack;
-        boolean closingOperation;
-        
-        synchronized (this) {
-            localManager = manager;
-            closingOperationStack = closingOperations.get(Thread.currentThread().getId());
-            closingOperation = (closingOperationStack != null && !closingOperationStack.isEmpty());
-        }
+        SingleOperationManager<T> localManager = manager;
+        LinkedList<OperationHandleImpl<T>> closingOperationStack = closingOperations.get(Thread.currentThread().getId());
+        boolean closingOperation = (closingOperationStack != null && !closingOperationStack.isEmpty());
         
         if (localManager == null) {
             throw new IllegalStateException("There is no manager for " +
@@ -115,62 +111,60 @@ public abstract class OperationContext<T extends Annotation> implements Context<
         
         OperationHandleImpl<T> operation = localManager.getCurrentOperationOnThisThread();
         if (operation == null) {
-            synchronized (this) {
-                if (!closingOperation) {
-                    throw new IllegalStateException("There is no current operation of type " +
-                            getScope().getName() + " on thread " + Thread.currentThread().getId());
-                }
-                
-                operation = closingOperationStack.get(0);
+            if (!closingOperation) {
+                throw new IllegalStateException("There is no current operation of type " +
+                        getScope().getName() + " on thread " + Thread.currentThread().getId());
             }
+            
+            operation = closingOperationStack.get(0);
         }
         
-        LinkedHashMap<ActiveDescriptor<?>, Object> serviceMap;
-        synchronized (this) {
-            serviceMap = operationMap.get(operation);
-            if (serviceMap == null) {
-                if (closingOperation || shuttingDown) {
-                    throw new IllegalStateException("The operation " + operation.getIdentifier() +
-                            " is closing.  A new instance of " + activeDescriptor +
-                            " cannot be created");
-                }
-                
-                serviceMap = new LinkedHashMap<ActiveDescriptor<?>, Object>();
-                operationMap.put(operation, serviceMap);
+        OperationServices services = operationMap.get(operation);
+        if (services == null) {
+            if (closingOperation || shuttingDown) {
+                throw new IllegalStateException("The operation " + operation.getIdentifier() +
+                        " is closing.  A new instance of " + activeDescriptor +
+                        " cannot be created");
             }
             
-            Object retVal = serviceMap.get(activeDescriptor);
+            OperationServices created = new OperationServices();
+            services = operationMap.putIfAbsent(operation, created);
+            if (services == null) services = created;
+        }
+        
+        synchronized (services) {
+            Object retVal = services.serviceMap.get(activeDescriptor);
             if (retVal != null) return (U) retVal;
             
-            if (supportsNullCreation() && serviceMap.containsKey(activeDescriptor)) {
+            if (supportsNullCreation() && services.serviceMap.containsKey(activeDescriptor)) {
                 return null;
             }
             
-            if (closingOperation || shuttingDown) {
+            if (closingOperation || shuttingDown || services.closing) {
                 throw new IllegalStateException("The operation " + operation.getIdentifier() +
                         " is closing.  A new instance of " + activeDescriptor +
                         " cannot be created after searching existing descriptors");
             }
             
             // retVal is null, and this is not an explicit null, so must actually do the creation
-            while (creating.contains(activeDescriptor)) {
+            while (services.creating.contains(activeDescriptor)) {
                 try {
-                    this.wait();
+                    services.wait();
                 }
                 catch (InterruptedException e) {
                     throw new RuntimeException(e);
                 }
             }
             
-            retVal = serviceMap.get(activeDescriptor);
+            retVal = services.serviceMap.get(activeDescriptor);
             if (retVal != null) return (U) retVal;
             
-            if (supportsNullCreation() && serviceMap.containsKey(activeDescriptor)) {
+            if (supportsNullCreation() && services.serviceMap.containsKey(activeDescriptor)) {
                 return null;
             }
             
             // Not in creating, and not created.  Create it ourselves
-            creating.add(activeDescriptor);
+            services.creating.add(activeDescriptor);
         }
         
         Object retVal = null;
@@ -185,13 +179,13 @@ public abstract class OperationContext<T extends Annotation> implements Context<
             success = true;
         }
         finally {
-            synchronized (this) {
+            synchronized (services) {
                 if (success) {
-                    serviceMap.put(activeDescriptor, retVal);
+                    services.serviceMap.put(activeDescriptor, retVal);
                 }
                 
-                creating.remove(activeDescriptor);
-                this.notifyAll();
+                services.creating.remove(activeDescriptor);
+                services.notifyAll();
             }
         }
         
@@ -203,22 +197,17 @@ public abstract class OperationContext<T extends Annotation> implements Context<
      */
     @Override
     public boolean containsKey(ActiveDescriptor<?> descriptor) {
-        SingleOperationManager<T> localManager;
-        synchronized (this) {
-            localManager = manager;
-        }
+        SingleOperationManager<T> localManager = manager;
         if (localManager == null) return false;
         
         OperationHandleImpl<T> operation = localManager.getCurrentOperationOnThisThread();
         if (operation == null) return false;
         
-        synchronized (this) {
-            HashMap<ActiveDescriptor<?>, Object> serviceMap;
-            
-            serviceMap = operationMap.get(operation);
-            if (serviceMap == null) return false;
-            
-            return serviceMap.containsKey(descriptor);
+        OperationServices services = operationMap.get(operation);
+        if (services == null) return false;
+        
+        synchronized (services) {
+            return services.serviceMap.containsKey(descriptor);
         }
         
     }
@@ -229,43 +218,44 @@ public abstract class OperationContext<T extends Annotation> implements Context<
     @SuppressWarnings("unchecked")
     @Override
     public void destroyOne(ActiveDescriptor<?> descriptor) {
-        synchronized (this) {
-            for (HashMap<ActiveDescriptor<?>, Object> serviceMap : operationMap.values()) {
-                Object killMe = serviceMap.remove(descriptor);
-                if (killMe == null) continue;
-                
-                ((ActiveDescriptor<Object>) descriptor).dispose(killMe);
+        for (OperationServices services : operationMap.values()) {
+            Object killMe;
+            synchronized (services) {
+                killMe = services.serviceMap.remove(descriptor);
             }
+            if (killMe == null) continue;
+            
+            ((ActiveDescriptor<Object>) descriptor).dispose(killMe);
         }
     }
     
     @SuppressWarnings("unchecked")
     public void closeOperation(OperationHandleImpl<T> operation) {
         long tid = Thread.currentThread().getId();
-        HashMap<ActiveDescriptor<?>, Object> serviceMap;
-        LinkedList<OperationHandleImpl<T>> stack;
         
-        synchronized (this) {
-            stack = closingOperations.get(tid);
-            if (stack == null) {
-                stack = new LinkedList<OperationHandleImpl<T>>();
-                closingOperations.put(tid, stack);
-            }
-            
-            stack.addFirst(operation);
-            
-            serviceMap = operationMap.get(operation);
+        LinkedList<OperationHandleImpl<T>> stack = closingOperations.get(tid);
+        if (stack == null) {
+            stack = new LinkedList<OperationHandleImpl<T>>();
+            closingOperations.put(tid, stack);
         }
         
+        stack.addFirst(operation);
+        
+        OperationServices services = operationMap.get(operation);
+        
         try {
             // Must be done outside of the lock
             
-            if (serviceMap == null) return;
+            if (services == null) return;
         
             // Reverses creation order
             LinkedList<Map.Entry<ActiveDescriptor<?>, Object>> destructionList = new LinkedList<Map.Entry<ActiveDescriptor<?>, Object>>();
-            for (Map.Entry<ActiveDescriptor<?>, Object> entry : serviceMap.entrySet()) {
-                destructionList.addFirst(entry);
+            synchronized (services) {
+                services.closing = true;
+                
+                for (Map.Entry<ActiveDescriptor<?>, Object> entry : services.serviceMap.entrySet()) {
+                    destructionList.addFirst(entry);
+                }
             }
             
             for (Map.Entry<ActiveDescriptor<?>, Object> entry : destructionList) {
@@ -281,13 +271,11 @@ public abstract class OperationContext<T extends Annotation> implements Context<
             }
         }
         finally {
-            synchronized (this) {
-                operationMap.remove(operation);
+            operationMap.remove(operation);
             
-                stack.removeFirst();
-                if (stack.isEmpty()) {
-                    closingOperations.remove(tid);
-                }
+            stack.removeFirst();
+            if (stack.isEmpty()) {
+                closingOperations.remove(tid);
             }
         }
     }
@@ -297,11 +285,8 @@ public abstract class OperationContext<T extends Annotation> implements Context<
      */
     @Override
     public void shutdown() {
-        Set<OperationHandleImpl<T>> toShutDown;
-        synchronized (this) {
-            shuttingDown = true;
-            toShutDown = operationMap.keySet();
-        }
+        shuttingDown = true;
+        Set<OperationHandleImpl<T>> toShutDown = new HashSet<OperationHandleImpl<T>>(operationMap.keySet());
         
         try {
             for (OperationHandleImpl<T> shutDown : toShutDown) {
@@ -309,9 +294,7 @@ public abstract class OperationContext<T extends Annotation> implements Context<
             }
         }
         finally {
-            synchronized (this) {
-                operationMap.clear();
-            }
+            operationMap.clear();
         }
         
     }
@@ -332,7 +315,7 @@ public abstract class OperationContext<T extends Annotation> implements Context<
         return true;
     }
 
-    public synchronized void setOperationManager(SingleOperationManager<T> manager) {
+    public void setOperationManager(SingleOperationManager<T> manager) {
         this.manager = manager;
     }
     
@@ -340,4 +323,17 @@ public abstract class OperationContext<T extends Annotation> implements Context<
     public String toString() {
         return "OperationContext(" + getScope().getName() + "," + System.identityHashCode(this) + ")";
     }
+    
+    /**
+     * The services of one operation.  Guarded by its own lock so that
+     * operations do not contend with each other
+     * 
+     * @author jwells
+     *
+     */
+    private static final class OperationServices {
+        private final LinkedHashMap<ActiveDescriptor<?>, Object> serviceMap = new LinkedHashMap<ActiveDescriptor<?>, Object>();
+        private final HashSet<ActiveDescriptor<?>> creating = new HashSet<ActiveDescriptor<?>>();
+        private boolean closing;
+    }
 }
@@ -39,15 +39,21 @@
  */
 package org.glassfish.hk2.tests.hk2bridge;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
 import javax.inject.Singleton;
 
 import org.glassfish.hk2.api.ActiveDescriptor;
 import org.glassfish.hk2.api.Descriptor;
 import org.glassfish.hk2.api.DynamicConfiguration;
+import org.glassfish.hk2.api.DynamicConfigurationChange;
 import org.glassfish.hk2.api.DynamicConfigurationService;
 import org.glassfish.hk2.api.PerLookup;
 import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.hk2.extras.ExtrasUtilities;
+import org.glassfish.hk2.extras.hk2bridge.internal.Hk2BridgeImpl;
 import org.glassfish.hk2.tests.extras.internal.Utilities;
 import org.glassfish.hk2.utilities.BuilderHelper;
 import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
@@ -441,5 +447,95 @@ public class BridgeTest {
         Assert.assertNotNull(into.getService(PerLookupService.class));
         Assert.assertNotNull(into.getService(SingletonService.class));
     }
+    
+    /**
+     * Tests that the services of the parent of the from locator are bridged
+     * as well, and that changes to the parent are picked up
+     */
+    @Test
+    public void testBridgeFromLocatorWithParent() {
+        ServiceLocator parent = Utilities.getUniqueLocator(SimpleService.class);
+        ServiceLocator from = Utilities.FACTORY.create(null, parent);
+        ServiceLocatorUtilities.addClasses(from, SimpleService2.class);
+        
+        ServiceLocator into = Utilities.getUniqueLocator();
+        
+        ExtrasUtilities.bridgeServiceLocator(into, from);
+        
+        Assert.assertNotNull(into.getService(SimpleService.class));
+        Assert.assertNotNull(into.getService(SimpleService2.class));
+        
+        // Changes to the parent are seen with the next change to from
+        ServiceLocatorUtilities.addClasses(parent, SimpleService3.class);
+        ServiceLocatorUtilities.removeFilter(parent, BuilderHelper.createContractFilter(SimpleService.class.getName()));
+        ServiceLocatorUtilities.addClasses(from, PerLookupService.class);
+        
+        Assert.assertNull(into.getService(SimpleService.class));
+        Assert.assertNotNull(into.getService(SimpleService2.class));
+        Assert.assertNotNull(into.getService(SimpleService3.class));
+        Assert.assertNotNull(into.getService(PerLookupService.class));
+        
+        // Removing a service of from leaves those of the parent bridged
+        ServiceLocatorUtilities.removeFilter(from, BuilderHelper.createContractFilter(SimpleService2.class.getName()));
+        
+        Assert.assertNull(into.getService(SimpleService2.class));
+        Assert.assertNotNull(into.getService(SimpleService3.class));
+        Assert.assertNotNull(into.getService(PerLookupService.class));
+        
+        // Removing a service of the parent leaves those of from bridged
+        ServiceLocatorUtilities.removeFilter(parent, BuilderHelper.createContractFilter(SimpleService3.class.getName()));
+        ServiceLocatorUtilities.addClasses(from, SimpleService.class);
+        
+        Assert.assertNull(into.getService(SimpleService3.class));
+        Assert.assertNotNull(into.getService(SimpleService.class));
+        Assert.assertNotNull(into.getService(PerLookupService.class));
+    }
+    
+    /**
+     * Tests that an addition reported after the removal of the same descriptor,
+     * as can happen with commits on different threads, is not bridged
+     */
+    @Test
+    public void testLateAdditionIsNotBridged() {
+        ServiceLocator into = Utilities.getUniqueLocator();
+        ServiceLocator from = Utilities.getUniqueLocator(SimpleService.class);
+        
+        ExtrasUtilities.bridgeServiceLocator(into, from);
+        
+        final ActiveDescriptor<?> added = ServiceLocatorUtilities.addClasses(from, SimpleService2.class).get(0);
+        Assert.assertNotNull(into.getService(SimpleService2.class));
+        
+        ServiceLocatorUtilities.removeOneDescriptor(from, added);
+        Assert.assertNull(into.getService(SimpleService2.class));
+        
+        // Reports the addition again, after the removal
+        final long generation = from.getGeneration() + 1;
+        Hk2BridgeImpl bridge = from.getService(Hk2BridgeImpl.class);
+        bridge.configurationChanged(new DynamicConfigurationChange() {
+
+            @Override
+            public List<ActiveDescriptor<?>> getAddedDescriptors() {
+                return Collections.<ActiveDescriptor<?>>singletonList(added);
+            }
+
+            @Override
+            public List<ActiveDescriptor<?>> getRemovedDescriptors() {
+                return Collections.emptyList();
+            }
 
+            @Override
+            public Set<String> getAffectedContracts() {
+                return Collections.singleton(SimpleService2.class.getName());
+            }
+
+            @Override
+            public long getGeneration() {
+                return generation;
+            }
+            
+        });
+        
+        Assert.assertNull(into.getService(SimpleService2.class));
+        Assert.assertNotNull(into.getService(SimpleService.class));
+    }
 }
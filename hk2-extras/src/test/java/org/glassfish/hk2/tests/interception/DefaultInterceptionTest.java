@@ -40,12 +40,14 @@
 package org.glassfish.hk2.tests.interception;
 
 import org.aopalliance.intercept.ConstructorInvocation;
+import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 import org.glassfish.hk2.api.ActiveDescriptor;
 import org.glassfish.hk2.api.DynamicConfiguration;
 import org.glassfish.hk2.api.DynamicConfigurationService;
 import org.glassfish.hk2.api.Filter;
 import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.extras.ExtrasUtilities;
 import org.glassfish.hk2.tests.extras.internal.Utilities;
 import org.glassfish.hk2.utilities.BuilderHelper;
 import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
@@ -322,4 +324,74 @@ public class DefaultInterceptionTest {
             clearInterceptors(interceptorConstant, interceptorConstant2, interceptorConstant3);
         }
     }
+    
+    /**
+     * Tests that method interceptors added to and removed from the
+     * parent of a locator are seen by the interception service of the child
+     */
+    @Test
+    public void testDynamicMethodInterceptionInParentLocator() {
+        ServiceLocator parent = Utilities.FACTORY.create(null);
+        ServiceLocator child = Utilities.FACTORY.create(null, parent);
+        
+        ExtrasUtilities.enableDefaultInterceptorServiceImplementation(child);
+        ServiceLocatorUtilities.addClasses(child, InterceptedService.class);
+        
+        BasicRecordingInterceptor interceptorConstant = new BasicRecordingInterceptor();
+        BasicRecordingInterceptor2 interceptorConstant2 = new BasicRecordingInterceptor2();
+        BasicRecordingInterceptor3 interceptorConstant3 = new BasicRecordingInterceptor3();
+        
+        {
+            // Resolves the interceptors while there are none
+            InterceptedService interceptedService = child.getService(InterceptedService.class);
+            interceptedService.isIntercepted();
+        
+            Assert.assertNull(interceptorConstant.getLastInvocation());
+        }
+        
+        ActiveDescriptor<?> interceptorDescriptor = ServiceLocatorUtilities.addOneConstant(parent, interceptorConstant);
+        ServiceLocatorUtilities.addOneConstant(child, interceptorConstant2);
+        
+        {
+            InterceptedService interceptedService = child.getService(InterceptedService.class);
+            interceptedService.isIntercepted();
+        
+            Assert.assertSame("isIntercepted", interceptorConstant.getLastInvocation().getMethod().getName());
+            Assert.assertSame("isIntercepted", interceptorConstant2.getLastInvocation().getMethod().getName());
+            Assert.assertNull(interceptorConstant3.getLastInvocation());
+            
+            clearInterceptors(interceptorConstant, interceptorConstant2, interceptorConstant3);
+        }
+        
+        // Adds one interceptor to the parent and removes another in the same change
+        DynamicConfigurationService dynamicConfigurationService = parent.getService(DynamicConfigurationService.class);
+        DynamicConfiguration config = dynamicConfigurationService.createDynamicConfiguration();
+        
+        config.addActiveDescriptor(BuilderHelper.createConstantDescriptor(interceptorConstant3));
+        config.addUnbindFilter(BuilderHelper.createSpecificDescriptorFilter(interceptorDescriptor));
+        
+        config.commit();
+        
+        {
+            InterceptedService interceptedService = child.getService(InterceptedService.class);
+            interceptedService.isIntercepted();
+        
+            Assert.assertNull(interceptorConstant.getLastInvocation());
+            Assert.assertSame("isIntercepted", interceptorConstant2.getLastInvocation().getMethod().getName());
+            Assert.assertSame("isIntercepted", interceptorConstant3.getLastInvocation().getMethod().getName());
+            
+            clearInterceptors(interceptorConstant, interceptorConstant2, interceptorConstant3);
+        }
+        
+        ServiceLocatorUtilities.removeFilter(parent, BuilderHelper.createContractFilter(MethodInterceptor.class.getName()));
+        
+        {
+            InterceptedService interceptedService = child.getService(InterceptedService.class);
+            interceptedService.isIntercepted();
+        
+            Assert.assertNull(interceptorConstant.getLastInvocation());
+            Assert.assertSame("isIntercepted", interceptorConstant2.getLastInvocation().getMethod().getName());
+            Assert.assertNull(interceptorConstant3.getLastInvocation());
+        }
+    }
 }
@@ -0,0 +1,315 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.hk2.tests.locator.messaging.async;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+import org.glassfish.hk2.api.MultiException;
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.api.messaging.Topic;
+import org.glassfish.hk2.extras.events.AsynchronousDeliveryPolicy;
+import org.glassfish.hk2.extras.events.DefaultTopicDistributionErrorService;
+import org.glassfish.hk2.tests.extras.internal.Utilities;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests delivery of events with an {@link AsynchronousDeliveryPolicy}
+ * 
+ * @author jwells
+ */
+public class AsynchronousTopicTest {
+    public final static String EXPECTED_MESSAGE = "ExpectedMessage";
+    
+    private final static int NUM_EVENTS = 100;
+    private final static int NUM_CHAINS = 5;
+    private final static long WAIT_TIME = 20;
+    
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    
+    @After
+    public void after() {
+        executor.shutdownNow();
+    }
+    
+    /**
+     * Tests that with no policy events are delivered before publish returns
+     */
+    @Test
+    public void testNoPolicyIsSynchronous() throws Exception {
+        ServiceLocator locator = Utilities.getLocatorWithTopics(OrderedSubscriber.class, AsyncPublisher.class);
+        
+        OrderedSubscriber subscriber = locator.getService(OrderedSubscriber.class);
+        AsyncPublisher publisher = locator.getService(AsyncPublisher.class);
+        
+        Future<Void> result = publisher.publish(new AsyncEvent(0));
+        Assert.assertTrue(result.isDone());
+        Assert.assertNull(result.get());
+        
+        Assert.assertEquals(1, subscriber.getSequences().size());
+        Assert.assertEquals(Thread.currentThread(), subscriber.getThreads().get(0));
+    }
+    
+    /**
+     * Tests that every subscriber gets the events off the publishing
+     * thread and in the order in which they were published
+     */
+    @Test
+    public void testPerSubscriberOrderedDelivery() throws Exception {
+        orderedDelivery(AsynchronousDeliveryPolicy.DeliveryOrder.PER_SUBSCRIBER);
+    }
+    
+    /**
+     * Tests that every subscriber gets the events off the publishing
+     * thread and in the order in which they were published
+     */
+    @Test
+    public void testPerTopicOrderedDelivery() throws Exception {
+        orderedDelivery(AsynchronousDeliveryPolicy.DeliveryOrder.PER_TOPIC);
+    }
+    
+    private void orderedDelivery(AsynchronousDeliveryPolicy.DeliveryOrder order) throws Exception {
+        ServiceLocator locator = Utilities.getLocatorWithTopics(OrderedSubscriber.class, AsyncPublisher.class);
+        ServiceLocatorUtilities.addOneConstant(locator, new Policy(executor, order, 10,
+                AsynchronousDeliveryPolicy.Backpressure.BLOCK));
+        
+        OrderedSubscriber subscriber = locator.getService(OrderedSubscriber.class);
+        AsyncPublisher publisher = locator.getService(AsyncPublisher.class);
+        
+        List<Future<Void>> results = new LinkedList<Future<Void>>();
+        for (int lcv = 0; lcv < NUM_EVENTS; lcv++) {
+            results.add(publisher.publish(new AsyncEvent(lcv)));
+        }
+        
+        for (Future<Void> result : results) {
+            Assert.assertNull(result.get(WAIT_TIME, TimeUnit.SECONDS));
+        }
+        
+        List<Integer> sequences = subscriber.getSequences();
+        Assert.assertEquals(NUM_EVENTS, sequences.size());
+        for (int lcv = 0; lcv < NUM_EVENTS; lcv++) {
+            Assert.assertEquals(new Integer(lcv), sequences.get(lcv));
+        }
+        
+        for (Thread thread : subscriber.getThreads()) {
+            Assert.assertNotSame(Thread.currentThread(), thread);
+        }
+    }
+    
+    /**
+     * Tests that subscriber errors are given to the error service
+     * and are also available from the returned future
+     */
+    @Test
+    public void testErrorsAreAggregated() throws Exception {
+        ServiceLocator locator = Utilities.getLocatorWithTopics(FailingSubscriber.class,
+                OrderedSubscriber.class,
+                AsyncPublisher.class,
+                ErrorHandler.class);
+        ServiceLocatorUtilities.addOneConstant(locator, new Policy(executor,
+                AsynchronousDeliveryPolicy.DeliveryOrder.PER_SUBSCRIBER, 0,
+                AsynchronousDeliveryPolicy.Backpressure.BLOCK));
+        
+        locator.getService(FailingSubscriber.class);
+        OrderedSubscriber subscriber = locator.getService(OrderedSubscriber.class);
+        AsyncPublisher publisher = locator.getService(AsyncPublisher.class);
+        ErrorHandler errorHandler = locator.getService(ErrorHandler.class);
+        
+        AsyncEvent event = new AsyncEvent(1);
+        Future<Void> result = publisher.publish(event);
+        
+        try {
+            result.get(WAIT_TIME, TimeUnit.SECONDS);
+            Assert.fail("Should have failed");
+        }
+        catch (ExecutionException ee) {
+            MultiException me = (MultiException) ee.getCause();
+            Assert.assertTrue(me.toString().contains(EXPECTED_MESSAGE + 1));
+            
+            // Error services have been called before the future is done
+            Assert.assertSame(me, errorHandler.getLastError());
+            Assert.assertSame(event, errorHandler.getLastMessage());
+        }
+        
+        // Other subscribers still get the event
+        Assert.assertEquals(1, subscriber.getSequences().size());
+    }
+    
+    /**
+     * Tests that a full queue rejects messages when the backpressure policy is FAIL
+     */
+    @Test
+    public void testFullQueueFails() throws Exception {
+        ServiceLocator locator = Utilities.getLocatorWithTopics(BlockingSubscriber.class,
+                AsyncPublisher.class,
+                ErrorHandler.class);
+        ServiceLocatorUtilities.addOneConstant(locator, new Policy(executor,
+                AsynchronousDeliveryPolicy.DeliveryOrder.PER_SUBSCRIBER, 1,
+                AsynchronousDeliveryPolicy.Backpressure.FAIL));
+        
+        BlockingSubscriber subscriber = locator.getService(BlockingSubscriber.class);
+        AsyncPublisher publisher = locator.getService(AsyncPublisher.class);
+        
+        Future<Void> first = publisher.publish(new AsyncEvent(0));
+        subscriber.waitForStart();
+        
+        // The first is being delivered, so the second fills the queue
+        Future<Void> second = publisher.publish(new AsyncEvent(1));
+        Future<Void> third = publisher.publish(new AsyncEvent(2));
+        
+        try {
+            third.get(WAIT_TIME, TimeUnit.SECONDS);
+            Assert.fail("Should have been rejected");
+        }
+        catch (ExecutionException ee) {
+            MultiException me = (MultiException) ee.getCause();
+            Assert.assertTrue(me.getErrors().get(0) instanceof RejectedExecutionException);
+        }
+        
+        Assert.assertFalse(first.isDone());
+        Assert.assertFalse(second.isDone());
+        
+        subscriber.release();
+        
+        Assert.assertNull(first.get(WAIT_TIME, TimeUnit.SECONDS));
+        Assert.assertNull(second.get(WAIT_TIME, TimeUnit.SECONDS));
+    }
+    
+    /**
+     * Tests that subscribers of two different full queues that publish to
+     * each other's queue with the BLOCK backpressure policy do not deadlock
+     */
+    @Test
+    public void testPublishingBetweenFullQueuesDoesNotDeadlock() throws Exception {
+        ServiceLocator locator = Utilities.getLocatorWithTopics(EchoSubscriber.class,
+                AsyncPublisher.class);
+        ServiceLocatorUtilities.addOneConstant(locator, new Policy(executor,
+                AsynchronousDeliveryPolicy.DeliveryOrder.PER_SUBSCRIBER, 1,
+                AsynchronousDeliveryPolicy.Backpressure.BLOCK));
+        
+        EchoSubscriber subscriber = locator.getService(EchoSubscriber.class);
+        final AsyncPublisher publisher = locator.getService(AsyncPublisher.class);
+        
+        subscriber.setChains(NUM_CHAINS);
+        
+        // Publishes from its own thread, which blocks for good if the queues deadlock
+        Thread starter = new Thread() {
+            @Override
+            public void run() {
+                for (int lcv = 0; lcv < NUM_CHAINS; lcv++) {
+                    publisher.publish(new AsyncEvent(0));
+                }
+            }
+        };
+        starter.setDaemon(true);
+        starter.start();
+        
+        Assert.assertTrue(subscriber.waitForChains(WAIT_TIME));
+    }
+    
+    private static class Policy implements AsynchronousDeliveryPolicy {
+        private final ExecutorService executor;
+        private final DeliveryOrder order;
+        private final int maximumQueueDepth;
+        private final Backpressure backpressure;
+        
+        private Policy(ExecutorService executor, DeliveryOrder order, int maximumQueueDepth, Backpressure backpressure) {
+            this.executor = executor;
+            this.order = order;
+            this.maximumQueueDepth = maximumQueueDepth;
+            this.backpressure = backpressure;
+        }
+
+        @Override
+        public ExecutorService getExecutor() {
+            return executor;
+        }
+
+        @Override
+        public DeliveryOrder getDeliveryOrder() {
+            return order;
+        }
+
+        @Override
+        public int getMaximumQueueDepth() {
+            return maximumQueueDepth;
+        }
+
+        @Override
+        public Backpressure getBackpressure() {
+            return backpressure;
+        }
+        
+    }
+    
+    @Singleton
+    private static class ErrorHandler implements DefaultTopicDistributionErrorService {
+        private Object lastMessage;
+        private MultiException lastError;
+
+        @Override
+        public synchronized void subscribersFailed(Topic<?> topic, Object message,
+                MultiException error) {
+            lastMessage = message;
+            lastError = error;
+        }
+        
+        private synchronized Object getLastMessage() {
+            return lastMessage;
+        }
+        
+        private synchronized MultiException getLastError() {
+            return lastError;
+        }
+        
+    }
+
+}
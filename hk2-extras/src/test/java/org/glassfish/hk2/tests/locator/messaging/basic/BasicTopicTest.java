@@ -221,6 +221,85 @@ public class BasicTopicTest {
         
     }
     
+    /**
+     * Tests that a subscriber of a supertype added after a subtype was
+     * published is given the later messages of the subtype
+     */
+    @Test
+    public void testNewSupertypeSubscriberGetsSubtypeEvents() {
+        ServiceLocator locator = Utilities.getLocatorWithTopics();
+        
+        ServiceLocatorUtilities.addClasses(locator, FooPublisher.class,
+                PerLookupSubscriber.class,
+                SingletonSubscriber.class);
+        
+        FooPublisher publisher = locator.getService(FooPublisher.class);
+        SingletonSubscriber singletonSubscriber = locator.getService(SingletonSubscriber.class);
+        
+        // A Bar is given to the Foo subscriber
+        publisher.publishBar(5);
+        
+        Foo singletonFoo = singletonSubscriber.getAndClearLastEvent();
+        Assert.assertNotNull(singletonFoo);
+        Assert.assertEquals(5, singletonFoo.getFooValue());
+        
+        ServiceLocatorUtilities.addClasses(locator, DifferentTypesSubscriber.class);
+        DifferentTypesSubscriber subscriber = locator.getService(DifferentTypesSubscriber.class);
+        
+        publisher.publishBar(1);
+        
+        Assert.assertEquals(2, subscriber.getFooValue());  // One for Foo subscriber, One for Bar subscriber
+        Assert.assertEquals(1, subscriber.getBarValue());
+        
+        singletonFoo = singletonSubscriber.getAndClearLastEvent();
+        Assert.assertNotNull(singletonFoo);
+        Assert.assertEquals(1, singletonFoo.getFooValue());
+    }
+    
+    /**
+     * Tests that the subscribers of a removed descriptor are no longer
+     * given the messages of any of the types they subscribed to
+     */
+    @Test
+    public void testRemovedSubscriberDescriptorNoLongerRouted() {
+        ServiceLocator locator = Utilities.getLocatorWithTopics();
+        
+        List<ActiveDescriptor<?>> added = ServiceLocatorUtilities.addClasses(locator, FooPublisher.class,
+                DifferentTypesSubscriber.class);
+        
+        FooPublisher publisher = locator.getService(FooPublisher.class);
+        DifferentTypesSubscriber subscriber = locator.getService(DifferentTypesSubscriber.class);
+        
+        publisher.publishFoo(1);
+        publisher.publishBar(1);
+        
+        Assert.assertEquals(3, subscriber.getFooValue());
+        Assert.assertEquals(1, subscriber.getBarValue());
+        
+        ServiceLocatorUtilities.removeOneDescriptor(locator, added.get(1));
+        
+        publisher.publishFoo(1);
+        publisher.publishBar(1);
+        
+        Assert.assertEquals(3, subscriber.getFooValue());
+        Assert.assertEquals(1, subscriber.getBarValue());
+    }
+    
+    /**
+     * Tests that a topic whose type has no raw class is refused
+     */
+    @Test(expected=IllegalArgumentException.class)
+    public void testTopicWithoutRawClassFails() {
+        ServiceLocator locator = Utilities.getLocatorWithTopics();
+        
+        ServiceLocatorUtilities.addClasses(locator, FooPublisher.class,
+                DifferentTypesSubscriber.class);
+        
+        FooPublisher publisher = locator.getService(FooPublisher.class);
+        
+        publisher.publishOfType(List.class.getTypeParameters()[0], new Foo(1));
+    }
+    
     /**
      * Tests a single subscriber subscribing to different Types by qualifier
      */
@@ -396,6 +475,34 @@ public class BasicTopicTest {
         Assert.assertTrue(subscriber.isSubscriptionServiceDead());
     }
     
+    /**
+     * Tests that the context class loader is the same after a publish
+     * even if a subscriber changes it
+     */
+    @Test
+    public void testContextClassLoaderIsNeutral() {
+        ServiceLocator locator = Utilities.getLocatorWithTopics();
+        
+        ServiceLocatorUtilities.addClasses(locator, FooPublisher.class,
+                ClassLoaderChangingSubscriber.class);
+        
+        ClassLoaderChangingSubscriber subscriber = locator.getService(ClassLoaderChangingSubscriber.class);
+        FooPublisher publisher = locator.getService(FooPublisher.class);
+        
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        Assert.assertNotNull(original);
+        try {
+            publisher.publishFoo(1);
+            publisher.publishFoo(2);
+            
+            Assert.assertEquals(2, subscriber.getNumEvents());
+            Assert.assertSame(original, Thread.currentThread().getContextClassLoader());
+        }
+        finally {
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+    
     /**
      * Tests that a publisher that never had any subscribers is a-ok
      */
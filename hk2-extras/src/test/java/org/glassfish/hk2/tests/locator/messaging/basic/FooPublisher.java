@@ -40,6 +40,8 @@
 
 package org.glassfish.hk2.tests.locator.messaging.basic;
 
+import java.lang.reflect.Type;
+
 import javax.inject.Inject;
 
 import org.glassfish.hk2.api.messaging.Topic;
@@ -64,5 +66,9 @@ public class FooPublisher {
     public void  publishBar(int value) {
         barTopic.publish(new Bar(value, value));
     }
+    
+    public void publishOfType(Type type, Object message) {
+        fooTopic.ofType(type).publish(message);
+    }
 
 }
@@ -0,0 +1,125 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.hk2.tests.locator.messaging.batch;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.glassfish.hk2.api.ServiceLocator;
+import org.glassfish.hk2.tests.extras.internal.Utilities;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link org.glassfish.hk2.api.messaging.Topic#publishAll(java.util.Collection)}
+ * 
+ * @author jwells
+ */
+public class BatchTopicTest {
+    /**
+     * Tests that every subscriber gets all the events of a batch in order,
+     * that the PerLookup injection points of a subscriber of single events
+     * are resolved per event and those of a subscriber of batches once per batch
+     */
+    @Test
+    public void testPublishAll() {
+        ServiceLocator locator = Utilities.getLocatorWithTopics(EventSubscriber.class,
+                ListSubscriber.class,
+                BatchPublisher.class,
+                SingletonService.class,
+                PerLookupService.class,
+                BatchPerLookupService.class);
+        
+        EventSubscriber eventSubscriber = locator.getService(EventSubscriber.class);
+        ListSubscriber listSubscriber = locator.getService(ListSubscriber.class);
+        BatchPublisher publisher = locator.getService(BatchPublisher.class);
+        
+        PerLookupService.CREATED.set(0);
+        PerLookupService.DESTROYED.set(0);
+        BatchPerLookupService.CREATED.set(0);
+        BatchPerLookupService.DESTROYED.set(0);
+        
+        List<BatchEvent> events = Arrays.asList(new BatchEvent(0), new BatchEvent(1), new BatchEvent(2));
+        publisher.publishAll(events);
+        
+        Assert.assertEquals(Arrays.asList(0, 1, 2), eventSubscriber.getSequences());
+        
+        Assert.assertEquals(1, listSubscriber.getBatches().size());
+        Assert.assertEquals(events, listSubscriber.getBatches().get(0));
+        
+        Assert.assertEquals(3, PerLookupService.CREATED.get());
+        Assert.assertEquals(3, PerLookupService.DESTROYED.get());
+        Assert.assertEquals(1, BatchPerLookupService.CREATED.get());
+        Assert.assertEquals(1, BatchPerLookupService.DESTROYED.get());
+        
+        List<BatchEvent> moreEvents = Arrays.asList(new BatchEvent(3), new BatchEvent(4));
+        publisher.publishAll(moreEvents);
+        
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4), eventSubscriber.getSequences());
+        
+        Assert.assertEquals(2, listSubscriber.getBatches().size());
+        Assert.assertEquals(moreEvents, listSubscriber.getBatches().get(1));
+        
+        Assert.assertEquals(5, PerLookupService.CREATED.get());
+        Assert.assertEquals(5, PerLookupService.DESTROYED.get());
+        Assert.assertEquals(2, BatchPerLookupService.CREATED.get());
+        Assert.assertEquals(2, BatchPerLookupService.DESTROYED.get());
+    }
+    
+    /**
+     * Tests that a batch subscriber gets a single published event as a list of one
+     */
+    @Test
+    public void testBatchSubscriberGetsSingleEvent() {
+        ServiceLocator locator = Utilities.getLocatorWithTopics(ListSubscriber.class,
+                BatchPublisher.class,
+                BatchPerLookupService.class);
+        
+        ListSubscriber listSubscriber = locator.getService(ListSubscriber.class);
+        BatchPublisher publisher = locator.getService(BatchPublisher.class);
+        
+        BatchEvent event = new BatchEvent(0);
+        publisher.publish(event);
+        
+        Assert.assertEquals(1, listSubscriber.getBatches().size());
+        Assert.assertEquals(Arrays.asList(event), listSubscriber.getBatches().get(0));
+    }
+
+}
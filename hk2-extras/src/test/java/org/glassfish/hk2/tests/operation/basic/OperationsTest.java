@@ -40,7 +40,10 @@
 package org.glassfish.hk2.tests.operation.basic;
 
 import java.lang.annotation.Annotation;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 
 import org.glassfish.hk2.api.ProxyCtl;
@@ -1082,6 +1085,79 @@ public class OperationsTest {
         operation1.closeOperation();
     }
     
+    /**
+     * Tests that many operations of the same type used concurrently
+     * on many threads each see their own services
+     * 
+     * @throws InterruptedException
+     */
+    @Test // @org.junit.Ignore
+    public void testManyConcurrentOperations() throws InterruptedException {
+        ServiceLocator locator = createLocator(BasicOperationScopeContext.class,
+                OperationUserFactory.class, SingletonThatUsesOperationService.class);
+        
+        final OperationManager operationManager = locator.getService(OperationManager.class);
+        final SingletonThatUsesOperationService singleton = locator.getService(SingletonThatUsesOperationService.class);
+        
+        final int numThreads = 16;
+        final int numOperations = 100;
+        final List<String> failures = Collections.synchronizedList(new LinkedList<String>());
+        
+        Thread threads[] = new Thread[numThreads];
+        for (int lcv = 0; lcv < numThreads; lcv++) {
+            final int threadNumber = lcv;
+            threads[lcv] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int op = 0; op < numOperations; op++) {
+                        final String name = "User-" + threadNumber + "-" + op;
+                        
+                        OperationHandle<BasicOperationScope> operation = operationManager.createOperation(BASIC_OPERATION_ANNOTATION);
+                        operation.setOperationData(new OperationUser() {
+
+                            @Override
+                            public String getName() {
+                                return name;
+                            }
+
+                            @Override
+                            public byte[] getPassword() {
+                                return ALICE_PW;
+                            }
+                            
+                        });
+                        
+                        operation.resume();
+                        try {
+                            String found = singleton.getCurrentUserName();
+                            if (!name.equals(found)) {
+                                failures.add("Expected " + name + " but got " + found);
+                            }
+                        }
+                        catch (Throwable th) {
+                            failures.add(th.toString());
+                        }
+                        finally {
+                            operation.closeOperation();
+                        }
+                    }
+                }
+                
+            });
+        }
+        
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        Assert.assertTrue(failures.toString(), failures.isEmpty());
+    }
+    
     private static class Closer implements Runnable {
         private final Object notifier;
         private final OperationHandle<BasicOperationScope> closeMe;
@@ -42,6 +42,7 @@ package org.jvnet.hk2.internal;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -50,14 +51,15 @@ import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
+import org.glassfish.hk2.api.ActiveDescriptor;
 import org.glassfish.hk2.api.Injectee;
 import org.glassfish.hk2.utilities.InjecteeImpl;
 import org.glassfish.hk2.api.IterableProvider;
 import org.glassfish.hk2.api.ServiceHandle;
 import org.glassfish.hk2.api.Unqualified;
 import org.glassfish.hk2.utilities.NamedImpl;
+import org.glassfish.hk2.utilities.cache.LRUCache;
 import org.glassfish.hk2.utilities.reflection.Pretty;
-import org.glassfish.hk2.utilities.reflection.ReflectionHelper;
 
 /**
  * @author jwells
@@ -65,13 +67,24 @@ import org.glassfish.hk2.utilities.reflection.ReflectionHelper;
  * @param <T> The type for this provider
  */
 public class IterableProviderImpl<T> implements IterableProvider<T> {
+    private final static int MAX_DERIVED_PROVIDERS = 16;
+    
     private final ServiceLocatorImpl locator;
     private final Type requiredType;
     private final Set<Annotation> requiredQualifiers;
+    private final Annotation[] requiredQualifiersArray;
     private final Unqualified unqualified;
     private final Injectee originalInjectee;
     private final boolean isIterable;
     
+    /** The last results of iterator() and getSize() */
+    private volatile Resolution resolution;
+    /** The last results of handleIterator() */
+    private volatile Resolution handleResolution;
+    
+    /** Created on first use of named, ofType or qualifiedWith */
+    private volatile LRUCache<DerivedKey, IterableProviderImpl<?>> derivedProviders;
+    
     /* package */ IterableProviderImpl(
             ServiceLocatorImpl locator,
             Type requiredType,
@@ -82,11 +95,56 @@ public class IterableProviderImpl<T> implements IterableProvider<T> {
         this.locator = locator;
         this.requiredType = requiredType;
         this.requiredQualifiers = Collections.unmodifiableSet(requiredQualifiers);
+        this.requiredQualifiersArray = requiredQualifiers.toArray(new Annotation[requiredQualifiers.size()]);
         this.unqualified = unqualified;
         this.originalInjectee = originalInjectee;
         this.isIterable = isIterable;
     }
     
+    /**
+     * Gets the descriptors this provider currently resolves to.  The result
+     * is remembered for as long as the generation of the locator stays the
+     * same, unless validation services are present or the lookup failed
+     * 
+     * @param forHandles true if this lookup is for {@link #handleIterator()},
+     * which does not take the unqualified and iterable settings into account
+     * @return The descriptors, in ranked order.  Must not be modified
+     */
+    private ActiveDescriptor<?>[] getDescriptors(boolean forHandles) {
+        long generation = locator.getGeneration();
+        Resolution current = forHandles ? handleResolution : resolution;
+        
+        // The JIT resolvers are not consulted when there are services to be had
+        if (current != null && current.generation == generation && current.descriptors.length > 0) {
+            return current.descriptors;
+        }
+        
+        justInTime();
+        
+        // The JIT resolvers may have changed the locator, and the validators
+        // must be checked before the lookup to know whether it can be remembered
+        generation = locator.getGeneration();
+        boolean cacheable = !locator.hasValidators();
+        
+        ImmediateResults immediate = forHandles ?
+                locator.getAllUnqualifiedDescriptors(requiredType, null, false, requiredQualifiersArray) :
+                locator.getAllUnqualifiedDescriptors(requiredType, unqualified, isIterable, requiredQualifiersArray);
+        
+        List<ActiveDescriptor<?>> found = immediate.getImmediateResults();
+        ActiveDescriptor<?>[] retVal = found.toArray(new ActiveDescriptor<?>[found.size()]);
+        
+        if (cacheable && immediate.getTimelessResults().getErrors().isEmpty()) {
+            if (forHandles) {
+                handleResolution = new Resolution(generation, retVal);
+            }
+            else {
+                resolution = new Resolution(generation, retVal);
+            }
+        }
+        
+        return retVal;
+    }
+    
     private void justInTime() {
         InjecteeImpl injectee = new InjecteeImpl(originalInjectee);
         injectee.setRequiredType(requiredType);
@@ -109,7 +167,7 @@ public class IterableProviderImpl<T> implements IterableProvider<T> {
         
         // Must do this in this way to ensure that the generated item is properly associated with the root
         return (T) locator.getUnqualifiedService(requiredType, unqualified,
-                isIterable, requiredQualifiers.toArray(new Annotation[requiredQualifiers.size()]));
+                isIterable, requiredQualifiersArray);
     }
     
     /* (non-Javadoc)
@@ -121,7 +179,7 @@ public class IterableProviderImpl<T> implements IterableProvider<T> {
         justInTime();
         
         return (ServiceHandle<T>) locator.getUnqualifiedServiceHandle(requiredType, unqualified,
-                isIterable, requiredQualifiers.toArray(new Annotation[requiredQualifiers.size()]));
+                isIterable, requiredQualifiersArray);
     }
     
 
@@ -130,13 +188,7 @@ public class IterableProviderImpl<T> implements IterableProvider<T> {
      */
     @Override
     public Iterator<T> iterator() {
-        justInTime();
-        
-        List<ServiceHandle<T>> handles;
-        handles = ReflectionHelper.<List<ServiceHandle<T>>>cast(locator.getAllUnqualifiedServiceHandles(requiredType,
-                    unqualified, isIterable, requiredQualifiers.toArray(new Annotation[requiredQualifiers.size()])));
-        
-        return new MyIterator<T>(handles);
+        return new MyIterator<T>(locator, requiredType, getDescriptors(false));
     }
 
     /* (non-Javadoc)
@@ -144,10 +196,7 @@ public class IterableProviderImpl<T> implements IterableProvider<T> {
      */
     @Override
     public int getSize() {
-        justInTime();
-        
-        return locator.getAllUnqualifiedServiceHandles(requiredType, unqualified, isIterable,
-                requiredQualifiers.toArray(new Annotation[requiredQualifiers.size()])).size();
+        return getDescriptors(false).length;
     }
 
     /* (non-Javadoc)
@@ -161,14 +210,16 @@ public class IterableProviderImpl<T> implements IterableProvider<T> {
     /* (non-Javadoc)
      * @see org.glassfish.hk2.api.IterableProvider#ofType(java.lang.reflect.Type)
      */
+    @SuppressWarnings("unchecked")
     @Override
     public <U> IterableProvider<U> ofType(Type type) {
-        return new IterableProviderImpl<U>(locator, type, requiredQualifiers, unqualified, originalInjectee, isIterable);
+        return (IterableProvider<U>) getDerived(type, requiredQualifiers);
     }
 
     /* (non-Javadoc)
      * @see org.glassfish.hk2.api.IterableProvider#qualifiedWith(java.lang.annotation.Annotation[])
      */
+    @SuppressWarnings("unchecked")
     @Override
     public IterableProvider<T> qualifiedWith(Annotation... qualifiers) {
         HashSet<Annotation> moreAnnotations = new HashSet<Annotation>(requiredQualifiers);
@@ -176,7 +227,39 @@ public class IterableProviderImpl<T> implements IterableProvider<T> {
             moreAnnotations.add(qualifier);
         }
         
-        return new IterableProviderImpl<T>(locator, requiredType, moreAnnotations, unqualified, originalInjectee, isIterable);
+        return (IterableProvider<T>) getDerived(requiredType, moreAnnotations);
+    }
+    
+    /**
+     * Gets a provider like this one but with a different type and qualifiers.
+     * The most recently used of these are remembered, so that code which
+     * narrows the same provider over and over again gets the same derived
+     * provider (and therefore its remembered lookup results)
+     * 
+     * @param type The type of the derived provider
+     * @param qualifiers The qualifiers of the derived provider
+     * @return The derived provider
+     */
+    private IterableProviderImpl<?> getDerived(Type type, Set<Annotation> qualifiers) {
+        LRUCache<DerivedKey, IterableProviderImpl<?>> cache = derivedProviders;
+        if (cache == null) {
+            synchronized (this) {
+                cache = derivedProviders;
+                if (cache == null) {
+                    cache = LRUCache.createCache(MAX_DERIVED_PROVIDERS);
+                    derivedProviders = cache;
+                }
+            }
+        }
+        
+        DerivedKey key = new DerivedKey(type, qualifiers);
+        IterableProviderImpl<?> retVal = cache.get(key);
+        if (retVal != null) return retVal;
+        
+        retVal = new IterableProviderImpl<Object>(locator, type, qualifiers, unqualified, originalInjectee, isIterable);
+        cache.put(key, retVal);
+        
+        return retVal;
     }
     
     /* (non-Javadoc)
@@ -184,19 +267,31 @@ public class IterableProviderImpl<T> implements IterableProvider<T> {
      */
     @Override
     public Iterable<ServiceHandle<T>> handleIterator() {
-        justInTime();
+        ActiveDescriptor<?>[] descriptors = getDescriptors(true);
         
-        List<ServiceHandle<T>> handles = ReflectionHelper.<List<ServiceHandle<T>>>cast(locator.getAllServiceHandles(requiredType,
-                requiredQualifiers.toArray(new Annotation[requiredQualifiers.size()])));
+        List<ServiceHandle<T>> handles = new ArrayList<ServiceHandle<T>>(descriptors.length);
+        for (ActiveDescriptor<?> descriptor : descriptors) {
+            handles.add(IterableProviderImpl.<T>createHandle(locator, requiredType, descriptor));
+        }
         
         return new HandleIterable<T>(handles);
     }
     
+    @SuppressWarnings("unchecked")
+    private static <U> ServiceHandle<U> createHandle(ServiceLocatorImpl locator, Type requiredType, ActiveDescriptor<?> descriptor) {
+        return (ServiceHandle<U>) locator.internalGetServiceHandle(descriptor, requiredType, null);
+    }
+    
     private static class MyIterator<U> implements Iterator<U> {
-        private final LinkedList<ServiceHandle<U>> handles;
+        private final ServiceLocatorImpl locator;
+        private final Type requiredType;
+        private final ActiveDescriptor<?>[] descriptors;
+        private int index;
         
-        private MyIterator(List<ServiceHandle<U>> handles) {
-            this.handles = new LinkedList<ServiceHandle<U>>(handles);
+        private MyIterator(ServiceLocatorImpl locator, Type requiredType, ActiveDescriptor<?>[] descriptors) {
+            this.locator = locator;
+            this.requiredType = requiredType;
+            this.descriptors = descriptors;
         }
 
         /* (non-Javadoc)
@@ -204,7 +299,7 @@ public class IterableProviderImpl<T> implements IterableProvider<T> {
          */
         @Override
         public boolean hasNext() {
-            return !handles.isEmpty();
+            return index < descriptors.length;
         }
 
         /* (non-Javadoc)
@@ -212,9 +307,9 @@ public class IterableProviderImpl<T> implements IterableProvider<T> {
          */
         @Override
         public U next() {
-            if (handles.isEmpty()) throw new NoSuchElementException();
+            if (index >= descriptors.length) throw new NoSuchElementException();
             
-            ServiceHandle<U> nextHandle = handles.removeFirst();
+            ServiceHandle<U> nextHandle = IterableProviderImpl.<U>createHandle(locator, requiredType, descriptors[index++]);
             
             return nextHandle.getService();
         }
@@ -234,7 +329,7 @@ public class IterableProviderImpl<T> implements IterableProvider<T> {
         private final List<ServiceHandle<U>> handles;
         
         private HandleIterable(List<ServiceHandle<U>> handles) {
-            this.handles = new LinkedList<ServiceHandle<U>>(handles);
+            this.handles = handles;
         }
 
         /* (non-Javadoc)
@@ -281,6 +376,45 @@ public class IterableProviderImpl<T> implements IterableProvider<T> {
         
     }
 
+    private static final class Resolution {
+        private final long generation;
+        private final ActiveDescriptor<?>[] descriptors;
+        
+        private Resolution(long generation, ActiveDescriptor<?>[] descriptors) {
+            this.generation = generation;
+            this.descriptors = descriptors;
+        }
+    }
+    
+    private static final class DerivedKey {
+        private final Type type;
+        private final Set<Annotation> qualifiers;
+        private final int hashCode;
+        
+        private DerivedKey(Type type, Set<Annotation> qualifiers) {
+            this.type = type;
+            this.qualifiers = qualifiers;
+            this.hashCode = type.hashCode() ^ qualifiers.hashCode();
+        }
+        
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (o == null) return false;
+            if (!(o instanceof DerivedKey)) return false;
+            
+            DerivedKey other = (DerivedKey) o;
+            
+            if (hashCode != other.hashCode) return false;
+            
+            return type.equals(other.type) && qualifiers.equals(other.qualifiers);
+        }
+    }
+
     public String toString() {
         return "IterableProviderImpl(" + Pretty.type(requiredType) + "," + Pretty.collection(requiredQualifiers) + "," +
             System.identityHashCode(this) + ")";
@@ -76,6 +76,8 @@ import org.glassfish.hk2.api.ClassAnalyzer;
 import org.glassfish.hk2.api.Context;
 import org.glassfish.hk2.api.Descriptor;
 import org.glassfish.hk2.api.DescriptorVisibility;
+import org.glassfish.hk2.api.DynamicConfigurationChange;
+import org.glassfish.hk2.api.DynamicConfigurationChangeListener;
 import org.glassfish.hk2.api.DynamicConfigurationListener;
 import org.glassfish.hk2.api.ErrorService;
 import org.glassfish.hk2.api.ErrorType;
@@ -176,6 +178,14 @@ public class ServiceLocatorImpl implements ServiceLocator {
     private final LinkedList<ServiceHandle<?>> configListeners =
             new LinkedList<ServiceHandle<?>>();
     
+    /**
+     * Increased by every change to this locator or its parents, only
+     * written with the write lock held
+     */
+    private volatile long generation;
+    private final ConcurrentHashMap<String, Long> contractGenerations =
+            new ConcurrentHashMap<String, Long>();
+    
     private volatile boolean hasInterceptionServices = false;
     private final LinkedList<InterceptionService> interceptionServices =
             new LinkedList<InterceptionService>();
@@ -646,7 +656,7 @@ public class ServiceLocatorImpl implements ServiceLocator {
         return getServiceHandle(activeDescriptor, null);
     }
 
-    private <T> ServiceHandleImpl<T> internalGetServiceHandle(
+    /* package */ <T> ServiceHandleImpl<T> internalGetServiceHandle(
             ActiveDescriptor<T> activeDescriptor,
             Type requestedType,
             Injectee originalRequest) {
@@ -1310,14 +1320,6 @@ public class ServiceLocatorImpl implements ServiceLocator {
                 internalGetAllServiceHandles(contractOrImpl, null, true, false, qualifiers);
     }
 
-    /* package */ @SuppressWarnings("unchecked")
-    List<ServiceHandle<?>> getAllUnqualifiedServiceHandles(
-            Type contractOrImpl, Unqualified unqualified, boolean isIterable, Annotation... qualifiers)
-            throws MultiException {
-        return (List<ServiceHandle<?>>)
-                internalGetAllServiceHandles(contractOrImpl, unqualified, true, isIterable, qualifiers);
-    }
-
     final private LRUHybridCache<IgdCacheKey, IgdValue> igashCache =
             new LRUHybridCache<IgdCacheKey, IgdValue>(CACHE_SIZE, new Computable<IgdCacheKey, HybridCacheEntry<IgdValue>>() {
         @Override
@@ -1360,6 +1362,50 @@ public class ServiceLocatorImpl implements ServiceLocator {
             throw new MultiException(new IllegalArgumentException("Type must be a class or parameterized type, it was " + contractOrImpl));
         }
 
+        ImmediateResults immediate = internalGetAllDescriptors(contractOrImpl, rawClass, unqualified, isIterable, qualifiers);
+
+        LinkedList<Object> retVal = new LinkedList<Object>();
+        for (ActiveDescriptor<?> candidate : immediate.getImmediateResults()) {
+            if (getHandles) {
+                retVal.add(internalGetServiceHandle(candidate, contractOrImpl, null));
+            }
+            else {
+                Object service = Utilities.createService(candidate, null, this, null, rawClass);
+
+                retVal.add(service);
+            }
+        }
+
+        return retVal;
+    }
+
+    /**
+     * Gets the descriptors of all the services of the given type that
+     * satisfy the qualifiers and the unqualified annotation, in ranked order
+     *
+     * @return The results of the lookup, any errors have already been given to the error services
+     */
+    /* package */ ImmediateResults getAllUnqualifiedDescriptors(
+            Type contractOrImpl, Unqualified unqualified, boolean isIterable, Annotation... qualifiers)
+            throws MultiException {
+        if (contractOrImpl == null) throw new IllegalArgumentException();
+        checkState();
+
+        final Class<?> rawClass = ReflectionHelper.getRawClass(contractOrImpl);
+        if (rawClass == null) {
+            throw new MultiException(new IllegalArgumentException("Type must be a class or parameterized type, it was " + contractOrImpl));
+        }
+
+        return internalGetAllDescriptors(contractOrImpl, rawClass, unqualified, isIterable, qualifiers);
+    }
+
+    private ImmediateResults internalGetAllDescriptors(
+            Type contractOrImpl,
+            Class<?> rawClass,
+            Unqualified unqualified,
+            boolean isIterable,
+            Annotation... qualifiers)
+            throws MultiException {
         final String name = rawClass.getName();
 
         NarrowResults results = null;
@@ -1415,19 +1461,7 @@ public class ServiceLocatorImpl implements ServiceLocator {
             Utilities.handleErrors(results, currentErrorHandlers);
         }
 
-        LinkedList<Object> retVal = new LinkedList<Object>();
-        for (ActiveDescriptor<?> candidate : immediate.getImmediateResults()) {
-            if (getHandles) {
-                retVal.add(internalGetServiceHandle(candidate, contractOrImpl, null));
-            }
-            else {
-                Object service = Utilities.createService(candidate, null, this, null, rawClass);
-
-                retVal.add(service);
-            }
-        }
-
-        return retVal;
+        return immediate;
     }
 
     @Override
@@ -1910,7 +1944,15 @@ public class ServiceLocatorImpl implements ServiceLocator {
 
                 igdCache.releaseMatching(cacheKeyFilter);
                 igashCache.releaseMatching(cacheKeyFilter);
+                
+                Long contractGeneration = contractGenerations.get(affectedContract);
+                contractGenerations.put(affectedContract,
+                        (contractGeneration == null) ? 1L : contractGeneration + 1L);
             }
+            
+            // Must come after the changes, so a generation read before
+            // a lookup never claims to include changes it does not
+            generation++;
         } finally {
             wLock.unlock();
         }
@@ -1974,7 +2016,8 @@ public class ServiceLocatorImpl implements ServiceLocator {
         }
     }
     
-    private void callAllConfigurationListeners(List<ServiceHandle<?>> allListeners) {
+    private void callAllConfigurationListeners(List<ServiceHandle<?>> allListeners,
+            DynamicConfigurationChange change) {
         if (allListeners == null) return;
         
         for (ServiceHandle<?> listener : allListeners) {
@@ -1982,7 +2025,13 @@ public class ServiceLocatorImpl implements ServiceLocator {
             if (listenerDescriptor.getLocatorId() != id) continue;
             
             try {
-                ((DynamicConfigurationListener) listener.getService()).configurationChanged();
+                Object service = listener.getService();
+                if (service instanceof DynamicConfigurationChangeListener) {
+                    ((DynamicConfigurationChangeListener) service).configurationChanged(change);
+                }
+                else {
+                    ((DynamicConfigurationListener) service).configurationChanged();
+                }
             }
             catch (Throwable th) {
                 // Intentionally ignore
@@ -1994,6 +2043,7 @@ public class ServiceLocatorImpl implements ServiceLocator {
         CheckConfigurationData checkData;
         
         List<ServiceHandle<?>> allConfigurationListeners = null;
+        DynamicConfigurationChange change = null;
         MultiException configurationError = null;
 
         wLock.lock();
@@ -2014,6 +2064,12 @@ public class ServiceLocatorImpl implements ServiceLocator {
                     checkData.getInterceptionServiceModificationMade());
             
             allConfigurationListeners = new LinkedList<ServiceHandle<?>>(configListeners);
+            if (!allConfigurationListeners.isEmpty()) {
+                change = new DynamicConfigurationChangeImpl(thingsAdded,
+                        checkData.getUnbinds(),
+                        checkData.getAffectedContracts(),
+                        generation);
+            }
         } catch (MultiException me) {
             configurationError = me;
             throw me;
@@ -2049,7 +2105,7 @@ public class ServiceLocatorImpl implements ServiceLocator {
             sli.reupCache(checkData.getAffectedContracts());
         }
         
-        callAllConfigurationListeners(allConfigurationListeners);
+        callAllConfigurationListeners(allConfigurationListeners, change);
     }
 
     /* package */ boolean isInjectAnnotation(Annotation annotation) {
@@ -2241,6 +2297,27 @@ public class ServiceLocatorImpl implements ServiceLocator {
         return id;
     }
 
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.api.ServiceLocator#getGeneration()
+     */
+    @Override
+    public long getGeneration() {
+        return generation;
+    }
+
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.api.ServiceLocator#getGeneration(java.lang.String)
+     */
+    @Override
+    public long getGeneration(String contractOrQualifierOrScope) {
+        if (contractOrQualifierOrScope == null) throw new IllegalArgumentException();
+        
+        Long retVal = contractGenerations.get(contractOrQualifierOrScope);
+        if (retVal == null) return 0L;
+        
+        return retVal;
+    }
+
     /* package */ long getNextServiceId() {
 //        wLock.lock();
 //        try {
@@ -2266,6 +2343,27 @@ public class ServiceLocatorImpl implements ServiceLocator {
         if (ServiceLocatorState.SHUTDOWN.equals(state)) throw new IllegalStateException(this + " has been shut down");
     }
 
+    /**
+     * Tells whether lookups in this locator may be checked by validation
+     * services, in which case the same lookup may give different results
+     * even if the generation of this locator has not changed
+     *
+     * @return true if this locator or any of its parents has a validation service
+     */
+    /* package */ boolean hasValidators() {
+        rLock.lock();
+        try {
+            if (!allValidators.isEmpty()) return true;
+        }
+        finally {
+            rLock.unlock();
+        }
+
+        if (parent == null) return false;
+
+        return parent.hasValidators();
+    }
+
     private LinkedHashSet<ValidationService> getAllValidators() {
         if (parent == null) {
             return allValidators;
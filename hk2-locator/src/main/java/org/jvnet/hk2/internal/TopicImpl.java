@@ -41,10 +41,14 @@ package org.jvnet.hk2.internal;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+import org.glassfish.hk2.api.messaging.BatchTopicDistributionService;
 import org.glassfish.hk2.api.messaging.Topic;
 import org.glassfish.hk2.api.messaging.TopicDistributionService;
 import org.glassfish.hk2.utilities.NamedImpl;
@@ -81,6 +85,36 @@ public class TopicImpl<T> implements Topic<T> {
             
         distributor.distributeMessage(this, message);
     }
+    
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.api.messaging.Topic#publishAll(java.util.Collection)
+     */
+    @Override
+    public void publishAll(Collection<? extends T> messages) {
+        if (messages == null) throw new IllegalArgumentException();
+        
+        List<T> copy = new ArrayList<T>(messages);
+        for (T message : copy) {
+            if (message == null) throw new IllegalArgumentException();
+        }
+        
+        if (copy.isEmpty()) return;
+        
+        TopicDistributionService distributor = locator.getService(TopicDistributionService.class);
+            
+        if (distributor == null) {
+             throw new IllegalStateException("There is no implementation of the TopicDistributionService to distribute the message");
+        }
+        
+        if (distributor instanceof BatchTopicDistributionService) {
+            ((BatchTopicDistributionService) distributor).distributeMessages(this, Collections.unmodifiableList(copy));
+            return;
+        }
+        
+        for (T message : copy) {
+            distributor.distributeMessage(this, message);
+        }
+    }
 
     /* (non-Javadoc)
      * @see org.glassfish.hk2.api.messaging.Topic#named(java.lang.String)
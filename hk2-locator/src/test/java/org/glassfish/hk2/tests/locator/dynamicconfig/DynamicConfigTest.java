@@ -55,6 +55,7 @@ import org.glassfish.hk2.api.Descriptor;
 import org.glassfish.hk2.api.DescriptorType;
 import org.glassfish.hk2.api.DescriptorVisibility;
 import org.glassfish.hk2.api.DynamicConfiguration;
+import org.glassfish.hk2.api.DynamicConfigurationChange;
 import org.glassfish.hk2.api.DynamicConfigurationService;
 import org.glassfish.hk2.api.Factory;
 import org.glassfish.hk2.api.FactoryDescriptors;
@@ -554,6 +555,98 @@ public class DynamicConfigTest {
         Assert.assertEquals(3, childListener.getConfigurationChanges());
     }
     
+    /**
+     * Tests that a change listener is told which descriptors
+     * were added and removed, which contracts were affected
+     * and the generation of the change
+     */
+    @Test
+    public void testConfigurationChangeListener() {
+        ServiceLocator locator = LocatorHelper.create();
+        
+        List<ActiveDescriptor<?>> listenerDescriptors = ServiceLocatorUtilities.addClasses(locator,
+                DynamicConfigurationChangeListenerImpl.class);
+        
+        DynamicConfigurationChangeListenerImpl listener = locator.getService(DynamicConfigurationChangeListenerImpl.class);
+        
+        List<DynamicConfigurationChange> changes = listener.getChanges();
+        Assert.assertEquals(1, changes.size());
+        Assert.assertEquals(listenerDescriptors, changes.get(0).getAddedDescriptors());
+        Assert.assertTrue(changes.get(0).getRemovedDescriptors().isEmpty());
+        
+        List<ActiveDescriptor<?>> serviceDescriptors = ServiceLocatorUtilities.addClasses(locator,
+                SimpleService.class, SimpleService2.class);
+        
+        changes = listener.getChanges();
+        Assert.assertEquals(2, changes.size());
+        Assert.assertEquals(serviceDescriptors, changes.get(1).getAddedDescriptors());
+        Assert.assertTrue(changes.get(1).getRemovedDescriptors().isEmpty());
+        
+        ServiceLocatorUtilities.removeOneDescriptor(locator, serviceDescriptors.get(0));
+        
+        changes = listener.getChanges();
+        Assert.assertEquals(3, changes.size());
+        Assert.assertTrue(changes.get(2).getAddedDescriptors().isEmpty());
+        Assert.assertEquals(1, changes.get(2).getRemovedDescriptors().size());
+        Assert.assertEquals(serviceDescriptors.get(0), changes.get(2).getRemovedDescriptors().get(0));
+        
+        try {
+            changes.get(2).getRemovedDescriptors().clear();
+            Assert.fail("The removed descriptors should not be modifiable");
+        }
+        catch (UnsupportedOperationException uoe) {
+            // Expected
+        }
+        
+        // Each commit moves the generation forward
+        Assert.assertTrue(changes.get(0).getGeneration() < changes.get(1).getGeneration());
+        Assert.assertTrue(changes.get(1).getGeneration() < changes.get(2).getGeneration());
+        
+        Assert.assertTrue(changes.get(1).getAffectedContracts().contains(SimpleService.class.getName()));
+        Assert.assertTrue(changes.get(1).getAffectedContracts().contains(SimpleService2.class.getName()));
+        Assert.assertTrue(changes.get(2).getAffectedContracts().contains(SimpleService.class.getName()));
+        Assert.assertFalse(changes.get(2).getAffectedContracts().contains(SimpleService2.class.getName()));
+        
+        // The no-argument variant is never called on a change listener
+        Assert.assertEquals(0, listener.getNoArgCalls());
+    }
+    
+    /**
+     * Tests that the global and contract generations move when
+     * descriptors are added to or removed from the locator or its parent
+     */
+    @Test
+    public void testGenerations() {
+        ServiceLocator parent = LocatorHelper.create();
+        ServiceLocator child = LocatorHelper.create(parent);
+        
+        long parentGeneration = parent.getGeneration();
+        long childGeneration = child.getGeneration();
+        Assert.assertEquals(0L, child.getGeneration(SimpleService.class.getName()));
+        
+        List<ActiveDescriptor<?>> added = ServiceLocatorUtilities.addClasses(parent, SimpleService.class);
+        
+        Assert.assertTrue(parent.getGeneration() > parentGeneration);
+        Assert.assertTrue(child.getGeneration() > childGeneration);
+        Assert.assertEquals(1L, parent.getGeneration(SimpleService.class.getName()));
+        Assert.assertEquals(1L, child.getGeneration(SimpleService.class.getName()));
+        
+        // A change to the child is not seen by the parent
+        parentGeneration = parent.getGeneration();
+        ServiceLocatorUtilities.addClasses(child, SimpleService2.class);
+        
+        Assert.assertEquals(parentGeneration, parent.getGeneration());
+        Assert.assertEquals(0L, parent.getGeneration(SimpleService2.class.getName()));
+        Assert.assertEquals(1L, child.getGeneration(SimpleService2.class.getName()));
+        Assert.assertEquals(1L, child.getGeneration(SimpleService.class.getName()));
+        
+        ServiceLocatorUtilities.removeOneDescriptor(parent, added.get(0));
+        
+        Assert.assertEquals(2L, parent.getGeneration(SimpleService.class.getName()));
+        Assert.assertEquals(2L, child.getGeneration(SimpleService.class.getName()));
+        Assert.assertEquals(1L, child.getGeneration(SimpleService2.class.getName()));
+    }
+    
     /**
      * Tests that a configuration listener that throws does not stop listeners
      * from getting called
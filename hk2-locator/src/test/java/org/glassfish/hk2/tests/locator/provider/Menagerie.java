@@ -68,6 +68,14 @@ public class Menagerie {
     @Inject
     private IterableProvider<Character> allCharacters;
     
+    /**
+     * Called by the test
+     * @return The provider of all characters
+     */
+    public IterableProvider<Character> getAllCharacters() {
+        return allCharacters;
+    }
+    
     public void validateAllEagles() {
         Assert.assertTrue(allEagles.getSize() == 1);
         Assert.assertEquals(ProviderTest.SHADY, allEagles.get().getName());
@@ -40,6 +40,8 @@
 
 package org.glassfish.hk2.tests.locator.provider;
 
+import java.util.List;
+
 import javax.inject.Provider;
 
 import junit.framework.Assert;
@@ -52,6 +54,7 @@ import org.glassfish.hk2.api.ServiceLocator;
 import org.glassfish.hk2.api.TypeLiteral;
 import org.glassfish.hk2.tests.locator.utilities.LocatorHelper;
 import org.glassfish.hk2.utilities.BuilderHelper;
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities;
 import org.junit.Test;
 
 /**
@@ -152,6 +155,43 @@ public class ProviderTest {
         
     }
     
+    /**
+     * Tests that the same iterable provider sees services added and
+     * removed after it was first used, and that narrowing it the same
+     * way twice gives the same provider
+     */
+    @Test
+    public void testIterableSeesDynamicChanges() {
+        ServiceLocator dynamicLocator = LocatorHelper.create();
+        ServiceLocatorUtilities.addClasses(dynamicLocator, Menagerie.class, Ishmael.class);
+        
+        IterableProvider<Character> allCharacters = dynamicLocator.getService(Menagerie.class).getAllCharacters();
+        Assert.assertEquals(1, allCharacters.getSize());
+        Assert.assertEquals(1, allCharacters.getSize());
+        
+        List<ActiveDescriptor<?>> added = ServiceLocatorUtilities.addClasses(dynamicLocator, QueeQueg.class);
+        
+        Assert.assertEquals(2, allCharacters.getSize());
+        
+        int count = 0;
+        for (Character character : allCharacters) {
+            Assert.assertNotNull(character);
+            count++;
+        }
+        Assert.assertEquals(2, count);
+        
+        IterableProvider<Character> named = allCharacters.named(QUEEQUEG);
+        Assert.assertSame(named, allCharacters.named(QUEEQUEG));
+        Assert.assertSame(allCharacters.ofType(BookCharacter.class), allCharacters.ofType(BookCharacter.class));
+        Assert.assertEquals(1, named.getSize());
+        
+        ServiceLocatorUtilities.removeOneDescriptor(dynamicLocator, added.get(0));
+        
+        Assert.assertEquals(1, allCharacters.getSize());
+        Assert.assertEquals(0, named.getSize());
+        Assert.assertFalse(named.handleIterator().iterator().hasNext());
+    }
+    
     /**
      * Tests that the descriptor returned from the injectee
      * of something that injects Provider can be used
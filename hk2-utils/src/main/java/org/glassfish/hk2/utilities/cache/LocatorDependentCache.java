@@ -0,0 +1,176 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.hk2.utilities.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache whose values depend on the contents of a {@link GenerationSource}
+ * such as a service locator.  Each value is stamped with the generation
+ * that was current before it was computed and is recomputed once that
+ * generation has moved on.  A value can either depend on everything in the
+ * source, in which case it is checked against the global generation, or only
+ * on a single name (for example the contract the value was looked up with),
+ * in which case it is checked against the generation of that name and
+ * survives changes that do not affect the name
+ * <p>
+ * Checking a value is a map lookup and a read of the generation, no
+ * listener is registered with the source.  This cache is safe to use
+ * from multiple threads.  A value may be computed more than once if
+ * several threads ask for it at the same time
+ * 
+ * @author jwells
+ * @param <K> The type of the key of the cache
+ * @param <V> The type of the values in the cache
+ */
+public class LocatorDependentCache<K, V> {
+    private final GenerationSource source;
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<K, Entry<V>>();
+    
+    /**
+     * Creates a cache whose values depend on the given source
+     * 
+     * @param source The non-null source the values depend on
+     */
+    public LocatorDependentCache(GenerationSource source) {
+        if (source == null) throw new IllegalArgumentException();
+        
+        this.source = source;
+    }
+    
+    /**
+     * Gets the value for the given key, computing it if there is no
+     * value or the source has changed since the value was computed
+     * 
+     * @param key The non-null key of the value
+     * @param computable The computation to use if the value must be
+     * (re)computed.  May not be null
+     * @return The value, which may be null if the computation returns null
+     */
+    public V compute(K key, Computable<K, V> computable) {
+        return compute(key, null, computable);
+    }
+    
+    /**
+     * Gets the value for the given key, computing it if there is no
+     * value or the given name has been affected by a change since the
+     * value was computed
+     * 
+     * @param key The non-null key of the value
+     * @param name The name the value depends on.  If null the value
+     * depends on everything in the source
+     * @param computable The computation to use if the value must be
+     * (re)computed.  May not be null
+     * @return The value, which may be null if the computation returns null
+     */
+    public V compute(K key, String name, Computable<K, V> computable) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && sameName(entry.name, name) &&
+                entry.generation == getGeneration(name)) {
+            return entry.value;
+        }
+        
+        // The generation must be read before the computation so that
+        // a change made while computing makes the value stale
+        long generation = getGeneration(name);
+        V value = computable.compute(key);
+        
+        entries.put(key, new Entry<V>(name, generation, value));
+        
+        return value;
+    }
+    
+    /**
+     * Removes the value for the given key
+     * 
+     * @param key The non-null key of the value to remove
+     */
+    public void remove(K key) {
+        entries.remove(key);
+    }
+    
+    /**
+     * Removes all values from this cache
+     */
+    public void clear() {
+        entries.clear();
+    }
+    
+    /**
+     * Returns the number of values in this cache, including ones that
+     * are stale
+     * 
+     * @return The number of values in this cache
+     */
+    public int size() {
+        return entries.size();
+    }
+    
+    private long getGeneration(String name) {
+        if (name == null) return source.getGeneration();
+        
+        return source.getGeneration(name);
+    }
+    
+    private static boolean sameName(String a, String b) {
+        if (a == null) return (b == null);
+        
+        return a.equals(b);
+    }
+    
+    private static final class Entry<V> {
+        private final String name;
+        private final long generation;
+        private final V value;
+        
+        private Entry(String name, long generation, V value) {
+            this.name = name;
+            this.generation = generation;
+            this.value = value;
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "LocatorDependentCache(" + source + "," + entries.size() + "," +
+            System.identityHashCode(this) + ")";
+    }
+
+}
@@ -46,7 +46,6 @@ import java.lang.reflect.Modifier;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
-import java.util.Set;
 
 import org.glassfish.hk2.utilities.general.GeneralUtilities;
 
@@ -126,18 +125,6 @@ public class BeanReflectionHelper {
         return Introspector.decapitalize(rawPropName);
     }
     
-    private static Method findMethod(Method m, Class<?> c) {
-        String name = m.getName();
-        Class<?> params[] = new Class<?>[0];
-        
-        try {
-            return c.getMethod(name, params);
-        }
-        catch (Throwable th) {
-            return null;
-        }
-    }
-    
     private static Object getValue(Object bean, Method m) {
         try {
             return m.invoke(bean, new Object[0]);
@@ -183,18 +170,17 @@ public class BeanReflectionHelper {
         
         LinkedList<PropertyChangeEvent> retVal = new LinkedList<PropertyChangeEvent>();
         
-        Set<MethodWrapper> methods = helper.getAllMethods(oldBean.getClass());
+        Map<String, Method> oldGetters = helper.getBeanGetters(oldBean.getClass());
+        Map<String, Method> newGetters = (oldBean.getClass() == newBean.getClass()) ?
+                oldGetters : helper.getBeanGetters(newBean.getClass());
         
-        for (MethodWrapper wrapper : methods) {
-            String propName = isAGetter(wrapper);
-            if (propName == null) continue;
+        for (Map.Entry<String, Method> entry : oldGetters.entrySet()) {
+            String propName = entry.getKey();
             
-            Method method = wrapper.getMethod();
-            
-            Method newMethod = findMethod(method, newBean.getClass());
+            Method newMethod = newGetters.get(propName);
             if (newMethod == null) continue;
             
-            Object oldValue = getValue(oldBean, method);
+            Object oldValue = getValue(oldBean, entry.getValue());
             Object newValue = getValue(newBean, newMethod);
             
             if (GeneralUtilities.safeEquals(oldValue, newValue)) continue;
@@ -220,16 +206,11 @@ public class BeanReflectionHelper {
     public static Map<String, Object> convertJavaBeanToBeanLikeMap(ClassReflectionHelper helper, Object bean) {
         HashMap<String, Object> retVal = new HashMap<String, Object>();
         
-        Set<MethodWrapper> methods = helper.getAllMethods(bean.getClass());
-        
-        for (MethodWrapper wrapper : methods) {
-            String propName = isAGetter(wrapper);
-            if (propName == null) continue;
+        for (Map.Entry<String, Method> entry : helper.getBeanGetters(bean.getClass()).entrySet()) {
+            String propName = entry.getKey();
             if ("class".equals(propName)) continue;
             
-            Method method = wrapper.getMethod();
-            
-            Object value = getValue(bean, method);
+            Object value = getValue(bean, entry.getValue());
             
             retVal.put(propName, value);
         }
@@ -41,6 +41,7 @@ package org.glassfish.hk2.utilities.reflection;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -74,6 +75,18 @@ public interface ClassReflectionHelper {
      */
     public Set<Field> getAllFields(Class<?> clazz);
     
+    /**
+     * Gets the java-bean getters of a class (taking class heirarchy into account),
+     * keyed by java-bean property name.  The getters returned have already been
+     * made accessible, so they can be invoked directly without being looked up
+     * again on every read of a property
+     * 
+     * @param clazz The class to analyze for java-bean getters
+     * @return An unmodifiable and possibly empty map from java-bean property name
+     * to the getter of that property
+     */
+    public Map<String, Method> getBeanGetters(Class<?> clazz);
+    
     /**
      * Finds the postConstruct method on this class
      * 
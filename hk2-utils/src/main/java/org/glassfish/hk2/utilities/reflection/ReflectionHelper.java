@@ -1236,7 +1236,9 @@ public final class ReflectionHelper {
 
     /**
      * This version of invoke is CCL neutral (it will return with the
-     * same CCL as what it went in with)
+     * same CCL as what it went in with).  The CCL is only set back if the
+     * call changed it, and privileged actions are only used to get and set
+     * it when a security manager is installed
      *
      * @param m the method to invoke
      * @param o the object on which to invoke it
@@ -1253,9 +1255,11 @@ public final class ReflectionHelper {
         
         setAccessible(m);
         
+        Thread thread = null;
         ClassLoader currentCCL = null;
         if (neutralCCL) {
-            currentCCL = getCurrentContextClassLoader();
+            thread = Thread.currentThread();
+            currentCCL = getContextClassLoader(thread);
         }
 
         try {
@@ -1272,7 +1276,7 @@ public final class ReflectionHelper {
         }
         finally {
             if (neutralCCL) {
-                setContextClassLoader(Thread.currentThread(), currentCCL);
+                resetContextClassLoader(thread, currentCCL);
             }
         }
     }
@@ -1295,6 +1299,11 @@ public final class ReflectionHelper {
      * @param l The classloader to set
      */
     private static void setContextClassLoader(final Thread t, final ClassLoader l) {
+        if (System.getSecurityManager() == null) {
+            t.setContextClassLoader(l);
+            return;
+        }
+        
         AccessController.doPrivileged(new PrivilegedAction<Object>() {
 
             @Override
@@ -1307,6 +1316,19 @@ public final class ReflectionHelper {
 
     }
 
+    /**
+     * Puts the given context class loader back on the thread if it
+     * was changed, which most invoked methods do not do
+     * 
+     * @param t The thread that made the call
+     * @param l The context class loader the thread had before the call
+     */
+    private static void resetContextClassLoader(Thread t, ClassLoader l) {
+        if (getContextClassLoader(t) == l) return;
+        
+        setContextClassLoader(t, l);
+    }
+
     /**
      * Sets this accessible object to be accessible using the permissions of
      * the hk2-locator bundle (which will need the required grant)
@@ -1329,7 +1351,9 @@ public final class ReflectionHelper {
 
     /**
      * This version of invoke is CCL neutral (it will return with the
-     * same CCL as what it went in with)
+     * same CCL as what it went in with).  The CCL is only set back if the
+     * call changed it, and privileged actions are only used to get and set
+     * it when a security manager is installed
      *
      * @param c the constructor to call
      * @param args The arguments to invoke (may not be null)
@@ -1341,9 +1365,11 @@ public final class ReflectionHelper {
             throws Throwable {
 
         
+        Thread thread = null;
         ClassLoader currentCCL = null;
         if (neutralCCL) {
-            currentCCL = getCurrentContextClassLoader();
+            thread = Thread.currentThread();
+            currentCCL = getContextClassLoader(thread);
         }
 
         try {
@@ -1357,7 +1383,7 @@ public final class ReflectionHelper {
             throw th;
         } finally {
             if (neutralCCL) {
-                setContextClassLoader(Thread.currentThread(), currentCCL);
+                resetContextClassLoader(thread, currentCCL);
             }
         }
     }
@@ -1461,15 +1487,21 @@ public final class ReflectionHelper {
     }
 
     /**
-     * Gets the current context class loader with privs
+     * Gets the context class loader of the given thread, with privs
+     * only if there is a security manager
      * 
-     * @return The current context class loader
+     * @param t The thread whose context class loader to get
+     * @return The context class loader of the thread
      */
-    private static ClassLoader getCurrentContextClassLoader() {
+    private static ClassLoader getContextClassLoader(final Thread t) {
+        if (System.getSecurityManager() == null) {
+            return t.getContextClassLoader();
+        }
+        
         return AccessController.doPrivileged(new PrivilegedAction<ClassLoader>() {
             @Override
             public ClassLoader run() {
-                return Thread.currentThread().getContextClassLoader();
+                return t.getContextClassLoader();
             }
         });
     }
@@ -41,6 +41,7 @@ package org.glassfish.hk2.utilities.reflection.internal;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.Map;
 import java.util.Set;
 
 import org.glassfish.hk2.utilities.cache.Computable;
@@ -97,6 +98,16 @@ public class ClassReflectionHelperImpl implements ClassReflectionHelper {
                 
             });
     
+    private final LRUHybridCache<Class<?>, Map<String, Method>> getterCache =
+            new LRUHybridCache<Class<?>, Map<String, Method>>(MAX_CACHE_SIZE, new Computable<Class<?>, HybridCacheEntry<Map<String, Method>>>() {
+
+                @Override
+                public HybridCacheEntry<Map<String, Method>> compute(Class<?> key) {
+                    return getterCache.createCacheEntry(key, ClassReflectionHelperUtilities.getBeanGetters(getAllMethods(key)), false);
+                }
+                
+            });
+    
     public ClassReflectionHelperImpl() {
     }
     
@@ -113,6 +124,14 @@ public class ClassReflectionHelperImpl implements ClassReflectionHelper {
         return fieldCache.compute(clazz).getValue();
     }
     
+    /* (non-Javadoc)
+     * @see org.glassfish.hk2.utilities.reflection.ClassReflectionHelper#getBeanGetters(java.lang.Class)
+     */
+    @Override
+    public Map<String, Method> getBeanGetters(Class<?> clazz) {
+        return getterCache.compute(clazz).getValue();
+    }
+    
     @Override
     public Method findPostConstruct(final Class<?> clazz, Class<?> matchingClass)
             throws IllegalArgumentException {
@@ -132,6 +151,7 @@ public class ClassReflectionHelperImpl implements ClassReflectionHelper {
             preDestroyCache.remove(new LifecycleKey(clazz, null));
             methodCache.remove(clazz);
             fieldCache.remove(clazz);
+            getterCache.remove(clazz);
             
             clazz = clazz.getSuperclass();
         }
@@ -151,6 +171,7 @@ public class ClassReflectionHelperImpl implements ClassReflectionHelper {
         preDestroyCache.clear();
         methodCache.clear();
         fieldCache.clear();
+        getterCache.clear();
     }
     
     /* (non-Javadoc)
@@ -161,7 +182,8 @@ public class ClassReflectionHelperImpl implements ClassReflectionHelper {
         return postConstructCache.size() +
                 preDestroyCache.size() +
                 methodCache.size() +
-                fieldCache.size();
+                fieldCache.size() +
+                getterCache.size();
     }
     
     private Method getPostConstructMethod(Class<?> clazz, Class<?> matchingClass) {
@@ -45,11 +45,14 @@ import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 
+import org.glassfish.hk2.utilities.reflection.BeanReflectionHelper;
 import org.glassfish.hk2.utilities.reflection.MethodWrapper;
 import org.glassfish.hk2.utilities.reflection.Pretty;
 
@@ -60,6 +63,7 @@ import org.glassfish.hk2.utilities.reflection.Pretty;
 public class ClassReflectionHelperUtilities {
     final static String CONVENTION_POST_CONSTRUCT = "postConstruct";
     final static String CONVENTION_PRE_DESTROY = "preDestroy";
+    private final static String GET = "get";
     
     private final static Set<MethodWrapper> OBJECT_METHODS = getObjectMethods();
     private final static Set<Field> OBJECT_FIELDS = getObjectFields();
@@ -196,6 +200,49 @@ public class ClassReflectionHelperUtilities {
         return retVal;
     }
     
+    /**
+     * Finds the java-bean getters amongst the given methods.  If a property
+     * has both a get and an is getter the get getter is used
+     * 
+     * @param methods The full set of methods of a class
+     * @return An unmodifiable map from property name to the accessible getter
+     */
+    static Map<String, Method> getBeanGetters(Set<MethodWrapper> methods) {
+        final LinkedHashMap<String, Method> retVal = new LinkedHashMap<String, Method>();
+        
+        for (MethodWrapper wrapper : methods) {
+            Method m = wrapper.getMethod();
+            
+            String propName = BeanReflectionHelper.getBeanPropertyNameFromGetter(m);
+            if (propName == null) continue;
+            
+            Method existing = retVal.get(propName);
+            if (existing != null && existing.getName().startsWith(GET)) continue;
+            
+            retVal.put(propName, m);
+        }
+        
+        AccessController.doPrivileged(new PrivilegedAction<Object>() {
+
+            @Override
+            public Object run() {
+                for (Method getter : retVal.values()) {
+                    try {
+                        getter.setAccessible(true);
+                    }
+                    catch (RuntimeException re) {
+                        // Public anyway, the invoke may still work
+                    }
+                }
+                
+                return null;
+            }
+            
+        });
+        
+        return Collections.unmodifiableMap(retVal);
+    }
+    
     static boolean isPostConstruct(Method m) {
         if (m.isAnnotationPresent(PostConstruct.class)) {
             if (m.getParameterTypes().length != 0) {
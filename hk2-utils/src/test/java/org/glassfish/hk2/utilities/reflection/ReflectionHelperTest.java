@@ -46,6 +46,11 @@ import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 import java.lang.reflect.WildcardType;
+import java.security.AccessControlException;
+import java.security.CodeSource;
+import java.security.Permission;
+import java.security.Policy;
+import java.security.ProtectionDomain;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -64,6 +69,7 @@ import org.glassfish.hk2.utilities.reflection.types.InterfaceOne;
 import org.glassfish.hk2.utilities.reflection.types.InterfaceThree;
 import org.glassfish.hk2.utilities.reflection.types.InterfaceTwo;
 import org.glassfish.hk2.utilities.reflection.types.ParameterizedClassOne;
+import org.junit.Assume;
 import org.junit.Test;
 
 /**
@@ -1123,5 +1129,185 @@ public class ReflectionHelperTest {
         Assert.assertTrue(cType1.isArray());
         Assert.assertEquals(List.class, cType1.getComponentType());
     }
-
+    
+    /**
+     * Tests that a CCL neutral invoke does not set the context class loader
+     * of the thread when the invoked method left it alone
+     * 
+     * @throws Throwable
+     */
+    @Test
+    public void testNeutralInvokeLeavesUnchangedContextClassLoader() throws Throwable {
+        final Method noop = ReflectionHelperTest.class.getDeclaredMethod("leaveContextClassLoader");
+        
+        CountingThread thread = CountingThread.run(new Callable() {
+            @Override
+            public void call() throws Throwable {
+                ReflectionHelper.invoke(null, noop, new Object[0], true);
+            }
+        });
+        
+        Assert.assertEquals(0, thread.sets);
+        Assert.assertSame(thread.original, thread.getContextClassLoader());
+    }
+    
+    /**
+     * Tests that a CCL neutral invoke puts back the context class loader
+     * the invoked method changed
+     * 
+     * @throws Throwable
+     */
+    @Test
+    public void testNeutralInvokeRestoresChangedContextClassLoader() throws Throwable {
+        final Method change = ReflectionHelperTest.class.getDeclaredMethod("changeContextClassLoader");
+        
+        CountingThread thread = CountingThread.run(new Callable() {
+            @Override
+            public void call() throws Throwable {
+                ReflectionHelper.invoke(null, change, new Object[0], true);
+            }
+        });
+        
+        // Once by the method and once to put it back
+        Assert.assertEquals(2, thread.sets);
+        Assert.assertSame(thread.original, thread.getContextClassLoader());
+    }
+    
+    /**
+     * Tests that with a security manager installed a CCL neutral invoke
+     * still puts the context class loader back with its own privileges,
+     * which the caller of invoke does not have
+     * 
+     * @throws Throwable
+     */
+    @Test
+    public void testNeutralInvokeRestoresWithSecurityManager() throws Throwable {
+        Method change = ReflectionHelperTest.class.getDeclaredMethod("changeContextClassLoaderWhenAllowed");
+        
+        ClassLoader original = Thread.currentThread().getContextClassLoader();
+        Policy originalPolicy = Policy.getPolicy();
+        
+        Policy.setPolicy(POLICY);
+        try {
+            try {
+                System.setSecurityManager(new SecurityManager());
+            }
+            catch (UnsupportedOperationException uoe) {
+                // This JVM does not allow a security manager to be installed
+                Assume.assumeNoException(uoe);
+            }
+            
+            try {
+                // Without privileges this test may not set the context class loader
+                try {
+                    Thread.currentThread().setContextClassLoader(null);
+                    Assert.fail("The policy should not allow the test to set the context class loader");
+                }
+                catch (AccessControlException expected) {
+                    // expected
+                }
+                
+                ReflectionHelper.invoke(null, change, new Object[0], true);
+                
+                Assert.assertSame(original, Thread.currentThread().getContextClassLoader());
+            }
+            finally {
+                System.setSecurityManager(null);
+            }
+        }
+        finally {
+            Policy.setPolicy(originalPolicy);
+            Thread.currentThread().setContextClassLoader(original);
+        }
+    }
+    
+    @SuppressWarnings("unused")
+    private static void leaveContextClassLoader() {
+    }
+    
+    @SuppressWarnings("unused")
+    private static void changeContextClassLoader() {
+        Thread.currentThread().setContextClassLoader(new ClassLoader(null) {});
+    }
+    
+    @SuppressWarnings("unused")
+    private static void changeContextClassLoaderWhenAllowed() {
+        POLICY.allowTests = true;
+        try {
+            changeContextClassLoader();
+        }
+        finally {
+            POLICY.allowTests = false;
+        }
+    }
+    
+    private final static TestsMayNotSetContextClassLoader POLICY = new TestsMayNotSetContextClassLoader();
+    
+    /**
+     * Grants everything, except that code from the test classes may only set
+     * the context class loader while allowTests is true
+     */
+    private static class TestsMayNotSetContextClassLoader extends Policy {
+        private final static Permission SET_CCL = new RuntimePermission("setContextClassLoader");
+        
+        private final CodeSource tests = ReflectionHelperTest.class.getProtectionDomain().getCodeSource();
+        private volatile boolean allowTests;
+        
+        @Override
+        public boolean implies(ProtectionDomain domain, Permission permission) {
+            if (allowTests || !SET_CCL.equals(permission)) return true;
+            
+            return (tests == null) || (domain.getCodeSource() == null) ||
+                    !tests.getLocation().equals(domain.getCodeSource().getLocation());
+        }
+    }
+    
+    private static interface Callable {
+        public void call() throws Throwable;
+    }
+    
+    /**
+     * Counts the number of times its context class loader is set
+     */
+    private static class CountingThread extends Thread {
+        private final Callable callable;
+        private final ClassLoader original;
+        private volatile boolean running;
+        private volatile int sets;
+        private volatile Throwable error;
+        
+        private CountingThread(Callable callable) {
+            this.callable = callable;
+            this.original = getContextClassLoader();
+        }
+        
+        private static CountingThread run(Callable callable) throws Throwable {
+            CountingThread retVal = new CountingThread(callable);
+            retVal.start();
+            retVal.join();
+            
+            if (retVal.error != null) throw retVal.error;
+            return retVal;
+        }
+        
+        @Override
+        public void setContextClassLoader(ClassLoader cl) {
+            if (running) sets++;
+            super.setContextClassLoader(cl);
+        }
+        
+        @Override
+        public void run() {
+            running = true;
+            try {
+                callable.call();
+            }
+            catch (Throwable th) {
+                error = th;
+            }
+            finally {
+                running = false;
+            }
+        }
+    }
 }
@@ -39,6 +39,8 @@
  */
 package org.glassfish.hk2.utilities.test;
 
+import java.beans.PropertyChangeEvent;
+import java.lang.reflect.Method;
 import java.util.Map;
 
 import org.glassfish.hk2.utilities.reflection.BeanReflectionHelper;
@@ -81,4 +83,43 @@ public class BeanReflectionHelperTest {
         Assert.assertEquals(THIRD_VALUE, mapThirdValue);
     }
 
+    /**
+     * Tests that only the changed properties of two beans are reported
+     */
+    @Test
+    public void testChangeEventsOfTwoBeans() {
+        GenericJavaBean oldBean = new GenericJavaBean();
+        oldBean.setValue(VALUE);
+        oldBean.setAnotherValue(ANOTHER_VALUE);
+        oldBean.setThirdValue(THIRD_VALUE);
+        
+        GenericJavaBean newBean = new GenericJavaBean();
+        newBean.setValue(VALUE);
+        newBean.setAnotherValue(ANOTHER_VALUE + 1);
+        newBean.setThirdValue(THIRD_VALUE);
+        
+        PropertyChangeEvent events[] = BeanReflectionHelper.getChangeEvents(classHelper, oldBean, newBean);
+        
+        Assert.assertEquals(1, events.length);
+        Assert.assertEquals("anotherValue", events[0].getPropertyName());
+        Assert.assertEquals(ANOTHER_VALUE, events[0].getOldValue());
+        Assert.assertEquals(ANOTHER_VALUE + 1, events[0].getNewValue());
+        Assert.assertSame(newBean, events[0].getSource());
+    }
+    
+    /**
+     * Tests that the getters of a bean are found and cached
+     */
+    @Test
+    public void testBeanGettersAreCached() {
+        Map<String, Method> getters = classHelper.getBeanGetters(GenericJavaBean.class);
+        
+        Assert.assertEquals("getValue", getters.get("value").getName());
+        Assert.assertEquals("getAnotherValue", getters.get("anotherValue").getName());
+        Assert.assertEquals("getThirdValue", getters.get("thirdValue").getName());
+        Assert.assertNull(getters.get("setValue"));
+        
+        Assert.assertSame(getters, classHelper.getBeanGetters(GenericJavaBean.class));
+    }
+
 }
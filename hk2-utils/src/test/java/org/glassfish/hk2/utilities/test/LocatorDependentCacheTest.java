@@ -0,0 +1,171 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://glassfish.dev.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.hk2.utilities.test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.glassfish.hk2.utilities.cache.Computable;
+import org.glassfish.hk2.utilities.cache.GenerationSource;
+import org.glassfish.hk2.utilities.cache.LocatorDependentCache;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link LocatorDependentCache}
+ * 
+ * @author jwells
+ */
+public class LocatorDependentCacheTest {
+    private final static String CONTRACT_A = "A";
+    private final static String CONTRACT_B = "B";
+    
+    private static class Source implements GenerationSource {
+        private long generation;
+        private final Map<String, Long> generations = new HashMap<String, Long>();
+        
+        private void change(String name) {
+            Long current = generations.get(name);
+            generations.put(name, (current == null) ? 1L : current + 1L);
+            
+            generation++;
+        }
+
+        @Override
+        public long getGeneration() {
+            return generation;
+        }
+
+        @Override
+        public long getGeneration(String name) {
+            Long retVal = generations.get(name);
+            return (retVal == null) ? 0L : retVal;
+        }
+    }
+    
+    private static class Counting implements Computable<String, String> {
+        private int computations;
+
+        @Override
+        public String compute(String key) {
+            computations++;
+            return key + computations;
+        }
+    }
+    
+    /**
+     * Tests that values depending on everything are recomputed after any change
+     */
+    @Test
+    public void testGlobalDependency() {
+        Source source = new Source();
+        Counting computable = new Counting();
+        LocatorDependentCache<String, String> cache = new LocatorDependentCache<String, String>(source);
+        
+        Assert.assertEquals("key1", cache.compute("key", computable));
+        Assert.assertEquals("key1", cache.compute("key", computable));
+        Assert.assertEquals(1, computable.computations);
+        
+        source.change(CONTRACT_B);
+        
+        Assert.assertEquals("key2", cache.compute("key", computable));
+        Assert.assertEquals("key2", cache.compute("key", computable));
+        Assert.assertEquals(2, computable.computations);
+    }
+    
+    /**
+     * Tests that values depending on a name survive changes to other names
+     */
+    @Test
+    public void testNameDependency() {
+        Source source = new Source();
+        Counting computable = new Counting();
+        LocatorDependentCache<String, String> cache = new LocatorDependentCache<String, String>(source);
+        
+        Assert.assertEquals("key1", cache.compute("key", CONTRACT_A, computable));
+        
+        source.change(CONTRACT_B);
+        
+        Assert.assertEquals("key1", cache.compute("key", CONTRACT_A, computable));
+        Assert.assertEquals(1, computable.computations);
+        
+        source.change(CONTRACT_A);
+        
+        Assert.assertEquals("key2", cache.compute("key", CONTRACT_A, computable));
+        Assert.assertEquals(2, computable.computations);
+        
+        // Asking with a different dependency recomputes
+        Assert.assertEquals("key3", cache.compute("key", computable));
+        Assert.assertEquals(3, computable.computations);
+    }
+    
+    /**
+     * Tests that a change made during the computation makes the value stale
+     */
+    @Test
+    public void testChangeDuringComputation() {
+        final Source source = new Source();
+        LocatorDependentCache<String, String> cache = new LocatorDependentCache<String, String>(source);
+        
+        Assert.assertEquals("first", cache.compute("key", CONTRACT_A, new Computable<String, String>() {
+
+            @Override
+            public String compute(String key) {
+                source.change(CONTRACT_A);
+                return "first";
+            }
+            
+        }));
+        
+        Assert.assertEquals("second", cache.compute("key", CONTRACT_A, new Computable<String, String>() {
+
+            @Override
+            public String compute(String key) {
+                return "second";
+            }
+            
+        }));
+        
+        cache.remove("key");
+        Assert.assertEquals(0, cache.size());
+    }
+
+}